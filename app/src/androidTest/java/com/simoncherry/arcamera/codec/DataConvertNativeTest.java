@@ -0,0 +1,44 @@
+package com.simoncherry.arcamera.codec;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在设备上比较libVideoConvert与YuvConverter的结果，两者应逐字节一致
+ */
+@RunWith(AndroidJUnit4.class)
+public class DataConvertNativeTest {
+
+    private static final int[] TYPES = {
+            DataConvert.RGBA_YUV420SP, DataConvert.BGRA_YUV420SP,
+            DataConvert.RGBA_YUV420P, DataConvert.BGRA_YUV420P,
+            DataConvert.RGB_YUV420SP, DataConvert.RGB_YUV420P,
+            DataConvert.BGR_YUV420SP, DataConvert.BGR_YUV420P
+    };
+
+    @Test
+    public void nativeMatchesJava() throws Exception {
+        Assume.assumeTrue(DataConvert.isAvailable(DataConvert.IMPL_NATIVE));
+        Random random = new Random(1);
+        int width = 640;
+        int height = 480;
+        for (int type : TYPES) {
+            byte[] rgb = new byte[width * height * ((type & 0xF000) >> 12)];
+            random.nextBytes(rgb);
+            byte[] expected = new byte[width * height * 3 / 2];
+            byte[] actual = new byte[expected.length];
+            DataConvert.rgbaToYuv(DataConvert.IMPL_NATIVE, rgb, width, height, expected, type);
+            DataConvert.rgbaToYuv(DataConvert.IMPL_JAVA, rgb, width, height, actual, type);
+            assertArrayEquals("type=" + Integer.toHexString(type), expected, actual);
+            DataConvert.rgbaToYuv(DataConvert.IMPL_JAVA_PARALLEL, rgb, width, height, actual, type);
+            assertArrayEquals("type=" + Integer.toHexString(type), expected, actual);
+        }
+    }
+}
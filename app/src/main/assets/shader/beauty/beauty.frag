@@ -1,63 +1,26 @@
 precision lowp float;
 precision lowp int;
 uniform sampler2D vTexture;
+uniform sampler2D uBlurTexture;     //缩小后双边模糊的结果
 uniform int iternum;
 uniform float aaCoef; //参数
 uniform float mixCoef; //混合系数
+uniform vec2 uFaceCenter;   //人脸椭圆的中心和半轴，纹理坐标
+uniform vec2 uFaceAxis;
+uniform float uFaceWeight;  //没有人脸时为0，整个画面磨皮
 varying highp vec2 textureCoordinate;
-varying highp vec2 blurCoord1s[14];
-const float distanceNormalizationFactor = 4.0;    //标准化距离因子常量
 const mat3 saturateMatrix = mat3(1.1102,-0.0598,-0.061,-0.0774,1.0826,-0.1186,-0.0228,-0.0228,1.1772);
 
 void main( ) {
 
     vec3 centralColor;
-    float central;
-    float gaussianWeightTotal;
     float sum;
     float sampleColor;
-    float distanceFromCentralColor;
-    float gaussianWeight;
-
-    //通过绿色通道来磨皮
-    //取得当前点颜色的绿色通道
-    central = texture2D( vTexture, textureCoordinate ).g;
-    //高斯权重
-    gaussianWeightTotal = 0.2;
-    //绿色通道色彩记数
-    sum = central * 0.2;
-
-    // 计算各个采样点处的高斯权重，包括密闭性和相似性
-    for (int i = 0; i < 6; i++) {
-        //采样点的绿色通道
-        sampleColor = texture2D( vTexture, blurCoord1s[i] ).g;
-        //采样点和计算点的颜色差
-        distanceFromCentralColor = min( abs( central - sampleColor ) * distanceNormalizationFactor, 1.0 );
-        //高斯权重
-        gaussianWeight = 0.05 * (1.0 - distanceFromCentralColor);
-        //高斯权重总和
-        gaussianWeightTotal += gaussianWeight;
-        //绿色通道色彩记数累计
-        sum += sampleColor * gaussianWeight;
-    }
-    for (int i = 6; i < 14; i++) {
-        //采样点的绿色通道
-        sampleColor = texture2D( vTexture, blurCoord1s[i] ).g;
-        //采样点和计算点的颜色差
-        distanceFromCentralColor = min( abs( central - sampleColor ) * distanceNormalizationFactor, 1.0 );
-        //高斯权重
-        gaussianWeight = 0.1 * (1.0 - distanceFromCentralColor);
-        //高斯权重总和
-        gaussianWeightTotal += gaussianWeight;
-        //绿色通道色彩记数累计
-        sum += sampleColor * gaussianWeight;
-    }
-
-    //采样后的绿色通道色彩均值
-    sum = sum / gaussianWeightTotal;
 
     //取得当前点的颜色
     centralColor = texture2D( vTexture, textureCoordinate ).rgb;
+    //模糊后的绿色通道，双边权重在横纵两遍中已经计算
+    sum = texture2D( uBlurTexture, textureCoordinate ).g;
     //采样值
     sampleColor = centralColor.g - sum + 0.5;
     //迭代计算
@@ -74,8 +37,13 @@ void main( ) {
     smoothColor = clamp( smoothColor, vec3( 0.0 ), vec3( 1.0 ) );
     smoothColor = mix( centralColor, smoothColor, pow( centralColor.g, 0.33 ) );
     smoothColor = mix( centralColor, smoothColor, pow( centralColor.g, mixCoef ) );
+
+    //有人脸时只在脸部椭圆内磨皮，边缘渐变
+    float face = 1.0 - smoothstep( 0.8, 1.0, length( (textureCoordinate - uFaceCenter) / uFaceAxis ) );
+    smoothColor = mix( centralColor, smoothColor, mix( 1.0, face, uFaceWeight ) );
+
     gl_FragColor = vec4( pow( smoothColor, vec3( 0.96 ) ), 1.0 );
     vec3 satcolor = gl_FragColor.rgb * saturateMatrix;
     gl_FragColor.rgb = mix( gl_FragColor.rgb, satcolor, 0.23 );
 
-}
\ No newline at end of file
+}
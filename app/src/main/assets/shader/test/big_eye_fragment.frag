@@ -2,8 +2,7 @@ precision mediump float;
 varying vec2 textureCoordinate;
 uniform sampler2D vTexture;
 
-uniform float uLandmarkX[106];
-uniform float uLandmarkY[106];
+// 关键点和张嘴标记用landmarkX/landmarkY/faceMouthOpen读取，声明由FaceParamBlock插入
 
 
 vec2 getModifiedPoint(vec2 actualUV, vec2 pointUV, float radius, float strength){
@@ -18,11 +17,11 @@ vec2 getModifiedPoint(vec2 actualUV, vec2 pointUV, float radius, float strength)
 
 void main() {
     vec2 uv = textureCoordinate;
-    float radius = abs(uLandmarkY[72] - uLandmarkY[73]) * 2.0;
+    float radius = abs(landmarkY(72.0) - landmarkY(73.0)) * 2.0;
 	float strength = 1.0;
 
-	vec2 pos1 = vec2(uLandmarkX[74], uLandmarkY[74]);
-    vec2 pos2 = vec2(uLandmarkX[77], uLandmarkY[77]);
+	vec2 pos1 = vec2(landmarkX(74.0), landmarkY(74.0));
+    vec2 pos2 = vec2(landmarkX(77.0), landmarkY(77.0));
 
     vec2 changePos =
         getModifiedPoint(uv, pos1, radius, strength) +
@@ -2,8 +2,7 @@ precision mediump float;
 varying vec2 textureCoordinate;
 uniform sampler2D vTexture;
 
-uniform float uLandmarkX[106];
-uniform float uLandmarkY[106];
+// 关键点和张嘴标记用landmarkX/landmarkY/faceMouthOpen读取，声明由FaceParamBlock插入
 
 
 vec2 getModifiedPoint(vec2 actualUV, vec2 pointUV, float radius, float strength){
@@ -19,10 +18,10 @@ vec2 getModifiedPoint(vec2 actualUV, vec2 pointUV, float radius, float strength)
 void main() {
     vec2 uv = textureCoordinate;
 
-    vec2 leftFace = vec2(uLandmarkX[11], uLandmarkY[6]);
-    vec2 rightFace = vec2(uLandmarkX[21], uLandmarkY[26]);
+    vec2 leftFace = vec2(landmarkX(11.0), landmarkY(6.0));
+    vec2 rightFace = vec2(landmarkX(21.0), landmarkY(26.0));
 
-    float faceRadius = abs(uLandmarkX[44] - uLandmarkX[3]) * 0.5;
+    float faceRadius = abs(landmarkX(44.0) - landmarkX(3.0)) * 0.5;
     float faceStrength = 1.0;
 
     vec2 changePos =
@@ -2,8 +2,7 @@ precision mediump float;
 varying vec2 textureCoordinate;
 uniform sampler2D vTexture;
 
-uniform float uLandmarkX[106];
-uniform float uLandmarkY[106];
+// 关键点和张嘴标记用landmarkX/landmarkY/faceMouthOpen读取，声明由FaceParamBlock插入
 uniform float iGlobalTime;
 
 
@@ -46,7 +45,7 @@ vec4 drawFireEye(vec2 uv, vec2 q1, vec2 q2, float strength, float T3) {
     float n = fbm(strength*q1 - vec2(0,T3));
     float nm = n * max( 0., q1.y + 0.1 );
     vec2 qv = vec2(1.8 + q1.y * 1.5, .75);
-    float width = 320.0 * (1.0 - abs(uLandmarkX[104] - uLandmarkX[105])) - 170.0;  // 0.2 ~ 0.4 -> 0.6 ~ 0.8 -> 192 ~ 256 -> 22 ~ 86
+    float width = 320.0 * (1.0 - abs(landmarkX(104.0) - landmarkX(105.0))) - 170.0;  // 0.2 ~ 0.4 -> 0.6 ~ 0.8 -> 192 ~ 256 -> 22 ~ 86
     if (width < 5.0) width = 5.0;
 
     float f1 = 1.0 - width * pow( max( 0., length(q1 * qv ) - nm ), 1.2 );
@@ -72,12 +71,12 @@ void main() {
     float strength = floor(q.x+3.);
     float T3 = max(3.,1.25*strength)*iGlobalTime;
 
-    vec2 pos1 = vec2(uLandmarkX[104], uLandmarkY[65]);
+    vec2 pos1 = vec2(landmarkX(104.0), landmarkY(65.0));
     vec2 q1 = vec2(q.x, q.y);
     q1.x = mod(q.x,1.)-pos1.x;
     q1.y -= (1.-pos1.y);
 
-    vec2 pos2 = vec2(uLandmarkX[105], uLandmarkY[70]);
+    vec2 pos2 = vec2(landmarkX(105.0), landmarkY(70.0));
     vec2 q2 = vec2(q.x, q.y);
     q2.x = mod(q.x,1.)-pos2.x;
     q2.y -= (1.-pos2.y);
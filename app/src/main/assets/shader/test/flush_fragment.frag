@@ -2,8 +2,7 @@ precision mediump float;
 varying vec2 textureCoordinate;
 uniform sampler2D vTexture;
 
-uniform float uLandmarkX[106];
-uniform float uLandmarkY[106];
+// 关键点和张嘴标记用landmarkX/landmarkY/faceMouthOpen读取，声明由FaceParamBlock插入
 
 
 void main() {
@@ -13,8 +12,8 @@ void main() {
     float radius = 0.075;
     vec2 scale = vec2(0.75, 1.5);
 
-    vec2 center1 = vec2(uLandmarkX[10], uLandmarkY[6]);
-    vec2 center2 = vec2(uLandmarkX[22], uLandmarkY[26]);
+    vec2 center1 = vec2(landmarkX(10.0), landmarkY(6.0));
+    vec2 center2 = vec2(landmarkX(22.0), landmarkY(26.0));
 
     float dist1 = length(scale * (uv - center1));
     float dist2 = length(scale * (uv - center2));
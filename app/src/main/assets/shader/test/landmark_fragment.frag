@@ -2,8 +2,7 @@ precision mediump float;
 varying vec2 textureCoordinate;
 uniform sampler2D vTexture;
 
-uniform float uLandmarkX[106];
-uniform float uLandmarkY[106];
+// 关键点和张嘴标记用landmarkX/landmarkY/faceMouthOpen读取，声明由FaceParamBlock插入
 
 float alw = 0.005;
 
@@ -13,8 +12,8 @@ bool inRange( float c1, float c2 ) {
 
 bool isLandmark(vec2 point) {
   for (int i = 0; i < 106; i++) {
-      float fX = 1.0 - uLandmarkX[i] / 480.0;
-      float fY = uLandmarkY[i] / 640.0;
+      float fX = 1.0 - landmarkX(float(i)) / 480.0;
+      float fY = landmarkY(float(i)) / 640.0;
       float mX = point.x;
       float mY = point.y;
       if ( inRange(mX, fX) && inRange(mY, fY) ) {
@@ -30,8 +29,8 @@ vec4 getLandmark(vec4 camera) {
     vec3 green = vec3(0.0, 1.0, 0.0);
 
     for (int i = 0; i < 106; i++) {
-        float fX = 1.0 - uLandmarkX[i] / 480.0;
-        float fY = uLandmarkY[i] / 640.0;
+        float fX = 1.0 - landmarkX(float(i)) / 480.0;
+        float fY = landmarkY(float(i)) / 640.0;
         vec2 circle = vec2(fX, fY);
 
         if(distance(uv, circle) <= radius) {
@@ -76,8 +75,8 @@ void main() {
     //gl_FragColor = circle2(uv, center * iResolution.xy, radius, green, camera);
 
     for (int i = 0; i < 106; i+=3) {
-        float fX = uLandmarkX[i];
-        float fY = uLandmarkY[i];
+        float fX = landmarkX(float(i));
+        float fY = landmarkY(float(i));
         vec2 center = vec2(fX, fY);
 
         vec4 point = circle2(uv, center * iResolution.xy, radius, green, camera);
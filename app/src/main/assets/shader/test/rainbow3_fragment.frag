@@ -2,9 +2,7 @@ precision mediump float;
 varying vec2 textureCoordinate;
 uniform sampler2D vTexture;
 
-uniform float uLandmarkX[106];
-uniform float uLandmarkY[106];
-uniform int uMouthOpen;
+// 关键点和张嘴标记用landmarkX/landmarkY/faceMouthOpen读取，声明由FaceParamBlock插入
 uniform float iGlobalTime;
 
 uniform float uStarPosX[7];
@@ -34,7 +32,7 @@ vec4 drawStar(vec2 pos, float x, float y) {
 
 vec4 getRainbow(vec2 uv, float wave, float width, float startX, float startY, float shadowY, vec2 changePos) {
     vec4 color;
-    if (uMouthOpen == 1) {
+    if (faceMouthOpen()) {
         if (uv.y >= startY && uv.y < uRainbowHeight) {
             if (wave >= -width*7. && wave < -width*5.) color = rgb(255.0, 0.0, 0.0);
             else if (wave >= -width*5. && wave < -width*3.) color = rgb(255.0, 165.0, 0.0);
@@ -88,26 +86,26 @@ void mainImage( out vec4 O, in vec2 U ) {
     vec2 uv = U.xy / R.xy;
     U = 10.* (U-R/2.) / R.x;
 
-    float rainbowWidth = abs(uLandmarkX[99] - uLandmarkX[97]);
-    vec2 mouth = vec2(uLandmarkX[98], (uLandmarkY[96] + uLandmarkY[98])*0.5);
+    float rainbowWidth = abs(landmarkX(99.0) - landmarkX(97.0));
+    vec2 mouth = vec2(landmarkX(98.0), (landmarkY(96.0) + landmarkY(98.0))*0.5);
 
     float amp = 0.1;
     float sinWave = amp * sin(U.y- iGlobalTime*10.) -U.x + (mouth.x * 2. -1.)* 5.;
 
-    float eyeRadius = abs(uLandmarkY[72] - uLandmarkY[73]) * 2.0;
+    float eyeRadius = abs(landmarkY(72.0) - landmarkY(73.0)) * 2.0;
     float eyeStrength = 1.0;
-    float mouthRadius = abs(uLandmarkX[100] - uLandmarkX[96]);
+    float mouthRadius = abs(landmarkX(100.0) - landmarkX(96.0));
     float mouthStrength = 1.0;
 
-    vec2 eye1 = vec2(uLandmarkX[74], uLandmarkY[74]);
-    vec2 eye2 = vec2(uLandmarkX[77], uLandmarkY[77]);
+    vec2 eye1 = vec2(landmarkX(74.0), landmarkY(74.0));
+    vec2 eye2 = vec2(landmarkX(77.0), landmarkY(77.0));
 
     vec2 changePos =
         getModifiedPoint(uv, eye1, eyeRadius, eyeStrength) +
         getModifiedPoint(uv, eye2, eyeRadius, eyeStrength) +
         getModifiedPoint(uv, mouth, mouthRadius, mouthStrength);
 
-    O = getRainbow(uv, sinWave, rainbowWidth, mouth.x, mouth.y, (uLandmarkY[101] + uLandmarkY[103])*0.5, changePos);
+    O = getRainbow(uv, sinWave, rainbowWidth, mouth.x, mouth.y, (landmarkY(101.0) + landmarkY(103.0))*0.5, changePos);
 
 }
 
@@ -2,9 +2,7 @@ precision mediump float;
 varying vec2 textureCoordinate;
 uniform sampler2D vTexture;
 
-uniform float uLandmarkX[106];
-uniform float uLandmarkY[106];
-uniform int uMouthOpen;
+// 关键点和张嘴标记用landmarkX/landmarkY/faceMouthOpen读取，声明由FaceParamBlock插入
 uniform float iGlobalTime;
 
 
@@ -14,7 +12,7 @@ vec4 rgb(float a, float b, float c) {
 
 vec4 getRainbow(vec2 uv, float wave, float width, float startY, float shadowY) {
     vec4 color;
-    if (uMouthOpen == 1 && uv.y >= startY) {
+    if (faceMouthOpen() && uv.y >= startY) {
 
         if (wave >= -width*7. && wave < -width*5.) color = rgb(255.0, 0.0, 0.0);
 
@@ -48,14 +46,14 @@ void mainImage( out vec4 O, in vec2 U ) {
     vec2 uv = U.xy / R.xy;
     U = 10.* (U-R/2.) / R.x;
 
-    float width = abs(uLandmarkX[99] - uLandmarkX[97]);
-    vec2 pos = vec2(uLandmarkX[98], (uLandmarkY[96] + uLandmarkY[100])*0.5);
+    float width = abs(landmarkX(99.0) - landmarkX(97.0));
+    vec2 pos = vec2(landmarkX(98.0), (landmarkY(96.0) + landmarkY(100.0))*0.5);
     vec2 vecToPoint = pos - uv;
 
     float amp = 0.1;
     float wave = amp * sin(U.y- iGlobalTime*10.) -U.x + (pos.x * 2. -1.)* 5.;
 
-    O = getRainbow(uv, wave, width, pos.y, (uLandmarkY[101] + uLandmarkY[103])*0.5);
+    O = getRainbow(uv, wave, width, pos.y, (landmarkY(101.0) + landmarkY(103.0))*0.5);
 }
 
 void main() {
@@ -0,0 +1,75 @@
+package com.simoncherry.arcamera.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 给编码出的AAC裸流加上ADTS头写到输出流中，可以直接保存成.aac文件或者推流。
+ * 头和数据拼在一个复用的数组中一次写出，只在packet比之前的都大时重新分配。
+ */
+public class AdtsSink implements AudioEncodeLoop.Sink {
+
+    public static final int HEADER_SIZE = 7;
+
+    private static final int[] SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+    };
+
+    private final OutputStream mOutput;
+    private final int mFreqIndex;
+    private final int mChannelCount;
+    private byte[] mPacket;
+
+    /**
+     * @param output 在录音线程中写入，不要传入会长时间阻塞的流
+     */
+    public AdtsSink(OutputStream output, int sampleRate, int channelCount) {
+        mOutput = output;
+        mFreqIndex = getFreqIndex(sampleRate);
+        mChannelCount = channelCount;
+        mPacket = new byte[HEADER_SIZE + 1024];
+    }
+
+    public static int getFreqIndex(int sampleRate) {
+        for (int i = 0; i < SAMPLE_RATES.length; i++) {
+            if (SAMPLE_RATES[i] == sampleRate) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unsupported sample rate: " + sampleRate);
+    }
+
+    @Override
+    public void onFormatChanged() {
+
+    }
+
+    @Override
+    public void onPacket(ByteBuffer data, AudioEncodeLoop.Packet info) throws IOException {
+        int size = data.remaining();
+        int packetLen = size + HEADER_SIZE;
+        if (mPacket.length < packetLen) {
+            mPacket = new byte[packetLen];
+        }
+        writeHeader(mPacket, packetLen, mFreqIndex, mChannelCount);
+        data.get(mPacket, HEADER_SIZE, size);
+        mOutput.write(mPacket, 0, packetLen);
+    }
+
+    /**
+     * 写入ADTS头字段（AAC LC，无CRC）
+     * @param packet 前7个字节写入头
+     * @param packetLen 包括头在内的长度
+     */
+    public static void writeHeader(byte[] packet, int packetLen, int freqIdx, int chanCfg) {
+        int profile = 2;  //AAC LC
+        packet[0] = (byte)0xFF;
+        packet[1] = (byte)0xF9;
+        packet[2] = (byte)(((profile-1)<<6) + (freqIdx<<2) +(chanCfg>>2));
+        packet[3] = (byte)(((chanCfg&3)<<6) + (packetLen>>11));
+        packet[4] = (byte)((packetLen&0x7FF) >> 3);
+        packet[5] = (byte)(((packetLen&7)<<5) + 0x1F);
+        packet[6] = (byte)0xFC;
+    }
+}
@@ -0,0 +1,180 @@
+package com.simoncherry.arcamera.codec;
+
+/**
+ * Bitmap.getPixels得到的ARGB与YUV420（NV21、NV12、I420）之间的转换，缓冲区由调用方提供。
+ * 每次处理2x2的一块：4个Y，左上角的像素采样一组UV，循环内没有逐像素的判断。
+ * RGB转YUV的系数与LandmarkUtils原来的encodeYUV420SP相同，NV21的结果逐字节一致。
+ * 宽高为奇数时UV平面为((width + 1) / 2) x ((height + 1) / 2)，见getYuvSize。
+ * 可以按行分段转换，分段的起始行必须是偶数。
+ */
+public class ArgbYuvConverter {
+
+    public static final int FORMAT_NV21 = 0;    // Y平面 + VU交错
+    public static final int FORMAT_NV12 = 1;    // Y平面 + UV交错
+    public static final int FORMAT_I420 = 2;    // Y平面 + U平面 + V平面
+
+    public static int getYuvSize(int width, int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    public static void argbToYuv(int[] argb, int width, int height, byte[] yuv, int format) {
+        argbToYuvRows(argb, width, height, yuv, format, 0, height);
+    }
+
+    public static void yuvToArgb(byte[] yuv, int width, int height, int[] argb, int format) {
+        yuvToArgbRows(yuv, width, height, argb, format, 0, height);
+    }
+
+    /**
+     * 只转换[rowStart, rowEnd)这些行，不同的行可以在不同线程中同时转换
+     */
+    public static void argbToYuvRows(int[] argb, int width, int height, byte[] yuv, int format,
+                                     int rowStart, int rowEnd) {
+        checkArgs(width, height, yuv.length, argb.length, format, rowStart, rowEnd);
+        final int frameSize = width * height;
+        final int chromaWidth = (width + 1) / 2;
+        final int uBase = getUBase(format, frameSize);
+        final int vBase = getVBase(format, frameSize, chromaWidth, height);
+        final int uvStep = format == FORMAT_I420 ? 1 : 2;
+        final int chromaStride = chromaWidth * uvStep;
+        final int evenWidth = width & ~1;
+        final int pairEnd = rowStart + ((rowEnd - rowStart) & ~1);
+
+        for (int j = rowStart; j < rowEnd; j += 2) {
+            int top = j * width;
+            int uIndex = uBase + (j >> 1) * chromaStride;
+            int vIndex = vBase + (j >> 1) * chromaStride;
+            if (j < pairEnd) {
+                int bottom = top + width;
+                for (int i = 0; i < evenWidth; i += 2) {
+                    int c = argb[top + i];
+                    yuv[top + i] = (byte) toY(c);
+                    yuv[top + i + 1] = (byte) toY(argb[top + i + 1]);
+                    yuv[bottom + i] = (byte) toY(argb[bottom + i]);
+                    yuv[bottom + i + 1] = (byte) toY(argb[bottom + i + 1]);
+                    yuv[uIndex] = (byte) toU(c);
+                    yuv[vIndex] = (byte) toV(c);
+                    uIndex += uvStep;
+                    vIndex += uvStep;
+                }
+                if (evenWidth != width) {
+                    int c = argb[top + evenWidth];
+                    yuv[top + evenWidth] = (byte) toY(c);
+                    yuv[bottom + evenWidth] = (byte) toY(argb[bottom + evenWidth]);
+                    yuv[uIndex] = (byte) toU(c);
+                    yuv[vIndex] = (byte) toV(c);
+                }
+            } else {
+                // 高度为奇数时的最后一行
+                for (int i = 0; i < width; i++) {
+                    yuv[top + i] = (byte) toY(argb[top + i]);
+                }
+                for (int i = 0; i < width; i += 2) {
+                    int c = argb[top + i];
+                    yuv[uIndex] = (byte) toU(c);
+                    yuv[vIndex] = (byte) toV(c);
+                    uIndex += uvStep;
+                    vIndex += uvStep;
+                }
+            }
+        }
+    }
+
+    // 系数保证结果在[16, 240]之间，不需要再截断
+    private static int toY(int c) {
+        int r = (c >> 16) & 0xFF;
+        int g = (c >> 8) & 0xFF;
+        int b = c & 0xFF;
+        return ((66 * r + 129 * g + 25 * b + 128) >> 8) + 16;
+    }
+
+    private static int toU(int c) {
+        int r = (c >> 16) & 0xFF;
+        int g = (c >> 8) & 0xFF;
+        int b = c & 0xFF;
+        return ((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128;
+    }
+
+    private static int toV(int c) {
+        int r = (c >> 16) & 0xFF;
+        int g = (c >> 8) & 0xFF;
+        int b = c & 0xFF;
+        return ((112 * r - 94 * g - 18 * b + 128) >> 8) + 128;
+    }
+
+    /**
+     * 只转换[rowStart, rowEnd)这些行，BT.601的整数近似，输出的alpha为0xFF
+     */
+    public static void yuvToArgbRows(byte[] yuv, int width, int height, int[] argb, int format,
+                                     int rowStart, int rowEnd) {
+        checkArgs(width, height, yuv.length, argb.length, format, rowStart, rowEnd);
+        final int frameSize = width * height;
+        final int chromaWidth = (width + 1) / 2;
+        final int uBase = getUBase(format, frameSize);
+        final int vBase = getVBase(format, frameSize, chromaWidth, height);
+        final int uvStep = format == FORMAT_I420 ? 1 : 2;
+        final int chromaStride = chromaWidth * uvStep;
+        final int evenWidth = width & ~1;
+
+        for (int j = rowStart; j < rowEnd; j++) {
+            int row = j * width;
+            int uIndex = uBase + (j >> 1) * chromaStride;
+            int vIndex = vBase + (j >> 1) * chromaStride;
+            for (int i = 0; i < evenWidth; i += 2) {
+                // 一组UV对应的两个像素一起算
+                int d = (yuv[uIndex] & 0xFF) - 128;
+                int e = (yuv[vIndex] & 0xFF) - 128;
+                int rv = 409 * e + 128;
+                int guv = -100 * d - 208 * e + 128;
+                int bu = 516 * d + 128;
+                argb[row + i] = toArgb(298 * ((yuv[row + i] & 0xFF) - 16), rv, guv, bu);
+                argb[row + i + 1] = toArgb(298 * ((yuv[row + i + 1] & 0xFF) - 16), rv, guv, bu);
+                uIndex += uvStep;
+                vIndex += uvStep;
+            }
+            if (evenWidth != width) {
+                int d = (yuv[uIndex] & 0xFF) - 128;
+                int e = (yuv[vIndex] & 0xFF) - 128;
+                argb[row + evenWidth] = toArgb(298 * ((yuv[row + evenWidth] & 0xFF) - 16),
+                        409 * e + 128, -100 * d - 208 * e + 128, 516 * d + 128);
+            }
+        }
+    }
+
+    private static int toArgb(int y, int rv, int guv, int bu) {
+        int r = clamp((y + rv) >> 8);
+        int g = clamp((y + guv) >> 8);
+        int b = clamp((y + bu) >> 8);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(int value) {
+        return Math.min(Math.max(value, 0), 255);
+    }
+
+    private static int getUBase(int format, int frameSize) {
+        return format == FORMAT_NV21 ? frameSize + 1 : frameSize;
+    }
+
+    private static int getVBase(int format, int frameSize, int chromaWidth, int height) {
+        if (format == FORMAT_NV21) {
+            return frameSize;
+        } else if (format == FORMAT_NV12) {
+            return frameSize + 1;
+        }
+        return frameSize + chromaWidth * ((height + 1) / 2);
+    }
+
+    private static void checkArgs(int width, int height, int yuvLength, int argbLength, int format,
+                                  int rowStart, int rowEnd) {
+        if (format != FORMAT_NV21 && format != FORMAT_NV12 && format != FORMAT_I420) {
+            throw new IllegalArgumentException("unknown format: " + format);
+        }
+        if ((rowStart & 1) != 0 || rowStart < 0 || rowEnd > height) {
+            throw new IllegalArgumentException("rows [" + rowStart + ", " + rowEnd + ") of " + height);
+        }
+        if (yuvLength < getYuvSize(width, height) || argbLength < width * height) {
+            throw new IllegalArgumentException("buffer too small for " + width + "x" + height);
+        }
+    }
+}
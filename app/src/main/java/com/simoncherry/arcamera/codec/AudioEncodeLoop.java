@@ -0,0 +1,233 @@
+package com.simoncherry.arcamera.codec;
+
+import android.media.MediaCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 音频编码循环：PCM直接读进编码器的输入buffer，每次把编码器中已有的输出全部取出交给Sink。
+ * 时间戳按已读取的采样数计算，不受读取线程调度的影响。
+ * 循环中不分配对象，编码器和PCM来源通过接口传入，方便在本地用假的实现测试。
+ * 只在录音线程中使用。
+ */
+public class AudioEncodeLoop {
+
+    /**
+     * 编码器，接口与MediaCodec一致，返回值也使用MediaCodec的常量
+     */
+    public interface Codec {
+        int dequeueInputBuffer(long timeoutUs);
+
+        ByteBuffer getInputBuffer(int index);
+
+        void queueInputBuffer(int index, int size, long presentationTimeUs, int flags);
+
+        int dequeueOutputBuffer(Packet info, long timeoutUs);
+
+        ByteBuffer getOutputBuffer(int index);
+
+        void releaseOutputBuffer(int index);
+    }
+
+    /**
+     * PCM数据来源，例如AudioRecord
+     */
+    public interface PcmSource {
+        // 读取最多size字节到buffer的position处，返回读取的字节数，小于0为错误码
+        int read(ByteBuffer buffer, int size);
+    }
+
+    /**
+     * 编码后数据的去向，例如MediaMuxer或ADTS流
+     */
+    public interface Sink {
+        void onFormatChanged();
+
+        // data的position和limit已设置为这个packet的范围，只在调用期间有效
+        void onPacket(ByteBuffer data, Packet info) throws IOException;
+    }
+
+    /**
+     * 一个输出packet的信息，对应MediaCodec.BufferInfo，循环中重复使用
+     */
+    public static class Packet {
+        public int offset;
+        public int size;
+        public long presentationTimeUs;
+        public int flags;
+
+        public void set(int offset, int size, long presentationTimeUs, int flags) {
+            this.offset = offset;
+            this.size = size;
+            this.presentationTimeUs = presentationTimeUs;
+            this.flags = flags;
+        }
+    }
+
+    private static final int MAX_SINKS = 4;
+    // 停止后等待编码器输出结束标志的最长时间
+    public static final long FINISH_TIMEOUT_MS = 1000;
+
+    private final Codec mCodec;
+    private final PcmSource mSource;
+    private final int mReadSize;
+    private final int mBytesPerSecond;
+    private final Sink[] mSinks = new Sink[MAX_SINKS];
+    private int mSinkCount = 0;
+    private final Packet mPacket = new Packet();
+
+    private long mStartTimeUs = 0;
+    private long mBytesRead = 0;
+    private boolean isEosQueued = false;
+
+    private long mPacketCount = 0;
+    private long mReadErrorCount = 0;
+
+    /**
+     * @param readSize 每次最多读取的字节数，超过编码器输入buffer容量时按容量读取
+     * @param sampleRate 采样率
+     * @param channelCount 通道数，采样格式为16比特PCM
+     */
+    public AudioEncodeLoop(Codec codec, PcmSource source, int readSize, int sampleRate, int channelCount) {
+        mCodec = codec;
+        mSource = source;
+        mReadSize = readSize;
+        mBytesPerSecond = sampleRate * channelCount * 2;
+    }
+
+    public void addSink(Sink sink) {
+        if (mSinkCount == MAX_SINKS) {
+            throw new IllegalStateException("too many sinks");
+        }
+        mSinks[mSinkCount++] = sink;
+    }
+
+    /**
+     * 开始新的一段录制
+     * @param startTimeUs 第一个采样的时间戳
+     */
+    public void reset(long startTimeUs) {
+        mStartTimeUs = startTimeUs;
+        mBytesRead = 0;
+        isEosQueued = false;
+        mPacketCount = 0;
+        mReadErrorCount = 0;
+    }
+
+    // 已读取的PCM数据对应的时长
+    public long getDurationUs() {
+        return mBytesRead * 1000000L / mBytesPerSecond;
+    }
+
+    public long getPacketCount() {
+        return mPacketCount;
+    }
+
+    public long getReadErrorCount() {
+        return mReadErrorCount;
+    }
+
+    /**
+     * 读取一次PCM送入编码器，再取出编码器所有的输出
+     * @param endOfStream 为true时不再读取，改为送入结束标志
+     * @param inputTimeoutUs 等待编码器输入buffer的时间，-1为一直等待
+     * @return 编码器输出结束标志后返回true
+     */
+    public boolean step(boolean endOfStream, long inputTimeoutUs) throws IOException {
+        if (!isEosQueued) {
+            int index = mCodec.dequeueInputBuffer(inputTimeoutUs);
+            if (index >= 0) {
+                if (endOfStream) {
+                    mCodec.queueInputBuffer(index, 0, presentationTimeUs(), MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                    isEosQueued = true;
+                } else {
+                    queuePcm(index);
+                }
+            }
+        }
+        return drain(isEosQueued ? 10000 : 0);
+    }
+
+    /**
+     * 停止录制后调用，送入结束标志并取出编码器剩下的输出，直到编码器输出结束标志或超过timeoutMs，
+     * 之后可以释放编码器和输出
+     * @return 超时或一直写入失败时返回false，最后的数据可能不完整
+     */
+    public boolean finish(long timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1000000L;
+        do {
+            try {
+                if (step(true, 10000)) {
+                    return true;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } while (System.nanoTime() < deadline);
+        return false;
+    }
+
+    private void queuePcm(int index) {
+        ByteBuffer buffer = mCodec.getInputBuffer(index);
+        buffer.clear();
+        int length = mSource.read(buffer, Math.min(mReadSize, buffer.capacity()));
+        if (length > 0) {
+            mCodec.queueInputBuffer(index, length, presentationTimeUs(), 0);
+            mBytesRead += length;
+        } else {
+            // 读取失败也要把buffer还给编码器
+            mCodec.queueInputBuffer(index, 0, presentationTimeUs(), 0);
+            mReadErrorCount++;
+        }
+    }
+
+    private long presentationTimeUs() {
+        return mStartTimeUs + getDurationUs();
+    }
+
+    /**
+     * 取出编码器中所有已完成的输出
+     * @return 取到结束标志时返回true
+     */
+    public boolean drain(long timeoutUs) throws IOException {
+        int outIndex;
+        while ((outIndex = mCodec.dequeueOutputBuffer(mPacket, timeoutUs)) != MediaCodec.INFO_TRY_AGAIN_LATER) {
+            if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                for (int i = 0; i < mSinkCount; i++) {
+                    mSinks[i].onFormatChanged();
+                }
+            } else if (outIndex >= 0) {
+                boolean isEos = (mPacket.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                IOException error = null;
+                // 编码配置数据由Sink从输出格式中取得，不作为数据写出
+                if (mPacket.size > 0 && (mPacket.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+                    ByteBuffer data = mCodec.getOutputBuffer(outIndex);
+                    for (int i = 0; i < mSinkCount; i++) {
+                        data.limit(mPacket.offset + mPacket.size);
+                        data.position(mPacket.offset);
+                        // 一个Sink出错不影响其他Sink，buffer也要照常还给编码器
+                        try {
+                            mSinks[i].onPacket(data, mPacket);
+                        } catch (IOException e) {
+                            if (error == null) {
+                                error = e;
+                            }
+                        }
+                    }
+                    mPacketCount++;
+                }
+                mCodec.releaseOutputBuffer(outIndex);
+                if (isEos) {
+                    return true;
+                }
+                if (error != null) {
+                    throw error;
+                }
+            }
+            // 已经有输出时不再等待，剩下的下次再取
+            timeoutUs = 0;
+        }
+        return false;
+    }
+}
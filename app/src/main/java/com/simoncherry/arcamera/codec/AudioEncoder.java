@@ -6,18 +6,18 @@ import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
 import android.media.MediaRecorder;
-import android.os.Build;
 import android.util.Log;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 /**
  * Description:
  */
 public class AudioEncoder implements Runnable {
 
+    private static final String TAG = "AudioEncoder";
+
     private String mime = "audio/mp4a-latm";
     private AudioRecord mRecorder;
     private MediaCodec mEnc;
@@ -30,8 +30,8 @@ public class AudioEncoder implements Runnable {
     private int audioFormat=AudioFormat.ENCODING_PCM_16BIT;     //设置采样数据格式，默认16比特PCM
     private FileOutputStream fos;
 
-    private byte[] buffer;
-    private boolean isRecording;
+    private AudioEncodeLoop mLoop;
+    private volatile boolean isRecording;
     private Thread mThread;
     private int bufferSize;
 
@@ -69,9 +69,11 @@ public class AudioEncoder implements Runnable {
 
         //音频录制相关
         bufferSize = AudioRecord.getMinBufferSize(sampleRate, channelConfig, audioFormat)*2;
-        buffer=new byte[bufferSize];
         mRecorder=new AudioRecord(MediaRecorder.AudioSource.MIC,sampleRate,channelConfig,
             audioFormat,bufferSize);
+        mLoop=new AudioEncodeLoop(new MediaAudio.CodecAdapter(mEnc),
+            new MediaAudio.RecordSource(mRecorder),bufferSize,sampleRate,channelCount);
+        mLoop.addSink(new AdtsSink(fos,sampleRate,channelCount));
     }
 
     public void start() throws InterruptedException {
@@ -81,92 +83,39 @@ public class AudioEncoder implements Runnable {
             isRecording=false;
             mThread.join();
         }
+        mLoop.reset(System.nanoTime()/1000);
         isRecording=true;
         mThread=new Thread(this);
         mThread.start();
     }
 
-    private ByteBuffer getInputBuffer(int index){
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            return mEnc.getInputBuffer(index);
-        }else{
-            return mEnc.getInputBuffers()[index];
-        }
-    }
-
-    private ByteBuffer getOutputBuffer(int index){
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            return mEnc.getOutputBuffer(index);
-        }else{
-            return mEnc.getOutputBuffers()[index];
-        }
-    }
-
-    //TODO Add End Flag
-    private void readOutputData() throws IOException{
-        int index=mEnc.dequeueInputBuffer(-1);
-        if(index>=0){
-            final ByteBuffer buffer=getInputBuffer(index);
-            buffer.clear();
-            int length=mRecorder.read(buffer,bufferSize);
-            if(length>0){
-                mEnc.queueInputBuffer(index,0,length,System.nanoTime()/1000,0);
-            }else{
-                Log.e("wuwang","length-->"+length);
-            }
-        }
-        MediaCodec.BufferInfo mInfo=new MediaCodec.BufferInfo();
-        int outIndex;
-        do{
-            outIndex=mEnc.dequeueOutputBuffer(mInfo,0);
-            Log.e("wuwang","audio flag---->"+mInfo.flags+"/"+outIndex);
-            if(outIndex>=0){
-                ByteBuffer buffer=getOutputBuffer(outIndex);
-                buffer.position(mInfo.offset);
-                byte[] temp=new byte[mInfo.size+7];
-                buffer.get(temp,7,mInfo.size);
-                addADTStoPacket(temp,temp.length);
-                fos.write(temp);
-                mEnc.releaseOutputBuffer(outIndex,false);
-            }else if(outIndex ==MediaCodec.INFO_TRY_AGAIN_LATER){
-
-            }else if(outIndex==MediaCodec.INFO_OUTPUT_FORMAT_CHANGED){
-
-            }
-        }while (outIndex>=0);
-    }
-
-    /**
-     * 给编码出的aac裸流添加adts头字段
-     * @param packet 要空出前7个字节，否则会搞乱数据
-     * @param packetLen
-     */
-    private void addADTStoPacket(byte[] packet, int packetLen) {
-        int profile = 2;  //AAC LC
-        int freqIdx = 4;  //44.1KHz
-        int chanCfg = 2;  //CPE
-        packet[0] = (byte)0xFF;
-        packet[1] = (byte)0xF9;
-        packet[2] = (byte)(((profile-1)<<6) + (freqIdx<<2) +(chanCfg>>2));
-        packet[3] = (byte)(((chanCfg&3)<<6) + (packetLen>>11));
-        packet[4] = (byte)((packetLen&0x7FF) >> 3);
-        packet[5] = (byte)(((packetLen&7)<<5) + 0x1F);
-        packet[6] = (byte)0xFC;
-    }
-
     /**
      * 停止录制
      */
     public void stop(){
+        isRecording=false;
         try {
-            isRecording=false;
             mThread.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        //编码器和文件无论前面是否出错都要释放
+        try {
             mRecorder.stop();
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+        }
+        mRecorder.release();
+        try {
             mEnc.stop();
-            mEnc.release();
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+        }
+        mEnc.release();
+        try {
             fos.flush();
             fos.close();
-        } catch (Exception e){
+        } catch (IOException e){
             e.printStackTrace();
         }
     }
@@ -175,12 +124,15 @@ public class AudioEncoder implements Runnable {
     public void run() {
         while (isRecording){
             try {
-                readOutputData();
-//                fos.write(buffer,0,length);
+                mLoop.step(false,10000);
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
+        //停止后送入结束标志，把编码器中剩下的数据写完，编码器一直不结束时按超时放弃
+        if(!mLoop.finish(AudioEncodeLoop.FINISH_TIMEOUT_MS)){
+            Log.e(TAG,"audio encoder did not reach end of stream");
+        }
     }
 
 }
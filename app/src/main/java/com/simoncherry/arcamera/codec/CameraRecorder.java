@@ -19,11 +19,18 @@ import android.media.MediaRecorder;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Surface;
+
+import com.simoncherry.arcamera.track.LatencyHistogram;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Description:
@@ -32,8 +39,41 @@ import java.util.Arrays;
 public class CameraRecorder {
 
     public static final String TAG="RECORD";
+
+    public static final int INPUT_BUFFER = 0;   //RGBA数据经feedData转YUV后送入编码器
+    public static final int INPUT_SURFACE = 1;  //GL直接绘制到编码器的输入Surface，不经过CPU
     private final Object LOCK=new Object();
 
+    private static final int FRAME_QUEUE_SIZE=3;        //feedData与编码线程之间最多缓存的帧数
+    private static final int MAX_FRAME_REPEAT=4;        //采集卡顿时一帧最多重复编码的次数
+    private static final long TIMESTAMP_TOLERANCE_NS=1000000000L;  //时间戳与System.nanoTime()相差超过1秒视为基准不同
+    private static final long INPUT_TIMEOUT_US=10000;
+
+    /**
+     * 持有feedData传入数据的一方，帧编码完或被丢弃后由编码线程或喂数据的线程调用releaseFrame
+     */
+    public interface FrameOwner {
+        void releaseFrame(byte[] data);
+    }
+
+    /**
+     * 等待编码的一帧RGBA数据和它的采集时间
+     */
+    private static class VideoFrame {
+        byte[] data;
+        byte[] copy;        //复制方式喂入时使用的数组，循环使用
+        FrameOwner owner;   //不为null时data属于owner，用完交还
+        long timestampNs;
+
+        void release(){
+            if(owner!=null){
+                owner.releaseFrame(data);
+                owner=null;
+            }
+            data=null;
+        }
+    }
+
     private MediaMuxer mMuxer;  //多路复用器，用于音视频混合
     private String path;        //文件保存的路径
     private String postfix;     //文件后缀
@@ -48,7 +88,7 @@ public class CameraRecorder {
     private int audioFormat=AudioFormat.ENCODING_PCM_16BIT; //音频录制格式，默认为PCM16Bit
 
 //    private byte[] buffer;
-    private boolean isRecording;
+    private volatile boolean isRecording;
     private int bufferSize;
 
     private int convertType;
@@ -64,14 +104,23 @@ public class CameraRecorder {
     private int fpsTime;
 
     private Thread mVideoThread;
-    private boolean mStartFlag=false;
+    private volatile boolean mStartFlag=false;
     private int width;
     private int height;
 //    private byte[] mHeadInfo=null;
 
-    private byte[] nowFeedData;
-//    private long nowTimeStep;
-    private boolean hasNewData=false;
+    private ArrayBlockingQueue<VideoFrame> mFreeFrames;     //空闲的帧
+    private ArrayBlockingQueue<VideoFrame> mFrameQueue;     //等待编码的帧，按采集顺序
+    private FramePacer mPacer;
+    private long latencyBudgetNs=200000000L;   //从采集到编码允许的最大延迟，超过的帧丢弃
+
+    private final AtomicLong mDroppedFrames=new AtomicLong();
+    private final AtomicLong mDuplicatedFrames=new AtomicLong();
+    private final AtomicLong mEncodedFrames=new AtomicLong();
+    private final LatencyHistogram mEncodeLatency=new LatencyHistogram();
+    private volatile long lastVideoPtsUs;
+    private volatile long lastAudioPtsUs;
+    private boolean isAudioWritten;     //只在音频线程中使用
 
     private int mAudioTrack=-1;
     private int mVideoTrack=-1;
@@ -82,6 +131,48 @@ public class CameraRecorder {
     private boolean cancelFlag=false;
     private boolean isAlign=false;
 
+    private AudioEncodeLoop mAudioLoop;
+    private OutputStream mAacStream;    //不为null时同时输出带ADTS头的AAC流
+
+    //把编码后的音频写入MediaMuxer
+    private final AudioEncodeLoop.Sink mMuxerAudioSink=new AudioEncodeLoop.Sink() {
+
+        private final MediaCodec.BufferInfo mInfo=new MediaCodec.BufferInfo();
+
+        @Override
+        public void onFormatChanged() {
+            mAudioTrack=mMuxer.addTrack(mAudioEnc.getOutputFormat());
+            Log.e(TAG,"add audio track-->"+mAudioTrack);
+            if(mAudioTrack>=0&&mVideoTrack>=0){
+                mMuxer.start();
+            }
+        }
+
+        @Override
+        public void onPacket(ByteBuffer data, AudioEncodeLoop.Packet info) {
+            //音频时间戳从0开始，第一帧的0也要写入；只丢弃配置数据和倒退的时间戳
+            if(mAudioTrack>=0&&mVideoTrack>=0&&(info.flags&MediaCodec.BUFFER_FLAG_CODEC_CONFIG)==0
+                    &&info.presentationTimeUs>=0
+                    &&(!isAudioWritten||info.presentationTimeUs>lastAudioPtsUs)){
+                mInfo.set(info.offset,info.size,info.presentationTimeUs,info.flags);
+                try {
+                    mMuxer.writeSampleData(mAudioTrack,data,mInfo);
+                    lastAudioPtsUs=info.presentationTimeUs;
+                    isAudioWritten=true;
+                }catch (Exception e){
+                    Log.e(TAG,"audio error:size="+info.size+"/offset="
+                        +info.offset+"/timeUs="+info.presentationTimeUs);
+                    e.printStackTrace();
+                }
+            }
+        }
+    };
+
+    private int inputMode=INPUT_BUFFER;
+    private final MediaCodec.BufferInfo mVideoInfo=new MediaCodec.BufferInfo();    //只在视频线程中使用
+    private Surface mInputSurface;
+    private boolean isEosSignaled=false;
+
     public CameraRecorder(){
         fpsTime=1000/frameRate;
     }
@@ -91,6 +182,83 @@ public class CameraRecorder {
         this.postfix=postfix;
     }
 
+    /**
+     * 设置视频数据的输入方式，需要在prepare之前调用，每次录制可以不同
+     * @param mode {@link #INPUT_BUFFER} 或 {@link #INPUT_SURFACE}
+     */
+    public void setInputMode(int mode){
+        this.inputMode=mode;
+    }
+
+    public int getInputMode(){
+        return inputMode;
+    }
+
+    /**
+     * 设置编码帧率，需要在prepare之前调用。INPUT_BUFFER模式下按这个帧率重复或丢弃喂入的帧
+     */
+    public void setTargetFps(int fps){
+        if(fps>0){
+            this.frameRate=fps;
+            fpsTime=1000/frameRate;
+        }
+    }
+
+    public int getTargetFps(){
+        return frameRate;
+    }
+
+    /**
+     * 设置从采集到送入编码器允许的最大延迟，超过的帧直接丢弃
+     */
+    public void setLatencyBudgetMs(long ms){
+        this.latencyBudgetNs=ms*1000000L;
+    }
+
+    // 丢弃的帧数，包括队列满、超过延迟预算、同一帧间隔内多余的帧
+    public long getDroppedFrames(){
+        return mDroppedFrames.get();
+    }
+
+    // 为保持帧率重复编码的帧数
+    public long getDuplicatedFrames(){
+        return mDuplicatedFrames.get();
+    }
+
+    // 送入编码器的帧数，包括重复的帧
+    public long getEncodedFrames(){
+        return mEncodedFrames.get();
+    }
+
+    // 从采集到送入编码器的耗时，单位毫秒
+    public LatencyHistogram getEncodeLatency(){
+        return mEncodeLatency;
+    }
+
+    // 最后写入文件的视频时间戳，与getLastAudioPtsUs比较可以检查音画同步
+    public long getLastVideoPtsUs(){
+        return lastVideoPtsUs;
+    }
+
+    public long getLastAudioPtsUs(){
+        return lastAudioPtsUs;
+    }
+
+    /**
+     * 同时把音频以ADTS格式的AAC流写到out中，例如推流，需要在prepare之前调用，传null取消。
+     * 在录音线程中写入，写入阻塞会拖慢录音
+     */
+    public void setAacStream(OutputStream out){
+        this.mAacStream=out;
+    }
+
+    /**
+     * INPUT_SURFACE模式下，prepare之后可用，交给TextureController绘制
+     */
+    public Surface getInputSurface(){
+        return mInputSurface;
+    }
+
     public int prepare(int width,int height) throws IOException {
         //准备Audio
         MediaFormat format=MediaFormat.createAudioFormat(audioMime,sampleRate,channelCount);
@@ -102,6 +270,12 @@ public class CameraRecorder {
 //        buffer=new byte[bufferSize];
         mRecorder=new AudioRecord(MediaRecorder.AudioSource.MIC,sampleRate,channelConfig,
             audioFormat,bufferSize);
+        mAudioLoop=new AudioEncodeLoop(new MediaAudio.CodecAdapter(mAudioEnc),
+            new MediaAudio.RecordSource(mRecorder),bufferSize,sampleRate,channelCount);
+        mAudioLoop.addSink(mMuxerAudioSink);
+        if(mAacStream!=null){
+            mAudioLoop.addSink(new AdtsSink(mAacStream,sampleRate,channelCount));
+        }
 
         //准备Video
 //        mHeadInfo=null;
@@ -112,9 +286,28 @@ public class CameraRecorder {
         videoFormat.setInteger(MediaFormat.KEY_FRAME_RATE,frameRate);
         videoFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL,frameInterval);
 
-        videoFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT,checkColorFormat(videoMime));
+        if(inputMode==INPUT_SURFACE){
+            videoFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        }else{
+            videoFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT,checkColorFormat(videoMime));
+            //按这个尺寸选用当前设备上最快的RGBA转YUV实现，只在第一次录制时测试
+            DataConvert.chooseFastest(width,height);
+        }
         mVideoEnc=MediaCodec.createEncoderByType(videoMime);
         mVideoEnc.configure(videoFormat,null,null,MediaCodec.CONFIGURE_FLAG_ENCODE);
+        if(inputMode==INPUT_SURFACE){
+            mInputSurface=mVideoEnc.createInputSurface();
+        }
+        isEosSignaled=false;
+        if(mFrameQueue==null){
+            mFreeFrames=new ArrayBlockingQueue<>(FRAME_QUEUE_SIZE+1);
+            mFrameQueue=new ArrayBlockingQueue<>(FRAME_QUEUE_SIZE+1);
+            for (int i=0;i<FRAME_QUEUE_SIZE+1;i++){
+                mFreeFrames.offer(new VideoFrame());
+            }
+        }
+        mPacer=new FramePacer(frameRate,MAX_FRAME_REPEAT);
         Bundle bundle=new Bundle();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
             bundle.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE,videoRate);
@@ -128,6 +321,13 @@ public class CameraRecorder {
     public int start() throws InterruptedException {
         //记录起始时间
         nanoTime = System.nanoTime();
+        mDroppedFrames.set(0);
+        mDuplicatedFrames.set(0);
+        mEncodedFrames.set(0);
+        mEncodeLatency.reset();
+        lastVideoPtsUs=0;
+        lastAudioPtsUs=0;
+        isAudioWritten=false;
         synchronized (LOCK){
             //Audio Start
             if(mAudioThread != null && mAudioThread.isAlive()){
@@ -140,20 +340,24 @@ public class CameraRecorder {
             }
 
             mAudioEnc.start();
+            //音频时间戳按采样数从录制开始计算
+            mAudioLoop.reset(0);
             mRecorder.startRecording();
             isRecording = true;
             mAudioThread = new Thread(new Runnable() {
                 @Override
                 public void run() {
-                    while (!cancelFlag){
+                    while (isRecording&&!cancelFlag){
                         try {
-                            if(audioStep()){
-                                break;
-                            }
+                            mAudioLoop.step(false,INPUT_TIMEOUT_US);
                         } catch (IOException e) {
                             e.printStackTrace();
                         }
                     }
+                    //停止后把编码器中剩下的数据写完，超时不再等待，之后由stop释放编码器和Muxer
+                    if(!cancelFlag&&!mAudioLoop.finish(AudioEncodeLoop.FINISH_TIMEOUT_MS)){
+                        Log.e(TAG,"audio encoder did not reach end of stream");
+                    }
                 }
             });
             mAudioThread.start();
@@ -163,26 +367,25 @@ public class CameraRecorder {
             mVideoThread = new Thread(new Runnable() {
                 @Override
                 public void run() {
-                    while (!cancelFlag){
-                        long time = System.currentTimeMillis();
-                        if(nowFeedData != null){
-                            try {
-                                if(videoStep(nowFeedData)){
-                                    break;
-                                }
-                            } catch (IOException e) {
-                                e.printStackTrace();
+                    if(inputMode==INPUT_SURFACE){
+                        while (!cancelFlag){
+                            if(surfaceStep()){
+                                break;
                             }
                         }
-                        long lt = System.currentTimeMillis()-time;
-                        if (fpsTime > lt){
-                            try {
-                                Thread.sleep(fpsTime - lt);
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
+                        return;
+                    }
+                    while (!cancelFlag){
+                        try {
+                            if(videoStep()){
+                                break;
                             }
+                        } catch (InterruptedException e) {
+                            e.printStackTrace();
+                            break;
                         }
                     }
+                    recycleFrames();
                 }
             });
             mVideoThread.start();
@@ -201,41 +404,125 @@ public class CameraRecorder {
     }
 
     public void stop() {
-        try {
-            synchronized (LOCK) {
-                isRecording = false;
-                mAudioThread.join();
-                mStartFlag = false;
-                mVideoThread.join();
-                //Audio Stop
+        synchronized (LOCK) {
+            isRecording = false;
+            join(mAudioThread);
+            mStartFlag = false;
+            join(mVideoThread);
+            //前面出错也要释放编码器和Muxer
+            //Audio Stop
+            try {
                 mRecorder.stop();
                 mAudioEnc.stop();
-                mAudioEnc.release();
+            } catch (IllegalStateException e) {
+                e.printStackTrace();
+            }
+            mRecorder.release();
+            mAudioEnc.release();
 
-                //Video Stop
+            //Video Stop
+            try {
                 mVideoEnc.stop();
-                mVideoEnc.release();
+            } catch (IllegalStateException e) {
+                e.printStackTrace();
+            }
+            mVideoEnc.release();
+            if(mInputSurface!=null){
+                mInputSurface.release();
+                mInputSurface=null;
+            }
 
-                //Muxer Stop
-                mVideoTrack = -1;
-                mAudioTrack = -1;
+            //Muxer Stop，没有写入过数据时stop会抛出异常
+            mVideoTrack = -1;
+            mAudioTrack = -1;
+            try {
                 mMuxer.stop();
-                mMuxer.release();
+            } catch (IllegalStateException e) {
+                e.printStackTrace();
             }
-        } catch (Exception e) {
+            mMuxer.release();
+        }
+    }
+
+    private static void join(Thread thread) {
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * 由外部喂入一帧数据
+     * 由外部喂入一帧数据，数据会被复制，返回后调用方可以继续使用data
      * @param data RGBA数据
-     * @param timeStep camera附带时间戳
+     * @param timeStep camera附带时间戳，与System.nanoTime()基准相同，单位纳秒。
+     *                 基准不同时（例如传入毫秒时间）使用喂入的时间
      */
     public void feedData(final byte[] data, final long timeStep){
-        hasNewData = true;
-        nowFeedData = data;
-//        nowTimeStep = timeStep;
+        feedData(data,timeStep,null);
+    }
+
+    /**
+     * 由外部喂入一帧数据，owner不为null时不复制，直接排队编码，编码完或丢弃后调用owner.releaseFrame(data)，
+     * 在此之前调用方不能修改data，例如TextureController.retainFrame持有的回调数据
+     */
+    public void feedData(final byte[] data, final long timeStep, FrameOwner owner){
+        if(!mStartFlag||mFrameQueue==null){
+            releaseData(data,owner);
+            return;
+        }
+        long now=System.nanoTime();
+        long timestamp=(timeStep>0&&Math.abs(now-timeStep)<TIMESTAMP_TOLERANCE_NS)?timeStep:now;
+        if(timestamp<nanoTime){
+            //开始录制之前采集的帧
+            releaseData(data,owner);
+            return;
+        }
+        VideoFrame frame=mFreeFrames.poll();
+        if(frame==null){
+            //编码跟不上，丢掉最早的一帧
+            frame=mFrameQueue.poll();
+            mDroppedFrames.incrementAndGet();
+            if(frame==null){
+                releaseData(data,owner);
+                return;
+            }
+            frame.release();
+        }
+        if(owner!=null){
+            frame.data=data;
+            frame.owner=owner;
+        }else{
+            if(frame.copy==null||frame.copy.length!=data.length){
+                frame.copy=new byte[data.length];
+            }
+            System.arraycopy(data,0,frame.copy,0,data.length);
+            frame.data=frame.copy;
+        }
+        frame.timestampNs=timestamp;
+        mFrameQueue.offer(frame);
+        if(!mStartFlag){
+            //编码线程已经结束，不会再取这一帧
+            recycleFrames();
+        }
+    }
+
+    private static void releaseData(byte[] data, FrameOwner owner){
+        if(owner!=null){
+            owner.releaseFrame(data);
+        }
+    }
+
+    //把没有编码的帧放回空闲队列，下次录制继续使用
+    private void recycleFrames(){
+        VideoFrame frame;
+        while ((frame=mFrameQueue.poll())!=null){
+            frame.release();
+            mFreeFrames.offer(frame);
+        }
     }
 
     private ByteBuffer getInputBuffer(MediaCodec codec, int index){
@@ -254,108 +541,103 @@ public class CameraRecorder {
         }
     }
 
-    //TODO Add End Flag
-    private boolean audioStep() throws IOException{
-        int index = mAudioEnc.dequeueInputBuffer(-1);
-        if(index>=0){
-            final ByteBuffer buffer=getInputBuffer(mAudioEnc,index);
-            buffer.clear();
-            int length=mRecorder.read(buffer,bufferSize);
-            if(length>0){
-                mAudioEnc.queueInputBuffer(index,0,length,(System.nanoTime()-nanoTime)/1000,isRecording?0:MediaCodec.BUFFER_FLAG_END_OF_STREAM);
-            }else{
-                Log.e("wuwang","length-->"+length);
+    //取出一帧编码，没有新帧时等待一个帧间隔；停止后编完队列中剩下的帧再结束
+    private boolean videoStep() throws InterruptedException {
+        VideoFrame frame=mFrameQueue.poll(fpsTime,TimeUnit.MILLISECONDS);
+        if(frame!=null){
+            try {
+                encodeFrame(frame);
+            } finally {
+                frame.release();
+                mFreeFrames.offer(frame);
+            }
+        }else if(!mStartFlag&&!isEosSignaled){
+            int index=mVideoEnc.dequeueInputBuffer(INPUT_TIMEOUT_US);
+            if(index>=0){
+                mVideoEnc.queueInputBuffer(index,0,0,0,MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                isEosSignaled=true;
             }
         }
-        MediaCodec.BufferInfo mInfo=new MediaCodec.BufferInfo();
-        int outIndex;
-        do{
-            outIndex=mAudioEnc.dequeueOutputBuffer(mInfo,0);
-            Log.e("wuwang","audio flag---->"+mInfo.flags+"/"+outIndex);
-            if(outIndex>=0){
-                ByteBuffer buffer=getOutputBuffer(mAudioEnc,outIndex);
-                buffer.position(mInfo.offset);
-//                byte[] temp=new byte[mInfo.size+7];
-//                buffer.get(temp,7,mInfo.size);
-//                addADTStoPacket(temp,temp.length);
-                if(mAudioTrack>=0&&mVideoTrack>=0&&mInfo.size>0&&mInfo.presentationTimeUs>0){
-                    try {
-                        mMuxer.writeSampleData(mAudioTrack,buffer,mInfo);
-                    }catch (Exception e){
-                        Log.e(TAG,"audio error:size="+mInfo.size+"/offset="
-                            +mInfo.offset+"/timeUs="+mInfo.presentationTimeUs);
-                        e.printStackTrace();
-                    }
-                }
-                mAudioEnc.releaseOutputBuffer(outIndex,false);
-                if((mInfo.flags&MediaCodec.BUFFER_FLAG_END_OF_STREAM)!=0){
-                    Log.e(TAG,"audio end");
-                    return true;
-                }
-            }else if(outIndex ==MediaCodec.INFO_TRY_AGAIN_LATER){
+        return drainVideo(0);
+    }
 
-            }else if(outIndex==MediaCodec.INFO_OUTPUT_FORMAT_CHANGED){
-                mAudioTrack=mMuxer.addTrack(mAudioEnc.getOutputFormat());
-                Log.e(TAG,"add audio track-->"+mAudioTrack);
-                if(mAudioTrack>=0&&mVideoTrack>=0){
-                    mMuxer.start();
-                }
+    //按帧率决定这一帧编码几次，时间戳使用采集时间对齐到帧间隔后的时间；
+    //采集有空档时先用上一帧补齐，新的一帧只占离采集时间最近的网格
+    private void encodeFrame(VideoFrame frame){
+        if(System.nanoTime()-frame.timestampNs>latencyBudgetNs){
+            mDroppedFrames.incrementAndGet();
+            return;
+        }
+        int count=mPacer.onFrame(frame.timestampNs);
+        if(count==0){
+            mDroppedFrames.incrementAndGet();
+            return;
+        }
+        if(yuv==null){
+            yuv=new byte[width*height*3/2];
+        }
+        //yuv中还是上一帧的数据
+        for (int i=0;i<count-1;i++){
+            if(!queueYuv(mPacer.getSlotTime(i))){
+                //编码器输入满了，先取出输出，剩下的重复帧不再补
+                mDroppedFrames.addAndGet(count-1-i);
+                break;
             }
-        }while (outIndex>=0);
-        return false;
+            mDuplicatedFrames.incrementAndGet();
+        }
+        DataConvert.rgbaToYuv(frame.data,width,height,yuv,convertType);
+        if(!queueYuv(mPacer.getSlotTime(count-1))){
+            mDroppedFrames.incrementAndGet();
+            return;
+        }
+        mEncodeLatency.record((System.nanoTime()-frame.timestampNs)/1000000);
     }
 
-    /**
-     * 给编码出的aac裸流添加adts头字段
-     * @param packet 要空出前7个字节，否则会搞乱数据
-     * @param packetLen
-     */
-    private void addADTStoPacket(byte[] packet, int packetLen) {
-        int profile = 2;  //AAC LC
-        int freqIdx = 4;  //44.1KHz
-        int chanCfg = 2;  //CPE
-        packet[0] = (byte)0xFF;
-        packet[1] = (byte)0xF9;
-        packet[2] = (byte)(((profile-1)<<6) + (freqIdx<<2) +(chanCfg>>2));
-        packet[3] = (byte)(((chanCfg&3)<<6) + (packetLen>>11));
-        packet[4] = (byte)((packetLen&0x7FF) >> 3);
-        packet[5] = (byte)(((packetLen&7)<<5) + 0x1F);
-        packet[6] = (byte)0xFC;
-    }
-
-    //TODO 定时调用，如果没有新数据，就用上一个数据
-    private boolean videoStep(byte[] data) throws IOException {
-        int index=mVideoEnc.dequeueInputBuffer(-1);
-        if(index>=0){
-            if(hasNewData){
-                if(yuv==null){
-                    yuv=new byte[width*height*3/2];
-                }
-                DataConvert.rgbaToYuv(data,width,height,yuv,convertType);
-            }
-            ByteBuffer buffer=getInputBuffer(mVideoEnc,index);
-            buffer.clear();
-            buffer.put(yuv);
-            mVideoEnc.queueInputBuffer(index,0,yuv.length,(System.nanoTime()-nanoTime)/1000,mStartFlag?0:MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+    private boolean queueYuv(long slotNs){
+        int index=mVideoEnc.dequeueInputBuffer(INPUT_TIMEOUT_US);
+        if(index<0){
+            return false;
+        }
+        ByteBuffer buffer=getInputBuffer(mVideoEnc,index);
+        buffer.clear();
+        buffer.put(yuv);
+        mVideoEnc.queueInputBuffer(index,0,yuv.length,(slotNs-nanoTime)/1000,0);
+        mEncodedFrames.incrementAndGet();
+        return true;
+    }
+
+    //Surface输入时，数据由GL线程直接送入编码器，这里只取出编码后的数据
+    private boolean surfaceStep(){
+        if(!mStartFlag&&!isEosSignaled){
+            mVideoEnc.signalEndOfInputStream();
+            isEosSignaled=true;
         }
-        MediaCodec.BufferInfo mInfo=new MediaCodec.BufferInfo();
-        int outIndex=mVideoEnc.dequeueOutputBuffer(mInfo,0);
+        return drainVideo(10000);
+    }
+
+    private boolean drainVideo(long timeoutUs){
+        int outIndex=mVideoEnc.dequeueOutputBuffer(mVideoInfo,timeoutUs);
         do {
             if(outIndex>=0){
                 ByteBuffer outBuf=getOutputBuffer(mVideoEnc,outIndex);
-                if(mAudioTrack>=0&&mVideoTrack>=0&&mInfo.size>0&&mInfo.presentationTimeUs>0){
+                if(inputMode==INPUT_SURFACE){
+                    //Surface的时间戳是System.nanoTime()，换算成与音频一致的起始时间
+                    mVideoInfo.presentationTimeUs-=nanoTime/1000;
+                }
+                if(mAudioTrack>=0&&mVideoTrack>=0&&mVideoInfo.size>0&&mVideoInfo.presentationTimeUs>0){
                     try {
-                        mMuxer.writeSampleData(mVideoTrack,outBuf,mInfo);
+                        mMuxer.writeSampleData(mVideoTrack,outBuf,mVideoInfo);
+                        lastVideoPtsUs=mVideoInfo.presentationTimeUs;
                     }catch (Exception e){
-                        Log.e(TAG,"video error:size="+mInfo.size+"/offset="
-                            +mInfo.offset+"/timeUs="+mInfo.presentationTimeUs);
+                        Log.e(TAG,"video error:size="+mVideoInfo.size+"/offset="
+                            +mVideoInfo.offset+"/timeUs="+mVideoInfo.presentationTimeUs);
                         //e.printStackTrace();
                         Log.e(TAG,"-->"+e.getMessage());
                     }
                 }
                 mVideoEnc.releaseOutputBuffer(outIndex,false);
-                outIndex=mVideoEnc.dequeueOutputBuffer(mInfo,0);
-                if((mInfo.flags&MediaCodec.BUFFER_FLAG_END_OF_STREAM)!=0){
+                outIndex=mVideoEnc.dequeueOutputBuffer(mVideoInfo,0);
+                if((mVideoInfo.flags&MediaCodec.BUFFER_FLAG_END_OF_STREAM)!=0){
                     Log.e(TAG,"video end");
                     return true;
                 }
@@ -0,0 +1,298 @@
+package com.simoncherry.arcamera.codec;
+
+import com.simoncherry.arcamera.track.LatencyHistogram;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 拍照的两级流水线：合成和编码各用一个线程池，一张在编码时下一张可以同时合成。
+ * 同时在处理的数量有上限（包括排队的），超过时submit直接返回false，内存占用有界。
+ * 每一级的排队和处理耗时分别统计。
+ * @param <I> 输入，一般是回调的帧数据
+ * @param <T> 合成的结果，编码后交给Stages.recycle回收
+ */
+public class CapturePipeline<I, T> {
+
+    public interface Stages<I, T> {
+        // 在合成线程中调用，无论成功与否都要负责释放input
+        T composite(I input) throws Exception;
+
+        // 在编码线程中调用，返回保存的路径
+        String encode(T image) throws Exception;
+
+        // 编码完成或失败后回收合成的结果
+        void recycle(T image);
+    }
+
+    public interface Callback {
+        // 以下都在编码或合成线程中回调
+        void onCaptured(String path);
+
+        void onCaptureFailed(Exception e);
+    }
+
+    private final Stages<I, T> mStages;
+    private final int mCapacity;
+    private final ThreadPoolExecutor mCompositeExecutor;
+    private final ThreadPoolExecutor mEncodeExecutor;
+
+    private final AtomicInteger mInFlight = new AtomicInteger();
+    private final AtomicInteger mMaxInFlight = new AtomicInteger();
+    private final AtomicLong mSubmitted = new AtomicLong();
+    private final AtomicLong mRejected = new AtomicLong();
+    private final AtomicLong mCompleted = new AtomicLong();
+    private final AtomicLong mFailed = new AtomicLong();
+    private final LatencyHistogram mCompositeWait = new LatencyHistogram();
+    private final LatencyHistogram mCompositeTime = new LatencyHistogram();
+    private final LatencyHistogram mEncodeWait = new LatencyHistogram();
+    private final LatencyHistogram mEncodeTime = new LatencyHistogram();
+    private final LatencyHistogram mTotalTime = new LatencyHistogram();
+
+    /**
+     * @param compositeThreads 合成的线程数
+     * @param encodeThreads 编码的线程数
+     * @param capacity 最多同时处理几张，包括排队的
+     */
+    public CapturePipeline(int compositeThreads, int encodeThreads, int capacity, Stages<I, T> stages) {
+        mStages = stages;
+        mCapacity = Math.max(1, capacity);
+        mCompositeExecutor = newExecutor(compositeThreads, "capture-composite");
+        mEncodeExecutor = newExecutor(encodeThreads, "capture-encode");
+    }
+
+    // 队列长度由mCapacity限制，这里不再限制
+    private static ThreadPoolExecutor newExecutor(int threads, final String name) {
+        threads = Math.max(1, threads);
+        final AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        // 连拍的间隔内线程空闲也不退出，但长时间不拍照时释放
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 提交一张，立即返回
+     * @return 同时处理的数量已满或已经shutdown时返回false，调用方自己处理input
+     */
+    public boolean submit(I input, Callback callback) {
+        mSubmitted.incrementAndGet();
+        int inFlight;
+        do {
+            inFlight = mInFlight.get();
+            if (inFlight >= mCapacity || mCompositeExecutor.isShutdown()) {
+                mRejected.incrementAndGet();
+                return false;
+            }
+        } while (!mInFlight.compareAndSet(inFlight, inFlight + 1));
+        updateMax(inFlight + 1);
+        try {
+            mCompositeExecutor.execute(new CompositeTask(input, callback, System.nanoTime()));
+        } catch (RejectedExecutionException e) {
+            // 与shutdown同时调用
+            mInFlight.decrementAndGet();
+            mRejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void updateMax(int inFlight) {
+        int max;
+        while (inFlight > (max = mMaxInFlight.get())) {
+            if (mMaxInFlight.compareAndSet(max, inFlight)) {
+                break;
+            }
+        }
+    }
+
+    private static long elapsedMs(long startNs) {
+        return (System.nanoTime() - startNs) / 1000000L;
+    }
+
+    private class CompositeTask implements Runnable {
+        private final I mInput;
+        private final Callback mCallback;
+        private final long mSubmitNs;
+
+        CompositeTask(I input, Callback callback, long submitNs) {
+            mInput = input;
+            mCallback = callback;
+            mSubmitNs = submitNs;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            mCompositeWait.record((start - mSubmitNs) / 1000000L);
+            T image;
+            try {
+                image = mStages.composite(mInput);
+            } catch (Exception e) {
+                finish(mCallback, null, e, mSubmitNs);
+                return;
+            }
+            mCompositeTime.record(elapsedMs(start));
+            mEncodeExecutor.execute(new EncodeTask(image, mCallback, mSubmitNs));
+        }
+    }
+
+    private class EncodeTask implements Runnable {
+        private final T mImage;
+        private final Callback mCallback;
+        private final long mSubmitNs;
+        private final long mQueuedNs;
+
+        EncodeTask(T image, Callback callback, long submitNs) {
+            mImage = image;
+            mCallback = callback;
+            mSubmitNs = submitNs;
+            mQueuedNs = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            mEncodeWait.record((start - mQueuedNs) / 1000000L);
+            String path = null;
+            Exception error = null;
+            try {
+                path = mStages.encode(mImage);
+                mEncodeTime.record(elapsedMs(start));
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                mStages.recycle(mImage);
+            }
+            finish(mCallback, path, error, mSubmitNs);
+        }
+    }
+
+    private void finish(Callback callback, String path, Exception error, long submitNs) {
+        mTotalTime.record(elapsedMs(submitNs));
+        if (error == null) {
+            mCompleted.incrementAndGet();
+        } else {
+            mFailed.incrementAndGet();
+        }
+        try {
+            if (callback != null) {
+                if (error == null) {
+                    callback.onCaptured(path);
+                } else {
+                    callback.onCaptureFailed(error);
+                }
+            }
+        } finally {
+            // 回调之后才算处理完
+            mInFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 不再接受新的，已经提交的继续处理完
+     */
+    public void shutdown() {
+        mCompositeExecutor.shutdown();
+        // 合成线程结束后才能关闭编码线程，否则合成完的无法提交
+        mEncodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mCompositeExecutor.awaitTermination(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                mEncodeExecutor.shutdown();
+            }
+        });
+    }
+
+    // 测试用：等待已经提交的全部处理完
+    boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (mInFlight.get() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    // 当前在排队和处理中的数量
+    public int getQueueDepth() {
+        return mInFlight.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return mMaxInFlight.get();
+    }
+
+    public long getSubmittedCount() {
+        return mSubmitted.get();
+    }
+
+    public long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    public long getCompletedCount() {
+        return mCompleted.get();
+    }
+
+    public long getFailedCount() {
+        return mFailed.get();
+    }
+
+    public LatencyHistogram getCompositeWait() {
+        return mCompositeWait;
+    }
+
+    public LatencyHistogram getCompositeTime() {
+        return mCompositeTime;
+    }
+
+    public LatencyHistogram getEncodeWait() {
+        return mEncodeWait;
+    }
+
+    public LatencyHistogram getEncodeTime() {
+        return mEncodeTime;
+    }
+
+    public LatencyHistogram getTotalTime() {
+        return mTotalTime;
+    }
+
+    @Override
+    public String toString() {
+        return "submitted=" + getSubmittedCount()
+                + ", rejected=" + getRejectedCount()
+                + ", completed=" + getCompletedCount()
+                + ", failed=" + getFailedCount()
+                + ", queueDepth=" + getQueueDepth() + "/" + getMaxQueueDepth()
+                + ", compositeWait{" + mCompositeWait + "}"
+                + ", composite{" + mCompositeTime + "}"
+                + ", encodeWait{" + mEncodeWait + "}"
+                + ", encode{" + mEncodeTime + "}"
+                + ", total{" + mTotalTime + "}";
+    }
+}
@@ -1,11 +1,16 @@
 package com.simoncherry.arcamera.codec;
 
+import android.os.Build;
+import android.util.Log;
+
 /**
  * Created by Simon on 2017/7/15.
  */
 
 public class DataConvert {
 
+    private static final String TAG = DataConvert.class.getSimpleName();
+
     public static final int RGBA_YUV420SP=0x00004012;
     public static final int BGRA_YUV420SP=0x00004210;
     public static final int RGBA_YUV420P=0x00014012;
@@ -15,9 +20,138 @@ public class DataConvert {
     public static final int BGR_YUV420SP=0x00003210;
     public static final int BGR_YUV420P=0x00013210;
 
+    public static final int IMPL_NATIVE=0;          //libVideoConvert
+    public static final int IMPL_JAVA=1;            //YuvConverter，单线程
+    public static final int IMPL_JAVA_PARALLEL=2;   //ParallelYuvConverter，API 21以上
+
+    private static final int CHOOSE_ROUNDS=3;
+
+    private static final boolean sNativeLoaded;
+    private static volatile int sImpl;
+    private static ParallelYuvConverter sParallel;
+    private static int sChosenSize=0;
+
     static {
-        System.loadLibrary("VideoConvert");
+        boolean loaded;
+        try {
+            System.loadLibrary("VideoConvert");
+            loaded=true;
+        } catch (UnsatisfiedLinkError e) {
+            //模拟器、本地单元测试等没有so的环境使用Java实现
+            loaded=false;
+        }
+        sNativeLoaded=loaded;
+        sImpl=loaded?IMPL_NATIVE:IMPL_JAVA;
+    }
+
+    public static boolean isAvailable(int impl){
+        switch (impl){
+            case IMPL_NATIVE:
+                return sNativeLoaded;
+            case IMPL_JAVA:
+                return true;
+            case IMPL_JAVA_PARALLEL:
+                return Build.VERSION.SDK_INT>=Build.VERSION_CODES.LOLLIPOP
+                    &&Runtime.getRuntime().availableProcessors()>1;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 指定rgbaToYuv使用的实现
+     * @return 这个实现在当前设备上不可用时返回false，不做修改
+     */
+    public static boolean setImplementation(int impl){
+        if(!isAvailable(impl)){
+            return false;
+        }
+        sImpl=impl;
+        return true;
+    }
+
+    public static int getImplementation(){
+        return sImpl;
+    }
+
+    /**
+     * 用setImplementation指定的实现转换
+     */
+    public static void rgbaToYuv(byte[] rgba, int width, int height,byte[] yuv,int type){
+        rgbaToYuv(sImpl,rgba,width,height,yuv,type);
+    }
+
+    public static void rgbaToYuv(int impl,byte[] rgba, int width, int height,byte[] yuv,int type){
+        switch (impl){
+            case IMPL_NATIVE:
+                nativeRgbaToYuv(rgba,width,height,yuv,type);
+                break;
+            case IMPL_JAVA_PARALLEL:
+                if(isAvailable(IMPL_JAVA_PARALLEL)){
+                    getParallelConverter().convert(rgba,width,height,yuv,type);
+                }else{
+                    YuvConverter.convert(rgba,width,height,yuv,type);
+                }
+                break;
+            default:
+                YuvConverter.convert(rgba,width,height,yuv,type);
+                break;
+        }
+    }
+
+    /**
+     * 在当前设备上对这个尺寸分别测试可用的实现，选用最快的一个。
+     * 同一尺寸只测试一次，每个实现转换几帧，720p大约耗时几十毫秒
+     * @return 选中的实现
+     */
+    public static synchronized int chooseFastest(int width,int height){
+        if(sChosenSize==width*height){
+            return sImpl;
+        }
+        byte[] rgba=new byte[width*height*4];
+        byte[] yuv=new byte[width*height*3/2];
+        int best=sImpl;
+        long bestNs=Long.MAX_VALUE;
+        for (int impl=IMPL_NATIVE;impl<=IMPL_JAVA_PARALLEL;impl++){
+            if(!isAvailable(impl)){
+                continue;
+            }
+            //第一次不计时，排除JIT和线程池启动的影响
+            rgbaToYuv(impl,rgba,width,height,yuv,RGBA_YUV420SP);
+            long start=System.nanoTime();
+            for (int i=0;i<CHOOSE_ROUNDS;i++){
+                rgbaToYuv(impl,rgba,width,height,yuv,RGBA_YUV420SP);
+            }
+            long ns=(System.nanoTime()-start)/CHOOSE_ROUNDS;
+            Log.d(TAG,"impl "+impl+": "+ns/1000+"us for "+width+"x"+height);
+            if(ns<bestNs){
+                bestNs=ns;
+                best=impl;
+            }
+        }
+        sImpl=best;
+        sChosenSize=width*height;
+        return best;
+    }
+
+    /**
+     * Bitmap的ARGB像素转YUV，多核设备上按行分块并行转换，小图在调用线程中直接转换
+     * @param format ArgbYuvConverter.FORMAT_*
+     */
+    public static void argbToYuv(int[] argb,int width,int height,byte[] yuv,int format){
+        if(isAvailable(IMPL_JAVA_PARALLEL)){
+            getParallelConverter().argbToYuv(argb,width,height,yuv,format);
+        }else{
+            ArgbYuvConverter.argbToYuv(argb,width,height,yuv,format);
+        }
+    }
+
+    private static synchronized ParallelYuvConverter getParallelConverter(){
+        if(sParallel==null){
+            sParallel=new ParallelYuvConverter(Runtime.getRuntime().availableProcessors());
+        }
+        return sParallel;
     }
 
-    public static native void rgbaToYuv(byte[] rgba, int width, int height,byte[] yuv,int type);
+    public static native void nativeRgbaToYuv(byte[] rgba, int width, int height,byte[] yuv,int type);
 }
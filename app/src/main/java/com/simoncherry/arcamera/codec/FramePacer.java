@@ -0,0 +1,96 @@
+package com.simoncherry.arcamera.codec;
+
+/**
+ * 按固定帧率给视频帧分配时间戳，决定每一帧是丢弃、编码一次还是先重复上一帧补齐空档再编码。
+ * 输出时间戳落在以第一帧采集时间为起点、间隔为1/fps的网格上，每一帧只占用离采集时间最近的网格，
+ * 不会早于采集时间半个间隔；两帧之间的空档用前一帧重复补齐，同一个网格内多余的帧丢弃。
+ * 只在编码线程中使用，非线程安全。
+ */
+public class FramePacer {
+
+    private final long mIntervalNs;
+    private final int mMaxRepeat;
+
+    private boolean mHasFrame = false;
+    private long mNextSlotNs;      // 下一个未被占用的网格时间
+    private long mRepeatSlotNs;    // 重复上一帧的第一个网格时间
+    private long mFrameSlotNs;     // 最近一帧占用的网格时间
+    private int mSlotCount;        // 最近一次onFrame返回的编码次数
+
+    private long mDropped = 0;
+    private long mDuplicated = 0;
+    private long mSkippedSlots = 0;
+
+    /**
+     * @param fps 目标帧率
+     * @param maxRepeat 一帧最多编码的次数，采集中断太久时不再补齐，空档中剩下的网格留空
+     */
+    public FramePacer(int fps, int maxRepeat) {
+        mIntervalNs = 1000000000L / fps;
+        mMaxRepeat = maxRepeat < 1 ? 1 : maxRepeat;
+    }
+
+    public long getIntervalNs() {
+        return mIntervalNs;
+    }
+
+    /**
+     * 输入一帧的采集时间
+     * @return 需要编码的次数，0表示丢弃；前count-1次重复上一帧补齐空档，最后一次编码这一帧
+     */
+    public int onFrame(long timestampNs) {
+        if (!mHasFrame) {
+            mHasFrame = true;
+            mFrameSlotNs = timestampNs;
+            mNextSlotNs = timestampNs + mIntervalNs;
+            mSlotCount = 1;
+            return 1;
+        }
+        // 归到最近的网格，正好在两个网格中间时归到前一个
+        long reach = timestampNs + mIntervalNs / 2;
+        if (reach <= mNextSlotNs) {
+            mDropped++;
+            mSlotCount = 0;
+            return 0;
+        }
+        long gap = (reach - mNextSlotNs - 1) / mIntervalNs;
+        long repeat = Math.min(gap, mMaxRepeat - 1);
+        mSkippedSlots += gap - repeat;
+        mDuplicated += repeat;
+        mRepeatSlotNs = mNextSlotNs;
+        mFrameSlotNs = mNextSlotNs + gap * mIntervalNs;
+        mNextSlotNs = mFrameSlotNs + mIntervalNs;
+        mSlotCount = (int) repeat + 1;
+        return mSlotCount;
+    }
+
+    /**
+     * 最近一次onFrame返回的第index次编码使用的时间戳，最后一次是这一帧自己的网格
+     */
+    public long getSlotTime(int index) {
+        if (index >= mSlotCount - 1) {
+            return mFrameSlotNs;
+        }
+        return mRepeatSlotNs + index * mIntervalNs;
+    }
+
+    public long getDroppedCount() {
+        return mDropped;
+    }
+
+    public long getDuplicatedCount() {
+        return mDuplicated;
+    }
+
+    // 因为超过最大重复次数而留空的网格数
+    public long getSkippedSlotCount() {
+        return mSkippedSlots;
+    }
+
+    public void reset() {
+        mHasFrame = false;
+        mDropped = 0;
+        mDuplicated = 0;
+        mSkippedSlots = 0;
+    }
+}
@@ -0,0 +1,82 @@
+package com.simoncherry.arcamera.codec;
+
+import android.annotation.TargetApi;
+import android.media.AudioRecord;
+import android.media.MediaCodec;
+import android.os.Build;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 把MediaCodec和AudioRecord适配成AudioEncodeLoop使用的接口
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class MediaAudio {
+
+    public static class CodecAdapter implements AudioEncodeLoop.Codec {
+
+        private final MediaCodec mCodec;
+        private final MediaCodec.BufferInfo mInfo = new MediaCodec.BufferInfo();
+
+        public CodecAdapter(MediaCodec codec) {
+            mCodec = codec;
+        }
+
+        @Override
+        public int dequeueInputBuffer(long timeoutUs) {
+            return mCodec.dequeueInputBuffer(timeoutUs);
+        }
+
+        @Override
+        public ByteBuffer getInputBuffer(int index) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                return mCodec.getInputBuffer(index);
+            } else {
+                return mCodec.getInputBuffers()[index];
+            }
+        }
+
+        @Override
+        public void queueInputBuffer(int index, int size, long presentationTimeUs, int flags) {
+            mCodec.queueInputBuffer(index, 0, size, presentationTimeUs, flags);
+        }
+
+        @Override
+        public int dequeueOutputBuffer(AudioEncodeLoop.Packet info, long timeoutUs) {
+            int index = mCodec.dequeueOutputBuffer(mInfo, timeoutUs);
+            if (index >= 0) {
+                info.set(mInfo.offset, mInfo.size, mInfo.presentationTimeUs, mInfo.flags);
+            }
+            return index;
+        }
+
+        @Override
+        public ByteBuffer getOutputBuffer(int index) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                return mCodec.getOutputBuffer(index);
+            } else {
+                return mCodec.getOutputBuffers()[index];
+            }
+        }
+
+        @Override
+        public void releaseOutputBuffer(int index) {
+            mCodec.releaseOutputBuffer(index, false);
+        }
+    }
+
+    public static class RecordSource implements AudioEncodeLoop.PcmSource {
+
+        private final AudioRecord mRecord;
+
+        public RecordSource(AudioRecord record) {
+            mRecord = record;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer, int size) {
+            // 编码器的输入buffer是direct buffer，AudioRecord直接写入，不经过Java数组
+            return mRecord.read(buffer, size);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.simoncherry.arcamera.codec;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 把画面按行分成小块，在ForkJoinPool中并行执行YuvConverter或ArgbYuvConverter。
+ * 不超过TILE_ROWS行的小图直接在调用线程中转换。
+ * ForkJoinPool从API 21开始才有，低版本使用单线程的YuvConverter。
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class ParallelYuvConverter {
+
+    private static final int TILE_ROWS = 64;    // 每块的行数，必须是偶数
+
+    private static final int OP_RGB_TO_YUV = 0;
+    private static final int OP_ARGB_TO_YUV = 1;
+    private static final int OP_YUV_TO_ARGB = 2;
+
+    private final ForkJoinPool mPool;
+
+    public ParallelYuvConverter(int parallelism) {
+        mPool = new ForkJoinPool(parallelism);
+    }
+
+    public int getParallelism() {
+        return mPool.getParallelism();
+    }
+
+    public void convert(byte[] rgb, int width, int height, byte[] yuv, int type) {
+        invoke(new RowTask(OP_RGB_TO_YUV, rgb, null, width, height, yuv, type, 0, height));
+    }
+
+    public void argbToYuv(int[] argb, int width, int height, byte[] yuv, int format) {
+        invoke(new RowTask(OP_ARGB_TO_YUV, null, argb, width, height, yuv, format, 0, height));
+    }
+
+    public void yuvToArgb(byte[] yuv, int width, int height, int[] argb, int format) {
+        invoke(new RowTask(OP_YUV_TO_ARGB, null, argb, width, height, yuv, format, 0, height));
+    }
+
+    private void invoke(RowTask task) {
+        if (task.mRowEnd - task.mRowStart <= TILE_ROWS) {
+            task.convertRows();
+        } else {
+            mPool.invoke(task);
+        }
+    }
+
+    public void shutdown() {
+        mPool.shutdown();
+    }
+
+    private static class RowTask extends RecursiveAction {
+
+        private final int mOp;
+        private final byte[] mRgb;
+        private final int[] mArgb;
+        private final byte[] mYuv;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mType;
+        private final int mRowStart;
+        private final int mRowEnd;
+
+        RowTask(int op, byte[] rgb, int[] argb, int width, int height, byte[] yuv, int type,
+                int rowStart, int rowEnd) {
+            mOp = op;
+            mRgb = rgb;
+            mArgb = argb;
+            mYuv = yuv;
+            mWidth = width;
+            mHeight = height;
+            mType = type;
+            mRowStart = rowStart;
+            mRowEnd = rowEnd;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = mRowEnd - mRowStart;
+            if (rows <= TILE_ROWS) {
+                convertRows();
+                return;
+            }
+            // 分割点保持在偶数行，UV的写入位置才能按行算出
+            int mid = mRowStart + ((rows / 2) & ~1);
+            invokeAll(new RowTask(mOp, mRgb, mArgb, mWidth, mHeight, mYuv, mType, mRowStart, mid),
+                    new RowTask(mOp, mRgb, mArgb, mWidth, mHeight, mYuv, mType, mid, mRowEnd));
+        }
+
+        private void convertRows() {
+            switch (mOp) {
+                case OP_ARGB_TO_YUV:
+                    ArgbYuvConverter.argbToYuvRows(mArgb, mWidth, mHeight, mYuv, mType, mRowStart, mRowEnd);
+                    break;
+                case OP_YUV_TO_ARGB:
+                    ArgbYuvConverter.yuvToArgbRows(mYuv, mWidth, mHeight, mArgb, mType, mRowStart, mRowEnd);
+                    break;
+                default:
+                    YuvConverter.convertRows(mRgb, mWidth, mHeight, mYuv, mType, mRowStart, mRowEnd);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.simoncherry.arcamera.codec;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+import com.simoncherry.arcamera.util.BitmapPool;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 拍照保存服务：在CapturePipeline中把回调的RGBA帧拷贝到缓冲池的Bitmap、叠加3D模型层，再编码成JPEG保存。
+ * 合成和编码在不同的线程中进行，连拍时一张编码的同时下一张合成。
+ */
+public class PhotoCaptureService {
+
+    public static final int DEFAULT_JPEG_QUALITY = 95;
+    private static final int DEFAULT_CAPACITY = 12;     // 同时处理的最多张数，够连拍10张以上
+    private static final int IDLE_BITMAPS = 4;          // 缓冲池中最多保留的空闲Bitmap
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 一张照片
+     */
+    public static class Request {
+        final byte[] mRgba;
+        final int mWidth;
+        final int mHeight;
+        final Bitmap mOverlay;
+        final Runnable mOnConsumed;
+
+        /**
+         * @param rgba 回调的帧数据，RGBA
+         * @param overlay 叠加在上面的3D模型层，拉伸到照片大小，可以为null
+         * @param onConsumed rgba拷贝完后在合成线程中调用，之后调用方可以复用rgba，可以为null
+         */
+        public Request(byte[] rgba, int width, int height, Bitmap overlay, Runnable onConsumed) {
+            mRgba = rgba;
+            mWidth = width;
+            mHeight = height;
+            mOverlay = overlay;
+            mOnConsumed = onConsumed;
+        }
+    }
+
+    private final File mDir;
+    private final BitmapPool mBitmapPool = new BitmapPool(IDLE_BITMAPS);
+    private final CapturePipeline<Request, Bitmap> mPipeline;
+    private final AtomicInteger mSequence = new AtomicInteger();
+    private volatile int mJpegQuality = DEFAULT_JPEG_QUALITY;
+
+    public PhotoCaptureService(File dir) {
+        // JPEG编码比合成慢得多，多核时用两个编码线程
+        this(dir, 1, Runtime.getRuntime().availableProcessors() > 2 ? 2 : 1, DEFAULT_CAPACITY);
+    }
+
+    public PhotoCaptureService(File dir, int compositeThreads, int encodeThreads, int capacity) {
+        mDir = dir;
+        mPipeline = new CapturePipeline<>(compositeThreads, encodeThreads, capacity,
+                new CapturePipeline.Stages<Request, Bitmap>() {
+                    @Override
+                    public Bitmap composite(Request request) throws Exception {
+                        return compositePhoto(request);
+                    }
+
+                    @Override
+                    public String encode(Bitmap image) throws Exception {
+                        return encodePhoto(image);
+                    }
+
+                    @Override
+                    public void recycle(Bitmap image) {
+                        mBitmapPool.release(image);
+                    }
+                });
+    }
+
+    public void setJpegQuality(int quality) {
+        mJpegQuality = Math.min(Math.max(quality, 1), 100);
+    }
+
+    /**
+     * @return 同时处理的已满时返回false，此时不会调用request的onConsumed
+     */
+    public boolean submit(Request request, CapturePipeline.Callback callback) {
+        return mPipeline.submit(request, callback);
+    }
+
+    private Bitmap compositePhoto(Request request) {
+        Bitmap bitmap = null;
+        try {
+            bitmap = mBitmapPool.obtain(request.mWidth, request.mHeight);
+            bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(request.mRgba, 0, request.mWidth * request.mHeight * 4));
+        } catch (RuntimeException e) {
+            mBitmapPool.release(bitmap);
+            throw e;
+        } finally {
+            // 拷贝完就还给调用方，不等编码
+            if (request.mOnConsumed != null) {
+                request.mOnConsumed.run();
+            }
+        }
+        Bitmap overlay = request.mOverlay;
+        if (overlay != null && !overlay.isRecycled()) {
+            // 直接缩放绘制，不再生成缩放后的中间Bitmap
+            Canvas canvas = new Canvas(bitmap);
+            canvas.drawBitmap(overlay, null, new Rect(0, 0, request.mWidth, request.mHeight), null);
+        }
+        return bitmap;
+    }
+
+    private String encodePhoto(Bitmap bitmap) throws IOException {
+        if (!mDir.exists() && !mDir.mkdirs()) {
+            throw new IOException("cannot create " + mDir);
+        }
+        File file = claimFile(System.currentTimeMillis());
+        try {
+            writeJpeg(bitmap, file, mJpegQuality);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * 用createNewFile占用文件名，多个编码线程在同一毫秒内保存时不会互相覆盖
+     */
+    File claimFile(long timeMillis) throws IOException {
+        File file = new File(mDir, timeMillis + ".jpg");
+        while (!file.createNewFile()) {
+            file = new File(mDir, timeMillis + "_" + mSequence.incrementAndGet() + ".jpg");
+        }
+        return file;
+    }
+
+    public static void writeJpeg(Bitmap bitmap, File file, int quality) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER_SIZE);
+        try {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                throw new IOException("compress failed: " + file);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    // 当前在排队和处理中的张数
+    public int getQueueDepth() {
+        return mPipeline.getQueueDepth();
+    }
+
+    public CapturePipeline<Request, Bitmap> getPipeline() {
+        return mPipeline;
+    }
+
+    /**
+     * 不再接受新的，已经提交的保存完后释放线程
+     */
+    public void shutdown() {
+        mPipeline.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return mPipeline + ", bitmaps=" + mBitmapPool.getCreatedCount();
+    }
+}
@@ -0,0 +1,73 @@
+package com.simoncherry.arcamera.codec;
+
+/**
+ * DataConvert.rgbaToYuv的纯Java实现，结果与jni/VideoConvert.cpp逐字节一致。
+ * type的含义与native相同：
+ *   0-3位为b的偏移量，4-7位为g的偏移量，8-11位为r的偏移量，
+ *   12-15位为一个像素所占的字节数，16-19位为yuv类型，0为420sp（UV交错），1为420p。
+ * 偶数行的偶数列采样UV，可以按行分段转换，分段的起始行必须是偶数。
+ */
+public class YuvConverter {
+
+    public static void convert(byte[] rgb, int width, int height, byte[] yuv, int type) {
+        convertRows(rgb, width, height, yuv, type, 0, height);
+    }
+
+    /**
+     * 只转换[rowStart, rowEnd)这些行，不同的行可以在不同线程中同时转换
+     */
+    public static void convertRows(byte[] rgb, int width, int height, byte[] yuv, int type,
+                                   int rowStart, int rowEnd) {
+        if ((rowStart & 1) != 0) {
+            throw new IllegalArgumentException("rowStart must be even: " + rowStart);
+        }
+        final int frameSize = width * height;
+        final boolean isPlanar = (type & 0x10000) != 0;
+        final int bytesPerPixel = (type & 0x0F000) >> 12;
+        final int rShift = (type & 0x00F00) >> 8;
+        final int gShift = (type & 0x000F0) >> 4;
+        final int bShift = type & 0x0000F;
+        // 偶数行中偶数列的个数，宽度为奇数时也与native一致
+        final int chromaWidth = (width + 1) / 2;
+
+        int uIndex;
+        int vIndex;
+        int uvStep;
+        if (isPlanar) {
+            uIndex = frameSize + (rowStart / 2) * chromaWidth;
+            vIndex = frameSize + frameSize / 4 + (rowStart / 2) * chromaWidth;
+            uvStep = 1;
+        } else {
+            uIndex = frameSize + (rowStart / 2) * chromaWidth * 2;
+            vIndex = uIndex + 1;
+            uvStep = 2;
+        }
+
+        // 系数保证结果在[16, 240]之间，不需要再截断
+        for (int j = rowStart; j < rowEnd; j++) {
+            int yIndex = j * width;
+            int p = yIndex * bytesPerPixel;
+            if ((j & 1) == 0) {
+                for (int i = 0; i < width; i++, p += bytesPerPixel) {
+                    int r = rgb[p + rShift] & 0xFF;
+                    int g = rgb[p + gShift] & 0xFF;
+                    int b = rgb[p + bShift] & 0xFF;
+                    yuv[yIndex++] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+                    if ((i & 1) == 0) {
+                        yuv[uIndex] = (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128);
+                        yuv[vIndex] = (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);
+                        uIndex += uvStep;
+                        vIndex += uvStep;
+                    }
+                }
+            } else {
+                for (int i = 0; i < width; i++, p += bytesPerPixel) {
+                    int r = rgb[p + rShift] & 0xFF;
+                    int g = rgb[p + gShift] & 0xFF;
+                    int b = rgb[p + bShift] & 0xFF;
+                    yuv[yIndex++] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+                }
+            }
+        }
+    }
+}
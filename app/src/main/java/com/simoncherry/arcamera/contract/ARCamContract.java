@@ -4,6 +4,8 @@ import android.graphics.Bitmap;
 
 import com.sensetime.stmobileapi.STMobileFaceAction;
 import com.simoncherry.arcamera.model.DynamicPoint;
+import com.simoncherry.arcamera.track.FaceMotionStream;
+import com.simoncherry.arcamera.track.FaceTrackRegistry;
 
 import java.util.List;
 
@@ -15,7 +17,7 @@ public interface ARCamContract {
     interface View {
         void onSavePhotoSuccess(String fileName);
         void onSavePhotoFailed();
-        void onGetVideoData(byte[] bytes);
+        void onGetVideoData(byte[] bytes, long timestamp);
         void onGet3dModelRotation(float pitch, float roll, float yaw);
         void onGet3dModelTransition(float x, float y, float z);
         void onGetFaceLandmark(float[] landmarkX, float[] landmarkY, int isMouthOpen);
@@ -23,15 +25,22 @@ public interface ARCamContract {
     }
 
     interface Presenter {
-        void handlePhotoFrame(byte[] bytes, Bitmap mRajawaliBitmap, int photoWidth, int photoHeight);
-        void handleVideoFrame(byte[] bytes, int[] mRajawaliPixels);
+        boolean handlePhotoFrame(byte[] bytes, Bitmap mRajawaliBitmap, int photoWidth, int photoHeight,
+                                 Runnable onFrameConsumed);
+        void handleVideoFrame(byte[] bytes, int[] mRajawaliPixels, long timestamp);
         void savePhoto(Bitmap bitmap);
-        void handle3dModelRotation(float pitch, float roll, float yaw);
+        // timestamp为检测的这一帧相机采集的时间，与System.nanoTime()基准相同
+        void handle3dModelRotation(float pitch, float roll, float yaw, long timestamp);
         void handle3dModelTransition(STMobileFaceAction[] faceActions,
                                      int orientation, int eye_dist, float yaw,
-                                     int previewWidth, int previewHeight);
+                                     int previewWidth, int previewHeight, long timestamp);
         void handleFaceLandmark(STMobileFaceAction[] faceActions, int orientation, int mouthAh,
-                                int previewWidth, int previewHeight);
+                                int previewWidth, int previewHeight, long timestamp);
         void handleChangeModel(float[] landmarkX, float[] landmarkY);
+        void handleMultiFace(STMobileFaceAction[] faceActions, int orientation,
+                             int previewWidth, int previewHeight, long timestamp);
+        FaceMotionStream getFaceMotionStream();
+        FaceTrackRegistry getFaceTrackRegistry();
+        void release();
     }
 }
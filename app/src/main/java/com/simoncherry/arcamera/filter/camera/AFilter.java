@@ -6,6 +6,9 @@ import android.util.Log;
 import android.util.SparseArray;
 
 import com.simoncherry.arcamera.gl.MatrixUtils;
+import com.simoncherry.arcamera.gl.ProgramCache;
+
+import org.rajawali3d.util.GLStateCache;
 
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -34,6 +37,10 @@ public abstract class AFilter {
      * 程序句柄
      */
     protected int mProgram;
+    /**
+     * 从ProgramCache中取得的程序，release时归还
+     */
+    private ProgramCache.Program mCachedProgram;
     /**
      * 顶点坐标句柄
      */
@@ -194,6 +201,13 @@ public abstract class AFilter {
         return -1;
     }
 
+    /**
+     * 每像素的相对开销，以一次纹理采样为1，用于自适应分辨率预测缩放后的耗时
+     */
+    public float getCostHint(){
+        return 1f;
+    }
+
     /**
      * 实现此方法，完成程序的创建，可直接调用createProgram来实现
      */
@@ -201,15 +215,50 @@ public abstract class AFilter {
     protected abstract void onSizeChanged(int width, int height);
 
     protected final void createProgram(String vertex, String fragment){
-        mProgram = uCreateGlProgram(vertex,fragment);
-        mHPosition = GLES20.glGetAttribLocation(mProgram, "vPosition");
-        mHCoord = GLES20.glGetAttribLocation(mProgram,"vCoord");
-        mHMatrix = GLES20.glGetUniformLocation(mProgram,"vMatrix");
-        mHTexture = GLES20.glGetUniformLocation(mProgram,"vTexture");
+        setProgram(ProgramCache.getInstance().acquire(vertex, fragment));
+    }
+
+    /**
+     * 使用从ProgramCache中取得的程序，例如多个Filter共用的程序，之前的程序归还给缓存
+     */
+    protected final void setProgram(ProgramCache.Program program){
+        ProgramCache cache = ProgramCache.getInstance();
+        if(mCachedProgram != null){
+            cache.release(mCachedProgram);
+        }
+        mCachedProgram = program;
+        if(program == null){
+            mProgram = 0;
+            mHPosition = mHCoord = mHMatrix = mHTexture = -1;
+            return;
+        }
+        mProgram = program.getId();
+        mHPosition = cache.getAttribLocation(program, "vPosition");
+        mHCoord = cache.getAttribLocation(program, "vCoord");
+        mHMatrix = cache.getUniformLocation(program, "vMatrix");
+        mHTexture = cache.getUniformLocation(program, "vTexture");
+    }
+
+    /**
+     * 当前程序中uniform的位置，同一个程序只查询一次
+     */
+    protected final int getUniformLocation(String name){
+        if(mCachedProgram == null){
+            return GLES20.glGetUniformLocation(mProgram, name);
+        }
+        return ProgramCache.getInstance().getUniformLocation(mCachedProgram, name);
     }
 
     protected final void createProgramByAssetsFile(String vertex, String fragment){
-        createProgram(uRes(mRes, vertex), uRes(mRes, fragment));
+        ProgramCache cache = ProgramCache.getInstance();
+        createProgram(cache.loadAsset(mRes, vertex), cache.loadAsset(mRes, fragment));
+    }
+
+    /**
+     * 归还程序，需要在GL线程中调用。之后需要重新create才能绘制
+     */
+    public void release(){
+        setProgram(null);
     }
 
     /**
@@ -229,7 +278,7 @@ public abstract class AFilter {
     }
 
     protected void onUseProgram(){
-        GLES20.glUseProgram(mProgram);
+        GLStateCache.getInstance().useProgram(mProgram);
     }
 
     /**
@@ -264,7 +313,7 @@ public abstract class AFilter {
      * 绑定默认纹理
      */
     protected void onBindTexture(){
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + textureType);
+        GLStateCache.getInstance().activeTexture(GLES20.GL_TEXTURE0 + textureType);
         GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, getTextureId());
         GLES20.glUniform1i(mHTexture, textureType);
     }
@@ -3,88 +3,145 @@ package com.simoncherry.arcamera.filter.camera;
 import android.content.res.Resources;
 import android.opengl.GLES20;
 
+import com.simoncherry.arcamera.track.FaceMotionStream;
+
 /**
  * Created by Simon on 2017/7/6.
  */
 
-public class BeautyFilter extends AFilter {
+public class BeautyFilter extends SeparableBlurFilter {
+
+    private static final float SIGMA = 7.0f;        // 720宽时的sigma，与原来14个采样点的范围相近
+    private static final float FACE_SCALE = 1.3f;   // 关键点范围向外扩展，包括额头和脸颊边缘
 
     private int gHaaCoef;
     private int gHmixCoef;
     private int gHiternum;
-    private int gHWidth;
-    private int gHHeight;
+    private int gHFaceCenter;
+    private int gHFaceAxis;
+    private int gHFaceWeight;
 
     private float aaCoef;
     private float mixCoef;
     private int iternum;
 
-    private int mWidth = 720;
-    private int mHeight = 1280;
+    private final float[] mFaceCenter = {0.5f, 0.5f};
+    private final float[] mFaceAxis = {1f, 1f};
+    private float mFaceWeight = 0f;
 
+    // 设置后每次绘制前从FaceParamBlock取第0张脸，只在脸部范围内磨皮
+    private boolean isFaceTracked = false;
+    private final float[] mSampleX = new float[FaceParamBlock.LANDMARK_COUNT];
+    private final float[] mSampleY = new float[FaceParamBlock.LANDMARK_COUNT];
 
     public BeautyFilter(Resources res) {
-        super(res);
+        super(res, SIGMA, 0, 2, true);
         setFlag(3);
     }
 
+    @Override
+    protected String getCompositeShader() {
+        return "shader/beauty/beauty.frag";
+    }
+
     @Override
     protected void onCreate() {
-        createProgramByAssetsFile("shader/beauty/beauty.vert", "shader/beauty/beauty.frag");
-        gHaaCoef = GLES20.glGetUniformLocation(mProgram, "aaCoef");
-        gHmixCoef = GLES20.glGetUniformLocation(mProgram, "mixCoef");
-        gHiternum = GLES20.glGetUniformLocation(mProgram, "iternum");
-        gHWidth = GLES20.glGetUniformLocation(mProgram, "mWidth");
-        gHHeight = GLES20.glGetUniformLocation(mProgram, "mHeight");
+        super.onCreate();
+        gHaaCoef = getUniformLocation("aaCoef");
+        gHmixCoef = getUniformLocation("mixCoef");
+        gHiternum = getUniformLocation("iternum");
+        gHFaceCenter = getUniformLocation("uFaceCenter");
+        gHFaceAxis = getUniformLocation("uFaceAxis");
+        gHFaceWeight = getUniformLocation("uFaceWeight");
     }
 
+    /**
+     * 磨皮等级，等级越高模糊的采样预算越大，1/4分辨率提高到1/2分辨率
+     */
     @Override
     public void setFlag(int flag) {
         super.setFlag(flag);
         switch (flag) {
             case 1:
-                setParams(1, 0.19f, 0.54f);
+                setParams(1, 4f, 0.19f, 0.54f);
                 break;
             case 2:
-                setParams(2, 0.29f, 0.54f);
+                setParams(2, 6f, 0.29f, 0.54f);
                 break;
             case 3:
-                setParams(3, 0.17f, 0.39f);
+                setParams(3, 9f, 0.17f, 0.39f);
                 break;
             case 4:
-                setParams(3, 0.25f, 0.54f);
+                setParams(3, 9f, 0.25f, 0.54f);
                 break;
             case 5:
-                setParams(4, 0.13f, 0.54f);
+                setParams(4, 12f, 0.13f, 0.54f);
                 break;
             case 6:
-                setParams(4, 0.19f, 0.69f);
+                setParams(4, 12f, 0.19f, 0.69f);
                 break;
             default:
-                setParams(0, 0f, 0f);
+                setParams(0, 0f, 0f, 0f);
                 break;
         }
     }
 
-    private void setParams(int a, float b, float c) {
+    private void setParams(int a, float budget, float b, float c) {
         this.iternum = a;
         this.aaCoef = b;
         this.mixCoef = c;
+        setBudget(budget);
+    }
+
+    /**
+     * 按关键点的范围设置磨皮的脸部区域，坐标与ARCamPresenter计算的一致（已归一化到纹理坐标）
+     * @param landmarkX 为null时取消，整个画面磨皮
+     */
+    public void setFaceLandmarks(float[] landmarkX, float[] landmarkY) {
+        if (landmarkX == null || landmarkY == null || landmarkX.length == 0) {
+            mFaceWeight = 0f;
+            return;
+        }
+        float minX = landmarkX[0], maxX = landmarkX[0];
+        float minY = landmarkY[0], maxY = landmarkY[0];
+        for (int i = 1; i < landmarkX.length; i++) {
+            minX = Math.min(minX, landmarkX[i]);
+            maxX = Math.max(maxX, landmarkX[i]);
+            minY = Math.min(minY, landmarkY[i]);
+            maxY = Math.max(maxY, landmarkY[i]);
+        }
+        mFaceCenter[0] = (minX + maxX) / 2;
+        mFaceCenter[1] = (minY + maxY) / 2;
+        mFaceAxis[0] = Math.max((maxX - minX) / 2 * FACE_SCALE, 0.01f);
+        mFaceAxis[1] = Math.max((maxY - minY) / 2 * FACE_SCALE, 0.01f);
+        mFaceWeight = 1f;
+    }
+
+    public void setFaceMotionStream(FaceMotionStream stream) {
+        FaceParamBlock.getInstance().setFaceMotionStream(stream);
+        isFaceTracked = stream != null;
     }
 
     @Override
-    protected void onSizeChanged(int width, int height) {
-        this.mWidth = width;
-        this.mHeight = height;
+    public void draw() {
+        if (isFaceTracked) {
+            if (FaceParamBlock.getInstance().getLandmarks(0, mSampleX, mSampleY)) {
+                setFaceLandmarks(mSampleX, mSampleY);
+            } else {
+                setFaceLandmarks(null, null);
+            }
+        }
+        super.draw();
     }
 
     @Override
     protected void onSetExpandData() {
         super.onSetExpandData();
-        GLES20.glUniform1i(gHWidth, mWidth);
-        GLES20.glUniform1i(gHHeight, mHeight);
         GLES20.glUniform1f(gHaaCoef, aaCoef);
         GLES20.glUniform1f(gHmixCoef, mixCoef);
         GLES20.glUniform1i(gHiternum, iternum);
+        GLES20.glUniform2fv(gHFaceCenter, 1, mFaceCenter, 0);
+        GLES20.glUniform2fv(gHFaceAxis, 1, mFaceAxis, 0);
+        GLES20.glUniform1f(gHFaceWeight, mFaceWeight);
     }
 }
@@ -7,9 +7,10 @@ import android.opengl.GLES20;
  * Created by Simon on 2017/7/6.
  */
 
-public class BinaryFilter extends AFilter {
+public class BinaryFilter extends AFilter implements ColorStage {
 
     private int gThreshold;
+    private int gStageThreshold;    // 合并到ColorChainCompiler的程序中时uThreshold的位置
     private float mThreshold;
 
     public BinaryFilter(Resources mRes) {
@@ -22,7 +23,7 @@ public class BinaryFilter extends AFilter {
         createProgramByAssetsFile("shader/base_vertex.sh",
                 "shader/color/binary_fragment.frag");
 
-        gThreshold = GLES20.glGetUniformLocation(mProgram, "uThreshold");
+        gThreshold = getUniformLocation("uThreshold");
     }
 
     @Override
@@ -40,4 +41,24 @@ public class BinaryFilter extends AFilter {
         super.onSetExpandData();
         GLES20.glUniform1f(gThreshold, mThreshold);
     }
+
+    @Override
+    public String getColorStage() {
+        return "uniform float $threshold;\n"
+                + "vec4 $apply(vec4 color) {\n"
+                + "    float avg = (color.r + color.g + color.b) / 3.0;\n"
+                + "    float binary = avg >= $threshold ? 1.0 : 0.0;\n"
+                + "    return vec4(binary, binary, binary, color.a);\n"
+                + "}";
+    }
+
+    @Override
+    public void onStageCreated(int program, String prefix) {
+        gStageThreshold = GLES20.glGetUniformLocation(program, prefix + "threshold");
+    }
+
+    @Override
+    public void onSetStageData() {
+        GLES20.glUniform1f(gStageThreshold, mThreshold);
+    }
 }
@@ -0,0 +1,82 @@
+package com.simoncherry.arcamera.filter.camera;
+
+/**
+ * 根据每个全分辨率像素允许的纹理采样次数，选择模糊的缩小倍数和核半径。
+ * 在预算内优先用较高的分辨率；最低的1/4分辨率也放不下时截短核半径。
+ * 代价只计纹理采样，包括缩小、横向、纵向三遍和最后全分辨率的合成。
+ */
+public class BlurBudget {
+
+    public static final int[] SCALES = {1, 2, 4};
+
+    private final int mScale;
+    private final int mCompositeFetches;
+    private final BlurKernel mKernel;
+
+    private BlurBudget(int scale, int compositeFetches, BlurKernel kernel) {
+        mScale = scale;
+        mCompositeFetches = compositeFetches;
+        mKernel = kernel;
+    }
+
+    /**
+     * @param sigma 全分辨率下的高斯sigma，单位为像素
+     * @param budget 每个全分辨率像素允许的纹理采样次数
+     * @param compositeFetches 最后合成时每个像素的采样次数
+     */
+    public static BlurBudget choose(float sigma, float budget, int compositeFetches) {
+        for (int scale : SCALES) {
+            BlurKernel kernel = kernelFor(sigma / scale);
+            if (getCost(scale, kernel.getFetchCount(), compositeFetches) <= budget) {
+                return new BlurBudget(scale, compositeFetches, kernel);
+            }
+        }
+        // 预算不足，在最低分辨率下截短核半径，至少保留半径1
+        int scale = SCALES[SCALES.length - 1];
+        float lowSigma = Math.max(sigma / scale, 0.5f);
+        int radius = kernelFor(lowSigma).getRadius();
+        while (radius > 1 && getCost(scale, 2 * ((radius + 1) / 2) + 1, compositeFetches) > budget) {
+            radius--;
+        }
+        return new BlurBudget(scale, compositeFetches, BlurKernel.gaussian(radius, lowSigma));
+    }
+
+    private static BlurKernel kernelFor(float sigma) {
+        sigma = Math.max(sigma, 0.5f);
+        int radius = Math.max(1, (int) Math.ceil(sigma * 3));
+        return BlurKernel.gaussian(radius, sigma);
+    }
+
+    // 缩小时每个低分辨率像素的采样次数，4倍时用4次双线性采样覆盖4x4个像素
+    public static int getDownsampleFetches(int scale) {
+        return scale == 1 ? 0 : scale == 2 ? 1 : 4;
+    }
+
+    public static float getCost(int scale, int kernelFetches, int compositeFetches) {
+        float area = scale * scale;
+        return (getDownsampleFetches(scale) + 2 * kernelFetches) / area + compositeFetches;
+    }
+
+    public int getScale() {
+        return mScale;
+    }
+
+    public BlurKernel getKernel() {
+        return mKernel;
+    }
+
+    public float getCost() {
+        return getCost(mScale, mKernel.getFetchCount(), mCompositeFetches);
+    }
+
+    // 包括最后的合成
+    public int getPassCount() {
+        return mScale == 1 ? 3 : 4;
+    }
+
+    @Override
+    public String toString() {
+        return "1/" + mScale + " radius=" + mKernel.getRadius() + " sigma=" + mKernel.getSigma()
+                + " fetches=" + getCost() + " passes=" + getPassCount();
+    }
+}
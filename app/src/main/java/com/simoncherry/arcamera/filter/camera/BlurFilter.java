@@ -6,19 +6,17 @@ import android.content.res.Resources;
  * Created by Simon on 2017/7/6.
  */
 
-public class BlurFilter extends AFilter {
+public class BlurFilter extends SeparableBlurFilter {
 
-    public BlurFilter(Resources mRes) {
-        super(mRes);
-    }
+    private static final float SIGMA = 3.0f;        // 720宽时的sigma，与原来13点采样的范围相近
+    private static final float BUDGET = 6.0f;
 
-    @Override
-    protected void onCreate() {
-        createProgramByAssetsFile("shader/base_vertex.sh",
-                "shader/color/blur_fragment.frag");
+    public BlurFilter(Resources mRes) {
+        super(mRes, SIGMA, BUDGET, 1, false);
     }
 
     @Override
-    protected void onSizeChanged(int width, int height) {
+    protected String getCompositeShader() {
+        return "shader/color/blur_fragment.frag";
     }
 }
@@ -0,0 +1,126 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import java.util.Locale;
+
+/**
+ * 一维高斯核，相邻两个采样点按权重合并成一次线性插值采样（利用纹理的双线性过滤），
+ * 半径为r的核每个方向只需要 1 + 2 * ceil(r / 2) 次采样。
+ */
+public class BlurKernel {
+
+    private final int mRadius;
+    private final float mSigma;
+    private final float[] mOffsets;     // 第0个是中心，其余是合并后的正向偏移，单位为纹理像素
+    private final float[] mWeights;
+
+    private BlurKernel(int radius, float sigma, float[] offsets, float[] weights) {
+        mRadius = radius;
+        mSigma = sigma;
+        mOffsets = offsets;
+        mWeights = weights;
+    }
+
+    /**
+     * 离散高斯核的单侧权重w[0..radius]，w[0] + 2 * (w[1] + ... + w[radius]) = 1
+     */
+    public static float[] gaussianWeights(int radius, float sigma) {
+        float[] weights = new float[radius + 1];
+        double total = 0;
+        for (int i = 0; i <= radius; i++) {
+            double w = Math.exp(-(double) (i * i) / (2.0 * sigma * sigma));
+            weights[i] = (float) w;
+            total += i == 0 ? w : 2 * w;
+        }
+        for (int i = 0; i <= radius; i++) {
+            weights[i] = (float) (weights[i] / total);
+        }
+        return weights;
+    }
+
+    public static BlurKernel gaussian(int radius, float sigma) {
+        if (radius < 1 || sigma <= 0) {
+            throw new IllegalArgumentException("radius=" + radius + " sigma=" + sigma);
+        }
+        float[] discrete = gaussianWeights(radius, sigma);
+        int pairs = (radius + 1) / 2;
+        float[] offsets = new float[pairs + 1];
+        float[] weights = new float[pairs + 1];
+        weights[0] = discrete[0];
+        for (int p = 0; p < pairs; p++) {
+            int i = 2 * p + 1;
+            float w1 = discrete[i];
+            float w2 = i + 1 <= radius ? discrete[i + 1] : 0;
+            weights[p + 1] = w1 + w2;
+            // 在两个像素之间按权重比例取样，双线性插值的结果等于两次采样的加权和
+            offsets[p + 1] = (i * w1 + (i + 1) * w2) / (w1 + w2);
+        }
+        return new BlurKernel(radius, sigma, offsets, weights);
+    }
+
+    public int getRadius() {
+        return mRadius;
+    }
+
+    public float getSigma() {
+        return mSigma;
+    }
+
+    public float[] getOffsets() {
+        return mOffsets;
+    }
+
+    public float[] getWeights() {
+        return mWeights;
+    }
+
+    // 每个输出像素一个方向的采样次数
+    public int getFetchCount() {
+        return 2 * mOffsets.length - 1;
+    }
+
+    /**
+     * 生成一个方向的模糊shader，uStep是一个纹理像素在这个方向上的纹理坐标步长。
+     * bilateral时按与中心点绿色通道的差值降低权重，保留边缘
+     */
+    public String buildFragmentShader(boolean bilateral) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("precision mediump float;\n");
+        sb.append("varying vec2 textureCoordinate;\n");
+        sb.append("uniform sampler2D vTexture;\n");
+        sb.append("uniform vec2 uStep;\n");
+        if (bilateral) {
+            sb.append("uniform float uRange;\n");
+        }
+        sb.append("void main() {\n");
+        sb.append("    vec4 center = texture2D(vTexture, textureCoordinate);\n");
+        sb.append("    vec4 sum = center * ").append(format(mWeights[0])).append(";\n");
+        if (bilateral) {
+            sb.append("    float total = ").append(format(mWeights[0])).append(";\n");
+            sb.append("    float w;\n");
+        }
+        sb.append("    vec4 c;\n");
+        for (int i = 1; i < mOffsets.length; i++) {
+            for (int sign = 1; sign >= -1; sign -= 2) {
+                sb.append("    c = texture2D(vTexture, textureCoordinate ")
+                        .append(sign > 0 ? '+' : '-')
+                        .append(" uStep * ").append(format(mOffsets[i])).append(");\n");
+                if (bilateral) {
+                    sb.append("    w = ").append(format(mWeights[i]))
+                            .append(" * (1.0 - min(abs(c.g - center.g) * uRange, 1.0));\n");
+                    sb.append("    sum += c * w;\n");
+                    sb.append("    total += w;\n");
+                } else {
+                    sb.append("    sum += c * ").append(format(mWeights[i])).append(";\n");
+                }
+            }
+        }
+        sb.append(bilateral ? "    gl_FragColor = sum / total;\n" : "    gl_FragColor = sum;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // GLSL ES不接受科学计数法和省略小数点的写法
+    static String format(float value) {
+        return String.format(Locale.US, "%.6f", value);
+    }
+}
@@ -0,0 +1,65 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import android.content.res.Resources;
+
+import com.simoncherry.arcamera.gl.ProgramCache;
+
+import java.util.List;
+
+/**
+ * 把相邻的多个ColorStage合并成一个fragment shader，每一级的输出截断到[0, 1]后
+ * 作为下一级的输入，与逐个Filter画到8位纹理中的结果一致（不计中间的量化误差）。
+ * 程序由ProgramCache按shader源码缓存，同样的组合只编译一次。只在GL线程中使用。
+ */
+public class ColorChainCompiler {
+
+    private static final String VERTEX = "shader/base_vertex.sh";
+
+    private final Resources mRes;
+    private String mVertexSource;
+
+    public ColorChainCompiler(Resources res) {
+        mRes = res;
+    }
+
+    public static String getPrefix(int index) {
+        return "s" + index + "_";
+    }
+
+    /**
+     * 生成合并后的fragment shader
+     * @param stages 按顺序每一级的ColorStage.getColorStage()
+     */
+    public static String buildFragmentShader(String[] stages) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("precision mediump float;\n");
+        sb.append("varying vec2 textureCoordinate;\n");
+        sb.append("uniform sampler2D vTexture;\n");
+        for (int i = 0; i < stages.length; i++) {
+            sb.append(stages[i].replace("$", getPrefix(i))).append('\n');
+        }
+        sb.append("void main() {\n");
+        sb.append("    vec4 color = texture2D(vTexture, textureCoordinate);\n");
+        for (int i = 0; i < stages.length; i++) {
+            sb.append("    color = clamp(").append(getPrefix(i)).append("apply(color), 0.0, 1.0);\n");
+        }
+        sb.append("    gl_FragColor = color;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * 取得合并这些ColorStage的程序，没有缓存时编译，用完后调用ProgramCache.release归还
+     * @return 编译失败时返回null
+     */
+    public ProgramCache.Program getProgram(List<ColorStage> stages) {
+        String[] sources = new String[stages.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = stages.get(i).getColorStage();
+        }
+        if (mVertexSource == null) {
+            mVertexSource = ProgramCache.getInstance().loadAsset(mRes, VERTEX);
+        }
+        return ProgramCache.getInstance().acquire(mVertexSource, buildFragmentShader(sources));
+    }
+}
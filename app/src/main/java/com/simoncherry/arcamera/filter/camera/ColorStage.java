@@ -0,0 +1,26 @@
+package com.simoncherry.arcamera.filter.camera;
+
+/**
+ * 只根据当前像素颜色计算输出的Filter（灰度、冷暖色调、反色、二值化等）。
+ * GroupFilter中相邻的这类Filter会由ColorChainCompiler合并到一个shader中一次画完，
+ * 不再每个Filter各画一遍全屏。
+ */
+public interface ColorStage {
+
+    /**
+     * GLSL代码片段，必须定义函数 vec4 $apply(vec4 color)，可以声明uniform。
+     * 代码中的"$"会被替换成每一级唯一的前缀，避免多级之间重名
+     */
+    String getColorStage();
+
+    /**
+     * 合并后的程序创建后调用，取得这一级uniform的位置
+     * @param prefix 替换"$"的前缀
+     */
+    void onStageCreated(int program, String prefix);
+
+    /**
+     * 合并后的程序每次绘制前调用，设置这一级uniform的值
+     */
+    void onSetStageData();
+}
@@ -0,0 +1,446 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import android.annotation.TargetApi;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
+
+import com.simoncherry.arcamera.gl.EasyGlUtils;
+import com.simoncherry.arcamera.track.FaceMotionStream;
+import com.simoncherry.arcamera.track.FaceTrackRegistry;
+
+import org.rajawali3d.util.GLStateCache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLContext;
+
+/**
+ * 所有关键点滤镜共用的人脸参数，每帧最多上传一次，链中的各个滤镜只绑定同一张纹理。
+ * 每张脸占纹理的一行：前106个像素是关键点，x和y各是一个16位定点数（分别在RG和BA中），
+ * 第107个像素的R是张嘴标记。检测线程或FaceMotionStream写入后标记为脏，没有新数据时不上传。
+ * 设置了FaceMotionStream和FaceTrackRegistry时每帧重新取人脸：第0行是主人脸，之后依次是其他在画面中的人脸，
+ * 超过LOST_TIMEOUT_NS没有检测到的人脸不再写入，没有人脸时人脸数为0。
+ * fragment shader中通过{@link #GLSL}里的landmarkX/landmarkY/faceMouthOpen读取。
+ * GLES3的上下文中改用uniform block：关键点直接以float上传到uniform buffer，shader转换成GLSL ES 3.00，
+ * 通过{@link #GLSL_ES3}里同名的函数读取，不需要还原定点数。
+ */
+public class FaceParamBlock {
+
+    public static final int MAX_FACES = 4;
+    public static final int LANDMARK_COUNT = FaceMotionStream.LANDMARK_COUNT;
+    static final int TEXTURE_WIDTH = LANDMARK_COUNT + 1;
+    // 与FaceTrackRegistry默认的消失时间相同
+    static final long LOST_TIMEOUT_NS = 300 * 1000000L;
+
+    // 定点数能表示的坐标范围，关键点稍微超出画面时也能保存
+    static final float RANGE_MIN = -1f;
+    static final float RANGE = 3f;
+
+    /**
+     * 插入到fragment shader中的声明。有highp时用highp还原定点数，取出的坐标与原来的uniform数组精度相同
+     */
+    public static final String GLSL = String.format(Locale.US,
+            "#ifdef GL_FRAGMENT_PRECISION_HIGH\n" +
+            "#define FACE_PRECISION highp\n" +
+            "#else\n" +
+            "#define FACE_PRECISION mediump\n" +
+            "#endif\n" +
+            "uniform sampler2D uFaceParams;\n" +
+            "uniform FACE_PRECISION float uFaceRow;\n" +
+            "FACE_PRECISION vec2 faceLandmark(FACE_PRECISION float i) {\n" +
+            "    FACE_PRECISION vec4 c = texture2D(uFaceParams, vec2((i + 0.5) / %1$d.0, uFaceRow));\n" +
+            "    FACE_PRECISION vec2 v = vec2(dot(c.rg, vec2(65280.0, 255.0)), dot(c.ba, vec2(65280.0, 255.0)));\n" +
+            "    return v * (%2$.1f / 65535.0) + %3$.1f;\n" +
+            "}\n" +
+            "float landmarkX(float i) { return faceLandmark(i).x; }\n" +
+            "float landmarkY(float i) { return faceLandmark(i).y; }\n" +
+            "bool faceMouthOpen() { return texture2D(uFaceParams, vec2(%4$d.5 / %1$d.0, uFaceRow)).r > 0.5; }\n",
+            TEXTURE_WIDTH, RANGE, RANGE_MIN, LANDMARK_COUNT);
+
+    // uniform block中每张脸占的vec4数，每个vec4存两个关键点的x, y
+    static final int BLOCK_FACE_VECTORS = LANDMARK_COUNT / 2;
+    // 所有脸的关键点之后是一个vec4，每个分量是一张脸的张嘴标记
+    static final int BLOCK_FLOATS = (MAX_FACES * BLOCK_FACE_VECTORS + 1) * 4;
+    static final String BLOCK_NAME = "FaceParams";
+    private static final int BLOCK_BINDING = 0;
+
+    /**
+     * GLES3时插入到fragment shader中的声明，按std140布局，与packBlockIfDirty的顺序一致
+     */
+    public static final String GLSL_ES3 = String.format(Locale.US,
+            "layout(std140) uniform %1$s {\n" +
+            "    highp vec4 uFaceLandmarks[%2$d];\n" +
+            "    highp vec4 uFaceMouthOpen;\n" +
+            "};\n" +
+            "uniform int uFaceIndex;\n" +
+            "highp vec2 faceLandmark(float i) {\n" +
+            "    int k = int(i);\n" +
+            "    highp vec4 v = uFaceLandmarks[uFaceIndex * %3$d + k / 2];\n" +
+            "    return (k & 1) == 0 ? v.xy : v.zw;\n" +
+            "}\n" +
+            "float landmarkX(float i) { return faceLandmark(i).x; }\n" +
+            "float landmarkY(float i) { return faceLandmark(i).y; }\n" +
+            "bool faceMouthOpen() { return uFaceMouthOpen[uFaceIndex] > 0.5; }\n",
+            BLOCK_NAME, MAX_FACES * BLOCK_FACE_VECTORS, BLOCK_FACE_VECTORS);
+
+    private static FaceParamBlock sInstance;
+
+    public static synchronized FaceParamBlock getInstance() {
+        if (sInstance == null) {
+            sInstance = new FaceParamBlock();
+        }
+        return sInstance;
+    }
+
+    private final float[] mX = new float[MAX_FACES * LANDMARK_COUNT];
+    private final float[] mY = new float[MAX_FACES * LANDMARK_COUNT];
+    private final int[] mMouthOpen = new int[MAX_FACES];
+    private int mFaceCount = 0;
+    private int mVersion = 0;               // 每次写入加1
+    private int mPackedVersion = -1;        // 上次打包上传的版本，只在GL线程中使用，纹理和uniform block只会用其中一种
+
+    // 设置后每帧开始时从中取第0张脸
+    private volatile FaceMotionStream mFaceMotionStream;
+    // 设置后每帧开始时从中取其他的人脸
+    private volatile FaceTrackRegistry mFaceTrackRegistry;
+    private final float[] mSampleX = new float[MAX_FACES * LANDMARK_COUNT];
+    private final float[] mSampleY = new float[MAX_FACES * LANDMARK_COUNT];
+    private final float[] mFaceX = new float[LANDMARK_COUNT];
+    private final float[] mFaceY = new float[LANDMARK_COUNT];
+    private final int[] mSampleMouthOpen = new int[MAX_FACES];
+
+    private final ByteBuffer mPixels = ByteBuffer.allocateDirect(TEXTURE_WIDTH * MAX_FACES * 4)
+            .order(ByteOrder.nativeOrder());
+    private int mTexture = 0;
+    private EGLContext mTextureContext;
+    private final FloatBuffer mBlockData = ByteBuffer.allocateDirect(BLOCK_FLOATS * 4)
+            .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    private int mUniformBuffer = 0;
+    private EGLContext mBufferContext;
+
+    private final AtomicLong mUploads = new AtomicLong();
+
+    FaceParamBlock() {
+    }
+
+    public void setFaceMotionStream(FaceMotionStream stream) {
+        mFaceMotionStream = stream;
+    }
+
+    public void setFaceTrackRegistry(FaceTrackRegistry registry) {
+        mFaceTrackRegistry = registry;
+    }
+
+    /**
+     * 写入一张脸的关键点（归一化的纹理坐标），face超出已有的数量时人脸数随之增加
+     */
+    public synchronized void setLandmarks(int face, float[] landmarkX, float[] landmarkY) {
+        System.arraycopy(landmarkX, 0, mX, face * LANDMARK_COUNT, LANDMARK_COUNT);
+        System.arraycopy(landmarkY, 0, mY, face * LANDMARK_COUNT, LANDMARK_COUNT);
+        mFaceCount = Math.max(mFaceCount, face + 1);
+        mVersion++;
+    }
+
+    public synchronized void setMouthOpen(int face, int isOpen) {
+        if (mMouthOpen[face] != isOpen) {
+            mMouthOpen[face] = isOpen;
+            mVersion++;
+        }
+    }
+
+    public synchronized int getMouthOpen(int face) {
+        return mMouthOpen[face];
+    }
+
+    public synchronized int getFaceCount() {
+        return mFaceCount;
+    }
+
+    /**
+     * 取出一张脸的关键点，没有这张脸时返回false
+     */
+    public synchronized boolean getLandmarks(int face, float[] outX, float[] outY) {
+        if (face >= mFaceCount) {
+            return false;
+        }
+        System.arraycopy(mX, face * LANDMARK_COUNT, outX, 0, LANDMARK_COUNT);
+        System.arraycopy(mY, face * LANDMARK_COUNT, outY, 0, LANDMARK_COUNT);
+        return true;
+    }
+
+    public synchronized void clearFaces() {
+        if (mFaceCount != 0) {
+            mFaceCount = 0;
+            Arrays.fill(mMouthOpen, 0);
+            mVersion++;
+        }
+    }
+
+    /**
+     * 每帧开始时在GL线程中调用，按渲染时间从FaceMotionStream取第0张脸，从FaceTrackRegistry取其他的人脸。
+     * 与当前值相同时不标记为脏；都没有设置时保留setLandmarks写入的值
+     */
+    public void beginFrame(long timestampNs) {
+        FaceMotionStream stream = mFaceMotionStream;
+        FaceTrackRegistry registry = mFaceTrackRegistry;
+        if (stream == null && registry == null) {
+            return;
+        }
+        int count = 0;
+        if (stream != null && sampleFace(stream, timestampNs, count)) {
+            count++;
+        }
+        if (registry != null) {
+            // 主人脸已经由stream写入第0行
+            int primary = stream != null ? registry.getPrimarySlot() : -1;
+            for (int slot = 0; slot < registry.getMaxFaces() && count < MAX_FACES; slot++) {
+                if (slot != primary && registry.isActive(slot, timestampNs)
+                        && sampleFace(registry.getFace(slot).getMotion(), timestampNs, count)) {
+                    count++;
+                }
+            }
+        }
+        synchronized (this) {
+            if (count == mFaceCount && equals(mX, mSampleX, count) && equals(mY, mSampleY, count)
+                    && equals(mMouthOpen, mSampleMouthOpen, count)) {
+                return;
+            }
+            int length = count * LANDMARK_COUNT;
+            System.arraycopy(mSampleX, 0, mX, 0, length);
+            System.arraycopy(mSampleY, 0, mY, 0, length);
+            System.arraycopy(mSampleMouthOpen, 0, mMouthOpen, 0, count);
+            Arrays.fill(mMouthOpen, count, MAX_FACES, 0);
+            mFaceCount = count;
+            mVersion++;
+        }
+    }
+
+    // 把一张脸取到第row行，已经消失时返回false
+    private boolean sampleFace(FaceMotionStream stream, long timestampNs, int row) {
+        long last = stream.getLandmarkTimestamp();
+        if (last < 0 || timestampNs - last > LOST_TIMEOUT_NS
+                || !stream.sampleLandmarks(timestampNs, mFaceX, mFaceY)) {
+            return false;
+        }
+        System.arraycopy(mFaceX, 0, mSampleX, row * LANDMARK_COUNT, LANDMARK_COUNT);
+        System.arraycopy(mFaceY, 0, mSampleY, row * LANDMARK_COUNT, LANDMARK_COUNT);
+        mSampleMouthOpen[row] = stream.getMouthOpen();
+        return true;
+    }
+
+    private static boolean equals(float[] block, float[] sample, int faces) {
+        for (int i = 0, n = faces * LANDMARK_COUNT; i < n; i++) {
+            if (block[i] != sample[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(int[] block, int[] sample, int faces) {
+        for (int i = 0; i < faces; i++) {
+            if (block[i] != sample[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 有新数据时打包到out中并返回true，否则不改动out
+     */
+    boolean packIfDirty(ByteBuffer out) {
+        synchronized (this) {
+            if (mVersion == mPackedVersion) {
+                return false;
+            }
+            out.clear();
+            for (int face = 0; face < MAX_FACES; face++) {
+                boolean valid = face < mFaceCount;
+                for (int i = 0; i < LANDMARK_COUNT; i++) {
+                    int index = face * LANDMARK_COUNT + i;
+                    putFixed(out, valid ? mX[index] : 0f);
+                    putFixed(out, valid ? mY[index] : 0f);
+                }
+                out.put((byte) (valid && mMouthOpen[face] != 0 ? 0xFF : 0));
+                out.put((byte) (valid ? 0xFF : 0));
+                out.put((byte) 0);
+                out.put((byte) 0);
+            }
+            out.flip();
+            mPackedVersion = mVersion;
+            return true;
+        }
+    }
+
+    /**
+     * 有新数据时按uniform block的布局打包到out中并返回true，否则不改动out
+     */
+    boolean packBlockIfDirty(FloatBuffer out) {
+        synchronized (this) {
+            if (mVersion == mPackedVersion) {
+                return false;
+            }
+            out.clear();
+            for (int face = 0; face < MAX_FACES; face++) {
+                boolean valid = face < mFaceCount;
+                for (int i = 0; i < LANDMARK_COUNT; i++) {
+                    int index = face * LANDMARK_COUNT + i;
+                    out.put(valid ? mX[index] : 0f);
+                    out.put(valid ? mY[index] : 0f);
+                }
+            }
+            for (int face = 0; face < MAX_FACES; face++) {
+                out.put(face < mFaceCount && mMouthOpen[face] != 0 ? 1f : 0f);
+            }
+            out.flip();
+            mPackedVersion = mVersion;
+            return true;
+        }
+    }
+
+    // 16位定点数，高8位在前，与GLSL中的还原方式对应
+    private static void putFixed(ByteBuffer out, float value) {
+        int fixed = encode(value);
+        out.put((byte) (fixed >> 8));
+        out.put((byte) fixed);
+    }
+
+    static int encode(float value) {
+        float normalized = (value - RANGE_MIN) / RANGE;
+        return Math.round(Math.min(Math.max(normalized, 0f), 1f) * 65535f);
+    }
+
+    static float decode(int fixed) {
+        return fixed / 65535f * RANGE + RANGE_MIN;
+    }
+
+    /**
+     * 在GL线程中调用，需要时上传后把参数纹理绑定到unit上
+     */
+    public void bind(int unit) {
+        EGLContext context = ((EGL10) EGLContext.getEGL()).eglGetCurrentContext();
+        GLStateCache.getInstance().activeTexture(GLES20.GL_TEXTURE0 + unit);
+        if (mTexture == 0 || !context.equals(mTextureContext)) {
+            // 上下文重建后原来的纹理已经不存在
+            int[] textures = new int[1];
+            GLES20.glGenTextures(1, textures, 0);
+            mTexture = textures[0];
+            mTextureContext = context;
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+            synchronized (this) {
+                mPackedVersion = -1;
+            }
+            packIfDirty(mPixels);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, TEXTURE_WIDTH, MAX_FACES, 0,
+                    GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, mPixels);
+            mUploads.incrementAndGet();
+            return;
+        }
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture);
+        if (packIfDirty(mPixels)) {
+            GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, TEXTURE_WIDTH, MAX_FACES,
+                    GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, mPixels);
+            mUploads.incrementAndGet();
+        }
+    }
+
+    /**
+     * 在GL线程中调用，需要时上传后把uniform buffer绑定到BLOCK_BINDING
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public void bindBlock() {
+        EGLContext context = ((EGL10) EGLContext.getEGL()).eglGetCurrentContext();
+        if (mUniformBuffer == 0 || !context.equals(mBufferContext)) {
+            int[] buffers = new int[1];
+            GLES30.glGenBuffers(1, buffers, 0);
+            mUniformBuffer = buffers[0];
+            mBufferContext = context;
+            synchronized (this) {
+                mPackedVersion = -1;
+            }
+            packBlockIfDirty(mBlockData);
+            GLES30.glBindBuffer(GLES30.GL_UNIFORM_BUFFER, mUniformBuffer);
+            GLES30.glBufferData(GLES30.GL_UNIFORM_BUFFER, BLOCK_FLOATS * 4, mBlockData, GLES30.GL_DYNAMIC_DRAW);
+            mUploads.incrementAndGet();
+        } else if (packBlockIfDirty(mBlockData)) {
+            GLES30.glBindBuffer(GLES30.GL_UNIFORM_BUFFER, mUniformBuffer);
+            GLES30.glBufferSubData(GLES30.GL_UNIFORM_BUFFER, 0, BLOCK_FLOATS * 4, mBlockData);
+            mUploads.incrementAndGet();
+        }
+        GLES30.glBindBufferBase(GLES30.GL_UNIFORM_BUFFER, BLOCK_BINDING, mUniformBuffer);
+    }
+
+    /**
+     * 当前上下文能否使用uniform block，要在GL线程调用
+     */
+    public static boolean isBlockSupported() {
+        return EasyGlUtils.getContextMajorVersion() >= 3;
+    }
+
+    /**
+     * 把程序中的uniform block关联到BLOCK_BINDING，程序中没有这个block时返回false
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public static boolean attachBlock(int program) {
+        int index = GLES30.glGetUniformBlockIndex(program, BLOCK_NAME);
+        if (index == GLES30.GL_INVALID_INDEX) {
+            return false;
+        }
+        GLES30.glUniformBlockBinding(program, index, BLOCK_BINDING);
+        return true;
+    }
+
+    // 第face张脸在纹理中的行，对应shader中的uFaceRow
+    public static float getFaceRow(int face) {
+        return (face + 0.5f) / MAX_FACES;
+    }
+
+    /**
+     * 在fragment shader开头的precision声明之后插入{@link #GLSL}
+     */
+    public static String withFaceParams(String fragment) {
+        return insertAfterPrecision(fragment, GLSL);
+    }
+
+    /**
+     * 把GLSL ES 1.00的fragment shader转换成3.00，并在precision声明之后插入{@link #GLSL_ES3}
+     */
+    public static String withFaceParamBlock(String fragment) {
+        String source = fragment.replaceAll("\\bvarying\\b", "in")
+                .replaceAll("\\btexture2D\\b", "texture")
+                .replaceAll("\\bgl_FragColor\\b", "fragColor");
+        return "#version 300 es\n" + insertAfterPrecision(source, "out vec4 fragColor;\n" + GLSL_ES3);
+    }
+
+    /**
+     * 把GLSL ES 1.00的vertex shader转换成3.00，与withFaceParamBlock的fragment shader一起链接
+     */
+    public static String toVertexEs3(String vertex) {
+        return "#version 300 es\n" + vertex.replaceAll("\\battribute\\b", "in")
+                .replaceAll("\\bvarying\\b", "out");
+    }
+
+    private static String insertAfterPrecision(String fragment, String declarations) {
+        int insert = 0;
+        if (fragment.trim().startsWith("precision")) {
+            insert = fragment.indexOf(';') + 1;
+        }
+        return fragment.substring(0, insert) + "\n" + declarations + fragment.substring(insert);
+    }
+
+    public long getUploadCount() {
+        return mUploads.get();
+    }
+}
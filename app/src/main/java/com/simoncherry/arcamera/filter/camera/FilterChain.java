@@ -0,0 +1,298 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 滤镜链，保存为不可变的快照，每次修改生成新快照并用一次CAS替换，任意线程都可以修改，不加锁。
+ * 绘制线程每帧调用sync取当前快照，与上次用过的快照比较，新加入的回调onAttach（创建GL资源），
+ * 移除的回调onDetach（释放GL资源），所以GL资源的创建和释放都在绘制线程中进行。
+ * 同一个元素在链中只能出现一次，按对象比较。
+ */
+public class FilterChain<T> {
+
+    /**
+     * 在绘制线程中回调
+     */
+    public interface Listener<T> {
+        void onAttach(T item);
+
+        void onDetach(T item);
+    }
+
+    /**
+     * 某一时刻的滤镜链，不会再改变
+     */
+    public static final class Snapshot<T> {
+        private final Object[] mItems;
+        private final long mVersion;
+
+        Snapshot(Object[] items, long version) {
+            mItems = items;
+            mVersion = version;
+        }
+
+        public int size() {
+            return mItems.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T) mItems[index];
+        }
+
+        public T getLast() {
+            return mItems.length == 0 ? null : get(mItems.length - 1);
+        }
+
+        public long getVersion() {
+            return mVersion;
+        }
+
+        int indexOf(Object item) {
+            return FilterChain.indexOf(mItems, item);
+        }
+    }
+
+    // 一次修改，冲突时会重新执行，只能根据current计算
+    private abstract static class Edit {
+        // 返回null表示不修改
+        abstract Object[] apply(Object[] current);
+    }
+
+    private final AtomicReference<Snapshot<T>> mSnapshot =
+            new AtomicReference<>(new Snapshot<T>(new Object[0], 0));
+
+    // 以下只在绘制线程中使用
+    private Snapshot<T> mApplied;
+    private final Set<Object> mAttached = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+    public Snapshot<T> getSnapshot() {
+        return mSnapshot.get();
+    }
+
+    public int size() {
+        return mSnapshot.get().size();
+    }
+
+    public T getLast() {
+        return mSnapshot.get().getLast();
+    }
+
+    private boolean commit(Edit edit) {
+        while (true) {
+            Snapshot<T> current = mSnapshot.get();
+            Object[] items = edit.apply(current.mItems);
+            if (items == null) {
+                return false;
+            }
+            if (mSnapshot.compareAndSet(current, new Snapshot<T>(items, current.mVersion + 1))) {
+                return true;
+            }
+        }
+    }
+
+    private static void checkNew(Object[] current, Object item) {
+        if (item == null) {
+            throw new NullPointerException("filter is null");
+        }
+        if (indexOf(current, item) >= 0) {
+            throw new IllegalArgumentException("filter already in chain: " + item);
+        }
+    }
+
+    private static Object[] insert(Object[] current, int index, Object item) {
+        Object[] items = new Object[current.length + 1];
+        System.arraycopy(current, 0, items, 0, index);
+        items[index] = item;
+        System.arraycopy(current, index, items, index + 1, current.length - index);
+        return items;
+    }
+
+    private static Object[] delete(Object[] current, int index) {
+        Object[] items = new Object[current.length - 1];
+        System.arraycopy(current, 0, items, 0, index);
+        System.arraycopy(current, index + 1, items, index, current.length - index - 1);
+        return items;
+    }
+
+    public void add(T item) {
+        add(-1, item);
+    }
+
+    /**
+     * @param index 插入的位置，小于0或超出范围时加到末尾
+     */
+    public void add(final int index, final T item) {
+        commit(new Edit() {
+            @Override
+            Object[] apply(Object[] current) {
+                checkNew(current, item);
+                int i = index < 0 || index > current.length ? current.length : index;
+                return insert(current, i, item);
+            }
+        });
+    }
+
+    /**
+     * 用newItem替换oldItem，位置不变。oldItem不在链中时返回false
+     */
+    public boolean replace(final T oldItem, final T newItem) {
+        return commit(new Edit() {
+            @Override
+            Object[] apply(Object[] current) {
+                int index = indexOf(current, oldItem);
+                if (index < 0) {
+                    return null;
+                }
+                if (oldItem != newItem) {
+                    checkNew(current, newItem);
+                }
+                Object[] items = current.clone();
+                items[index] = newItem;
+                return items;
+            }
+        });
+    }
+
+    /**
+     * 把item移动到index，item不在链中时返回false
+     */
+    public boolean move(final T item, final int index) {
+        return commit(new Edit() {
+            @Override
+            Object[] apply(Object[] current) {
+                int from = indexOf(current, item);
+                if (from < 0) {
+                    return null;
+                }
+                int to = Math.min(Math.max(index, 0), current.length - 1);
+                if (from == to) {
+                    return null;
+                }
+                return insert(delete(current, from), to, item);
+            }
+        });
+    }
+
+    public boolean remove(final T item) {
+        return commit(new Edit() {
+            @Override
+            Object[] apply(Object[] current) {
+                int index = indexOf(current, item);
+                return index < 0 ? null : delete(current, index);
+            }
+        });
+    }
+
+    /**
+     * 移除第index个，超出范围时返回null
+     */
+    public T remove(final int index) {
+        final List<T> removed = new ArrayList<>(1);
+        commit(new Edit() {
+            @Override
+            @SuppressWarnings("unchecked")
+            Object[] apply(Object[] current) {
+                removed.clear();
+                if (index < 0 || index >= current.length) {
+                    return null;
+                }
+                removed.add((T) current[index]);
+                return delete(current, index);
+            }
+        });
+        return removed.isEmpty() ? null : removed.get(0);
+    }
+
+    /**
+     * 一次替换整个链，绘制线程不会看到中间状态
+     */
+    public void setAll(final List<? extends T> items) {
+        final Object[] array = items.toArray();
+        Set<Object> unique = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (Object item : array) {
+            if (item == null) {
+                throw new NullPointerException("filter is null");
+            }
+            if (!unique.add(item)) {
+                throw new IllegalArgumentException("filter already in chain: " + item);
+            }
+        }
+        commit(new Edit() {
+            @Override
+            Object[] apply(Object[] current) {
+                return array.clone();
+            }
+        });
+    }
+
+    public void clear() {
+        commit(new Edit() {
+            @Override
+            Object[] apply(Object[] current) {
+                return current.length == 0 ? null : new Object[0];
+            }
+        });
+    }
+
+    private static int indexOf(Object[] items, Object item) {
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在绘制线程中调用，快照变化时先回调移除的，再回调加入的，返回这一帧使用的快照
+     */
+    @SuppressWarnings("unchecked")
+    public Snapshot<T> sync(Listener<T> listener) {
+        Snapshot<T> latest = mSnapshot.get();
+        if (latest == mApplied) {
+            return latest;
+        }
+        List<Object> detached = null;
+        for (Object item : mAttached) {
+            if (latest.indexOf(item) < 0) {
+                if (detached == null) {
+                    detached = new ArrayList<>();
+                }
+                detached.add(item);
+            }
+        }
+        if (detached != null) {
+            for (Object item : detached) {
+                mAttached.remove(item);
+                listener.onDetach((T) item);
+            }
+        }
+        for (int i = 0; i < latest.size(); i++) {
+            T item = latest.get(i);
+            if (mAttached.add(item)) {
+                listener.onAttach(item);
+            }
+        }
+        mApplied = latest;
+        return latest;
+    }
+
+    /**
+     * 已经onAttach、还没有onDetach的项，在绘制线程中调用，例如尺寸变化时逐个设置
+     */
+    public List<T> getAttached() {
+        List<T> items = new ArrayList<>(mAttached.size());
+        for (Object item : mAttached) {
+            @SuppressWarnings("unchecked")
+            T t = (T) item;
+            items.add(t);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,49 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import android.content.res.Resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GroupFilter中连续的多个ColorStage合并成的一次绘制，程序由ColorChainCompiler生成，不再使用时需要release
+ */
+public class FusedColorFilter extends AFilter {
+
+    private final ColorChainCompiler mCompiler;
+    private final List<ColorStage> mStages;
+
+    public FusedColorFilter(Resources mRes, ColorChainCompiler compiler, List<ColorStage> stages) {
+        super(mRes);
+        mCompiler = compiler;
+        mStages = new ArrayList<>(stages);
+    }
+
+    public boolean isValid() {
+        return mProgram != 0;
+    }
+
+    public int getStageCount() {
+        return mStages.size();
+    }
+
+    @Override
+    protected void onCreate() {
+        setProgram(mCompiler.getProgram(mStages));
+        for (int i = 0; i < mStages.size(); i++) {
+            mStages.get(i).onStageCreated(mProgram, ColorChainCompiler.getPrefix(i));
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height) {
+    }
+
+    @Override
+    protected void onSetExpandData() {
+        super.onSetExpandData();
+        for (int i = 0; i < mStages.size(); i++) {
+            mStages.get(i).onSetStageData();
+        }
+    }
+}
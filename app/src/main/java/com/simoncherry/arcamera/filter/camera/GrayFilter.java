@@ -6,7 +6,7 @@ import android.content.res.Resources;
  * Created by Simon on 2017/7/6.
  */
 
-public class GrayFilter extends AFilter {
+public class GrayFilter extends AFilter implements ColorStage {
 
     public GrayFilter(Resources mRes) {
         super(mRes);
@@ -21,4 +21,20 @@ public class GrayFilter extends AFilter {
     @Override
     protected void onSizeChanged(int width, int height) {
     }
+
+    @Override
+    public String getColorStage() {
+        return "vec4 $apply(vec4 color) {\n"
+                + "    float c = color.r * 0.3 + color.g * 0.59 + color.b * 0.11;\n"
+                + "    return vec4(c, c, c, color.a);\n"
+                + "}";
+    }
+
+    @Override
+    public void onStageCreated(int program, String prefix) {
+    }
+
+    @Override
+    public void onSetStageData() {
+    }
 }
@@ -7,8 +7,6 @@ import com.simoncherry.arcamera.gl.MatrixUtils;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Created by Simon on 2017/7/5.
@@ -16,88 +14,204 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class GroupFilter extends AFilter{
 
-    private Queue<AFilter> mFilterQueue;
-    private List<AFilter> mFilters;
+    // 任意线程修改，每次修改是一次原子替换；GL线程每帧取快照，创建新加入的Filter并释放移除的
+    private final FilterChain<AFilter> mChain;
+    private final FilterChain.Listener<AFilter> mChainListener;
+    private FilterChain.Snapshot<AFilter> mPassesSnapshot;  // 生成mPasses时的快照
+    private List<AFilter> mPasses;          // 实际绘制的每一遍，相邻的ColorStage合并为一遍
+    private boolean isPassesDirty = true;
+    private ColorChainCompiler mCompiler;
     private int width = 0, height = 0;
     private int size = 0;
 
     public GroupFilter(Resources res) {
         super(res);
-        mFilters = new ArrayList<>();
-        mFilterQueue = new ConcurrentLinkedQueue<>();
+        mPasses = new ArrayList<>();
+        mCompiler = new ColorChainCompiler(res);
+        mChain = new FilterChain<>();
+        mChainListener = new FilterChain.Listener<AFilter>() {
+            @Override
+            public void onAttach(AFilter filter) {
+                //绘制到frameBuffer上和绘制到屏幕上的纹理坐标是不一样的
+                //Android屏幕相对GL世界的纹理Y轴翻转
+                MatrixUtils.flip(filter.getMatrix(), false, true);
+                filter.create();
+                filter.setSize(width, height);
+            }
+
+            @Override
+            public void onDetach(AFilter filter) {
+                filter.release();
+                // 恢复原来的矩阵，之后可以再加入
+                MatrixUtils.flip(filter.getMatrix(), false, true);
+            }
+        };
     }
 
     @Override
     protected void initBuffer() {
     }
 
-    public void addFilter(final AFilter filter){
-        //绘制到frameBuffer上和绘制到屏幕上的纹理坐标是不一样的
-        //Android屏幕相对GL世界的纹理Y轴翻转
-        MatrixUtils.flip(filter.getMatrix(), false, true);
-        mFilterQueue.add(filter);
+    public void addFilter(AFilter filter){
+        mChain.add(filter);
+    }
+
+    /**
+     * 插入到index的位置，超出范围时加到末尾
+     */
+    public void addFilter(int index, AFilter filter){
+        mChain.add(index, filter);
+    }
+
+    /**
+     * 用newFilter替换oldFilter，同一帧内切换，不会有没有滤镜的一帧
+     */
+    public boolean replaceFilter(AFilter oldFilter, AFilter newFilter){
+        return mChain.replace(oldFilter, newFilter);
+    }
+
+    /**
+     * 一次替换全部的Filter
+     */
+    public void setFilters(List<? extends AFilter> filters){
+        mChain.setAll(filters);
+    }
+
+    public boolean moveFilter(AFilter filter, int index){
+        return mChain.move(filter, index);
     }
 
     public AFilter getLastFilter() {
-        return mFilters.size() <= 0 ? null : mFilters.get(mFilters.size()-1);
+        return mChain.getLast();
+    }
+
+    public int getFilterCount(){
+        return mChain.size();
     }
 
     public boolean removeFilter(AFilter filter){
-        boolean b = mFilters.remove(filter);
-        if(b){
-            size--;
-        }
-        return b;
+        return mChain.remove(filter);
     }
 
     public AFilter removeFilter(int index){
-        AFilter f = mFilters.remove(index);
-        if(f != null){
-            size--;
-        }
-        return f;
+        return mChain.remove(index);
     }
 
     public void clearAll(){
-        mFilterQueue.clear();
-        mFilters.clear();
-        size = 0;
+        mChain.clear();
     }
 
     public void draw(){
-        updateFilter();
+        FilterChain.Snapshot<AFilter> snapshot = updateFilter();
+        if(isPassesDirty || snapshot != mPassesSnapshot){
+            buildPasses(snapshot);
+        }
         textureIndex = 0;
         if(size > 0){
-            for (AFilter filter : mFilters){
-                GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, fFrame[0]);
+            // 深度缓冲在创建时已经挂上，每一遍只需要切换颜色纹理
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, fFrame[0]);
+            GLES20.glViewport(0, 0, width, height);
+            for (int i = 0; i < mPasses.size(); i++){
+                AFilter filter = mPasses.get(i);
                 GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
                         GLES20.GL_TEXTURE_2D, fTexture[textureIndex % 2], 0);
-                GLES20.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT,
-                        GLES20.GL_RENDERBUFFER, fRender[0]);
-                GLES20.glViewport(0, 0, width, height);
                 if(textureIndex == 0){
                     filter.setTextureId(getTextureId());
                 }else{
                     filter.setTextureId(fTexture[(textureIndex - 1) % 2]);
                 }
                 filter.draw();
-                unBindFrame();
                 textureIndex++;
             }
+            unBindFrame();
+        }
+
+    }
+
+    //相邻的两个以上ColorStage合并成一个FusedColorFilter，其他Filter各自一遍
+    private void buildPasses(FilterChain.Snapshot<AFilter> snapshot){
+        releaseFusedPasses();
+        mPasses.clear();
+        List<ColorStage> run = new ArrayList<>();
+        AFilter runFirst = null;
+        for (int i = 0; i <= snapshot.size(); i++){
+            AFilter filter = i < snapshot.size() ? snapshot.get(i) : null;
+            if(filter instanceof ColorStage){
+                if(run.isEmpty()){
+                    runFirst = filter;
+                }
+                run.add((ColorStage) filter);
+                continue;
+            }
+            if(run.size() == 1){
+                mPasses.add(runFirst);
+            }else if(run.size() > 1){
+                FusedColorFilter fused = new FusedColorFilter(mRes, mCompiler, run);
+                fused.setMatrix(runFirst.getMatrix());
+                fused.create();
+                fused.setSize(width, height);
+                if(fused.isValid()){
+                    mPasses.add(fused);
+                }else{
+                    fused.release();
+                    // 合并后的shader编译失败时仍逐个绘制
+                    for (ColorStage stage : run){
+                        mPasses.add((AFilter) stage);
+                    }
+                }
+            }
+            run.clear();
+            if(filter != null){
+                mPasses.add(filter);
+            }
         }
+        mPassesSnapshot = snapshot;
+        isPassesDirty = false;
+    }
 
+    private void releaseFusedPasses(){
+        for (AFilter pass : mPasses){
+            if(pass instanceof FusedColorFilter){
+                pass.release();
+            }
+        }
     }
 
-    private void updateFilter(){
-        AFilter f;
-        while ((f = mFilterQueue.poll()) != null){
-            f.create();
-            f.setSize(width, height);
-            mFilters.add(f);
-            size++;
+    @Override
+    public void release(){
+        super.release();
+        releaseFusedPasses();
+        mPasses.clear();
+        mPassesSnapshot = null;
+        isPassesDirty = true;
+        mChain.clear();
+        updateFilter();
+        if(fFrame[0] != 0){
+            deleteFrameBuffer();
         }
     }
 
+    public int getPassCount(){
+        return mPasses.size();
+    }
+
+    // 各遍开销之和，合并后的ColorStage只算一遍
+    @Override
+    public float getCostHint(){
+        float cost = 0;
+        for (AFilter pass : mPasses){
+            cost += pass.getCostHint();
+        }
+        return cost;
+    }
+
+    // 应用最新的快照：释放移除的Filter，创建新加入的
+    private FilterChain.Snapshot<AFilter> updateFilter(){
+        FilterChain.Snapshot<AFilter> snapshot = mChain.sync(mChainListener);
+        size = snapshot.size();
+        return snapshot;
+    }
+
     @Override
     public int getOutputTexture(){
         return size == 0 ? getTextureId() : fTexture[(textureIndex - 1) % 2];
@@ -111,7 +225,14 @@ public class GroupFilter extends AFilter{
     protected void onSizeChanged(int width, int height) {
         this.width = width;
         this.height = height;
+        for (AFilter filter : mChain.getAttached()){
+            filter.setSize(width, height);
+        }
         updateFilter();
+        isPassesDirty = true;
+        if(fFrame[0] != 0){
+            deleteFrameBuffer();
+        }
         createFrameBuffer();
     }
 
@@ -166,6 +287,7 @@ public class GroupFilter extends AFilter{
     private void deleteFrameBuffer() {
         GLES20.glDeleteRenderbuffers(1, fRender, 0);
         GLES20.glDeleteFramebuffers(1, fFrame, 0);
-        GLES20.glDeleteTextures(1, fTexture, 0);
+        GLES20.glDeleteTextures(fTextureSize, fTexture, 0);
+        fFrame[0] = 0;
     }
 }
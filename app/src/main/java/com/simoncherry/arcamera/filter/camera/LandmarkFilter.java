@@ -3,18 +3,21 @@ package com.simoncherry.arcamera.filter.camera;
 import android.content.res.Resources;
 import android.opengl.GLES20;
 
+import com.simoncherry.arcamera.gl.ProgramCache;
+import com.simoncherry.arcamera.track.FaceMotionStream;
+
 /**
  * Created by Simon on 2017/7/6.
  */
 
 public class LandmarkFilter extends AFilter {
 
-    private int gLandmarkX;
-    private int gLandmarkY;
-    private int gMouthOpen;
-    private float[] uLandmarkX;
-    private float[] uLandmarkY;
-    private int isMouthOpen = 0;
+    // 关键点和张嘴标记都从共用的FaceParamBlock纹理中读取，这里只绑定纹理；GLES3时改为绑定uniform buffer
+    private int gFaceParams;
+    private int gFaceRow;
+    private int gFaceIndex;
+    private boolean isFaceBlock = false;
+    private int mFaceIndex = 0;
 
     long START_TIME = System.currentTimeMillis();
 
@@ -24,38 +27,76 @@ public class LandmarkFilter extends AFilter {
 
     public LandmarkFilter(Resources mRes) {
         super(mRes);
-        uLandmarkX = new float[106];
-        uLandmarkY = new float[106];
     }
 
     @Override
     protected void onCreate() {
-        createProgramByAssetsFile("shader/base_vertex.sh",
-                "shader/test/landmark_fragment.frag");
+        createLandmarkProgram("shader/test/landmark_fragment.frag");
+    }
+
+    /**
+     * 使用base_vertex.sh和插入了人脸参数声明的fragment shader创建程序。
+     * GLES3的上下文中先尝试转换成GLSL ES 3.00、使用uniform block的版本，编译失败时退回纹理的版本
+     */
+    protected final void createLandmarkProgram(String fragment) {
+        ProgramCache cache = ProgramCache.getInstance();
+        String vertexSource = cache.loadAsset(mRes, "shader/base_vertex.sh");
+        String fragmentSource = cache.loadAsset(mRes, fragment);
+        isFaceBlock = false;
+        if (FaceParamBlock.isBlockSupported()) {
+            createProgram(FaceParamBlock.toVertexEs3(vertexSource),
+                    FaceParamBlock.withFaceParamBlock(fragmentSource));
+            isFaceBlock = mProgram != 0 && FaceParamBlock.attachBlock(mProgram);
+        }
+        if (isFaceBlock) {
+            gFaceIndex = getUniformLocation("uFaceIndex");
+            return;
+        }
+        createProgram(vertexSource, FaceParamBlock.withFaceParams(fragmentSource));
 
-        gLandmarkX = GLES20.glGetUniformLocation(mProgram, "uLandmarkX");
-        gLandmarkY = GLES20.glGetUniformLocation(mProgram, "uLandmarkY");
-        gMouthOpen = GLES20.glGetUniformLocation(mProgram, "uMouthOpen");
+        gFaceParams = getUniformLocation("uFaceParams");
+        gFaceRow = getUniformLocation("uFaceRow");
     }
 
     @Override
     protected void onSizeChanged(int width, int height) {
     }
 
+    /**
+     * 写入共用的FaceParamBlock，同一链中的其他关键点滤镜也会使用
+     */
     public void setLandmarks(float[] landmarkX, float[] landmarkY) {
-        uLandmarkX = landmarkX;
-        uLandmarkY = landmarkY;
+        FaceParamBlock.getInstance().setLandmarks(mFaceIndex, landmarkX, landmarkY);
     }
 
     public void setMouthOpen(int isOpen) {
-        isMouthOpen = isOpen;
+        FaceParamBlock.getInstance().setMouthOpen(mFaceIndex, isOpen);
+    }
+
+    public void setFaceMotionStream(FaceMotionStream stream) {
+        FaceParamBlock.getInstance().setFaceMotionStream(stream);
+    }
+
+    // 绘制第几张脸，默认第0张（主人脸），其他的人脸由FaceParamBlock从FaceTrackRegistry依次写入
+    public void setFaceIndex(int face) {
+        mFaceIndex = Math.min(Math.max(face, 0), FaceParamBlock.MAX_FACES - 1);
+    }
+
+    public int getFaceIndex() {
+        return mFaceIndex;
     }
 
     @Override
     protected void onSetExpandData() {
         super.onSetExpandData();
-        GLES20.glUniform1fv(gLandmarkX, uLandmarkX.length, uLandmarkX, 0);
-        GLES20.glUniform1fv(gLandmarkY, uLandmarkY.length, uLandmarkY, 0);
-        GLES20.glUniform1i(gMouthOpen, isMouthOpen);
+        if (isFaceBlock) {
+            FaceParamBlock.getInstance().bindBlock();
+            GLES20.glUniform1i(gFaceIndex, mFaceIndex);
+            return;
+        }
+        int unit = getTextureType() + 1;
+        FaceParamBlock.getInstance().bind(unit);
+        GLES20.glUniform1i(gFaceParams, unit);
+        GLES20.glUniform1f(gFaceRow, FaceParamBlock.getFaceRow(mFaceIndex));
     }
 }
@@ -24,8 +24,8 @@ public class MagFilter extends AFilter {
         createProgramByAssetsFile("shader/base_vertex.sh",
                 "shader/color/mag_fragment.frag");
 
-        glHUxy = GLES20.glGetUniformLocation(mProgram, "uXY");
-        gScale = GLES20.glGetUniformLocation(mProgram, "uScale");
+        glHUxy = getUniformLocation("uXY");
+        gScale = getUniformLocation("uScale");
     }
 
     @Override
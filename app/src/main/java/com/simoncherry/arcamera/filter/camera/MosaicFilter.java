@@ -23,7 +23,7 @@ public class MosaicFilter extends AFilter {
         createProgramByAssetsFile("shader/base_vertex.sh",
                 "shader/color/mosaic_fragment.frag");
 
-        gMosaicSize = GLES20.glGetUniformLocation(mProgram, "uMosaicSize");
+        gMosaicSize = getUniformLocation("uMosaicSize");
     }
 
     @Override
@@ -6,7 +6,7 @@ import android.content.res.Resources;
  * Created by Simon on 2017/7/6.
  */
 
-public class NegativeFilter extends AFilter {
+public class NegativeFilter extends AFilter implements ColorStage {
 
     public NegativeFilter(Resources mRes) {
         super(mRes);
@@ -21,4 +21,19 @@ public class NegativeFilter extends AFilter {
     @Override
     protected void onSizeChanged(int width, int height) {
     }
+
+    @Override
+    public String getColorStage() {
+        return "vec4 $apply(vec4 color) {\n"
+                + "    return vec4(1.0 - color.r, 1.0 - color.g, 1.0 - color.b, color.a);\n"
+                + "}";
+    }
+
+    @Override
+    public void onStageCreated(int program, String prefix) {
+    }
+
+    @Override
+    public void onSetStageData() {
+    }
 }
@@ -4,6 +4,8 @@ import android.content.res.Resources;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 
+import org.rajawali3d.util.GLStateCache;
+
 import java.util.Arrays;
 
 /**
@@ -22,7 +24,7 @@ public class OesFilter extends AFilter {
     @Override
     protected void onCreate() {
         createProgramByAssetsFile("shader/oes_base_vertex.sh", "shader/oes_base_fragment.sh");
-        mHCoordMatrix = GLES20.glGetUniformLocation(mProgram, "vCoordMatrix");
+        mHCoordMatrix = getUniformLocation("vCoordMatrix");
     }
 
     public void setCoordMatrix(float[] matrix){
@@ -37,7 +39,7 @@ public class OesFilter extends AFilter {
 
     @Override
     protected void onBindTexture() {
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + getTextureType());
+        GLStateCache.getInstance().activeTexture(GLES20.GL_TEXTURE0 + getTextureType());
         GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES,getTextureId());
         GLES20.glUniform1i(mHTexture,getTextureType());
     }
@@ -0,0 +1,326 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import android.content.res.Resources;
+import android.opengl.GLES20;
+
+import com.simoncherry.arcamera.gl.MatrixUtils;
+import com.simoncherry.arcamera.gl.ProgramCache;
+
+import org.rajawali3d.util.GLStateCache;
+
+/**
+ * 缩小分辨率、横纵两遍可分离的模糊，在GroupFilter中作为一个Filter使用。
+ * 先把输入缩小到BlurBudget选定的1/2或1/4，在自己的FrameBuffer中横向、纵向各模糊一遍，
+ * 最后由子类的合成shader在全分辨率下把原图（vTexture）和模糊结果（uBlurTexture）合成。
+ * 质量用每像素的采样预算表示，不再直接指定迭代次数。
+ */
+public abstract class SeparableBlurFilter extends AFilter {
+
+    private static final String VERTEX = "shader/base_vertex.sh";
+    private static final int REFERENCE_WIDTH = 720;   // sigma按这个宽度给出，其他尺寸等比例缩放
+
+    private final boolean isBilateral;
+    private final int mCompositeFetches;
+    private volatile float mSigma;
+    private volatile float mBudget;
+    private volatile boolean isPlanDirty = true;
+    private BlurBudget mPlan;
+
+    private final PassFilter mDownPass;
+    private final PassFilter mHPass;
+    private final PassFilter mVPass;
+    private volatile float mRange = 4.0f;
+
+    private int mWidth = 0, mHeight = 0;
+    private int mLowWidth = 0, mLowHeight = 0;
+    private int[] mFrame = new int[1];
+    private int[] mTextures = new int[2];
+    private final int[] mSavedFrame = new int[1];
+    private final int[] mSavedViewport = new int[4];
+    private int gHBlurTexture;
+
+    /**
+     * @param sigma 720宽时的高斯sigma，单位为像素
+     * @param budget 每像素的纹理采样预算
+     * @param compositeFetches 合成shader每像素的采样次数，计入预算
+     * @param bilateral 模糊时是否按颜色差降低权重
+     */
+    public SeparableBlurFilter(Resources res, float sigma, float budget, int compositeFetches,
+                               boolean bilateral) {
+        super(res);
+        mSigma = sigma;
+        mBudget = budget;
+        mCompositeFetches = compositeFetches;
+        isBilateral = bilateral;
+        mDownPass = new PassFilter(res);
+        mHPass = new PassFilter(res);
+        mVPass = new PassFilter(res);
+    }
+
+    /**
+     * 合成shader的assets路径，需要声明uniform sampler2D uBlurTexture
+     */
+    protected abstract String getCompositeShader();
+
+    /**
+     * 设置每个像素允许的纹理采样次数，可以在任意线程调用，下一帧生效
+     */
+    public void setBudget(float budget) {
+        mBudget = budget;
+        isPlanDirty = true;
+    }
+
+    public float getBudget() {
+        return mBudget;
+    }
+
+    public void setSigma(float sigma) {
+        mSigma = sigma;
+        isPlanDirty = true;
+    }
+
+    // 双边模糊的颜色差系数，越大越保留边缘
+    public void setRange(float range) {
+        mRange = range;
+        isPlanDirty = true;
+    }
+
+    /**
+     * 当前选用的方案，尺寸确定之前为null
+     */
+    public BlurBudget getPlan() {
+        return mPlan;
+    }
+
+    public int getPassCount() {
+        return mPlan == null ? 1 : mPlan.getPassCount();
+    }
+
+    /**
+     * 缩小用的shader，scale为2时一次双线性采样正好是2x2的平均，为4时4次采样覆盖4x4
+     */
+    public static String buildDownsampleShader(int scale) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("precision mediump float;\n");
+        sb.append("varying vec2 textureCoordinate;\n");
+        sb.append("uniform sampler2D vTexture;\n");
+        sb.append("uniform vec2 uStep;\n");
+        sb.append("void main() {\n");
+        if (scale == 4) {
+            sb.append("    vec4 sum = texture2D(vTexture, textureCoordinate + vec2(-uStep.x, -uStep.y));\n");
+            sb.append("    sum += texture2D(vTexture, textureCoordinate + vec2(uStep.x, -uStep.y));\n");
+            sb.append("    sum += texture2D(vTexture, textureCoordinate + vec2(-uStep.x, uStep.y));\n");
+            sb.append("    sum += texture2D(vTexture, textureCoordinate + vec2(uStep.x, uStep.y));\n");
+            sb.append("    gl_FragColor = sum * 0.25;\n");
+        } else {
+            sb.append("    gl_FragColor = texture2D(vTexture, textureCoordinate);\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    @Override
+    protected void onCreate() {
+        createProgramByAssetsFile(VERTEX, getCompositeShader());
+        gHBlurTexture = getUniformLocation("uBlurTexture");
+        // 新的上下文中重新创建各遍的程序和FrameBuffer
+        mDownPass.release();
+        mHPass.release();
+        mVPass.release();
+        mFrame[0] = 0;
+        mPlan = null;
+        isPlanDirty = true;
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height) {
+        if (mWidth != width || mHeight != height) {
+            mWidth = width;
+            mHeight = height;
+            isPlanDirty = true;
+        }
+    }
+
+    @Override
+    public void draw() {
+        if (isPlanDirty) {
+            updatePlan();
+        }
+        if (mPlan == null) {
+            super.draw();
+            return;
+        }
+        // 在GroupFilter的FrameBuffer中绘制，画完模糊后恢复
+        GLES20.glGetIntegerv(GLES20.GL_FRAMEBUFFER_BINDING, mSavedFrame, 0);
+        GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, mSavedViewport, 0);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFrame[0]);
+        GLES20.glViewport(0, 0, mLowWidth, mLowHeight);
+
+        int source = getTextureId();
+        if (mPlan.getScale() > 1) {
+            mDownPass.setStep(1f / mWidth, 1f / mHeight);
+            drawPass(mDownPass, source, mTextures[0]);
+            source = mTextures[0];
+        }
+        drawPass(mHPass, source, mTextures[1]);
+        drawPass(mVPass, mTextures[1], mTextures[0]);
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mSavedFrame[0]);
+        GLES20.glViewport(mSavedViewport[0], mSavedViewport[1], mSavedViewport[2], mSavedViewport[3]);
+        super.draw();
+    }
+
+    // 包括缩小和横纵两遍模糊，按当前分辨率下选定的方案计算
+    @Override
+    public float getCostHint() {
+        BlurBudget plan = mPlan;
+        return plan != null ? plan.getCost() : super.getCostHint();
+    }
+
+    private void drawPass(PassFilter pass, int source, int target) {
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, target, 0);
+        pass.setTextureId(source);
+        pass.draw();
+    }
+
+    @Override
+    protected void onBindTexture() {
+        super.onBindTexture();
+        GLStateCache.getInstance().activeTexture(GLES20.GL_TEXTURE1 + getTextureType());
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mPlan == null ? getTextureId() : mTextures[0]);
+        GLES20.glUniform1i(gHBlurTexture, getTextureType() + 1);
+        GLStateCache.getInstance().activeTexture(GLES20.GL_TEXTURE0);
+    }
+
+    private void updatePlan() {
+        isPlanDirty = false;
+        // 没有预算时不模糊，合成时uBlurTexture就是原图
+        if (mWidth <= 0 || mHeight <= 0 || mBudget <= 0) {
+            mPlan = null;
+            return;
+        }
+        float sigma = mSigma * mWidth / REFERENCE_WIDTH;
+        BlurBudget plan = BlurBudget.choose(sigma, mBudget, mCompositeFetches);
+        BlurKernel kernel = plan.getKernel();
+        int lowWidth = Math.max(1, mWidth / plan.getScale());
+        int lowHeight = Math.max(1, mHeight / plan.getScale());
+        if (mFrame[0] == 0 || lowWidth != mLowWidth || lowHeight != mLowHeight) {
+            deleteFrameBuffer();
+            mLowWidth = lowWidth;
+            mLowHeight = lowHeight;
+            createFrameBuffer();
+        }
+        if (plan.getScale() > 1 && (mPlan == null || mPlan.getScale() != plan.getScale())) {
+            mDownPass.setFragment(buildDownsampleShader(plan.getScale()));
+        }
+        String fragment = kernel.buildFragmentShader(isBilateral);
+        mHPass.setFragment(fragment);
+        mVPass.setFragment(fragment);
+        mHPass.setStep(1f / mLowWidth, 0);
+        mVPass.setStep(0, 1f / mLowHeight);
+        mHPass.setRange(mRange);
+        mVPass.setRange(mRange);
+        mPlan = plan;
+    }
+
+    private void createFrameBuffer() {
+        GLES20.glGenFramebuffers(1, mFrame, 0);
+        GLES20.glGenTextures(mTextures.length, mTextures, 0);
+        for (int texture : mTextures) {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, mLowWidth, mLowHeight,
+                    0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+            // 合并采样依赖线性插值，缩小和放大都用LINEAR
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        }
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+    }
+
+    private void deleteFrameBuffer() {
+        if (mFrame[0] != 0) {
+            GLES20.glDeleteFramebuffers(1, mFrame, 0);
+            GLES20.glDeleteTextures(mTextures.length, mTextures, 0);
+            mFrame[0] = 0;
+        }
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        mDownPass.release();
+        mHPass.release();
+        mVPass.release();
+        deleteFrameBuffer();
+        mPlan = null;
+        isPlanDirty = true;
+    }
+
+    /**
+     * 模糊中的一遍，shader由代码生成，程序经ProgramCache共享
+     */
+    private static class PassFilter extends AFilter {
+
+        private String mFragment;
+        private int gHStep;
+        private int gHRange;
+        private float mStepX, mStepY;
+        private float mRange;
+
+        PassFilter(Resources res) {
+            super(res);
+            // 与GroupFilter中的Filter一样翻转Y轴，模糊结果与输入方向一致
+            MatrixUtils.flip(getMatrix(), false, true);
+        }
+
+        void setFragment(String fragment) {
+            if (!fragment.equals(mFragment)) {
+                mFragment = fragment;
+                create();
+            }
+        }
+
+        void setStep(float x, float y) {
+            mStepX = x;
+            mStepY = y;
+        }
+
+        void setRange(float range) {
+            mRange = range;
+        }
+
+        @Override
+        protected void onCreate() {
+            createProgram(ProgramCache.getInstance().loadAsset(mRes, VERTEX), mFragment);
+            gHStep = getUniformLocation("uStep");
+            gHRange = getUniformLocation("uRange");
+        }
+
+        @Override
+        protected void onSizeChanged(int width, int height) {
+        }
+
+        @Override
+        protected void onClear() {
+            // 全屏绘制会覆盖每个像素，不需要清屏
+        }
+
+        @Override
+        protected void onSetExpandData() {
+            super.onSetExpandData();
+            GLES20.glUniform2f(gHStep, mStepX, mStepY);
+            if (gHRange >= 0) {
+                GLES20.glUniform1f(gHRange, mRange);
+            }
+        }
+
+        @Override
+        public void release() {
+            super.release();
+            mFragment = null;
+        }
+    }
+}
@@ -7,6 +7,8 @@ import android.util.Log;
 
 import com.simoncherry.arcamera.gl.EasyGlUtils;
 
+import org.rajawali3d.util.GLStateCache;
+
 import java.nio.ByteBuffer;
 
 /**
@@ -64,9 +66,9 @@ public class TextureFilter extends AFilter  {
 
     @Override
     public void draw() {
-        boolean a= GLES20.glIsEnabled(GLES20.GL_DEPTH_TEST);
+        boolean a= GLStateCache.getInstance().isEnabled(GLES20.GL_DEPTH_TEST);
         if(a){
-            GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+            GLStateCache.getInstance().disable(GLES20.GL_DEPTH_TEST);
         }
         if(mSurfaceTexture!=null){
             mSurfaceTexture.updateTexImage();
@@ -81,7 +83,7 @@ public class TextureFilter extends AFilter  {
         EasyGlUtils.unBindFrameBuffer();
 
         if(a){
-            GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+            GLStateCache.getInstance().enable(GLES20.GL_DEPTH_TEST);
         }
     }
 
@@ -7,9 +7,10 @@ import android.opengl.GLES20;
  * Created by Simon on 2017/7/6.
  */
 
-public class WarmFilter extends AFilter {
+public class WarmFilter extends AFilter implements ColorStage {
 
     private int gLevel;
+    private int gStageLevel;    // 合并到ColorChainCompiler的程序中时uLevel的位置
     private float mLevel;
 
     public WarmFilter(Resources mRes) {
@@ -22,7 +23,7 @@ public class WarmFilter extends AFilter {
         createProgramByAssetsFile("shader/base_vertex.sh",
                 "shader/color/warm_fragment.frag");
 
-        gLevel = GLES20.glGetUniformLocation(mProgram, "uLevel");
+        gLevel = getUniformLocation("uLevel");
     }
 
     @Override
@@ -40,4 +41,22 @@ public class WarmFilter extends AFilter {
         super.onSetExpandData();
         GLES20.glUniform3f(gLevel, mLevel, mLevel, 0.0f);
     }
+
+    @Override
+    public String getColorStage() {
+        return "uniform vec3 $level;\n"
+                + "vec4 $apply(vec4 color) {\n"
+                + "    return color + vec4($level, 0.0);\n"
+                + "}";
+    }
+
+    @Override
+    public void onStageCreated(int program, String prefix) {
+        gStageLevel = GLES20.glGetUniformLocation(program, prefix + "level");
+    }
+
+    @Override
+    public void onSetStageData() {
+        GLES20.glUniform3f(gStageLevel, mLevel, mLevel, 0.0f);
+    }
 }
@@ -4,10 +4,12 @@ import android.content.res.Resources;
 import android.opengl.ETC1;
 import android.opengl.ETC1Util;
 import android.opengl.GLES20;
-import android.util.Log;
 
 import com.simoncherry.arcamera.gl.MatrixUtils;
-import com.simoncherry.arcamera.gl.ZipPkmReader;
+import com.simoncherry.arcamera.gl.PkmArchive;
+import com.simoncherry.arcamera.gl.PkmFrameDecoder;
+
+import org.rajawali3d.util.GLStateCache;
 
 import java.nio.ByteBuffer;
 
@@ -27,13 +29,16 @@ public class ZipPkmAnimationFilter extends AFilter {
 
     private int[] texture;
 
-    private ZipPkmReader mPkmReader;
+    private static final int PREFETCH = 4;     // 后台预先读取的帧数
+    private volatile PkmFrameDecoder mDecoder;
+    private String mAnimationPath;
     private int mGlHAlpha;
+    private boolean isEtc1Supported;
+    private int mTextureWidth;     // 为0时还没有上传过
 
     public ZipPkmAnimationFilter(Resources mRes) {
         super(mRes);
         mBaseFilter = new NoFilter(mRes);
-        mPkmReader = new ZipPkmReader(mRes.getAssets());
     }
 
     @Override
@@ -42,8 +47,12 @@ public class ZipPkmAnimationFilter extends AFilter {
         texture = new int[2];
         createEtcTexture(texture);
         setTextureId(texture[0]);
-        mGlHAlpha = GLES20.glGetUniformLocation(mProgram, "vTextureAlpha");
+        mGlHAlpha = getUniformLocation("vTextureAlpha");
+        isEtc1Supported = ETC1Util.isETC1Supported();
+        mTextureWidth = 0;
         mBaseFilter.create();
+        // 创建后才开始后台读取，没有使用的滤镜不占线程
+        startDecoder();
     }
 
     @Override
@@ -56,8 +65,8 @@ public class ZipPkmAnimationFilter extends AFilter {
         emptyBuffer = ByteBuffer.allocateDirect(ETC1.getEncodedDataSize(width, height));
         this.width = width;
         this.height = height;
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        GLStateCache.getInstance().enable(GLES20.GL_BLEND);
+        GLStateCache.getInstance().blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
         mBaseFilter.setSize(width, height);
     }
 
@@ -68,42 +77,46 @@ public class ZipPkmAnimationFilter extends AFilter {
 
     @Override
     protected void onBindTexture() {
-        ETC1Util.ETC1Texture t = mPkmReader.getNextTexture();
-        ETC1Util.ETC1Texture tAlpha = mPkmReader.getNextTexture();
-        Log.e("wuwang", "is ETC null->" + (t == null));
-        if (t != null && tAlpha != null) {
-            MatrixUtils.getMatrix(super.getMatrix(), MatrixUtils.TYPE_FIT_END, t.getWidth(), t.getHeight(), width, height);
+        PkmFrameDecoder decoder = mDecoder;
+        PkmFrameDecoder.Frame frame = decoder == null ? null : decoder.poll();
+        if (frame != null) {
+            long start = System.nanoTime();
+            MatrixUtils.getMatrix(super.getMatrix(), MatrixUtils.TYPE_FIT_END, frame.getWidth(), frame.getHeight(), width, height);
             MatrixUtils.flip(super.getMatrix(), false, true);
-            onSetExpandData();
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + getTextureType());
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[0]);
-            ETC1Util.loadTexture(GLES20.GL_TEXTURE_2D, 0, 0, GLES20.GL_RGB, GLES20
-                    .GL_UNSIGNED_SHORT_5_6_5, t);
-            GLES20.glUniform1i(mHTexture, getTextureType());
+            uploadTexture(0, frame.getColor(), frame.getWidth(), frame.getHeight());
+            uploadTexture(1, frame.getAlpha(), frame.getWidth(), frame.getHeight());
+            decoder.recordUpload(System.nanoTime() - start);
+            decoder.recycle(frame);
+            isPlay = true;
+        } else if (isPlay ? decoder == null || decoder.isFinished() : mTextureWidth == 0) {
+            // 播放结束或者还没有读好第一帧时显示空白
+            uploadTexture(0, emptyBuffer, width, height);
+            uploadTexture(1, emptyBuffer, width, height);
+            isPlay = false;
+        }
+        // 没有新的一帧时继续显示上一帧
+        onSetExpandData();
+        GLStateCache.getInstance().activeTexture(GLES20.GL_TEXTURE0 + getTextureType());
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[0]);
+        GLES20.glUniform1i(mHTexture, getTextureType());
+        GLStateCache.getInstance().activeTexture(GLES20.GL_TEXTURE1 + getTextureType());
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[1]);
+        GLES20.glUniform1i(mGlHAlpha, 1 + getTextureType());
+    }
 
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE1 + getTextureType());
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[1]);
+    //ETC1不支持glCompressedTexSubImage2D，每一帧都重新指定纹理
+    private void uploadTexture(int index, ByteBuffer data, int w, int h) {
+        GLStateCache.getInstance().activeTexture(GLES20.GL_TEXTURE0 + index + getTextureType());
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[index]);
+        if (index == 0) {
+            mTextureWidth = w;
+        }
+        if (!isEtc1Supported) {
             ETC1Util.loadTexture(GLES20.GL_TEXTURE_2D, 0, 0, GLES20.GL_RGB, GLES20
-                    .GL_UNSIGNED_SHORT_5_6_5, tAlpha);
-            GLES20.glUniform1i(mGlHAlpha, 1 + getTextureType());
+                    .GL_UNSIGNED_SHORT_5_6_5, new ETC1Util.ETC1Texture(w, h, data));
         } else {
-            if (mPkmReader != null) {
-                mPkmReader.close();
-                mPkmReader.open();
-            }
-            onSetExpandData();
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + getTextureType());
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[0]);
-            ETC1Util.loadTexture(GLES20.GL_TEXTURE_2D, 0, 0, GLES20.GL_RGB, GLES20
-                    .GL_UNSIGNED_SHORT_5_6_5, new ETC1Util.ETC1Texture(width, height, emptyBuffer));
-            GLES20.glUniform1i(mHTexture, getTextureType());
-
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE1 + getTextureType());
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[1]);
-            ETC1Util.loadTexture(GLES20.GL_TEXTURE_2D, 0, 0, GLES20.GL_RGB, GLES20
-                    .GL_UNSIGNED_SHORT_5_6_5, new ETC1Util.ETC1Texture(width, height, emptyBuffer));
-            GLES20.glUniform1i(mGlHAlpha, 1 + getTextureType());
-            isPlay = false;
+            GLES20.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, 0, ETC1.ETC1_RGB8_OES, w, h, 0,
+                    data.remaining(), data);
         }
     }
 
@@ -127,17 +140,51 @@ public class ZipPkmAnimationFilter extends AFilter {
         super.setInt(type, params);
     }
 
+    /**
+     * 设置要播放的动画，已经创建时马上开始读取，否则在onCreate中开始
+     */
     public void setAnimation(String path) {
-        mPkmReader.setZipPath(path);
-        mPkmReader.open();
+        mAnimationPath = path;
+        if (texture != null) {
+            startDecoder();
+        }
     }
 
+    private void startDecoder() {
+        stopDecoder();
+        if (mAnimationPath == null) {
+            return;
+        }
+        PkmFrameDecoder decoder = new PkmFrameDecoder(PkmArchive.fromPath(mRes.getAssets(), mAnimationPath), PREFETCH);
+        decoder.start();
+        mDecoder = decoder;
+    }
+
+    public PkmFrameDecoder getDecoder() {
+        return mDecoder;
+    }
+
+    private void stopDecoder() {
+        PkmFrameDecoder decoder = mDecoder;
+        mDecoder = null;
+        if (decoder != null) {
+            decoder.stop();
+        }
+    }
 
     @Override
-    protected void finalize() throws Throwable {
-        if (mPkmReader != null) {
-            mPkmReader.close();
+    public void release() {
+        super.release();
+        stopDecoder();
+        if (texture != null) {
+            GLES20.glDeleteTextures(2, texture, 0);
+            texture = null;
         }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        stopDecoder();
         super.finalize();
     }
 
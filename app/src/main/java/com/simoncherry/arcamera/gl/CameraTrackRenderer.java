@@ -7,6 +7,7 @@ import android.hardware.camera2.CameraCaptureSession;
 import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
 import android.hardware.camera2.CaptureRequest;
 import android.hardware.camera2.CaptureResult;
 import android.hardware.camera2.TotalCaptureResult;
@@ -16,6 +17,7 @@ import android.media.ImageReader;
 import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.RequiresApi;
 import android.util.Log;
@@ -25,9 +27,11 @@ import android.view.SurfaceHolder;
 
 import com.sensetime.stmobileapi.STMobileFaceAction;
 import com.sensetime.stmobileapi.STMobileMultiTrack106;
+import com.simoncherry.arcamera.track.FaceTrackRegistry;
+import com.simoncherry.arcamera.track.InferenceScheduler;
+import com.simoncherry.arcamera.track.PreviewFramePool;
 import com.simoncherry.arcamera.util.Accelerometer;
 
-import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import javax.microedition.khronos.egl.EGLConfig;
@@ -42,6 +46,7 @@ import static android.hardware.camera2.CameraDevice.TEMPLATE_PREVIEW;
 public class CameraTrackRenderer implements MyRenderer {
 
     private final static String TAG = CameraTrackRenderer.class.getSimpleName();
+    private static final long TIMESTAMP_TOLERANCE_NS = 1000000000L;   // 换算后与当前时间相差超过1秒视为基准不同
 
     ///< 检测脸部动作：张嘴、眨眼、抬眉、点头、摇头
     private static final int ST_MOBILE_TRACKING_ENABLE_FACE_ACTION = 0x00000020;
@@ -54,6 +59,10 @@ public class CameraTrackRenderer implements MyRenderer {
 
     private final int PREVIEW_WIDTH = 640;
     private final int PREVIEW_HEIGHT = 480;
+    // 预览帧缓冲池大小：一帧在填充，一帧等待检测，一帧正在检测
+    private final int PREVIEW_FRAME_COUNT = 3;
+    // 每检测多少帧输出一次统计日志
+    private final int METRICS_LOG_INTERVAL = 300;
 
     private CameraDevice mDevice;
     private CameraManager mCameraManager;
@@ -66,9 +75,8 @@ public class CameraTrackRenderer implements MyRenderer {
     private Size mPreviewSize;
 
     private STMobileMultiTrack106 tracker;
-    private byte nv21[];
-    private HandlerThread mInferenceThread;
-    private Handler mInferenceHandler;
+    private PreviewFramePool mFramePool;
+    private InferenceScheduler mInferenceScheduler;
 
 
     public CameraTrackRenderer(Context context, CameraManager cameraManager, TextureController mController, int cameraId) {
@@ -80,14 +88,17 @@ public class CameraTrackRenderer implements MyRenderer {
         mThread.start();
         mHandler = new Handler(mThread.getLooper());
 
-        mInferenceThread = new HandlerThread("InferenceThread");
-        mInferenceThread.start();
-        mInferenceHandler = new Handler(mInferenceThread.getLooper());
+        mInferenceScheduler = new InferenceScheduler("InferenceThread", new InferenceScheduler.FrameProcessor() {
+            @Override
+            public void process(PreviewFramePool.Frame frame) {
+                trackFace(frame);
+            }
+        });
 
-        nv21 = new byte[PREVIEW_WIDTH * PREVIEW_HEIGHT * 2];
+        mFramePool = new PreviewFramePool(PREVIEW_WIDTH, PREVIEW_HEIGHT, PREVIEW_FRAME_COUNT);
 
         tracker = new STMobileMultiTrack106(context, ST_MOBILE_TRACKING_ENABLE_FACE_ACTION);
-        int max = 1;
+        int max = FaceTrackRegistry.MAX_FACES;
         tracker.setMaxDetectableFaces(max);
     }
 
@@ -97,6 +108,17 @@ public class CameraTrackRenderer implements MyRenderer {
             mDevice.close();
             mDevice = null;
         }
+        mInferenceScheduler.quit();
+        Log.i(TAG, "inference metrics: " + mInferenceScheduler);
+    }
+
+    // 每N帧检测一次人脸，1为每帧都检测
+    public void setTrackFrameInterval(int interval) {
+        mInferenceScheduler.setFrameInterval(interval);
+    }
+
+    public InferenceScheduler getInferenceScheduler() {
+        return mInferenceScheduler;
     }
 
     @Override
@@ -197,86 +219,124 @@ public class CameraTrackRenderer implements MyRenderer {
 
     private void handlePreviewData(ImageReader reader) {
         Image image = null;
+        PreviewFramePool.Frame frame = null;
         try {
             image = reader.acquireLatestImage();
-            ByteBuffer buffer = image.getPlanes()[0].getBuffer();
-            byte[] bytes = new byte[buffer.capacity()];
-            buffer.get(bytes);
-            Log.i(TAG, "get image bytes size: " + bytes.length);
-
-            System.arraycopy(bytes, 0, nv21, 0, bytes.length);
-
-            mInferenceHandler.post(new Runnable() {
-                @Override
-                public void run() {
+            if (image == null) {
+                return;
+            }
+            frame = mFramePool.obtain();
+            if (frame == null) {
+                // 缓冲帧都在使用中，说明检测跟不上，直接丢弃这一帧
+                return;
+            }
+            Image.Plane[] planes = image.getPlanes();
+            frame.fill(planes[0].getBuffer(), planes[0].getRowStride(),
+                    planes[1].getBuffer(), planes[2].getBuffer(),
+                    planes[1].getRowStride(), planes[1].getPixelStride());
+            frame.setTimestamp(image.getTimestamp());
 
-                    try {
-                        long startTime = System.currentTimeMillis();
-
-                        CameraCharacteristics characteristics = mCameraManager.getCameraCharacteristics(String.valueOf(cameraId));
-                        int orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
-                        boolean frontCamera = (cameraId == 1);
-                        int direction = Accelerometer.getDirection();
-
-                        if (frontCamera &&
-                                ((orientation == 270 && (direction & 1) == 1) ||
-                                        (orientation == 90 && (direction & 1) == 0))) {
-                            direction = (direction ^ 2);
-                        }
-
-                        STMobileFaceAction[] faceActions = tracker.trackFaceAction(nv21, direction, PREVIEW_WIDTH, PREVIEW_HEIGHT);
-
-                        long endTime = System.currentTimeMillis();
-                        float trackTime = endTime - startTime;
-                        Log.i(TAG, "start time: " + startTime);
-                        Log.i(TAG, "end time: " + endTime);
-                        Log.i(TAG, "track time: " + trackTime);
-
-                        if (faceActions != null && faceActions.length > 0) {
-                            Log.i(TAG, "-->> faceActions: faceActions[0].face=" + faceActions[0].face.rect.toString() + ", " +
-                                    "pitch = " + faceActions[0].face.pitch + ", " +
-                                    "roll=" + faceActions[0].face.roll + ", " +
-                                    "yaw=" + faceActions[0].face.yaw + ", " +
-                                    "face_action = " + faceActions[0].face_action + ", " +
-                                    "face_count = " + faceActions.length);
-                            if (trackCallBackListener != null) {
-                                trackCallBackListener.onTrackDetected(faceActions, orientation, (int) trackTime,
-                                        faceActions[0].face.pitch,
-                                        faceActions[0].face.roll,
-                                        faceActions[0].face.yaw,
-                                        faceActions[0].face.eye_dist,
-                                        faceActions[0].face.ID,
-                                        checkFlag(faceActions[0].face_action, ST_MOBILE_EYE_BLINK),
-                                        checkFlag(faceActions[0].face_action, ST_MOBILE_MOUTH_AH),
-                                        checkFlag(faceActions[0].face_action, ST_MOBILE_HEAD_YAW),
-                                        checkFlag(faceActions[0].face_action, ST_MOBILE_HEAD_PITCH),
-                                        checkFlag(faceActions[0].face_action, ST_MOBILE_BROW_JUMP));
-                            }
-                        }
-                    } catch(Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-            });
+            // 引用交给调度器，检测完或被更新的帧替换时由调度器release
+            mInferenceScheduler.submit(frame);
+            frame = null;
 
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
+            if (frame != null) {
+                frame.release();
+            }
             if (image != null) {
                 image.close();
             }
         }
     }
 
+    private void trackFace(PreviewFramePool.Frame frame) {
+        try {
+            long startTime = System.currentTimeMillis();
+
+            CameraCharacteristics characteristics = mCameraManager.getCameraCharacteristics(String.valueOf(cameraId));
+            int orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+            boolean frontCamera = (cameraId == 1);
+            int direction = Accelerometer.getDirection();
+            // 用相机采集这一帧的时间作为检测结果的时间，预测时不把检测耗时算作人脸的运动
+            long timestamp = toNanoTime(frame.getTimestamp(), isRealtimeTimestamp(characteristics),
+                    System.nanoTime(), SystemClock.elapsedRealtimeNanos());
+
+            if (frontCamera &&
+                    ((orientation == 270 && (direction & 1) == 1) ||
+                            (orientation == 90 && (direction & 1) == 0))) {
+                direction = (direction ^ 2);
+            }
+
+            STMobileFaceAction[] faceActions = tracker.trackFaceAction(frame.getData(), direction,
+                    frame.getWidth(), frame.getHeight());
+
+            float trackTime = System.currentTimeMillis() - startTime;
+            if (mInferenceScheduler.getProcessedCount() % METRICS_LOG_INTERVAL == 0) {
+                Log.i(TAG, "inference metrics: " + mInferenceScheduler);
+            }
+
+            if (faceActions != null && faceActions.length > 0) {
+                Log.i(TAG, "-->> faceActions: faceActions[0].face=" + faceActions[0].face.rect.toString() + ", " +
+                        "pitch = " + faceActions[0].face.pitch + ", " +
+                        "roll=" + faceActions[0].face.roll + ", " +
+                        "yaw=" + faceActions[0].face.yaw + ", " +
+                        "face_action = " + faceActions[0].face_action + ", " +
+                        "face_count = " + faceActions.length);
+                if (trackCallBackListener != null) {
+                    trackCallBackListener.onTrackDetected(faceActions, orientation, (int) trackTime,
+                            faceActions[0].face.pitch,
+                            faceActions[0].face.roll,
+                            faceActions[0].face.yaw,
+                            faceActions[0].face.eye_dist,
+                            faceActions[0].face.ID,
+                            checkFlag(faceActions[0].face_action, ST_MOBILE_EYE_BLINK),
+                            checkFlag(faceActions[0].face_action, ST_MOBILE_MOUTH_AH),
+                            checkFlag(faceActions[0].face_action, ST_MOBILE_HEAD_YAW),
+                            checkFlag(faceActions[0].face_action, ST_MOBILE_HEAD_PITCH),
+                            checkFlag(faceActions[0].face_action, ST_MOBILE_BROW_JUMP),
+                            timestamp);
+                }
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean isRealtimeTimestamp(CameraCharacteristics characteristics) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return false;
+        }
+        Integer source = characteristics.get(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+        return source != null && source == CameraMetadata.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME;
+    }
+
+    /**
+     * 把Image.getTimestamp()（SENSOR_TIMESTAMP）换算成System.nanoTime()的时间基准，与渲染时取预测值的时间一致。
+     * REALTIME基准按SystemClock.elapsedRealtimeNanos()换算；基准未知时多数设备与System.nanoTime()相同，
+     * 换算后晚于当前或早于当前超过1秒时使用当前时间
+     */
+    static long toNanoTime(long sensorTimestamp, boolean isRealtime, long nowNs, long realtimeNs) {
+        long timestamp = isRealtime ? sensorTimestamp - (realtimeNs - nowNs) : sensorTimestamp;
+        if (timestamp > nowNs || nowNs - timestamp > TIMESTAMP_TOLERANCE_NS) {
+            return nowNs;
+        }
+        return timestamp;
+    }
+
     private int checkFlag(int action, int flag) {
         int res = action & flag;
         return res == 0 ? 0 : 1;
     }
 
     public interface TrackCallBackListener {
+        // timestamp为这一帧相机采集的时间，与System.nanoTime()基准相同
         void onTrackDetected(STMobileFaceAction[] faceActions, int orientation,
                              int value, float pitch, float roll, float yaw, int eye_dist,
-                             int id, int eyeBlink, int mouthAh, int headYaw, int headPitch, int browJump);
+                             int id, int eyeBlink, int mouthAh, int headYaw, int headPitch, int browJump,
+                             long timestamp);
     }
 
     private TrackCallBackListener trackCallBackListener;
@@ -1,6 +1,9 @@
 package com.simoncherry.arcamera.gl;
 
+import android.annotation.TargetApi;
 import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
 
 /**
  * Created by Simon on 2017/7/5.
@@ -48,4 +51,29 @@ public class EasyGlUtils {
     public static void unBindFrameBuffer(){
         GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER,0);
     }
+
+    /**
+     * 当前上下文实际的GLES主版本号，要在GL线程调用。
+     * GL_VERSION字符串是驱动支持的最高版本，按ES 2.0创建的上下文中也可能是3.x，不能用来判断能否调用GLES30
+     */
+    public static int getContextMajorVersion(){
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return 2;
+        }
+        return getMajorVersion();
+    }
+
+    // GL_MAJOR_VERSION是ES3才有的查询，ES2的上下文中产生GL_INVALID_ENUM
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static int getMajorVersion(){
+        for (int i = 0; i < 8 && GLES20.glGetError() != GLES20.GL_NO_ERROR; i++) {
+            // 清除之前的错误
+        }
+        int[] version = new int[1];
+        GLES30.glGetIntegerv(GLES30.GL_MAJOR_VERSION, version, 0);
+        if (GLES20.glGetError() != GLES20.GL_NO_ERROR || version[0] < 3) {
+            return 2;
+        }
+        return version[0];
+    }
 }
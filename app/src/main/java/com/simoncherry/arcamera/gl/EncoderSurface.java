@@ -0,0 +1,127 @@
+package com.simoncherry.arcamera.gl;
+
+import android.annotation.TargetApi;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.os.Build;
+import android.util.Log;
+import android.view.Surface;
+
+/**
+ * 把MediaCodec的输入Surface包装成当前EGL上下文的一个窗口Surface。
+ * 在GL线程中切换到这个Surface绘制一次再切回来，画面直接进编码器，不经过glReadPixels和YUV转换。
+ * 必须在GL线程中创建和使用。
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public class EncoderSurface {
+
+    private static final String TAG = EncoderSurface.class.getSimpleName();
+    static final int EGL_RECORDABLE_ANDROID = 0x3142;
+
+    private final int mWidth;
+    private final int mHeight;
+    private EGLDisplay mDisplay;
+    private EGLContext mContext;
+    private EGLSurface mSurface = EGL14.EGL_NO_SURFACE;
+    private EGLSurface mSavedDrawSurface;
+    private EGLSurface mSavedReadSurface;
+
+    public EncoderSurface(Surface surface, int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mDisplay = EGL14.eglGetCurrentDisplay();
+        mContext = EGL14.eglGetCurrentContext();
+        if (mDisplay == EGL14.EGL_NO_DISPLAY || mContext == EGL14.EGL_NO_CONTEXT) {
+            throw new IllegalStateException("no current EGL context");
+        }
+
+        // 窗口Surface必须与上下文使用同一个config，否则eglMakeCurrent会返回EGL_BAD_MATCH
+        EGLConfig config = getCurrentConfig(mDisplay, mContext);
+        int[] value = new int[1];
+        if (!EGL14.eglGetConfigAttrib(mDisplay, config, EGL_RECORDABLE_ANDROID, value, 0) || value[0] != 1) {
+            throw new IllegalStateException("current EGL config is not recordable");
+        }
+
+        int[] surfaceAttribs = {EGL14.EGL_NONE};
+        mSurface = EGL14.eglCreateWindowSurface(mDisplay, config, surface, surfaceAttribs, 0);
+        if (mSurface == null || mSurface == EGL14.EGL_NO_SURFACE) {
+            throw new IllegalStateException("eglCreateWindowSurface failed: 0x"
+                    + Integer.toHexString(EGL14.eglGetError()));
+        }
+    }
+
+    // 按EGL_CONFIG_ID找到当前上下文创建时使用的config
+    private static EGLConfig getCurrentConfig(EGLDisplay display, EGLContext context) {
+        int[] configId = new int[1];
+        if (!EGL14.eglQueryContext(display, context, EGL14.EGL_CONFIG_ID, configId, 0)) {
+            throw new IllegalStateException("eglQueryContext failed: 0x"
+                    + Integer.toHexString(EGL14.eglGetError()));
+        }
+        int[] attribList = {
+                EGL14.EGL_CONFIG_ID, configId[0],
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(display, attribList, 0, configs, 0, configs.length, numConfigs, 0)
+                || numConfigs[0] <= 0) {
+            throw new IllegalStateException("unable to find EGL config " + configId[0]);
+        }
+        return configs[0];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 切换到编码器的Surface，之后的绘制都进入编码器
+     */
+    public boolean makeCurrent() {
+        mSavedDrawSurface = EGL14.eglGetCurrentSurface(EGL14.EGL_DRAW);
+        mSavedReadSurface = EGL14.eglGetCurrentSurface(EGL14.EGL_READ);
+        if (!EGL14.eglMakeCurrent(mDisplay, mSurface, mSurface, mContext)) {
+            Log.e(TAG, "eglMakeCurrent failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 提交这一帧给编码器，并切回原来的Surface
+     * @param timestampNs 与System.nanoTime()同一时间基准
+     * @return 编码器的Surface已经不可用时返回false
+     */
+    public boolean swapAndRestore(long timestampNs) {
+        EGLExt.eglPresentationTimeANDROID(mDisplay, mSurface, timestampNs);
+        boolean isSwapped = EGL14.eglSwapBuffers(mDisplay, mSurface);
+        if (!isSwapped) {
+            Log.e(TAG, "eglSwapBuffers failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        }
+        restore();
+        return isSwapped;
+    }
+
+    public void restore() {
+        if (mSavedDrawSurface != null) {
+            EGL14.eglMakeCurrent(mDisplay, mSavedDrawSurface, mSavedReadSurface, mContext);
+            mSavedDrawSurface = null;
+            mSavedReadSurface = null;
+        }
+    }
+
+    public void release() {
+        if (mSurface != EGL14.EGL_NO_SURFACE) {
+            EGL14.eglDestroySurface(mDisplay, mSurface);
+            mSurface = EGL14.EGL_NO_SURFACE;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.simoncherry.arcamera.gl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FrameCallback回调数据用的环形buffer，每个buffer带引用计数。
+ * TextureController只往引用计数为0的buffer里写数据；回调方要在onFrame返回后继续使用数据，
+ * 需要先retain，用完再release，这样回调方拿到的数据不会被后面的帧覆盖。
+ */
+public class FrameBufferRing {
+
+    public static class Buffer {
+        private final byte[] mData;
+        private final ByteBuffer mBuffer;
+        private final AtomicInteger mRefCount = new AtomicInteger(0);
+
+        Buffer(int size) {
+            mData = new byte[size];
+            mBuffer = ByteBuffer.wrap(mData);
+        }
+
+        public byte[] getData() {
+            return mData;
+        }
+
+        public ByteBuffer getBuffer() {
+            mBuffer.clear();
+            return mBuffer;
+        }
+
+        public int getRefCount() {
+            return mRefCount.get();
+        }
+    }
+
+    private final Buffer[] mBuffers;
+    private final int mSize;
+    private int mNext = 0;
+
+    public FrameBufferRing(int count, int size) {
+        mSize = size;
+        mBuffers = new Buffer[count];
+        for (int i = 0; i < count; i++) {
+            mBuffers[i] = new Buffer(size);
+        }
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    public int getCount() {
+        return mBuffers.length;
+    }
+
+    /**
+     * 按顺序取下一个空闲的buffer，引用计数为1，只在写入线程（GL线程）调用
+     * @return 所有buffer都被占用时返回null
+     */
+    public Buffer obtain() {
+        for (int i = 0; i < mBuffers.length; i++) {
+            Buffer buffer = mBuffers[(mNext + i) % mBuffers.length];
+            if (buffer.mRefCount.compareAndSet(0, 1)) {
+                mNext = (mNext + i + 1) % mBuffers.length;
+                return buffer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 延长回调数据的持有时间，只能在已经持有这份数据时调用（例如在onFrame中）
+     * @return 不是这个ring里的数据，或者数据已经被回收时返回false
+     */
+    public boolean retain(byte[] data) {
+        Buffer buffer = find(data);
+        if (buffer == null) {
+            return false;
+        }
+        int count;
+        do {
+            count = buffer.mRefCount.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!buffer.mRefCount.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    public void release(byte[] data) {
+        Buffer buffer = find(data);
+        if (buffer != null) {
+            release(buffer);
+        }
+    }
+
+    public void release(Buffer buffer) {
+        if (buffer.mRefCount.decrementAndGet() < 0) {
+            buffer.mRefCount.incrementAndGet();
+            throw new IllegalStateException("frame buffer released too many times");
+        }
+    }
+
+    private Buffer find(byte[] data) {
+        for (Buffer buffer : mBuffers) {
+            if (buffer.mData == data) {
+                return buffer;
+            }
+        }
+        return null;
+    }
+}
@@ -5,5 +5,6 @@ package com.simoncherry.arcamera.gl;
  */
 
 public interface FrameCallback {
+    // time为这一帧相机采集的时间戳（SurfaceTexture.getTimestamp，纳秒）
     void onFrame(byte[] bytes, long time);
 }
@@ -0,0 +1,52 @@
+package com.simoncherry.arcamera.gl;
+
+import android.opengl.GLSurfaceView;
+import android.os.Build;
+import android.util.Log;
+
+import org.rajawali3d.util.egl.EGLShareGroup;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+/**
+ * config支持ES3时先创建GLES3的上下文，失败时创建GLES2的上下文。
+ * GLES3的上下文兼容所有GLES2的调用，PBO异步读取、程序二进制缓存和fence计时只在GLES3上下文中使用，
+ * 是否可用以EasyGlUtils.getContextMajorVersion为准。
+ * 上下文加入EGLShareGroup，与Rajawali的上下文共享纹理，3D模型层通过SceneLayer直接在GL中合成。
+ */
+public class Gles3ContextFactory implements GLSurfaceView.EGLContextFactory {
+
+    private static final String TAG = Gles3ContextFactory.class.getSimpleName();
+    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+    static final int EGL_OPENGL_ES3_BIT_KHR = 0x40;
+
+    @Override
+    public EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig config) {
+        int[] value = new int[1];
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                && egl.eglGetConfigAttrib(display, config, EGL10.EGL_RENDERABLE_TYPE, value)
+                && (value[0] & EGL_OPENGL_ES3_BIT_KHR) != 0) {
+            EGLContext context = createContext(egl, display, config, 3);
+            if (context != EGL10.EGL_NO_CONTEXT) {
+                return context;
+            }
+            Log.w(TAG, "create GLES3 context failed: 0x" + Integer.toHexString(egl.eglGetError()));
+        }
+        return createContext(egl, display, config, 2);
+    }
+
+    private static EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig config, int version) {
+        int[] attribList = {EGL_CONTEXT_CLIENT_VERSION, version, EGL10.EGL_NONE};
+        return EGLShareGroup.createContext(egl, display, config, attribList);
+    }
+
+    @Override
+    public void destroyContext(EGL10 egl, EGLDisplay display, EGLContext context) {
+        if (!EGLShareGroup.destroyContext(egl, display, context)) {
+            Log.e(TAG, "eglDestroyContext failed: 0x" + Integer.toHexString(egl.eglGetError()));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.simoncherry.arcamera.gl;
+
+import android.annotation.TargetApi;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
+
+import com.simoncherry.arcamera.filter.camera.AFilter;
+
+import org.rajawali3d.util.GLStateCache;
+
+import java.nio.ByteBuffer;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLContext;
+
+/**
+ * ProgramCache在设备上使用的实现。上下文取EGL10的当前上下文，与GLSurfaceView一致；
+ * 程序二进制只在GLES 3.0以上的上下文中保存和加载。
+ */
+public class GlesProgramBackend implements ProgramCache.Backend {
+
+    private static final int GL_PROGRAM_BINARY_RETRIEVABLE_HINT = 0x8257;
+
+    private EGLContext mBinaryContext;      // 上次检查是否支持程序二进制的上下文
+    private boolean isBinarySupported = false;
+
+    @Override
+    public Object getCurrentContext() {
+        EGLContext context = ((EGL10) EGLContext.getEGL()).eglGetCurrentContext();
+        return EGL10.EGL_NO_CONTEXT.equals(context) ? null : context;
+    }
+
+    @Override
+    public int compile(String vertex, String fragment) {
+        if (!supportsBinary()) {
+            return AFilter.uCreateGlProgram(vertex, fragment);
+        }
+        // 链接前设置提示，部分驱动不设置时取不到二进制
+        int vertexShader = AFilter.uLoadShader(GLES20.GL_VERTEX_SHADER, vertex);
+        if (vertexShader == 0) return 0;
+        int fragmentShader = AFilter.uLoadShader(GLES20.GL_FRAGMENT_SHADER, fragment);
+        if (fragmentShader == 0) return 0;
+        int program = GLES20.glCreateProgram();
+        if (program != 0) {
+            GLES20.glAttachShader(program, vertexShader);
+            GLES20.glAttachShader(program, fragmentShader);
+            setRetrievableHint(program);
+            GLES20.glLinkProgram(program);
+            if (!isLinked(program)) {
+                AFilter.glError(1, "Could not link program:" + GLES20.glGetProgramInfoLog(program));
+                GLES20.glDeleteProgram(program);
+                program = 0;
+            }
+        }
+        // 链接后shader对象不再需要
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+        return program;
+    }
+
+    @Override
+    public boolean isProgram(int program) {
+        return GLES20.glIsProgram(program);
+    }
+
+    @Override
+    public void deleteProgram(int program) {
+        GLStateCache.getInstance().deleteProgram(program);
+    }
+
+    @Override
+    public int getUniformLocation(int program, String name) {
+        return GLES20.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public int getAttribLocation(int program, String name) {
+        return GLES20.glGetAttribLocation(program, name);
+    }
+
+    @Override
+    public byte[] getProgramBinary(int program, int[] format) {
+        if (!supportsBinary()) {
+            return null;
+        }
+        return readBinary(program, format);
+    }
+
+    @Override
+    public int loadProgramBinary(int format, byte[] binary) {
+        if (!supportsBinary()) {
+            return 0;
+        }
+        int program = GLES20.glCreateProgram();
+        if (program == 0) {
+            return 0;
+        }
+        writeBinary(program, format, binary);
+        // 驱动更新等原因不接受时链接状态为失败
+        if (!isLinked(program)) {
+            GLES20.glDeleteProgram(program);
+            return 0;
+        }
+        return program;
+    }
+
+    @Override
+    public String getDriverId() {
+        String renderer = GLES20.glGetString(GLES20.GL_RENDERER);
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        if (renderer == null || version == null) {
+            return null;
+        }
+        // 系统升级可能更新驱动而版本字符串不变
+        return renderer + "|" + version + "|" + Build.FINGERPRINT;
+    }
+
+    private boolean supportsBinary() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return false;
+        }
+        EGLContext context = ((EGL10) EGLContext.getEGL()).eglGetCurrentContext();
+        if (!context.equals(mBinaryContext)) {
+            mBinaryContext = context;
+            // 按上下文实际的版本判断，GL_VERSION字符串在ES 2.0上下文中也可能是3.x
+            isBinarySupported = EasyGlUtils.getContextMajorVersion() >= 3 && getBinaryFormatCount() > 0;
+        }
+        return isBinarySupported;
+    }
+
+    private static boolean isLinked(int program) {
+        int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        return linkStatus[0] == GLES20.GL_TRUE;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static int getBinaryFormatCount() {
+        int[] count = new int[1];
+        GLES20.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, count, 0);
+        return count[0];
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void setRetrievableHint(int program) {
+        GLES30.glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES20.GL_TRUE);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static byte[] readBinary(int program, int[] format) {
+        int[] length = new int[1];
+        GLES20.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length[0]);
+        GLES30.glGetProgramBinary(program, length[0], length, 0, format, 0, buffer);
+        if (length[0] <= 0) {
+            return null;
+        }
+        byte[] binary = new byte[length[0]];
+        buffer.position(0);
+        buffer.get(binary);
+        return binary;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void writeBinary(int program, int format, byte[] binary) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(binary.length);
+        buffer.put(binary);
+        buffer.position(0);
+        GLES30.glProgramBinary(program, format, buffer, binary.length);
+    }
+}
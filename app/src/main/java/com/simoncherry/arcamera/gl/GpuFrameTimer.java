@@ -0,0 +1,196 @@
+package com.simoncherry.arcamera.gl;
+
+import android.annotation.TargetApi;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
+
+/**
+ * 测量每帧的GPU耗时，按设备支持的方式选择：
+ * 1. GLES3且有GL_EXT_disjoint_timer_query时用计时查询，每帧都有结果，晚两帧取出，不阻塞；
+ * 2. 只有GLES3时每隔几帧在帧尾插入fence，之后的帧开始时不等待地查询一次。
+ *    下一帧开始时已经完成说明GPU跟得上，结果取这一帧提交命令的CPU耗时（偏小）；
+ *    之后才完成的取从帧开始到查询到完成的时间（偏大），几帧之内都没有完成的丢掉；
+ * 3. GLES2时不支持，isSupported返回false，不做自适应分辨率。
+ * 所有方法都要在GL线程调用。
+ */
+public class GpuFrameTimer {
+
+    public static final String SOURCE_TIMER_QUERY = "timer_query";
+    public static final String SOURCE_FENCE = "fence";
+    public static final String SOURCE_NONE = "none";
+
+    private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+    private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+    private static final int QUERY_COUNT = 3;
+    private static final int SAMPLE_INTERVAL = 4;              // fence每几帧采样一次，也是最多查询几次
+
+    private String mSource = SOURCE_NONE;
+    private final int[] mQueries = new int[QUERY_COUNT];
+    private final boolean[] isPending = new boolean[QUERY_COUNT];
+    private final int[] mResult = new int[1];
+    private int mIndex = 0;
+    private int mFrame = 0;
+    private boolean isSampling = false;
+    private long mBeginNs;
+    private long mSample = -1;
+    private long mSync = 0;             // 还没有完成的fence
+    private long mSyncBeginNs;
+    private long mSyncEndNs;
+    private int mSyncChecks;
+
+    /**
+     * 在新的EGL上下文中调用，检查支持的方式并创建查询对象
+     */
+    public void create() {
+        mIndex = 0;
+        mFrame = 0;
+        isSampling = false;
+        mSample = -1;
+        // 旧上下文的fence已经随上下文销毁
+        mSync = 0;
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            isPending[i] = false;
+            mQueries[i] = 0;
+        }
+        if (!isGles3()) {
+            mSource = SOURCE_NONE;
+            return;
+        }
+        String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        if (extensions != null && extensions.contains("GL_EXT_disjoint_timer_query")) {
+            mSource = SOURCE_TIMER_QUERY;
+            createQueries();
+        } else {
+            mSource = SOURCE_FENCE;
+        }
+    }
+
+    // GLES30的Java接口从API 18开始才有
+    private static boolean isGles3() {
+        return EasyGlUtils.getContextMajorVersion() >= 3;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void createQueries() {
+        GLES30.glGenQueries(QUERY_COUNT, mQueries, 0);
+        // 清除之前的不连续标记
+        GLES20.glGetIntegerv(GL_GPU_DISJOINT_EXT, mResult, 0);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public void release() {
+        if (SOURCE_TIMER_QUERY.equals(mSource) && mQueries[0] != 0) {
+            GLES30.glDeleteQueries(QUERY_COUNT, mQueries, 0);
+        }
+        if (mSync != 0) {
+            GLES30.glDeleteSync(mSync);
+            mSync = 0;
+        }
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            isPending[i] = false;
+            mQueries[i] = 0;
+        }
+    }
+
+    public String getSource() {
+        return mSource;
+    }
+
+    // GLES2上没有不阻塞的测量方式
+    public boolean isSupported() {
+        return !SOURCE_NONE.equals(mSource);
+    }
+
+    /**
+     * 每帧绘制之前调用
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public void beginFrame() {
+        if (SOURCE_TIMER_QUERY.equals(mSource)) {
+            // 结果一直没有取出的查询直接复用，丢掉那一帧
+            isPending[mIndex] = false;
+            GLES30.glBeginQuery(GL_TIME_ELAPSED_EXT, mQueries[mIndex]);
+            isSampling = true;
+        } else if (SOURCE_FENCE.equals(mSource)) {
+            mBeginNs = System.nanoTime();
+            pollFence(mBeginNs);
+            isSampling = mFrame++ % SAMPLE_INTERVAL == 0 && mSync == 0;
+        }
+    }
+
+    /**
+     * 每帧绘制完成、交换缓冲之前调用
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public void endFrame() {
+        if (!isSampling) {
+            return;
+        }
+        isSampling = false;
+        if (SOURCE_TIMER_QUERY.equals(mSource)) {
+            GLES30.glEndQuery(GL_TIME_ELAPSED_EXT);
+            isPending[mIndex] = true;
+            mIndex = (mIndex + 1) % QUERY_COUNT;
+        } else if (SOURCE_FENCE.equals(mSource)) {
+            // 交换缓冲时会提交，这里不等待
+            mSync = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            mSyncBeginNs = mBeginNs;
+            mSyncEndNs = System.nanoTime();
+            mSyncChecks = 0;
+        }
+    }
+
+    // 超时为0，只查询不等待
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void pollFence(long nowNs) {
+        if (mSync == 0) {
+            return;
+        }
+        int status = GLES30.glClientWaitSync(mSync, 0, 0);
+        if (status == GLES30.GL_ALREADY_SIGNALED || status == GLES30.GL_CONDITION_SATISFIED) {
+            mSample = mSyncChecks == 0 ? mSyncEndNs - mSyncBeginNs : nowNs - mSyncBeginNs;
+        } else if (status != GLES30.GL_WAIT_FAILED && ++mSyncChecks < SAMPLE_INTERVAL) {
+            return;
+        }
+        GLES30.glDeleteSync(mSync);
+        mSync = 0;
+    }
+
+    /**
+     * 取出一个已完成的测量结果，单位纳秒，没有时返回-1。每帧可以循环调用直到返回-1
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public long poll() {
+        if (!SOURCE_TIMER_QUERY.equals(mSource)) {
+            long sample = mSample;
+            mSample = -1;
+            return sample;
+        }
+        // 从最早结束的查询开始取，mIndex指向下一帧要复用的，也就是最早的一个
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            int index = (mIndex + i) % QUERY_COUNT;
+            if (!isPending[index]) {
+                continue;
+            }
+            GLES30.glGetQueryObjectuiv(mQueries[index], GLES30.GL_QUERY_RESULT_AVAILABLE, mResult, 0);
+            if (mResult[0] == 0) {
+                return -1;
+            }
+            isPending[index] = false;
+            GLES20.glGetIntegerv(GL_GPU_DISJOINT_EXT, mResult, 0);
+            if (mResult[0] != 0) {
+                // 期间GPU降频或切换过上下文，结果不可信
+                continue;
+            }
+            GLES30.glGetQueryObjectuiv(mQueries[index], GLES30.GL_QUERY_RESULT, mResult, 0);
+            return mResult[0] & 0xFFFFFFFFL;
+        }
+        return -1;
+    }
+
+    // 每几帧得到一个结果，用于设置ResolutionScaler的窗口
+    public int getSampleInterval() {
+        return SOURCE_TIMER_QUERY.equals(mSource) ? 1 : SAMPLE_INTERVAL;
+    }
+}
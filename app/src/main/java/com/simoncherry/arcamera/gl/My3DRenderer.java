@@ -19,7 +19,10 @@ import com.simoncherry.arcamera.model.DynamicPoint;
 import com.simoncherry.arcamera.model.Ornament;
 import com.simoncherry.arcamera.rajawali.MyFragmentShader;
 import com.simoncherry.arcamera.rajawali.MyVertexShader;
+import com.simoncherry.arcamera.track.FaceMotionStream;
+import com.simoncherry.arcamera.track.FaceTrackRegistry;
 import com.simoncherry.arcamera.util.BitmapUtils;
+import com.simoncherry.arcamera.util.FaceMeshTemplate;
 import com.simoncherry.arcamera.util.MaterialFactory;
 import com.simoncherry.arcamera.util.OrnamentFactory;
 
@@ -73,6 +76,14 @@ public class My3DRenderer extends Renderer implements OnObjectPickedListener, St
     private float mTransX = 0.0f;
     private float mTransY = 0.0f;
     private float mScale = 1.0f;
+    // 设置后渲染时按当前时间取平滑/外推后的角度和平移
+    private FaceMotionStream mFaceMotionStream;
+    private final float[] mMotionSample = new float[3];
+    // 多人脸时，主人脸以外的每张脸各用一个容器，共享主容器的几何体和材质
+    private FaceTrackRegistry mFaceTrackRegistry;
+    private final Object3D[] mFaceContainers = new Object3D[FaceTrackRegistry.MAX_FACES];
+    private final boolean[] mFaceActive = new boolean[FaceTrackRegistry.MAX_FACES];
+    private final float[] mFacePoses = new float[FaceTrackRegistry.MAX_FACES * FaceTrackRegistry.POSE_SIZE];
     // 用于动态3D模型
     private List<Geometry3D> mGeometry3DList = new ArrayList<>();
     private List<DynamicPoint> mPoints = new ArrayList<>();
@@ -147,6 +158,14 @@ public class My3DRenderer extends Renderer implements OnObjectPickedListener, St
         }
     }
 
+    public void setFaceMotionStream(FaceMotionStream stream) {
+        mFaceMotionStream = stream;
+    }
+
+    public void setFaceTrackRegistry(FaceTrackRegistry registry) {
+        mFaceTrackRegistry = registry;
+    }
+
     // 设置3D模型的缩放比例
     public void setScale(float scale) {
         mScale = scale;
@@ -184,6 +203,72 @@ public class My3DRenderer extends Renderer implements OnObjectPickedListener, St
         }
 
         getCurrentScene().setBackgroundColor(0);
+        // 饰品模型的子网格共用材质，按材质排序绘制，省掉重复的program和贴图切换
+        getCurrentScene().setRenderQueueEnabled(true);
+    }
+
+    // 检测比渲染慢，按渲染时间外推，避免模型跟着检测结果一顿一顿地跳
+    private void sampleFaceMotion() {
+        FaceMotionStream stream = mFaceMotionStream;
+        if (stream == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (stream.sampleRotation(now, mMotionSample)) {
+            // 与onGet3dModelRotation中的对应关系一致：pitch, roll, yaw -> roll, yaw, pitch
+            setAccelerometerValues(mMotionSample[1], mMotionSample[2], mMotionSample[0]);
+        }
+        if (stream.sampleTransition(now, mMotionSample)) {
+            setTransition(mMotionSample[0], mMotionSample[1], mMotionSample[2]);
+        }
+    }
+
+    // 主人脸以外的人脸：出现时克隆主容器（共享几何体和材质，只多一份变换），消失时移除
+    private void updateFaceContainers() {
+        FaceTrackRegistry registry = mFaceTrackRegistry;
+        if (registry == null) {
+            return;
+        }
+        registry.samplePoses(System.nanoTime(), mFaceActive, mFacePoses);
+        int primarySlot = registry.getPrimarySlot();
+        for (int i = 0; i < mFaceContainers.length; i++) {
+            Object3D container = mFaceContainers[i];
+            if (!mFaceActive[i] || i == primarySlot || mContainer.getNumChildren() == 0) {
+                if (container != null) {
+                    removeFaceContainer(i);
+                }
+                continue;
+            }
+            if (container == null) {
+                container = mContainer.clone(true, true);
+                getCurrentScene().addChild(container);
+                mFaceContainers[i] = container;
+            }
+
+            int base = i * FaceTrackRegistry.POSE_SIZE;
+            if (mOrnamentModel.isEnableRotation()) {
+                // 与setAccelerometerValues的对应关系一致：pitch, roll, yaw -> roll, yaw, pitch
+                container.setRotation(mFacePoses[base + 1], mFacePoses[base + 2], mFacePoses[base]);
+            }
+            if (mOrnamentModel.isEnableScale()) {
+                container.setScale(mFacePoses[base + 5]);
+            }
+            if (mOrnamentModel.isEnableTransition()) {
+                // 相机已经按主人脸平移，这里只需补上与主人脸的差值
+                container.setPosition(mContainer.getX() + mTransX - mFacePoses[base + 3],
+                        mContainer.getY() + mTransY - mFacePoses[base + 4],
+                        mContainer.getZ());
+            }
+        }
+    }
+
+    private void removeFaceContainer(int slot) {
+        Object3D container = mFaceContainers[slot];
+        if (container != null) {
+            // 几何体和材质与主容器共享，不能destroy
+            getCurrentScene().removeChild(container);
+            mFaceContainers[slot] = null;
+        }
     }
 
     @Override
@@ -196,6 +281,7 @@ public class My3DRenderer extends Renderer implements OnObjectPickedListener, St
         }
 
         if (mModelType == Ornament.MODEL_TYPE_STATIC || mModelType == Ornament.MODEL_TYPE_SHADER) {
+            sampleFaceMotion();
             if (mOrnamentModel != null) {
                 if (mOrnamentModel.isEnableRotation()) {
                     // 处理3D模型的旋转
@@ -212,6 +298,8 @@ public class My3DRenderer extends Renderer implements OnObjectPickedListener, St
                     getCurrentCamera().setX(mTransX);
                     getCurrentCamera().setY(mTransY);
                 }
+
+                updateFaceContainers();
             }
 
             if (mOrnamentModel != null && mOrnamentModel.getTimeStep() > 0 && mMaterialList != null) {
@@ -349,6 +437,10 @@ public class My3DRenderer extends Renderer implements OnObjectPickedListener, St
     }
 
     private void clearScene() {
+        for (int i = 0; i < mFaceContainers.length; i++) {
+            removeFaceContainer(i);
+        }
+
         if (mObject3DList != null && mObject3DList.size() > 0) {
             for (int i = 0; i < mObject3DList.size(); i++) {
                 Object3D object3D = mObject3DList.get(i);
@@ -628,19 +720,13 @@ public class My3DRenderer extends Renderer implements OnObjectPickedListener, St
 
     private Object3D loadDynamicModel(Ornament.Model model) {
         try {
-            String objDir = "OpenGLDemo/txt/";
-            String objName = "base_face_uv3_obj";
-            LoaderOBJ parser = new LoaderOBJ(this, objDir + objName);
-            parser.parse();
-            Object3D object3D = parser.getParsedObject();
+            // 模板网格只加载一次，这里只替换贴图坐标
+            Object3D object3D = FaceMeshTemplate.getInstance(getContext()).createObject3D(model.getFaceUv());
 
             object3D.setScale(model.getScale());
             object3D.setPosition(model.getOffsetX(), model.getOffsetY(), model.getOffsetZ());
             object3D.setRotation(model.getRotateX(), model.getRotateY(), model.getRotateZ());
 
-            ATexture texture = object3D.getMaterial().getTextureList().get(0);
-            object3D.getMaterial().removeTexture(texture);
-
             String texturePath = model.getTexturePath();
             Bitmap bitmap = BitmapUtils.decodeSampledBitmapFromFilePath(texturePath, 300, 300);
             // 调整肤色
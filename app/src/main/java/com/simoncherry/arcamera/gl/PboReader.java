@@ -0,0 +1,117 @@
+package com.simoncherry.arcamera.gl;
+
+import android.annotation.TargetApi;
+import android.opengl.GLES30;
+import android.os.Build;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * 用一组PBO异步读取当前FBO的像素（GLES3）。
+ * 每帧把当前帧读到一个PBO中，同时映射count-1帧之前写入的PBO取出数据，
+ * 读取时不需要等GPU画完当前帧，代价是数据晚count-1帧。
+ * 所有方法都要在GL线程调用。
+ */
+@TargetApi(Build.VERSION_CODES.N)
+public class PboReader {
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mSize;
+    private final int[] mPbos;
+    private final long[] mTimestamps;   // 每个PBO中那一帧的时间戳
+    private long mReadTimestamp;
+    private int mIndex = 0;
+    private int mFilled = 0;    // 已经写入数据、还没取出的PBO数
+
+    /**
+     * 需要GLES3的上下文；带offset的glReadPixels从API 24开始才有Java接口
+     */
+    public static boolean isSupported() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return false;
+        }
+        return EasyGlUtils.getContextMajorVersion() >= 3;
+    }
+
+    public PboReader(int width, int height, int count) {
+        mWidth = width;
+        mHeight = height;
+        mSize = width * height * 4;
+        mPbos = new int[count];
+        mTimestamps = new long[count];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public void create() {
+        GLES30.glGenBuffers(mPbos.length, mPbos, 0);
+        for (int pbo : mPbos) {
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, pbo);
+            GLES30.glBufferData(GLES30.GL_PIXEL_PACK_BUFFER, mSize, null, GLES30.GL_STREAM_READ);
+        }
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+        reset();
+    }
+
+    public void destroy() {
+        GLES30.glDeleteBuffers(mPbos.length, mPbos, 0);
+        reset();
+    }
+
+    // 丢弃还没取出的帧，例如停止录像时
+    public void reset() {
+        mIndex = 0;
+        mFilled = 0;
+    }
+
+    public boolean read(ByteBuffer out) {
+        return read(out, 0);
+    }
+
+    /**
+     * 把当前绑定的FBO读到下一个PBO中，并取出最早写入的那一帧
+     * @param out 取出的数据写到这里，为null时只读取不取出
+     * @param timestampNs 当前帧的时间戳，取出时由{@link #getReadTimestamp()}返回
+     * @return out中有数据时返回true
+     */
+    public boolean read(ByteBuffer out, long timestampNs) {
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, mPbos[mIndex]);
+        GLES30.glReadPixels(0, 0, mWidth, mHeight, GLES30.GL_RGBA, GLES30.GL_UNSIGNED_BYTE, 0);
+        mTimestamps[mIndex] = timestampNs;
+        mIndex = (mIndex + 1) % mPbos.length;
+        if (mFilled < mPbos.length) {
+            mFilled++;
+        }
+
+        boolean result = false;
+        // 此时mIndex指向最早写入的PBO，下一帧才会覆盖它
+        if (out != null && mFilled == mPbos.length) {
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, mPbos[mIndex]);
+            Buffer mapped = GLES30.glMapBufferRange(GLES30.GL_PIXEL_PACK_BUFFER, 0, mSize,
+                    GLES30.GL_MAP_READ_BIT);
+            if (mapped != null) {
+                out.clear();
+                out.put((ByteBuffer) mapped);
+                out.clear();
+                mReadTimestamp = mTimestamps[mIndex];
+                GLES30.glUnmapBuffer(GLES30.GL_PIXEL_PACK_BUFFER);
+                result = true;
+            }
+        }
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+        return result;
+    }
+
+    // 上一次read取出的那一帧的时间戳
+    public long getReadTimestamp() {
+        return mReadTimestamp;
+    }
+}
@@ -0,0 +1,281 @@
+package com.simoncherry.arcamera.gl;
+
+import android.content.res.AssetManager;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 保存PKM（ETC1）序列帧的zip。第一次访问时遍历一遍建立索引，记录每一项的名字和尺寸，
+ * 之后可以按序号读取任意一项。文件用ZipFile直接定位；assets中的zip只能顺序读取，
+ * 向后读时继续读，向前读时才重新打开。不是线程安全的，只在一个线程中使用。
+ */
+public class PkmArchive implements Closeable {
+
+    public static final int HEADER_SIZE = 16;
+
+    /**
+     * 打开zip的数据流，每次调用返回一个新的流
+     */
+    public interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    public static class Entry {
+        private final String mName;
+        private final int mWidth;
+        private final int mHeight;
+
+        Entry(String name, int width, int height) {
+            mName = name;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public int getWidth() {
+            return mWidth;
+        }
+
+        public int getHeight() {
+            return mHeight;
+        }
+
+        public int getDataSize() {
+            return getEncodedDataSize(mWidth, mHeight);
+        }
+    }
+
+    private final File mFile;
+    private final Opener mOpener;
+    private List<Entry> mEntries;
+    private int mMaxDataSize = 0;
+
+    private ZipFile mZipFile;
+    private List<ZipEntry> mZipEntries;
+    private ZipInputStream mStream;
+    private int mCursor;            // mStream中下一项的序号
+    private final byte[] mHeader = new byte[HEADER_SIZE];
+    private final byte[] mIoBuffer = new byte[4096];
+
+    public PkmArchive(File file) {
+        mFile = file;
+        mOpener = null;
+    }
+
+    public PkmArchive(Opener opener) {
+        mFile = null;
+        mOpener = opener;
+    }
+
+    /**
+     * "assets/"开头的从assets中读取，其他的作为文件路径
+     */
+    public static PkmArchive fromPath(final AssetManager manager, String path) {
+        if (path.startsWith("assets/")) {
+            final String assetPath = path.substring(7);
+            return new PkmArchive(new Opener() {
+                @Override
+                public InputStream open() throws IOException {
+                    return manager.open(assetPath);
+                }
+            });
+        }
+        return new PkmArchive(new File(path));
+    }
+
+    // 每项的数量，alpha和颜色分开保存时两项为一帧
+    public int getEntryCount() throws IOException {
+        ensureIndex();
+        return mEntries.size();
+    }
+
+    public Entry getEntry(int index) throws IOException {
+        ensureIndex();
+        return mEntries.get(index);
+    }
+
+    // 最大一项的数据大小，预先分配的buffer按这个大小
+    public int getMaxDataSize() throws IOException {
+        ensureIndex();
+        return mMaxDataSize;
+    }
+
+    /**
+     * 读取第index项的ETC1数据（不含PKM头）到out中，out的position为0，limit为数据大小
+     */
+    public void read(int index, ByteBuffer out) throws IOException {
+        ensureIndex();
+        Entry entry = mEntries.get(index);
+        InputStream in;
+        if (mZipFile != null) {
+            in = mZipFile.getInputStream(mZipEntries.get(index));
+        } else {
+            in = seekStream(index);
+        }
+        try {
+            readFully(in, mHeader, HEADER_SIZE);
+            out.clear();
+            if (out.capacity() < entry.getDataSize()) {
+                throw new IOException("buffer too small for " + entry.getName());
+            }
+            int remaining = entry.getDataSize();
+            while (remaining > 0) {
+                int len = in.read(mIoBuffer, 0, Math.min(mIoBuffer.length, remaining));
+                if (len < 0) {
+                    throw new EOFException("truncated " + entry.getName());
+                }
+                out.put(mIoBuffer, 0, len);
+                remaining -= len;
+            }
+            out.flip();
+        } finally {
+            if (mZipFile != null) {
+                in.close();
+            }
+        }
+    }
+
+    private InputStream seekStream(int index) throws IOException {
+        if (mStream == null || index < mCursor) {
+            closeStream();
+            mStream = new ZipInputStream(mOpener.open());
+            mCursor = 0;
+        }
+        // 跳过中间的项，getNextEntry会跳过当前项剩余的数据
+        ZipEntry zipEntry;
+        while ((zipEntry = mStream.getNextEntry()) != null) {
+            if (zipEntry.isDirectory()) {
+                continue;
+            }
+            if (mCursor++ == index) {
+                return mStream;
+            }
+        }
+        throw new EOFException("entry " + index + " not found");
+    }
+
+    private void ensureIndex() throws IOException {
+        if (mEntries != null) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>();
+        if (mFile != null) {
+            mZipFile = new ZipFile(mFile);
+            mZipEntries = new ArrayList<>();
+            Enumeration<? extends ZipEntry> enumeration = mZipFile.entries();
+            while (enumeration.hasMoreElements()) {
+                ZipEntry zipEntry = enumeration.nextElement();
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+                InputStream in = mZipFile.getInputStream(zipEntry);
+                try {
+                    entries.add(readEntry(zipEntry.getName(), in));
+                } finally {
+                    in.close();
+                }
+                mZipEntries.add(zipEntry);
+            }
+        } else {
+            ZipInputStream in = new ZipInputStream(mOpener.open());
+            try {
+                ZipEntry zipEntry;
+                while ((zipEntry = in.getNextEntry()) != null) {
+                    if (!zipEntry.isDirectory()) {
+                        entries.add(readEntry(zipEntry.getName(), in));
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        }
+        for (Entry entry : entries) {
+            mMaxDataSize = Math.max(mMaxDataSize, entry.getDataSize());
+        }
+        mEntries = entries;
+    }
+
+    private Entry readEntry(String name, InputStream in) throws IOException {
+        readFully(in, mHeader, HEADER_SIZE);
+        if (!isValidHeader(mHeader)) {
+            throw new IOException("Not a PKM file: " + name);
+        }
+        return new Entry(name, readShort(mHeader, 12), readShort(mHeader, 14));
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int size) throws IOException {
+        int offset = 0;
+        while (offset < size) {
+            int len = in.read(buffer, offset, size - offset);
+            if (len < 0) {
+                throw new EOFException("Unable to read PKM file header.");
+            }
+            offset += len;
+        }
+    }
+
+    private static int readShort(byte[] header, int offset) {
+        return ((header[offset] & 0xFF) << 8) | (header[offset + 1] & 0xFF);
+    }
+
+    /**
+     * 与ETC1.isValid相同的检查，不依赖native代码
+     */
+    public static boolean isValidHeader(byte[] header) {
+        if (header[0] != 'P' || header[1] != 'K' || header[2] != 'M' || header[3] != ' '
+                || header[4] != '1' || header[5] != '0') {
+            return false;
+        }
+        int format = readShort(header, 6);
+        int encodedWidth = readShort(header, 8);
+        int encodedHeight = readShort(header, 10);
+        int width = readShort(header, 12);
+        int height = readShort(header, 14);
+        return format == 0 && encodedWidth >= width && encodedWidth - width < 4
+                && encodedHeight >= height && encodedHeight - height < 4;
+    }
+
+    // 与ETC1.getEncodedDataSize相同
+    public static int getEncodedDataSize(int width, int height) {
+        return (((width + 3) & ~3) * ((height + 3) & ~3)) >> 1;
+    }
+
+    private void closeStream() {
+        if (mStream != null) {
+            try {
+                mStream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            mStream = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeStream();
+        if (mZipFile != null) {
+            try {
+                mZipFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            mZipFile = null;
+        }
+        mEntries = null;
+    }
+}
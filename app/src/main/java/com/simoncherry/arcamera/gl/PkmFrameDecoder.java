@@ -0,0 +1,266 @@
+package com.simoncherry.arcamera.gl;
+
+import com.simoncherry.arcamera.track.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 在后台线程中从PkmArchive预先读取序列帧，GL线程只上传已经读好的帧。
+ * 每帧是相邻的两项（颜色和alpha），读到最后一帧后从第0帧继续，循环时GL线程不需要等待。
+ * 帧的buffer在启动时按最大一项分配，之后循环使用。
+ */
+public class PkmFrameDecoder {
+
+    // 耗时直方图的分桶，单位微秒
+    private static final long[] TIME_BOUNDS_US = {100, 250, 500, 1000, 2000, 4000, 8000, 16000};
+    private static final long IDLE_WAIT_MS = 20;
+
+    /**
+     * 读好的一帧，用完后交给recycle
+     */
+    public static class Frame {
+        private ByteBuffer mColor;
+        private ByteBuffer mAlpha;
+        private int mWidth;
+        private int mHeight;
+        private int mIndex;
+        private int mGeneration;
+
+        public ByteBuffer getColor() {
+            return mColor;
+        }
+
+        public ByteBuffer getAlpha() {
+            return mAlpha;
+        }
+
+        public int getWidth() {
+            return mWidth;
+        }
+
+        public int getHeight() {
+            return mHeight;
+        }
+
+        public int getIndex() {
+            return mIndex;
+        }
+    }
+
+    private final PkmArchive mArchive;
+    private final int mPrefetch;
+    private final ArrayBlockingQueue<Frame> mFreeFrames;
+    private final ArrayBlockingQueue<Frame> mReadyFrames;
+    private Thread mThread;
+    private volatile boolean isRunning = false;
+    private volatile boolean isLoop = true;
+    private volatile boolean isFinished = false;
+    private volatile int mFrameCount = -1;
+    private volatile IOException mError;
+
+    // seek时加1，之前读好的帧作废
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private final AtomicInteger mSeekRequest = new AtomicInteger(-1);
+
+    private final AtomicLong mDecodedFrames = new AtomicLong();
+    private final AtomicLong mUnderruns = new AtomicLong();
+    private final AtomicLong mDiscardedFrames = new AtomicLong();
+    private final LatencyHistogram mDecodeTime = new LatencyHistogram(TIME_BOUNDS_US);
+    private final LatencyHistogram mUploadTime = new LatencyHistogram(TIME_BOUNDS_US);
+
+    /**
+     * @param prefetch 最多预先读取的帧数
+     */
+    public PkmFrameDecoder(PkmArchive archive, int prefetch) {
+        mArchive = archive;
+        mPrefetch = Math.max(1, prefetch);
+        mFreeFrames = new ArrayBlockingQueue<>(mPrefetch);
+        mReadyFrames = new ArrayBlockingQueue<>(mPrefetch);
+    }
+
+    public synchronized void start() {
+        if (isRunning) {
+            return;
+        }
+        isRunning = true;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                decodeLoop();
+            }
+        }, "PkmFrameDecoder");
+        mThread.start();
+    }
+
+    /**
+     * 停止后台线程并关闭archive
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            isRunning = false;
+            thread = mThread;
+            mThread = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        mArchive.close();
+    }
+
+    /**
+     * 设置为false时读到最后一帧后停止，之后isFinished返回true
+     */
+    public void setLoop(boolean loop) {
+        isLoop = loop;
+    }
+
+    /**
+     * 从第frame帧开始读取，之前预先读好的帧不再返回
+     */
+    public void seek(int frame) {
+        mGeneration.incrementAndGet();
+        mSeekRequest.set(Math.max(0, frame));
+        isFinished = false;
+    }
+
+    /**
+     * 取出下一帧，没有读好时返回null，不等待。在GL线程中调用
+     */
+    public Frame poll() {
+        Frame frame;
+        while ((frame = mReadyFrames.poll()) != null) {
+            if (frame.mGeneration == mGeneration.get()) {
+                return frame;
+            }
+            mDiscardedFrames.incrementAndGet();
+            recycle(frame);
+        }
+        if (!isFinished && mError == null) {
+            mUnderruns.incrementAndGet();
+        }
+        return null;
+    }
+
+    public void recycle(Frame frame) {
+        mFreeFrames.offer(frame);
+    }
+
+    // 不循环时读完最后一帧，并且已经全部取出
+    public boolean isFinished() {
+        return isFinished && mReadyFrames.isEmpty();
+    }
+
+    // 建立索引之前返回-1
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public IOException getError() {
+        return mError;
+    }
+
+    private void decodeLoop() {
+        try {
+            int count = mArchive.getEntryCount() / 2;
+            int size = mArchive.getMaxDataSize();
+            for (int i = 0; i < mPrefetch; i++) {
+                Frame frame = new Frame();
+                frame.mColor = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+                frame.mAlpha = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+                mFreeFrames.offer(frame);
+            }
+            mFrameCount = count;
+            if (count == 0) {
+                isFinished = true;
+                return;
+            }
+            int next = 0;
+            int generation = mGeneration.get();
+            while (isRunning) {
+                int seek = mSeekRequest.getAndSet(-1);
+                if (seek >= 0) {
+                    next = Math.min(seek, count - 1);
+                    generation = mGeneration.get();
+                    isFinished = false;
+                }
+                if (next >= count) {
+                    if (!isLoop) {
+                        isFinished = true;
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(IDLE_WAIT_MS));
+                        continue;
+                    }
+                    next = 0;
+                }
+                Frame frame = mFreeFrames.poll(IDLE_WAIT_MS, TimeUnit.MILLISECONDS);
+                if (frame == null) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                decode(next, frame);
+                mDecodeTime.record((System.nanoTime() - start) / 1000);
+                frame.mGeneration = generation;
+                mDecodedFrames.incrementAndGet();
+                mReadyFrames.offer(frame);
+                next++;
+            }
+        } catch (InterruptedException e) {
+            // stop
+        } catch (IOException e) {
+            mError = e;
+            isFinished = true;
+        }
+    }
+
+    private void decode(int index, Frame frame) throws IOException {
+        PkmArchive.Entry entry = mArchive.getEntry(index * 2);
+        mArchive.read(index * 2, frame.mColor);
+        mArchive.read(index * 2 + 1, frame.mAlpha);
+        frame.mWidth = entry.getWidth();
+        frame.mHeight = entry.getHeight();
+        frame.mIndex = index;
+    }
+
+    /**
+     * GL线程上传一帧的耗时，由使用方记录
+     */
+    public void recordUpload(long ns) {
+        mUploadTime.record(ns / 1000);
+    }
+
+    public long getDecodedFrames() {
+        return mDecodedFrames.get();
+    }
+
+    // GL线程需要新的一帧时还没有读好的次数
+    public long getUnderruns() {
+        return mUnderruns.get();
+    }
+
+    // seek后作废的帧数
+    public long getDiscardedFrames() {
+        return mDiscardedFrames.get();
+    }
+
+    // 读取一帧的耗时，单位微秒
+    public LatencyHistogram getDecodeTime() {
+        return mDecodeTime;
+    }
+
+    // 上传一帧的耗时，单位微秒
+    public LatencyHistogram getUploadTime() {
+        return mUploadTime;
+    }
+}
@@ -0,0 +1,468 @@
+package com.simoncherry.arcamera.gl;
+
+import android.content.res.Resources;
+
+import com.simoncherry.arcamera.track.LatencyHistogram;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内共享的GL程序缓存，按GL上下文和shader源码的hash区分。
+ * 同样源码的Filter共用一个程序，uniform和attribute的位置也一并缓存。
+ * 引用计数归零的程序放入最近最少使用的空闲列表，切换回刚用过的滤镜时不用重新编译；
+ * 空闲的超过上限、trimIdle或者上下文重建时才删除。
+ * 设置了保存目录并且驱动支持时，编译好的程序用glProgramBinary保存下来，下次启动直接加载不再编译。
+ * 需要在GL线程中调用（loadAsset除外）。
+ */
+public class ProgramCache {
+
+    private static final int BINARY_MAGIC = 0x50524742;     // "PRGB"
+    public static final int DEFAULT_MAX_IDLE = 8;
+
+    /**
+     * 实际的GL调用，本地测试时可以替换
+     */
+    public interface Backend {
+        // 当前线程的GL上下文，没有时返回null
+        Object getCurrentContext();
+
+        // 编译并链接，失败返回0
+        int compile(String vertex, String fragment);
+
+        boolean isProgram(int program);
+
+        void deleteProgram(int program);
+
+        int getUniformLocation(int program, String name);
+
+        int getAttribLocation(int program, String name);
+
+        // 不支持时返回null，format[0]写入二进制格式
+        byte[] getProgramBinary(int program, int[] format);
+
+        // 加载失败返回0
+        int loadProgramBinary(int format, byte[] binary);
+
+        // 驱动的标识，驱动变化后保存的二进制不再使用
+        String getDriverId();
+    }
+
+    /**
+     * 缓存中的一个程序
+     */
+    public static class Program {
+        private final Object mContext;
+        private final String mKey;
+        private final String mVertex;
+        private final String mFragment;
+        private int mId;
+        private int mRefCount = 0;
+        private final Map<String, Integer> mUniforms = new HashMap<>();
+        private final Map<String, Integer> mAttribs = new HashMap<>();
+
+        Program(Object context, String key, String vertex, String fragment, int id) {
+            mContext = context;
+            mKey = key;
+            mVertex = vertex;
+            mFragment = fragment;
+            mId = id;
+        }
+
+        public int getId() {
+            return mId;
+        }
+
+        public int getRefCount() {
+            return mRefCount;
+        }
+    }
+
+    private static ProgramCache sInstance;
+
+    public static synchronized ProgramCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new ProgramCache(new GlesProgramBackend());
+        }
+        return sInstance;
+    }
+
+    private final Backend mBackend;
+    private final Map<Object, Map<String, Program>> mContexts = new HashMap<>();
+    private final Map<String, String> mAssets = new HashMap<>();
+    // 引用计数为0的程序，按归零的先后排列，最前面的最久没用
+    private final LinkedHashSet<Program> mIdle = new LinkedHashSet<>();
+    private final int mMaxIdle;
+    private File mBinaryDir;
+    private String mDriverId;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mBinaryLoads = new AtomicLong();
+    private final AtomicLong mFailures = new AtomicLong();
+    private final LatencyHistogram mCompileTime = new LatencyHistogram();
+
+    public ProgramCache(Backend backend) {
+        this(backend, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * @param maxIdle 最多保留多少个没有引用的程序
+     */
+    public ProgramCache(Backend backend, int maxIdle) {
+        mBackend = backend;
+        mMaxIdle = Math.max(0, maxIdle);
+    }
+
+    /**
+     * 设置程序二进制的保存目录，为null时不保存
+     */
+    public synchronized void setBinaryDir(File dir) {
+        mBinaryDir = dir;
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            mBinaryDir = null;
+        }
+    }
+
+    /**
+     * 读取assets中的shader源码，读过的不再读取，可以在任意线程调用
+     * @return 读取失败时返回null
+     */
+    public String loadAsset(Resources res, String path) {
+        synchronized (mAssets) {
+            String source = mAssets.get(path);
+            if (source != null) {
+                return source;
+            }
+        }
+        String source = readAsset(res, path);
+        if (source != null) {
+            synchronized (mAssets) {
+                mAssets.put(path, source);
+            }
+        }
+        return source;
+    }
+
+    private static String readAsset(Resources res, String path) {
+        StringBuilder result = new StringBuilder();
+        InputStream is = null;
+        try {
+            is = res.getAssets().open(path);
+            int ch;
+            byte[] buffer = new byte[1024];
+            while (-1 != (ch = is.read(buffer))) {
+                result.append(new String(buffer, 0, ch));
+            }
+        } catch (Exception e) {
+            return null;
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return result.toString().replaceAll("\\r\\n", "\n");
+    }
+
+    /**
+     * 取得当前GL上下文中这对shader的程序，引用计数加1，用完要调用release
+     * @return 编译失败时返回null
+     */
+    public synchronized Program acquire(String vertex, String fragment) {
+        if (vertex == null || fragment == null) {
+            mFailures.incrementAndGet();
+            return null;
+        }
+        Object context = mBackend.getCurrentContext();
+        Map<String, Program> programs = mContexts.get(context);
+        if (programs == null) {
+            programs = new HashMap<>();
+            mContexts.put(context, programs);
+        }
+        String key = getKey(vertex, fragment);
+        Program program = programs.get(key);
+        // 上下文句柄可能被新的上下文复用，缓存的程序已经失效时重新创建
+        if (program != null && (!program.mVertex.equals(vertex) || !program.mFragment.equals(fragment)
+                || !mBackend.isProgram(program.mId))) {
+            programs.remove(key);
+            mIdle.remove(program);
+            program = null;
+        }
+        if (program != null) {
+            mHits.incrementAndGet();
+            mIdle.remove(program);
+        } else {
+            mMisses.incrementAndGet();
+            int id = create(key, vertex, fragment);
+            if (id == 0) {
+                mFailures.incrementAndGet();
+                return null;
+            }
+            program = new Program(context, key, vertex, fragment, id);
+            programs.put(key, program);
+        }
+        program.mRefCount++;
+        return program;
+    }
+
+    /**
+     * 引用计数减1，归零时放入空闲列表，空闲的超过上限时删除最久没用的。
+     * 不在创建它的上下文中时只从缓存中移除，程序随上下文一起销毁
+     */
+    public synchronized void release(Program program) {
+        if (program == null || program.mRefCount <= 0) {
+            return;
+        }
+        if (--program.mRefCount > 0) {
+            return;
+        }
+        Map<String, Program> programs = mContexts.get(program.mContext);
+        // 已经被移出缓存的程序（上下文已销毁或判定失效）id可能被复用，不能删除
+        if (programs == null || programs.get(program.mKey) != program) {
+            program.mId = 0;
+            return;
+        }
+        if (!isCurrent(program)) {
+            remove(program, false);
+            return;
+        }
+        mIdle.add(program);
+        if (mIdle.size() > mMaxIdle) {
+            Program eldest = mIdle.iterator().next();
+            remove(eldest, isCurrent(eldest));
+        }
+    }
+
+    /**
+     * 删除当前上下文中所有空闲的程序，内存紧张时在GL线程调用。其他上下文的只从缓存中移除
+     */
+    public synchronized void trimIdle() {
+        Program[] idle = mIdle.toArray(new Program[mIdle.size()]);
+        for (Program program : idle) {
+            remove(program, isCurrent(program));
+        }
+    }
+
+    /**
+     * 创建了新的GL上下文时调用。之前上下文的空闲程序已经随上下文销毁，句柄可能被新的上下文复用，
+     * 只从缓存中移除，不删除
+     */
+    public synchronized void onContextCreated() {
+        Program[] idle = mIdle.toArray(new Program[mIdle.size()]);
+        for (Program program : idle) {
+            remove(program, false);
+        }
+    }
+
+    private boolean isCurrent(Program program) {
+        Object context = mBackend.getCurrentContext();
+        return context != null && context.equals(program.mContext);
+    }
+
+    // 从缓存和空闲列表中移除，isDelete时同时删除GL程序
+    private void remove(Program program, boolean isDelete) {
+        mIdle.remove(program);
+        Map<String, Program> programs = mContexts.get(program.mContext);
+        if (programs != null && programs.get(program.mKey) == program) {
+            programs.remove(program.mKey);
+            if (programs.isEmpty()) {
+                mContexts.remove(program.mContext);
+            }
+        }
+        if (isDelete) {
+            mBackend.deleteProgram(program.mId);
+        }
+        program.mId = 0;
+    }
+
+    /**
+     * 当前上下文即将销毁时调用，丢弃这个上下文的所有缓存
+     */
+    public synchronized void evictCurrentContext() {
+        Object context = mBackend.getCurrentContext();
+        Map<String, Program> programs = mContexts.remove(context);
+        if (programs != null) {
+            mIdle.removeAll(programs.values());
+        }
+    }
+
+    public synchronized int getUniformLocation(Program program, String name) {
+        Integer location = program.mUniforms.get(name);
+        if (location == null) {
+            location = mBackend.getUniformLocation(program.mId, name);
+            program.mUniforms.put(name, location);
+        }
+        return location;
+    }
+
+    public synchronized int getAttribLocation(Program program, String name) {
+        Integer location = program.mAttribs.get(name);
+        if (location == null) {
+            location = mBackend.getAttribLocation(program.mId, name);
+            program.mAttribs.put(name, location);
+        }
+        return location;
+    }
+
+    private int create(String key, String vertex, String fragment) {
+        long start = System.nanoTime();
+        File file = getBinaryFile(key);
+        if (file != null && file.exists()) {
+            int id = loadBinary(file);
+            if (id != 0) {
+                mBinaryLoads.incrementAndGet();
+                mCompileTime.record((System.nanoTime() - start) / 1000000);
+                return id;
+            }
+            // 驱动不接受保存的二进制，删掉后重新编译
+            file.delete();
+        }
+        int id = mBackend.compile(vertex, fragment);
+        mCompileTime.record((System.nanoTime() - start) / 1000000);
+        if (id != 0 && file != null) {
+            saveBinary(id, file);
+        }
+        return id;
+    }
+
+    private File getBinaryFile(String key) {
+        if (mBinaryDir == null) {
+            return null;
+        }
+        if (mDriverId == null) {
+            mDriverId = mBackend.getDriverId();
+        }
+        if (mDriverId == null) {
+            return null;
+        }
+        return new File(mBinaryDir, key + "_" + Long.toHexString(hash64(mDriverId, "")) + ".bin");
+    }
+
+    private int loadBinary(File file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            if (in.readInt() != BINARY_MAGIC) {
+                return 0;
+            }
+            int format = in.readInt();
+            int length = in.readInt();
+            if (length <= 0 || length > file.length()) {
+                return 0;
+            }
+            byte[] binary = new byte[length];
+            in.readFully(binary);
+            return mBackend.loadProgramBinary(format, binary);
+        } catch (IOException e) {
+            return 0;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void saveBinary(int program, File file) {
+        int[] format = new int[1];
+        byte[] binary = mBackend.getProgramBinary(program, format);
+        if (binary == null) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(temp));
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(format[0]);
+            out.writeInt(binary.length);
+            out.write(binary);
+            out.close();
+            out = null;
+            // 写完整后再改名，避免留下不完整的文件
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            temp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static String getKey(String vertex, String fragment) {
+        return Long.toHexString(hash64(vertex, fragment));
+    }
+
+    /**
+     * 两段源码的64位FNV-1a hash，中间加分隔符，避免拼接位置不同时结果相同
+     */
+    public static long hash64(String a, String b) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < a.length(); i++) {
+            hash = (hash ^ a.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ 0xFFFF) * 0x100000001b3L;
+        for (int i = 0; i < b.length(); i++) {
+            hash = (hash ^ b.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    // 未命中时从保存的二进制加载成功的次数
+    public long getBinaryLoadCount() {
+        return mBinaryLoads.get();
+    }
+
+    public long getFailureCount() {
+        return mFailures.get();
+    }
+
+    // 每次未命中时编译或加载的耗时，单位毫秒
+    public LatencyHistogram getCompileTime() {
+        return mCompileTime;
+    }
+
+    // 没有引用、留着待复用的程序数
+    public synchronized int getIdleCount() {
+        return mIdle.size();
+    }
+
+    public synchronized int getCachedCount() {
+        int count = 0;
+        Iterator<Map<String, Program>> iterator = mContexts.values().iterator();
+        while (iterator.hasNext()) {
+            count += iterator.next().size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,75 @@
+package com.simoncherry.arcamera.gl;
+
+import android.opengl.GLSurfaceView;
+import android.os.Build;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+/**
+ * 选择RGB888、16位深度的GLES2 config，与GLSurfaceView默认的一致，但优先选择带EGL_RECORDABLE_ANDROID的，
+ * 这样EncoderSurface可以用同一个config创建编码器的窗口Surface。没有可录制的config时退回普通config。
+ * 同样条件下优先选择也支持ES3的config，交给Gles3ContextFactory创建GLES3的上下文。
+ */
+public class RecordableConfigChooser implements GLSurfaceView.EGLConfigChooser {
+
+    private static final int EGL_OPENGL_ES2_BIT = 4;
+
+    @Override
+    public EGLConfig chooseConfig(EGL10 egl, EGLDisplay display) {
+        EGLConfig config = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            config = chooseConfig(egl, display, true);
+        }
+        if (config == null) {
+            config = chooseConfig(egl, display, false);
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("No config chosen");
+        }
+        return config;
+    }
+
+    private EGLConfig chooseConfig(EGL10 egl, EGLDisplay display, boolean isRecordable) {
+        int[] attribList = {
+                EGL10.EGL_RED_SIZE, 8,
+                EGL10.EGL_GREEN_SIZE, 8,
+                EGL10.EGL_BLUE_SIZE, 8,
+                EGL10.EGL_DEPTH_SIZE, 16,
+                EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+                isRecordable ? EncoderSurface.EGL_RECORDABLE_ANDROID : EGL10.EGL_NONE, 1,
+                EGL10.EGL_NONE
+        };
+        int[] numConfigs = new int[1];
+        if (!egl.eglChooseConfig(display, attribList, null, 0, numConfigs) || numConfigs[0] <= 0) {
+            return null;
+        }
+        EGLConfig[] configs = new EGLConfig[numConfigs[0]];
+        if (!egl.eglChooseConfig(display, attribList, configs, configs.length, numConfigs)) {
+            return null;
+        }
+        // 与GLSurfaceView默认一样取颜色位数刚好相等的
+        EGLConfig chosen = null;
+        int[] value = new int[1];
+        for (EGLConfig config : configs) {
+            if (getAttrib(egl, display, config, EGL10.EGL_RED_SIZE, value) == 8
+                    && getAttrib(egl, display, config, EGL10.EGL_GREEN_SIZE, value) == 8
+                    && getAttrib(egl, display, config, EGL10.EGL_BLUE_SIZE, value) == 8
+                    && getAttrib(egl, display, config, EGL10.EGL_ALPHA_SIZE, value) == 0) {
+                if ((getAttrib(egl, display, config, EGL10.EGL_RENDERABLE_TYPE, value)
+                        & Gles3ContextFactory.EGL_OPENGL_ES3_BIT_KHR) != 0) {
+                    return config;
+                }
+                if (chosen == null) {
+                    chosen = config;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    private static int getAttrib(EGL10 egl, EGLDisplay display, EGLConfig config, int attribute, int[] value) {
+        return egl.eglGetConfigAttrib(display, config, attribute, value) ? value[0] : 0;
+    }
+}
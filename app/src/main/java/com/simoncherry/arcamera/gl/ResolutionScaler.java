@@ -0,0 +1,250 @@
+package com.simoncherry.arcamera.gl;
+
+import com.simoncherry.arcamera.track.LatencyHistogram;
+
+import java.util.Locale;
+
+/**
+ * 自适应分辨率：按每帧的GPU耗时调整中间FBO的缩放比例，保持目标帧率。
+ * 每攒够一个窗口的样本判断一次：连续超出预算时按预测降到能满足预算的一档，
+ * 连续几个窗口都有足够余量时才升高一档，切换后的第一个窗口不参与判断（包含重新分配FBO的耗时）。
+ * 预测按开销提示把一帧分成随分辨率变化的部分（中间的各遍）和不变的部分（输出到屏幕、回调等）。
+ * 非线程安全，只在GL线程中使用。
+ */
+public class ResolutionScaler {
+
+    public static final float[] DEFAULT_LEVELS = {1f, 0.85f, 0.7f, 0.6f, 0.5f};
+    public static final int DEFAULT_WINDOW = 30;
+
+    static final float DOWN_THRESHOLD = 0.95f;     // 平均耗时超过预算的这个比例视为超出
+    static final float DOWN_GOAL = 0.85f;          // 降低时选能降到预算这个比例以下的一档
+    static final float UP_THRESHOLD = 0.75f;       // 升高一档后预测仍低于预算的这个比例才升高
+    static final int DOWN_WINDOWS = 2;
+    static final int UP_WINDOWS = 4;
+
+    // GPU耗时直方图的分桶，单位微秒
+    private static final long[] TIME_BOUNDS_US = {4000, 8000, 12000, 16000, 20000, 25000, 33000, 50000, 66000};
+
+    /**
+     * 统计数据，每个窗口回调一次，可以上报
+     */
+    public static class Metrics {
+        public final float scale;
+        public final int width;
+        public final int height;
+        public final float meanFrameMs;     // 这个窗口的平均GPU耗时
+        public final float targetFrameMs;
+        public final String source;         // 耗时的来源，见GpuFrameTimer
+        public final long scaleChanges;
+        public final LatencyHistogram frameTime;     // 累计的GPU耗时，单位微秒
+
+        Metrics(float scale, int width, int height, float meanFrameMs, float targetFrameMs,
+                String source, long scaleChanges, LatencyHistogram frameTime) {
+            this.scale = scale;
+            this.width = width;
+            this.height = height;
+            this.meanFrameMs = meanFrameMs;
+            this.targetFrameMs = targetFrameMs;
+            this.source = source;
+            this.scaleChanges = scaleChanges;
+            this.frameTime = frameTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "scale=%.2f %dx%d gpu=%.1fms target=%.1fms source=%s changes=%d",
+                    scale, width, height, meanFrameMs, targetFrameMs, source, scaleChanges);
+        }
+    }
+
+    public interface Listener {
+        // 在GL线程中回调
+        void onMetrics(Metrics metrics);
+    }
+
+    private final float[] mLevels;
+    private int mWindow;
+    private int mLevel = 0;
+    private volatile long mTargetNs = 1000000000L / 30;
+    private int mBaseWidth, mBaseHeight;
+
+    private float mScalableCost = 1f;
+    private float mFixedCost = 1f;
+
+    private long mWindowSum = 0;
+    private int mWindowCount = 0;
+    private int mOverWindows = 0;
+    private int mUnderWindows = 0;
+    private boolean isSettling = false;
+    private long mScaleChanges = 0;
+
+    private String mSource = "none";
+    private volatile Listener mListener;
+    private final LatencyHistogram mFrameTime = new LatencyHistogram(TIME_BOUNDS_US);
+
+    public ResolutionScaler() {
+        this(DEFAULT_LEVELS, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param levels 从大到小的缩放比例，第一档一般为1
+     * @param window 每多少个样本判断一次
+     */
+    public ResolutionScaler(float[] levels, int window) {
+        mLevels = levels.clone();
+        mWindow = Math.max(1, window);
+    }
+
+    // 耗时的来源只能隔几帧采样一次时，用较小的窗口
+    public void setWindow(int window) {
+        mWindow = Math.max(1, window);
+        mWindowSum = 0;
+        mWindowCount = 0;
+    }
+
+    public void setTargetFrameRate(float fps) {
+        mTargetNs = (long) (1000000000L / fps);
+    }
+
+    public long getTargetFrameNs() {
+        return mTargetNs;
+    }
+
+    // 缩放前的尺寸
+    public void setBaseSize(int width, int height) {
+        mBaseWidth = width;
+        mBaseHeight = height;
+    }
+
+    /**
+     * 开销都按全分辨率（缩放比例为1）时每像素的开销计算
+     * @param scalable 随分辨率变化的各遍的开销之和
+     * @param fixed 不随分辨率变化的各遍的开销之和
+     */
+    public void setCostHints(float scalable, float fixed) {
+        mScalableCost = Math.max(scalable, 0f);
+        mFixedCost = Math.max(fixed, 0f);
+    }
+
+    public void setSource(String source) {
+        mSource = source;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public float getScale() {
+        return mLevels[mLevel];
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    // 缩放后的尺寸，取偶数
+    public int getWidth() {
+        return scaled(mBaseWidth);
+    }
+
+    public int getHeight() {
+        return scaled(mBaseHeight);
+    }
+
+    private int scaled(int size) {
+        return Math.max(2, Math.round(size * getScale() / 2) * 2);
+    }
+
+    public long getScaleChanges() {
+        return mScaleChanges;
+    }
+
+    public LatencyHistogram getFrameTime() {
+        return mFrameTime;
+    }
+
+    /**
+     * 按开销提示预测从当前一档换到level后的耗时
+     */
+    long predict(long frameNs, int level) {
+        float current = mLevels[mLevel];
+        float next = mLevels[level];
+        float cost = mFixedCost + mScalableCost * current * current;
+        if (cost <= 0f) {
+            return frameNs;
+        }
+        return (long) (frameNs * (mFixedCost + mScalableCost * next * next) / cost);
+    }
+
+    /**
+     * 加入一帧的GPU耗时
+     * @return 缩放比例是否改变，改变后需要按getWidth/getHeight重新设置中间FBO的尺寸
+     */
+    public boolean addSample(long frameNs) {
+        mFrameTime.record(frameNs / 1000);
+        mWindowSum += frameNs;
+        if (++mWindowCount < mWindow) {
+            return false;
+        }
+        long mean = mWindowSum / mWindowCount;
+        mWindowSum = 0;
+        mWindowCount = 0;
+        boolean isChanged = false;
+        if (isSettling) {
+            isSettling = false;
+        } else {
+            isChanged = evaluate(mean);
+        }
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onMetrics(new Metrics(getScale(), getWidth(), getHeight(), mean / 1e6f,
+                    mTargetNs / 1e6f, mSource, mScaleChanges, mFrameTime));
+        }
+        return isChanged;
+    }
+
+    private boolean evaluate(long mean) {
+        if (mean > mTargetNs * DOWN_THRESHOLD) {
+            mUnderWindows = 0;
+            if (++mOverWindows >= DOWN_WINDOWS && mLevel < mLevels.length - 1) {
+                int level = mLevel + 1;
+                while (level < mLevels.length - 1 && predict(mean, level) > mTargetNs * DOWN_GOAL) {
+                    level++;
+                }
+                return setLevel(level);
+            }
+            return false;
+        }
+        mOverWindows = 0;
+        if (mLevel > 0 && predict(mean, mLevel - 1) < mTargetNs * UP_THRESHOLD) {
+            if (++mUnderWindows >= UP_WINDOWS) {
+                return setLevel(mLevel - 1);
+            }
+        } else {
+            mUnderWindows = 0;
+        }
+        return false;
+    }
+
+    private boolean setLevel(int level) {
+        mOverWindows = 0;
+        mUnderWindows = 0;
+        if (level == mLevel) {
+            return false;
+        }
+        mLevel = level;
+        mScaleChanges++;
+        isSettling = true;
+        return true;
+    }
+
+    // 丢弃当前窗口中的样本并回到第一档，例如数据源的尺寸改变后
+    public void reset() {
+        mLevel = 0;
+        mWindowSum = 0;
+        mWindowCount = 0;
+        mOverWindows = 0;
+        mUnderWindows = 0;
+        isSettling = false;
+    }
+}
@@ -5,15 +5,26 @@ import android.graphics.Point;
 import android.graphics.SurfaceTexture;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
+import android.os.Build;
+import android.util.Log;
+import android.view.Surface;
 import android.view.View;
 import android.view.ViewGroup;
 
 import com.simoncherry.arcamera.filter.camera.AFilter;
+import com.simoncherry.arcamera.filter.camera.FaceParamBlock;
 import com.simoncherry.arcamera.filter.camera.GroupFilter;
 import com.simoncherry.arcamera.filter.camera.NoFilter;
 import com.simoncherry.arcamera.filter.camera.TextureFilter;
 
-import java.nio.ByteBuffer;
+import org.rajawali3d.util.GLStateCache;
+import org.rajawali3d.view.SceneLayer;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.microedition.khronos.egl.EGL10;
@@ -28,6 +39,8 @@ import javax.microedition.khronos.opengles.GL10;
 
 public class TextureController implements GLSurfaceView.Renderer {
 
+    private static final String TAG = TextureController.class.getSimpleName();
+
     private Context mContext;
     private Object mSurface;
     private GLView mGLView;
@@ -50,10 +63,14 @@ public class TextureController implements GLSurfaceView.Renderer {
     private boolean isRecord = false;                             // 录像flag
     private boolean isShoot = false;                              // 一次拍摄flag
     private boolean isNeedFrame = false;
-    private ByteBuffer[] outPutBuffer = new ByteBuffer[3];        // 用于存储回调数据的buffer
+    private static final int CALLBACK_BUFFER_COUNT = 3;
+    private static final int OUTPUT_BUFFER_COUNT = 5;             // 录像时编码线程最多持有4份回调数据，再留一份给GL线程
+    private FrameBufferRing mOutputRing;                          // 用于存储回调数据的buffer，带引用计数
     private FrameCallback mFrameCallback;                         // 回调
     private int frameCallbackWidth, frameCallbackHeight;          // 回调数据的宽高
-    private int indexOutput=0;                                    // 回调数据使用的buffer索引
+    private boolean isAsyncReadback = true;                       // 连续回调时是否用PBO异步读取（需要GLES3的上下文）
+    private PboReader mPboReader;                                 // 异步读取，回调的是两帧之前的数据
+    private boolean isPboChecked = false;                         // 是否已经检查过上下文的GLES版本
 
     public static final int FRAME_CALLBACK_DEFAULT = 0;           // 预览和FrameCallback均应用滤镜效果
     public static final int FRAME_CALLBACK_NO_FILTER = 1;         // 预览有滤镜效果，FrameCallback没有
@@ -63,6 +80,19 @@ public class TextureController implements GLSurfaceView.Renderer {
 
     private int mFrameCallbackType = FRAME_CALLBACK_DEFAULT;
 
+    private EncoderSurface mEncoderSurface;                       // 编码器的输入Surface，录像时直接绘制到编码器
+    private volatile EncoderListener mEncoderListener;
+    private float[] mEncoderOM = new float[16];                   // 用于绘制到编码器的变换矩阵
+    private AFilter mOverlayFilter;                               // 把3D模型层叠加到录像画面上
+    private float[] mEncoderOverlayOM = MatrixUtils.flip(Arrays.copyOf(AFilter.OM, 16), false, true);  // 3D模型层的纹理是从下到上逐行的
+    private volatile SceneLayer mSceneLayer;                      // Rajawali通过共享的EGL上下文提供的3D模型层
+    private int mOverlayTexture;                                  // 这一帧取到的3D模型层纹理，0为不叠加
+
+    private volatile boolean isAdaptiveResolution = true;         // 是否按GPU耗时自动降低中间特效的分辨率
+    private GpuFrameTimer mFrameTimer = new GpuFrameTimer();
+    private ResolutionScaler mResolutionScaler = new ResolutionScaler();
+    private Point mRenderSize = new Point();                      // 中间特效实际使用的尺寸
+
 
     public TextureController(Context context) {
         this.mContext = context;
@@ -99,9 +129,18 @@ public class TextureController implements GLSurfaceView.Renderer {
         v.addView(mGLView);
         v.setVisibility(View.GONE);
 
+        // 编译好的shader程序保存到缓存目录，下次启动不再编译
+        ProgramCache.getInstance().setBinaryDir(new File(mContext.getCacheDir(), "programs"));
+
         mEffectFilter = new TextureFilter(mContext.getResources());
         mShowFilter = new NoFilter(mContext.getResources());
         mGroupFilter = new GroupFilter(mContext.getResources());
+        mOverlayFilter = new NoFilter(mContext.getResources()) {
+            @Override
+            protected void onClear() {
+                // 叠加在已有画面上，不清屏
+            }
+        };
 
         //设置默认的DateSize，DataSize由AiyaProvider根据数据源的图像宽高进行设置
         mDataSize = new Point(720,1280);
@@ -128,9 +167,13 @@ public class TextureController implements GLSurfaceView.Renderer {
 
     @Override
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+        // 新的上下文，之前记录的GL状态已经无效
+        GLStateCache.getInstance().invalidate();
+        ProgramCache.getInstance().onContextCreated();
         mEffectFilter.create();
         mGroupFilter.create();
         mShowFilter.create();
+        mOverlayFilter.create();
 
         if(!isParamSet.get()){
             if(mRenderer!=null){
@@ -142,7 +185,18 @@ public class TextureController implements GLSurfaceView.Renderer {
 
         mEffectFilter.setFlag(mDirectionFlag);
 
+        // 新的上下文，重新检查支持的计时方式
+        mFrameTimer.create();
+        mResolutionScaler.setSource(mFrameTimer.getSource());
+        mResolutionScaler.setWindow(ResolutionScaler.DEFAULT_WINDOW / mFrameTimer.getSampleInterval());
+
         deleteFrameBuffer();
+        // 新的EGL上下文，之前的PBO已经失效
+        mPboReader = null;
+        isPboChecked = false;
+        if (mSceneLayer != null) {
+            mSceneLayer.onConsumerContextCreated();
+        }
         GLES20.glGenFramebuffers(1,mExportFrame,0);
         EasyGlUtils.genTexturesWithParameter(1,mExportTexture,0,GLES20.GL_RGBA,mDataSize.x,
                 mDataSize.y);
@@ -160,9 +214,9 @@ public class TextureController implements GLSurfaceView.Renderer {
         mShowFilter.setSize(width, height);
         mShowFilter.setMatrix(SM);
 
-        mGroupFilter.setSize(mDataSize.x,mDataSize.y);
-
-        mEffectFilter.setSize(mDataSize.x, mDataSize.y);
+        mResolutionScaler.setBaseSize(mDataSize.x, mDataSize.y);
+        mResolutionScaler.reset();
+        setRenderSize(mDataSize.x, mDataSize.y);
         mShowFilter.setSize(mDataSize.x,mDataSize.y);
 
         if(mRenderer != null){
@@ -172,7 +226,14 @@ public class TextureController implements GLSurfaceView.Renderer {
 
     @Override
     public void onDrawFrame(GL10 gl) {
+        GLStateCache.getInstance().beginFrame();
         if(isParamSet.get()){
+            boolean isAdaptive = isAdaptiveResolution && mFrameTimer.isSupported();
+            if (isAdaptive) {
+                mFrameTimer.beginFrame();
+            }
+            // 人脸参数每帧最多取一次，链中的关键点滤镜共用
+            FaceParamBlock.getInstance().beginFrame(System.nanoTime());
             mEffectFilter.draw();
             mGroupFilter.setTextureId(mEffectFilter.getOutputTexture());
             mGroupFilter.draw();
@@ -199,7 +260,203 @@ public class TextureController implements GLSurfaceView.Renderer {
             if(mRenderer != null){
                 mRenderer.onDrawFrame(gl);
             }
+            acquireOverlay();
             callbackIfNeeded();
+            drawToEncoderIfNeeded();
+            releaseOverlay();
+            if (isAdaptive) {
+                mFrameTimer.endFrame();
+            }
+            updateRenderSize(isAdaptive);
+        }
+    }
+
+    // 中间特效在缩小的尺寸下绘制，mShowFilter按纹理坐标放大到窗口，宽高比不变，各矩阵不需要重新计算
+    private void setRenderSize(int width, int height) {
+        mRenderSize.set(width, height);
+        mEffectFilter.setSize(width, height);
+        mGroupFilter.setSize(width, height);
+    }
+
+    private void updateRenderSize(boolean isAdaptive) {
+        if (!isAdaptive) {
+            // 关闭后恢复原尺寸
+            if (mRenderSize.x != mDataSize.x || mRenderSize.y != mDataSize.y) {
+                mResolutionScaler.reset();
+                setRenderSize(mDataSize.x, mDataSize.y);
+            }
+            return;
+        }
+        mResolutionScaler.setCostHints(1f + mGroupFilter.getCostHint(), getFixedCost());
+        boolean isChanged = false;
+        for (long sample = mFrameTimer.poll(); sample >= 0; sample = mFrameTimer.poll()) {
+            isChanged |= mResolutionScaler.addSample(sample);
+        }
+        if (isChanged) {
+            setRenderSize(mResolutionScaler.getWidth(), mResolutionScaler.getHeight());
+        }
+    }
+
+    // 不随中间分辨率变化的各遍：输出到屏幕、回调和编码器，按相对数据源的面积折算
+    private float getFixedCost() {
+        float area = (float) mDataSize.x * mDataSize.y;
+        float cost = mWindowSize.x * mWindowSize.y / area;
+        if (mFrameCallback != null && (isRecord || isNeedFrame)) {
+            cost += frameCallbackWidth * frameCallbackHeight / area;
+        }
+        EncoderSurface encoderSurface = mEncoderSurface;
+        if (encoderSurface != null) {
+            cost += encoderSurface.getWidth() * encoderSurface.getHeight() / area;
+        }
+        return cost;
+    }
+
+    /**
+     * 是否按GPU耗时自动调整中间特效的分辨率，默认开启，GLES2上没有不阻塞的测量方式时不起作用
+     */
+    public void setAdaptiveResolution(boolean isAdaptive) {
+        this.isAdaptiveResolution = isAdaptive;
+    }
+
+    // 自适应分辨率要保持的帧率，默认30
+    public void setTargetFrameRate(float fps) {
+        mResolutionScaler.setTargetFrameRate(fps);
+    }
+
+    /**
+     * 自适应分辨率的统计数据，约每秒一次在GL线程中回调
+     */
+    public void setResolutionListener(ResolutionScaler.Listener listener) {
+        mResolutionScaler.setListener(listener);
+    }
+
+    /**
+     * 设置录像编码器的输入Surface（MediaCodec.createInputSurface），之后每帧在GL线程中直接绘制一次到编码器；
+     * 传null停止。会等待GL线程完成切换，停止后才能安全地释放编码器。
+     * @return 是否可以绘制到编码器，返回false时需要改用FrameCallback录像
+     */
+    public boolean setEncoderSurface(final Surface surface, final int width, final int height) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicBoolean isCreated = new AtomicBoolean(false);
+        mGLView.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                releaseEncoderSurface();
+                if (surface != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                    try {
+                        mEncoderSurface = new EncoderSurface(surface, width, height);
+                        MatrixUtils.getMatrix(mEncoderOM, MatrixUtils.TYPE_CENTER_CROP,
+                                mDataSize.x, mDataSize.y, width, height);
+                        isCreated.set(true);
+                    } catch (IllegalStateException e) {
+                        Log.e(TAG, "create encoder surface failed", e);
+                    }
+                }
+                latch.countDown();
+            }
+        });
+        try {
+            if (!latch.await(500, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return isCreated.get();
+    }
+
+    public interface EncoderListener {
+        // 绘制到编码器失败，已经停止绘制到编码器，在GL线程中回调
+        void onEncoderSurfaceError();
+    }
+
+    public void setEncoderListener(EncoderListener listener) {
+        mEncoderListener = listener;
+    }
+
+    /**
+     * 设置叠加到录像和拍照画面上的3D模型层，在创建GL环境前调用。SceneLayer启用后，
+     * 直接绘制到编码器时叠加到编码器画面上，录像和拍照的回调数据也是叠加后的，回调方不需要再在CPU中合成；
+     * SceneLayer.isAvailable()为false时不叠加，需要回调方自己合成
+     */
+    public void setSceneLayer(SceneLayer layer) {
+        mSceneLayer = layer;
+    }
+
+    private void releaseEncoderSurface() {
+        if (mEncoderSurface != null) {
+            mEncoderSurface.release();
+            mEncoderSurface = null;
+        }
+    }
+
+    // 录像或拍照时取最新的3D模型层，这一帧的各遍绘制共用
+    private void acquireOverlay() {
+        SceneLayer layer = mSceneLayer;
+        boolean isNeeded = mEncoderSurface != null || mFrameCallback != null && (isRecord || isShoot);
+        mOverlayTexture = layer != null && isNeeded ? layer.acquire() : 0;
+    }
+
+    private void releaseOverlay() {
+        if (mOverlayTexture != 0) {
+            mSceneLayer.release();
+            mOverlayTexture = 0;
+        }
+    }
+
+    // 把3D模型层混合到当前绑定的画面上
+    private void drawOverlay(float[] matrix) {
+        if (mOverlayTexture == 0) {
+            return;
+        }
+        // 3D模型层是预乘alpha的，透明背景不覆盖相机画面
+        GLStateCache glState = GLStateCache.getInstance();
+        glState.enable(GLES20.GL_BLEND);
+        glState.blendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        mOverlayFilter.setMatrix(matrix);
+        mOverlayFilter.setTextureId(mOverlayTexture);
+        mOverlayFilter.draw();
+        glState.disable(GLES20.GL_BLEND);
+    }
+
+    // 录像时把这一帧再画一次到编码器的Surface上，数据不经过CPU
+    private void drawToEncoderIfNeeded() {
+        EncoderSurface encoderSurface = mEncoderSurface;
+        if (encoderSurface == null) {
+            return;
+        }
+        if (!encoderSurface.makeCurrent()) {
+            onEncoderSurfaceError();
+            return;
+        }
+        GLES20.glViewport(0, 0, encoderSurface.getWidth(), encoderSurface.getHeight());
+        switch (mFrameCallbackType) {
+            case FRAME_CALLBACK_NO_FILTER:
+                mShowFilter.setTextureId(mEffectFilter.getOutputTexture());
+                break;
+            default:
+                mShowFilter.setTextureId(mGroupFilter.getOutputTexture());
+                break;
+        }
+        mShowFilter.setMatrix(mEncoderOM);
+        mShowFilter.draw();
+        mShowFilter.setMatrix(SM);
+
+        drawOverlay(mEncoderOverlayOM);
+
+        boolean isSwapped = encoderSurface.swapAndRestore(System.nanoTime());
+        GLES20.glViewport(0, 0, mWindowSize.x, mWindowSize.y);
+        if (!isSwapped) {
+            onEncoderSurfaceError();
+        }
+    }
+
+    private void onEncoderSurfaceError() {
+        releaseEncoderSurface();
+        EncoderListener listener = mEncoderListener;
+        if (listener != null) {
+            listener.onEncoderSurfaceError();
         }
     }
 
@@ -215,6 +472,13 @@ public class TextureController implements GLSurfaceView.Renderer {
         mGroupFilter.clearAll();
     }
 
+    /**
+     * 用filter替换当前所有滤镜，一次切换完成，不会绘制出没有滤镜的一帧
+     */
+    public void setFilter(AFilter filter) {
+        mGroupFilter.setFilters(Collections.singletonList(filter));
+    }
+
     public void setShowType(int type){
         this.mShowType = type;
         if(mWindowSize.x > 0 && mWindowSize.y > 0){
@@ -252,8 +516,8 @@ public class TextureController implements GLSurfaceView.Renderer {
         this.frameCallbackWidth = width;
         this.frameCallbackHeight = height;
         if (frameCallbackWidth > 0 && frameCallbackHeight > 0) {
-            if(outPutBuffer != null){
-                outPutBuffer = new ByteBuffer[3];
+            if (mOutputRing == null || mOutputRing.getSize() != frameCallbackWidth * frameCallbackHeight * 4) {
+                mOutputRing = new FrameBufferRing(OUTPUT_BUFFER_COUNT, frameCallbackWidth * frameCallbackHeight * 4);
             }
             calculateCallbackOM();
             this.mFrameCallback = frameCallback;
@@ -286,14 +550,33 @@ public class TextureController implements GLSurfaceView.Renderer {
         mFrameCallbackType = type;
     }
 
+    /**
+     * 录像/推流等连续回调时，是否用PBO异步读取。异步读取不阻塞GPU，但回调的数据晚两帧；
+     * 不支持GLES3时自动使用同步读取。拍照始终同步读取当前帧。
+     */
+    public void setAsyncReadback(boolean isAsync) {
+        this.isAsyncReadback = isAsync;
+    }
+
+    /**
+     * 在onFrame中调用，之后可以在其他线程继续使用bytes，用完必须调用releaseFrame
+     * @return bytes不是回调的数据或已经被回收时返回false，此时不能在onFrame之外使用
+     */
+    public boolean retainFrame(byte[] bytes) {
+        FrameBufferRing ring = mOutputRing;
+        return ring != null && ring.retain(bytes);
+    }
+
+    public void releaseFrame(byte[] bytes) {
+        FrameBufferRing ring = mOutputRing;
+        if (ring != null) {
+            ring.release(bytes);
+        }
+    }
+
     //需要回调，则缩放图片到指定大小，读取数据并回调
     private void callbackIfNeeded() {
         if (mFrameCallback != null && (isRecord || isShoot || isNeedFrame)) {
-            indexOutput = indexOutput++ >= 2 ? 0 : indexOutput;
-            if (outPutBuffer[indexOutput] == null) {
-                outPutBuffer[indexOutput] = ByteBuffer.allocate(frameCallbackWidth *
-                        frameCallbackHeight*4);
-            }
             GLES20.glViewport(0, 0, frameCallbackWidth, frameCallbackHeight);
             EasyGlUtils.bindFrameTexture(mExportFrame[0],mExportTexture[0]);
 
@@ -310,23 +593,70 @@ public class TextureController implements GLSurfaceView.Renderer {
 
             mShowFilter.setMatrix(callbackOM);
             mShowFilter.draw();
-            frameCallback();
+            if (isRecord || isShoot) {
+                // 纹理和回调数据都是从下到上逐行的，不需要翻转
+                drawOverlay(AFilter.OM);
+            }
+            // 拍照要当前帧，同步读取；连续回调时尽量异步读取
+            frameCallback(isShoot || !isRecord && !isNeedFrame);
             isShoot = false;
             EasyGlUtils.unBindFrameBuffer();
             mShowFilter.setMatrix(SM);
+        } else if (mPboReader != null) {
+            // 停止连续回调后，PBO中剩下的旧帧不再回调
+            mPboReader.reset();
         }
     }
 
     //读取数据并回调
-    private void frameCallback(){
-        GLES20.glReadPixels(0, 0, frameCallbackWidth, frameCallbackHeight,
-                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, outPutBuffer[indexOutput]);
-        ByteBuffer byteBuffer = outPutBuffer[indexOutput];
-        if (byteBuffer != null) {
-            mFrameCallback.onFrame(byteBuffer.array(), 0);
+    private void frameCallback(boolean isSync){
+        // 回调方还占用着所有buffer时丢掉这一帧，不覆盖回调方正在使用的数据
+        FrameBufferRing.Buffer buffer = mOutputRing.obtain();
+        // 相机采集时间，与System.nanoTime()基准相同（个别设备除外，由使用方判断）
+        long timestamp = mEffectFilter.getTexture().getTimestamp();
+        boolean isReady;
+        if (!isSync && prepareAsyncReadback()) {
+            isReady = mPboReader.read(buffer != null ? buffer.getBuffer() : null, timestamp);
+            timestamp = mPboReader.getReadTimestamp();
+        } else {
+            isReady = buffer != null;
+            if (isReady) {
+                GLES20.glReadPixels(0, 0, frameCallbackWidth, frameCallbackHeight,
+                        GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, buffer.getBuffer());
+            }
+        }
+        if (buffer != null) {
+            if (isReady) {
+                mFrameCallback.onFrame(buffer.getData(), timestamp);
+            }
+            mOutputRing.release(buffer);
         }
     }
 
+    // 按需创建PBO，不支持GLES3时返回false
+    private boolean prepareAsyncReadback() {
+        if (!isAsyncReadback) {
+            return false;
+        }
+        if (!isPboChecked) {
+            isPboChecked = true;
+            if (!PboReader.isSupported()) {
+                isAsyncReadback = false;
+                return false;
+            }
+        }
+        if (mPboReader != null && (mPboReader.getWidth() != frameCallbackWidth
+                || mPboReader.getHeight() != frameCallbackHeight)) {
+            mPboReader.destroy();
+            mPboReader = null;
+        }
+        if (mPboReader == null) {
+            mPboReader = new PboReader(frameCallbackWidth, frameCallbackHeight, CALLBACK_BUFFER_COUNT);
+            mPboReader.create();
+        }
+        return true;
+    }
+
     public void create(int width, int height){
         mGLView.attachedToWindow();
         surfaceCreated(mSurface);
@@ -334,6 +664,7 @@ public class TextureController implements GLSurfaceView.Renderer {
     }
 
     public void destroy(){
+        setEncoderSurface(null, 0, 0);
         if(mRenderer != null){
             mRenderer.onDestroy();
         }
@@ -342,6 +673,18 @@ public class TextureController implements GLSurfaceView.Renderer {
         mGLView.clear();
     }
 
+    /**
+     * 内存紧张时调用，在GL线程中删除没有使用的程序
+     */
+    public void trimMemory(){
+        mGLView.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                ProgramCache.getInstance().trimIdle();
+            }
+        });
+    }
+
     public void requestRender(){
         mGLView.requestRender();
     }
@@ -375,7 +718,10 @@ public class TextureController implements GLSurfaceView.Renderer {
                     egl.eglDestroySurface(display, surface);
                 }
             });
-            setEGLContextClientVersion(2);
+            // 与EncoderSurface共用这个config，录像时才能直接绘制到编码器
+            setEGLConfigChooser(new RecordableConfigChooser());
+            // 支持时使用GLES3的上下文，PBO异步读取等功能按上下文实际的版本启用
+            setEGLContextFactory(new Gles3ContextFactory());
             setRenderer(TextureController.this);
             setRenderMode(RENDERMODE_WHEN_DIRTY);
             setPreserveEGLContextOnPause(true);
@@ -284,6 +284,7 @@ public class Ornament {
         private List<Animation3D> animation3Ds;
         private int textureResId = -1;
         private String texturePath = null;
+        private float[] faceUv = null;     // 换脸模型的贴图坐标
         private boolean isDynamic;
         private boolean needSkinColor;
         private boolean needObjectPick;
@@ -434,6 +435,14 @@ public class Ornament {
             this.texturePath = texturePath;
         }
 
+        public float[] getFaceUv() {
+            return faceUv;
+        }
+
+        public void setFaceUv(float[] faceUv) {
+            this.faceUv = faceUv;
+        }
+
         public boolean isDynamic() {
             return isDynamic;
         }
@@ -2,23 +2,21 @@ package com.simoncherry.arcamera.presenter;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.PointF;
-import android.graphics.Rect;
 import android.os.Environment;
 import android.util.Log;
 
+import com.sensetime.stmobileapi.STMobileApiBridge;
 import com.sensetime.stmobileapi.STMobileFaceAction;
-import com.sensetime.stmobileapi.STUtils;
+import com.simoncherry.arcamera.codec.CapturePipeline;
+import com.simoncherry.arcamera.codec.PhotoCaptureService;
 import com.simoncherry.arcamera.contract.ARCamContract;
 import com.simoncherry.arcamera.model.DynamicPoint;
+import com.simoncherry.arcamera.track.FaceMotionStream;
+import com.simoncherry.arcamera.track.FaceTrackRegistry;
+import com.simoncherry.arcamera.util.PixelCompositor;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,10 +26,34 @@ import java.util.List;
 
 public class ARCamPresenter implements ARCamContract.Presenter {
     private final static String TAG = ARCamPresenter.class.getSimpleName();
+    private final static int ST_MOBILE_MOUTH_AH = 0x00000004;    ///<  嘴巴大张
 
     private Context mContext;
     private ARCamContract.View mView;
     private List<DynamicPoint> mDynamicPoints;
+    // 检测结果按时间戳写入，渲染时再取平滑/外推后的值
+    private final FaceMotionStream mFaceMotionStream = new FaceMotionStream();
+    // 多人脸时每张脸的状态，按人脸ID分配槽位
+    private final FaceTrackRegistry mFaceTrackRegistry = new FaceTrackRegistry();
+    // 检测线程中复用的临时数组，View在回调中拷贝，不保留引用
+    private final float[] mFaceLandmarkX = new float[FaceMotionStream.LANDMARK_COUNT];
+    private final float[] mFaceLandmarkY = new float[FaceMotionStream.LANDMARK_COUNT];
+    private final float[] mFaceTransition = new float[3];
+    // 拍照的合成和保存，第一次拍照时创建
+    private PhotoCaptureService mPhotoCapture;
+    private final CapturePipeline.Callback mPhotoCallback = new CapturePipeline.Callback() {
+        @Override
+        public void onCaptured(String path) {
+            Log.i(TAG, "photo saved: " + mPhotoCapture);
+            mView.onSavePhotoSuccess(path);
+        }
+
+        @Override
+        public void onCaptureFailed(Exception e) {
+            Log.e(TAG, "save photo failed", e);
+            mView.onSavePhotoFailed();
+        }
+    };
 
     public ARCamPresenter(ARCamContract.View mView) {
         this.mView = mView;
@@ -39,60 +61,67 @@ public class ARCamPresenter implements ARCamContract.Presenter {
     }
 
     @Override
-    public void handlePhotoFrame(byte[] bytes, Bitmap mRajawaliBitmap, int photoWidth, int photoHeight) {
-        // 将相机预览的帧数据转成Bitmap
-        Bitmap bitmap = Bitmap.createBitmap(photoWidth, photoHeight, Bitmap.Config.ARGB_8888);
-        ByteBuffer b = ByteBuffer.wrap(bytes);
-        bitmap.copyPixelsFromBuffer(b);
+    public FaceMotionStream getFaceMotionStream() {
+        return mFaceMotionStream;
+    }
+
+    @Override
+    public FaceTrackRegistry getFaceTrackRegistry() {
+        return mFaceTrackRegistry;
+    }
+
+    /**
+     * 提交到拍照服务后立即返回，合成和保存在后台线程中进行，连拍时排队处理
+     * @param onFrameConsumed bytes拷贝完后调用，之后可以复用bytes
+     * @return 排队的照片已满时返回false，此时不会调用onFrameConsumed
+     */
+    @Override
+    public boolean handlePhotoFrame(byte[] bytes, Bitmap mRajawaliBitmap, int photoWidth, int photoHeight,
+                                    Runnable onFrameConsumed) {
         // 如果Rajawali渲染的3D模型截图不为空，就将两者合成
-        if (mRajawaliBitmap != null) {
-            Log.i(TAG, "mRajawaliBitmap != null");
-            mRajawaliBitmap = Bitmap.createScaledBitmap(mRajawaliBitmap, photoWidth, photoHeight, false);
-            Canvas canvas = new Canvas(bitmap);
-            canvas.drawBitmap(mRajawaliBitmap, 0, 0, null);
-            canvas.save(Canvas.ALL_SAVE_FLAG);
-            canvas.restore();
-            mRajawaliBitmap.recycle();
-            mRajawaliBitmap = null;
-        } else {
-            Log.i(TAG, "mRajawaliBitmap == null");
+        Log.i(TAG, mRajawaliBitmap != null ? "mRajawaliBitmap != null" : "mRajawaliBitmap == null");
+        PhotoCaptureService.Request request = new PhotoCaptureService.Request(bytes, photoWidth, photoHeight,
+                mRajawaliBitmap, onFrameConsumed);
+        boolean isAccepted = getPhotoCapture().submit(request, mPhotoCallback);
+        if (!isAccepted) {
+            Log.w(TAG, "photo queue full: " + mPhotoCapture);
+            mView.onSavePhotoFailed();
+        }
+        return isAccepted;
+    }
+
+    private synchronized PhotoCaptureService getPhotoCapture() {
+        if (mPhotoCapture == null) {
+            mPhotoCapture = new PhotoCaptureService(new File(getPhotoDir()));
+        }
+        return mPhotoCapture;
+    }
+
+    private static String getPhotoDir() {
+        return Environment.getExternalStorageDirectory().getAbsolutePath() + "/OpenGLDemo/photo/";
+    }
+
+    @Override
+    public synchronized void release() {
+        if (mPhotoCapture != null) {
+            // 已经提交的照片仍会保存完
+            mPhotoCapture.shutdown();
+            mPhotoCapture = null;
         }
-        // 最后保存
-        savePhoto(bitmap);
-        bitmap.recycle();
-        bitmap = null;
     }
 
     @Override
-    public void handleVideoFrame(byte[] bytes, int[] mRajawaliPixels) {
-        // 如果Rajawali渲染的3D模型帧数据不为空，就将两者合成
+    public void handleVideoFrame(byte[] bytes, int[] mRajawaliPixels, long timestamp) {
+        // 3D模型层已经由TextureController在GL中合成时为null；否则是读回的像素，在CPU中合成
         if (mRajawaliPixels != null) {
-            final ByteBuffer buf = ByteBuffer.allocate(mRajawaliPixels.length * 4)
-                    .order(ByteOrder.LITTLE_ENDIAN);
-            buf.asIntBuffer().put(mRajawaliPixels);
-            mRajawaliPixels = null;
-            byte[] tmpArray = buf.array();
-            for (int i=0; i<bytes.length; i+=4) {
-                byte a = tmpArray[i];
-                byte r = tmpArray[i+1];
-                byte g = tmpArray[i+2];
-                byte b = tmpArray[i+3];
-                // 取Rajawali不透明的部分
-                boolean isBackground = r == 0 && g == 0 && b == 0 && a == 0;
-                if (!isBackground) {
-                    bytes[i] = a;
-                    bytes[i + 1] = r;
-                    bytes[i + 2] = g;
-                    bytes[i + 3] = b;
-                }
-            }
+            PixelCompositor.composite(bytes, mRajawaliPixels);
         }
-        mView.onGetVideoData(bytes);
+        mView.onGetVideoData(bytes, timestamp);
     }
 
     @Override
     public void savePhoto(Bitmap bitmap) {
-        String path = Environment.getExternalStorageDirectory().getAbsolutePath() + "/OpenGLDemo/photo/";
+        String path = getPhotoDir();
         File folder = new File(path);
         if(!folder.exists() && !folder.mkdirs()){
             mView.onSavePhotoFailed();
@@ -101,11 +130,7 @@ public class ARCamPresenter implements ARCamContract.Presenter {
         long dataTake = System.currentTimeMillis();
         final String jpegName = path + dataTake + ".jpg";
         try {
-            FileOutputStream fout = new FileOutputStream(jpegName);
-            BufferedOutputStream bos = new BufferedOutputStream(fout);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 100, bos);
-            bos.flush();
-            bos.close();
+            PhotoCaptureService.writeJpeg(bitmap, new File(jpegName), PhotoCaptureService.DEFAULT_JPEG_QUALITY);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -115,7 +140,8 @@ public class ARCamPresenter implements ARCamContract.Presenter {
 
     // 处理3D模型的旋转
     @Override
-    public void handle3dModelRotation(float pitch, float roll, float yaw) {
+    public void handle3dModelRotation(float pitch, float roll, float yaw, long timestamp) {
+        mFaceMotionStream.updateRotation(timestamp, -pitch, roll+90, -yaw);
         mView.onGet3dModelRotation(-pitch, roll+90, -yaw);
     }
 
@@ -123,52 +149,107 @@ public class ARCamPresenter implements ARCamContract.Presenter {
     @Override
     public void handle3dModelTransition(STMobileFaceAction[] faceActions,
                                         int orientation, int eye_dist, float yaw,
-                                        int previewWidth, int previewHeight) {
+                                        int previewWidth, int previewHeight, long timestamp) {
+        computeTransition(faceActions[0].face, orientation == 270, eye_dist, yaw,
+                previewWidth, previewHeight, mFaceTransition);
+        float x = mFaceTransition[0];
+        float y = mFaceTransition[1];
+        float z = mFaceTransition[2];
+        Log.i(TAG, "transition: x= " + x + ", y= " + y + ", z= " + z);
+
+        mFaceMotionStream.updateTransition(timestamp, x, y, z);
+        mView.onGet3dModelTransition(x, y, z);
+    }
+
+    // 处理人脸关键点
+    @Override
+    public void handleFaceLandmark(STMobileFaceAction[] faceActions, int orientation, int mouthAh,
+                                   int previewWidth, int previewHeight, long timestamp) {
+        boolean rotate270 = orientation == 270;
+        if (faceActions != null && faceActions.length > 0) {
+            STMobileFaceAction faceAction = faceActions[0];
+            Log.i("Test", "-->> face count = "+faceActions.length);
+            computeLandmarks(faceAction.face, rotate270, previewWidth, previewHeight,
+                    mFaceLandmarkX, mFaceLandmarkY);
+
+            mFaceMotionStream.updateLandmarks(timestamp, mFaceLandmarkX, mFaceLandmarkY, mouthAh);
+            mView.onGetFaceLandmark(mFaceLandmarkX, mFaceLandmarkY, mouthAh);
+        }
+    }
+
+    // 处理所有人脸，每张脸的姿态和关键点写入各自的槽位
+    @Override
+    public void handleMultiFace(STMobileFaceAction[] faceActions, int orientation,
+                                int previewWidth, int previewHeight, long timestamp) {
+        if (faceActions == null || faceActions.length == 0) {
+            return;
+        }
         boolean rotate270 = orientation == 270;
-        STMobileFaceAction r = faceActions[0];
-        Rect rect;
+        mFaceTrackRegistry.setPrimaryId(faceActions[0].face.ID);
+        for (STMobileFaceAction faceAction : faceActions) {
+            STMobileApiBridge.st_mobile_106_t face = faceAction.face;
+            FaceTrackRegistry.Face state = mFaceTrackRegistry.obtain(face.ID, timestamp);
+            if (state == null) {
+                // 超过最大人脸数，忽略
+                continue;
+            }
+            FaceMotionStream motion = state.getMotion();
+            motion.updateRotation(timestamp, -face.pitch, face.roll+90, -face.yaw);
+            computeTransition(face, rotate270, face.eye_dist, face.yaw,
+                    previewWidth, previewHeight, mFaceTransition);
+            motion.updateTransition(timestamp, mFaceTransition[0], mFaceTransition[1], mFaceTransition[2]);
+            computeLandmarks(face, rotate270, previewWidth, previewHeight, mFaceLandmarkX, mFaceLandmarkY);
+            motion.updateLandmarks(timestamp, mFaceLandmarkX, mFaceLandmarkY,
+                    (faceAction.face_action & ST_MOBILE_MOUTH_AH) == 0 ? 0 : 1);
+        }
+    }
+
+    // 根据人脸框和两眼距离计算3D模型的平移，结果依次为x, y, z
+    private static void computeTransition(STMobileApiBridge.st_mobile_106_t face, boolean rotate270,
+                                          int eye_dist, float yaw,
+                                          int previewWidth, int previewHeight, float[] out) {
+        // 与STUtils.RotateDeg270/RotateDeg90旋转后的人脸框中心一致，不新建Rect
+        float centerX;
+        float centerY;
         if (rotate270) {
-            rect = STUtils.RotateDeg270(r.getFace().getRect(), previewWidth, previewHeight);
+            centerX = (face.rect.top + face.rect.bottom) / 2.0f;
+            centerY = previewWidth - (face.rect.left + face.rect.right) / 2.0f;
         } else {
-            rect = STUtils.RotateDeg90(r.getFace().getRect(), previewWidth, previewHeight);
+            centerX = previewHeight - (face.rect.top + face.rect.bottom) / 2.0f;
+            centerY = (face.rect.left + face.rect.right) / 2.0f;
         }
 
-        float centerX = (rect.right + rect.left) / 2.0f;
-        float centerY = (rect.bottom + rect.top) / 2.0f;
         float x = (centerX / previewHeight) * 2.0f - 1.0f;
         float y = (centerY / previewWidth) * 2.0f - 1.0f;
         float tmp = eye_dist * 0.000001f - 1115;  // 1115xxxxxx ~ 1140xxxxxx - > 0 ~ 25
         tmp = (float) (tmp / Math.cos(Math.PI*yaw/180));  // 根据旋转角度还原两眼距离
         tmp = tmp * 0.04f;  // 0 ~ 25 -> 0 ~ 1
         float z = tmp * 3.0f + 1.0f;
-        Log.i(TAG, "transition: x= " + x + ", y= " + y + ", z= " + z);
-
-        mView.onGet3dModelTransition(x, y, z);
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
     }
 
-    // 处理人脸关键点
-    @Override
-    public void handleFaceLandmark(STMobileFaceAction[] faceActions, int orientation, int mouthAh,
-                                   int previewWidth, int previewHeight) {
-        boolean rotate270 = orientation == 270;
-        if (faceActions != null && faceActions.length > 0) {
-            STMobileFaceAction faceAction = faceActions[0];
-            Log.i("Test", "-->> face count = "+faceActions.length);
-            PointF[] points = faceAction.getFace().getPointsArray();
-            float[] landmarkX = new float[points.length];
-            float[] landmarkY = new float[points.length];
-            for (int i = 0; i < points.length; i++) {
-                if (rotate270) {
-                    points[i] = STUtils.RotateDeg270(points[i], previewWidth, previewHeight);
-                } else {
-                    points[i] = STUtils.RotateDeg90(points[i], previewWidth, previewHeight);
-                }
-
-                landmarkX[i] = 1 - points[i].x / 480.0f;
-                landmarkY[i] = points[i].y / 640.0f;
+    // 将106个关键点旋转到屏幕方向并归一化，直接读points_array，不新建PointF
+    private static void computeLandmarks(STMobileApiBridge.st_mobile_106_t face, boolean rotate270,
+                                         int previewWidth, int previewHeight,
+                                         float[] landmarkX, float[] landmarkY) {
+        float[] points = face.points_array;
+        for (int i = 0; i < FaceMotionStream.LANDMARK_COUNT; i++) {
+            float px = points[2 * i];
+            float py = points[2 * i + 1];
+            float x;
+            float y;
+            if (rotate270) {
+                x = py;
+                y = previewWidth - px;
+            } else {
+                x = previewHeight - py;
+                y = px;
             }
 
-            mView.onGetFaceLandmark(landmarkX, landmarkY, mouthAh);
+            landmarkX[i] = 1 - x / 480.0f;
+            landmarkY[i] = y / 640.0f;
         }
     }
 
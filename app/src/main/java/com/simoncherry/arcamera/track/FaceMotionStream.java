@@ -0,0 +1,130 @@
+package com.simoncherry.arcamera.track;
+
+/**
+ * 带时间戳的人脸关键点、旋转角度和平移量，检测线程写入，渲染线程按渲染时间读取平滑/外推后的值。
+ * 各部分单独加锁，读写都不分配内存。
+ */
+public class FaceMotionStream {
+
+    public static final int LANDMARK_COUNT = 106;
+
+    private final OneEuroPredictor mLandmarks;
+    private final OneEuroPredictor mRotation;
+    private final OneEuroPredictor mTransition;
+
+    private final float[] mLandmarkIn = new float[LANDMARK_COUNT * 2];
+    private final float[] mLandmarkOut = new float[LANDMARK_COUNT * 2];
+    // 旋转和平移各用一个输入数组，由各自的锁保护
+    private final float[] mRotationIn = new float[3];
+    private final float[] mTransitionIn = new float[3];
+
+    private volatile int mMouthOpen = 0;
+
+    public FaceMotionStream() {
+        // 关键点是0~1的归一化坐标，角度单位是度，平移是GL坐标，参数按各自的量级设置
+        mLandmarks = new OneEuroPredictor(LANDMARK_COUNT * 2, 1.5f, 8.0f, 1.0f);
+        mRotation = new OneEuroPredictor(3, 1.0f, 0.05f, 1.0f);
+        mTransition = new OneEuroPredictor(3, 1.0f, 2.0f, 1.0f);
+    }
+
+    public OneEuroPredictor getLandmarkPredictor() {
+        return mLandmarks;
+    }
+
+    public OneEuroPredictor getRotationPredictor() {
+        return mRotation;
+    }
+
+    public OneEuroPredictor getTransitionPredictor() {
+        return mTransition;
+    }
+
+    public void updateLandmarks(long timestampNs, float[] landmarkX, float[] landmarkY, int mouthOpen) {
+        synchronized (mLandmarks) {
+            System.arraycopy(landmarkX, 0, mLandmarkIn, 0, LANDMARK_COUNT);
+            System.arraycopy(landmarkY, 0, mLandmarkIn, LANDMARK_COUNT, LANDMARK_COUNT);
+            mLandmarks.update(timestampNs, mLandmarkIn, 0);
+        }
+        mMouthOpen = mouthOpen;
+    }
+
+    public boolean sampleLandmarks(long timestampNs, float[] outX, float[] outY) {
+        synchronized (mLandmarks) {
+            if (!mLandmarks.predict(timestampNs, mLandmarkOut, 0)) {
+                return false;
+            }
+            System.arraycopy(mLandmarkOut, 0, outX, 0, LANDMARK_COUNT);
+            System.arraycopy(mLandmarkOut, LANDMARK_COUNT, outY, 0, LANDMARK_COUNT);
+            return true;
+        }
+    }
+
+    /**
+     * @return 最后一次写入关键点的时间，没有数据时返回-1
+     */
+    public long getLandmarkTimestamp() {
+        synchronized (mLandmarks) {
+            return mLandmarks.hasData() ? mLandmarks.getLastTimestamp() : -1;
+        }
+    }
+
+    public int getMouthOpen() {
+        return mMouthOpen;
+    }
+
+    public void updateRotation(long timestampNs, float pitch, float roll, float yaw) {
+        synchronized (mRotation) {
+            mRotationIn[0] = pitch;
+            mRotationIn[1] = roll;
+            mRotationIn[2] = yaw;
+            mRotation.update(timestampNs, mRotationIn, 0);
+        }
+    }
+
+    /**
+     * @param out 依次为 pitch, roll, yaw
+     */
+    public boolean sampleRotation(long timestampNs, float[] out) {
+        return sampleRotation(timestampNs, out, 0);
+    }
+
+    public boolean sampleRotation(long timestampNs, float[] out, int offset) {
+        synchronized (mRotation) {
+            return mRotation.predict(timestampNs, out, offset);
+        }
+    }
+
+    public void updateTransition(long timestampNs, float x, float y, float z) {
+        synchronized (mTransition) {
+            mTransitionIn[0] = x;
+            mTransitionIn[1] = y;
+            mTransitionIn[2] = z;
+            mTransition.update(timestampNs, mTransitionIn, 0);
+        }
+    }
+
+    /**
+     * @param out 依次为 x, y, z
+     */
+    public boolean sampleTransition(long timestampNs, float[] out) {
+        return sampleTransition(timestampNs, out, 0);
+    }
+
+    public boolean sampleTransition(long timestampNs, float[] out, int offset) {
+        synchronized (mTransition) {
+            return mTransition.predict(timestampNs, out, offset);
+        }
+    }
+
+    public void reset() {
+        synchronized (mLandmarks) {
+            mLandmarks.reset();
+        }
+        synchronized (mRotation) {
+            mRotation.reset();
+        }
+        synchronized (mTransition) {
+            mTransition.reset();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.simoncherry.arcamera.track;
+
+/**
+ * 多人脸的状态表，按检测器给出的人脸ID分配固定的槽位，每个槽位有自己的FaceMotionStream。
+ * 检测线程写入，渲染线程按槽位批量取姿态；超过一段时间没有再检测到的人脸视为已消失，槽位可被复用。
+ * 槽位和数组都是预先分配的，更新和采样不分配内存。
+ */
+public class FaceTrackRegistry {
+
+    public static final int MAX_FACES = 4;
+    // 每张脸的姿态：pitch, roll, yaw, x, y, z
+    public static final int POSE_SIZE = 6;
+
+    public static class Face {
+        private final int mSlot;
+        private final FaceMotionStream mMotion = new FaceMotionStream();
+        private int mId = -1;
+        private long mLastSeenNs;
+        private boolean mInUse = false;
+
+        Face(int slot) {
+            mSlot = slot;
+        }
+
+        public int getSlot() {
+            return mSlot;
+        }
+
+        public int getId() {
+            return mId;
+        }
+
+        public long getLastSeen() {
+            return mLastSeenNs;
+        }
+
+        public FaceMotionStream getMotion() {
+            return mMotion;
+        }
+    }
+
+    private final Face[] mFaces;
+    private long mLostTimeoutNs = 300 * 1000000L;
+    // 主人脸（检测结果中的第一张脸）由原有的单人脸流程处理
+    private int mPrimaryId = -1;
+
+    public FaceTrackRegistry() {
+        this(MAX_FACES);
+    }
+
+    public FaceTrackRegistry(int maxFaces) {
+        mFaces = new Face[maxFaces];
+        for (int i = 0; i < maxFaces; i++) {
+            mFaces[i] = new Face(i);
+        }
+    }
+
+    public int getMaxFaces() {
+        return mFaces.length;
+    }
+
+    // 超过这个时间没有检测到就认为人脸已经离开画面
+    public void setLostTimeoutMs(long ms) {
+        mLostTimeoutNs = ms * 1000000L;
+    }
+
+    public Face getFace(int slot) {
+        return mFaces[slot];
+    }
+
+    /**
+     * 取人脸ID对应的槽位，新出现的人脸占用一个空闲槽位
+     * @return 槽位已满时返回null
+     */
+    public synchronized Face obtain(int faceId, long timestampNs) {
+        Face free = null;
+        for (Face face : mFaces) {
+            if (face.mInUse && face.mId == faceId) {
+                face.mLastSeenNs = timestampNs;
+                return face;
+            }
+            if (free == null && !isAlive(face, timestampNs)) {
+                free = face;
+            }
+        }
+        if (free != null) {
+            free.mId = faceId;
+            free.mInUse = true;
+            free.mLastSeenNs = timestampNs;
+            free.mMotion.reset();
+        }
+        return free;
+    }
+
+    public synchronized void setPrimaryId(int faceId) {
+        mPrimaryId = faceId;
+    }
+
+    /**
+     * @return 主人脸所在的槽位，没有时返回-1
+     */
+    public synchronized int getPrimarySlot() {
+        for (Face face : mFaces) {
+            if (face.mInUse && face.mId == mPrimaryId) {
+                return face.mSlot;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized boolean isActive(int slot, long timestampNs) {
+        return isAlive(mFaces[slot], timestampNs);
+    }
+
+    public synchronized int getActiveCount(long timestampNs) {
+        int count = 0;
+        for (Face face : mFaces) {
+            if (isAlive(face, timestampNs)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 一次取出所有在画面中的人脸在某一时刻的姿态，供渲染线程每帧调用
+     * @param outActive 长度不小于最大人脸数，对应槽位是否有人脸
+     * @param outPose 长度不小于最大人脸数 * POSE_SIZE，按槽位存放
+     * @return 在画面中的人脸数
+     */
+    public int samplePoses(long timestampNs, boolean[] outActive, float[] outPose) {
+        int count = 0;
+        for (int i = 0; i < mFaces.length; i++) {
+            Face face = mFaces[i];
+            boolean active = isActive(i, timestampNs)
+                    && face.mMotion.sampleRotation(timestampNs, outPose, i * POSE_SIZE)
+                    && face.mMotion.sampleTransition(timestampNs, outPose, i * POSE_SIZE + 3);
+            outActive[i] = active;
+            if (active) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized void clear() {
+        for (Face face : mFaces) {
+            face.mInUse = false;
+            face.mId = -1;
+            face.mMotion.reset();
+        }
+        mPrimaryId = -1;
+    }
+
+    private boolean isAlive(Face face, long timestampNs) {
+        return face.mInUse && timestampNs - face.mLastSeenNs <= mLostTimeoutNs;
+    }
+}
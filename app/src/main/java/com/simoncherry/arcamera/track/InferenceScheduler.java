@@ -0,0 +1,147 @@
+package com.simoncherry.arcamera.track;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 人脸检测的调度器，只保留最新的一帧。
+ * 检测比预览慢时，旧的待检测帧直接丢弃，不会在Looper里越积越多导致关键点越来越滞后。
+ */
+public class InferenceScheduler {
+
+    public interface FrameProcessor {
+        /**
+         * 在检测线程中调用，返回后调度器会release这一帧
+         */
+        void process(PreviewFramePool.Frame frame);
+    }
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final FrameProcessor mProcessor;
+    private final AtomicReference<PreviewFramePool.Frame> mPending = new AtomicReference<>();
+
+    // 每N帧检测一次，1为每帧都检测
+    private volatile int mFrameInterval = 1;
+    private int mFrameCounter = 0;
+    private volatile boolean mIsQuit = false;
+
+    private final AtomicLong mSubmitted = new AtomicLong();
+    private final AtomicLong mSkipped = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mProcessed = new AtomicLong();
+    private final LatencyHistogram mTrackLatency = new LatencyHistogram();
+
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            PreviewFramePool.Frame frame = mPending.getAndSet(null);
+            if (frame == null) {
+                return;
+            }
+            if (mIsQuit) {
+                frame.release();
+                return;
+            }
+            long start = SystemClock.uptimeMillis();
+            try {
+                mProcessor.process(frame);
+            } finally {
+                frame.release();
+                mTrackLatency.record(SystemClock.uptimeMillis() - start);
+                mProcessed.incrementAndGet();
+            }
+        }
+    };
+
+    public InferenceScheduler(String name, FrameProcessor processor) {
+        mProcessor = processor;
+        mThread = new HandlerThread(name);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    public void setFrameInterval(int interval) {
+        mFrameInterval = interval < 1 ? 1 : interval;
+    }
+
+    public int getFrameInterval() {
+        return mFrameInterval;
+    }
+
+    /**
+     * 提交一帧待检测，调用方把这一帧的引用交给调度器
+     * 只应在同一个线程（相机回调线程）中调用
+     */
+    public void submit(PreviewFramePool.Frame frame) {
+        mSubmitted.incrementAndGet();
+        if (mIsQuit) {
+            frame.release();
+            return;
+        }
+        if (mFrameCounter++ % mFrameInterval != 0) {
+            mSkipped.incrementAndGet();
+            frame.release();
+            return;
+        }
+        PreviewFramePool.Frame stale = mPending.getAndSet(frame);
+        if (stale != null) {
+            // 上一帧还没开始检测，丢掉；检测线程里已经有一次待执行的drain，不需要再post
+            mDropped.incrementAndGet();
+            stale.release();
+        } else {
+            mHandler.post(mDrainRunnable);
+        }
+    }
+
+    public void quit() {
+        mIsQuit = true;
+        mHandler.removeCallbacks(mDrainRunnable);
+        PreviewFramePool.Frame frame = mPending.getAndSet(null);
+        if (frame != null) {
+            frame.release();
+        }
+        mThread.quit();
+    }
+
+    public long getSubmittedCount() {
+        return mSubmitted.get();
+    }
+
+    public long getSkippedCount() {
+        return mSkipped.get();
+    }
+
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    public long getProcessedCount() {
+        return mProcessed.get();
+    }
+
+    public LatencyHistogram getTrackLatency() {
+        return mTrackLatency;
+    }
+
+    public void resetMetrics() {
+        mSubmitted.set(0);
+        mSkipped.set(0);
+        mDropped.set(0);
+        mProcessed.set(0);
+        mTrackLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "submitted=" + getSubmittedCount()
+                + ", skipped=" + getSkippedCount()
+                + ", dropped=" + getDroppedCount()
+                + ", processed=" + getProcessedCount()
+                + ", trackLatency{" + mTrackLatency + "}";
+    }
+}
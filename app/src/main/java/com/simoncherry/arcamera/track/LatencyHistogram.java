@@ -0,0 +1,131 @@
+package com.simoncherry.arcamera.track;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定分桶的耗时直方图（毫秒），可以在多个线程中记录，不分配内存
+ */
+public class LatencyHistogram {
+
+    // 每个桶的上界（包含），最后一个桶收集所有超过上界的值
+    private static final long[] DEFAULT_BOUNDS = {5, 10, 16, 33, 50, 66, 100, 200, 500};
+
+    private final long[] mBounds;
+    private final AtomicLongArray mCounts;
+    private final AtomicLong mTotalCount = new AtomicLong();
+    private final AtomicLong mTotalMs = new AtomicLong();
+    private final AtomicLong mMaxMs = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(DEFAULT_BOUNDS);
+    }
+
+    public LatencyHistogram(long[] bounds) {
+        mBounds = bounds.clone();
+        mCounts = new AtomicLongArray(mBounds.length + 1);
+    }
+
+    public void record(long ms) {
+        if (ms < 0) {
+            ms = 0;
+        }
+        int bucket = mBounds.length;
+        for (int i = 0; i < mBounds.length; i++) {
+            if (ms <= mBounds[i]) {
+                bucket = i;
+                break;
+            }
+        }
+        mCounts.incrementAndGet(bucket);
+        mTotalCount.incrementAndGet();
+        mTotalMs.addAndGet(ms);
+        long max;
+        while (ms > (max = mMaxMs.get())) {
+            if (mMaxMs.compareAndSet(max, ms)) {
+                break;
+            }
+        }
+    }
+
+    public int getBucketCount() {
+        return mBounds.length + 1;
+    }
+
+    /**
+     * @return 第index个桶的上界，最后一个桶返回Long.MAX_VALUE
+     */
+    public long getBucketBound(int index) {
+        return index < mBounds.length ? mBounds[index] : Long.MAX_VALUE;
+    }
+
+    public long getBucket(int index) {
+        return mCounts.get(index);
+    }
+
+    public long getCount() {
+        return mTotalCount.get();
+    }
+
+    public long getMax() {
+        return mMaxMs.get();
+    }
+
+    public float getMean() {
+        long count = mTotalCount.get();
+        return count == 0 ? 0 : (float) mTotalMs.get() / count;
+    }
+
+    /**
+     * 按桶估算分位数，返回所在桶的上界
+     * @param fraction 0~1，例如0.95
+     */
+    public long getPercentile(float fraction) {
+        long count = mTotalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * fraction);
+        long sum = 0;
+        for (int i = 0; i < mBounds.length; i++) {
+            sum += mCounts.get(i);
+            if (sum >= target) {
+                return mBounds[i];
+            }
+        }
+        return mMaxMs.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalCount.set(0);
+        mTotalMs.set(0);
+        mMaxMs.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("count=").append(getCount())
+                .append(", mean=").append(getMean())
+                .append(", p50=").append(getPercentile(0.5f))
+                .append(", p95=").append(getPercentile(0.95f))
+                .append(", max=").append(getMax())
+                .append(", buckets=[");
+        for (int i = 0; i < getBucketCount(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            if (i < mBounds.length) {
+                sb.append("<=").append(mBounds[i]);
+            } else {
+                sb.append(">").append(mBounds[mBounds.length - 1]);
+            }
+            sb.append(':').append(mCounts.get(i));
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+}
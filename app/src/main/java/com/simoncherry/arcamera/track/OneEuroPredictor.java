@@ -0,0 +1,130 @@
+package com.simoncherry.arcamera.track;
+
+/**
+ * 多通道的One Euro滤波 + 匀速外推。
+ * 检测结果按时间戳输入，渲染时按渲染时间取值：慢速时强平滑去抖，快速时降低延迟，
+ * 并用滤波后的速度外推到渲染时刻，这样检测频率低于渲染频率时画面也不会一顿一顿的。
+ * update/predict都不分配内存，非线程安全，由调用方加锁。
+ */
+public class OneEuroPredictor {
+
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    private final int mChannels;
+    private final float[] mValue;
+    private final float[] mVelocity;
+
+    private float mMinCutoff;          // 静止时的截止频率(Hz)，越小越平滑
+    private float mBeta;               // 速度对截止频率的影响，越大快速运动时越跟手
+    private float mDerivativeCutoff;   // 速度的截止频率(Hz)
+    private long mMaxPredictionNs = 100 * 1000000L;   // 最大外推时长，避免检测中断时飞出去
+    private long mResetGapNs = 500 * 1000000L;        // 超过这个间隔没有新数据，视为重新出现，不做平滑
+
+    private long mLastTimestampNs;
+    private boolean mHasData = false;
+
+    public OneEuroPredictor(int channels, float minCutoff, float beta, float derivativeCutoff) {
+        mChannels = channels;
+        mValue = new float[channels];
+        mVelocity = new float[channels];
+        mMinCutoff = minCutoff;
+        mBeta = beta;
+        mDerivativeCutoff = derivativeCutoff;
+    }
+
+    public int getChannels() {
+        return mChannels;
+    }
+
+    public void setMinCutoff(float minCutoff) {
+        mMinCutoff = minCutoff;
+    }
+
+    public void setBeta(float beta) {
+        mBeta = beta;
+    }
+
+    public void setDerivativeCutoff(float derivativeCutoff) {
+        mDerivativeCutoff = derivativeCutoff;
+    }
+
+    public void setMaxPredictionMs(long ms) {
+        mMaxPredictionNs = ms * 1000000L;
+    }
+
+    public void setResetGapMs(long ms) {
+        mResetGapNs = ms * 1000000L;
+    }
+
+    public boolean hasData() {
+        return mHasData;
+    }
+
+    public long getLastTimestamp() {
+        return mLastTimestampNs;
+    }
+
+    public void reset() {
+        mHasData = false;
+    }
+
+    /**
+     * 输入一次检测结果
+     * @param timestampNs 检测结果对应的时间
+     * @param raw 长度不小于通道数，从offset开始读取
+     */
+    public void update(long timestampNs, float[] raw, int offset) {
+        long gap = timestampNs - mLastTimestampNs;
+        if (!mHasData || gap <= 0 || gap > mResetGapNs) {
+            if (mHasData && gap <= 0 && gap > -mResetGapNs) {
+                // 乱序或重复的结果，丢弃
+                return;
+            }
+            System.arraycopy(raw, offset, mValue, 0, mChannels);
+            for (int i = 0; i < mChannels; i++) {
+                mVelocity[i] = 0;
+            }
+            mLastTimestampNs = timestampNs;
+            mHasData = true;
+            return;
+        }
+
+        float dt = gap / NANOS_PER_SECOND;
+        float derivativeAlpha = alpha(mDerivativeCutoff, dt);
+        for (int i = 0; i < mChannels; i++) {
+            float x = raw[offset + i];
+            float prev = mValue[i];
+            float velocity = mVelocity[i] + derivativeAlpha * ((x - prev) / dt - mVelocity[i]);
+            float cutoff = mMinCutoff + mBeta * Math.abs(velocity);
+            mValue[i] = prev + alpha(cutoff, dt) * (x - prev);
+            mVelocity[i] = velocity;
+        }
+        mLastTimestampNs = timestampNs;
+    }
+
+    /**
+     * 取某一时刻的值，晚于最后一次检测时按速度外推
+     * @return 还没有数据时返回false，out不变
+     */
+    public boolean predict(long timestampNs, float[] out, int offset) {
+        if (!mHasData) {
+            return false;
+        }
+        long ahead = timestampNs - mLastTimestampNs;
+        if (ahead < 0) {
+            ahead = 0;
+        } else if (ahead > mMaxPredictionNs) {
+            ahead = mMaxPredictionNs;
+        }
+        float dt = ahead / NANOS_PER_SECOND;
+        for (int i = 0; i < mChannels; i++) {
+            out[offset + i] = mValue[i] + mVelocity[i] * dt;
+        }
+        return true;
+    }
+
+    private static float alpha(float cutoff, float dt) {
+        float tau = (float) (1.0 / (2 * Math.PI * cutoff));
+        return 1.0f / (1.0f + tau / dt);
+    }
+}
@@ -0,0 +1,150 @@
+package com.simoncherry.arcamera.track;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 预览帧缓冲池，固定数量的NV21帧循环使用，避免每帧分配内存。
+ * 帧带引用计数，最后一个持有者release后才回到池中，推理线程读取时不会被下一帧覆盖。
+ */
+public class PreviewFramePool {
+
+    private final int mWidth;
+    private final int mHeight;
+    private final ArrayBlockingQueue<Frame> mFreeFrames;
+
+    public PreviewFramePool(int width, int height, int capacity) {
+        mWidth = width;
+        mHeight = height;
+        mFreeFrames = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            mFreeFrames.offer(new Frame(this, width, height));
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 取一个空闲帧，引用计数为1
+     * @return 池已耗尽时返回null，调用方应丢弃当前预览帧
+     */
+    public Frame obtain() {
+        Frame frame = mFreeFrames.poll();
+        if (frame != null) {
+            frame.mRefCount.set(1);
+        }
+        return frame;
+    }
+
+    public int getFreeCount() {
+        return mFreeFrames.size();
+    }
+
+    private void recycle(Frame frame) {
+        mFreeFrames.offer(frame);
+    }
+
+    /**
+     * 将YUV_420_888的三个平面按行跨度、像素跨度拼成NV21（Y平面 + VU交错）
+     * @param out 长度至少为 width * height * 3 / 2
+     */
+    public static void packNV21(ByteBuffer yPlane, int yRowStride,
+                                ByteBuffer uPlane, ByteBuffer vPlane,
+                                int uvRowStride, int uvPixelStride,
+                                int width, int height, byte[] out) {
+        int pos = 0;
+        if (yRowStride == width) {
+            yPlane.position(0);
+            yPlane.get(out, 0, width * height);
+            pos = width * height;
+        } else {
+            for (int row = 0; row < height; row++) {
+                yPlane.position(row * yRowStride);
+                yPlane.get(out, pos, width);
+                pos += width;
+            }
+        }
+
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        for (int row = 0; row < chromaHeight; row++) {
+            int offset = row * uvRowStride;
+            for (int col = 0; col < chromaWidth; col++) {
+                out[pos++] = vPlane.get(offset);
+                out[pos++] = uPlane.get(offset);
+                offset += uvPixelStride;
+            }
+        }
+    }
+
+    public static class Frame {
+        private final PreviewFramePool mPool;
+        private final AtomicInteger mRefCount = new AtomicInteger(0);
+        private final byte[] mData;
+        private final ByteBuffer mBuffer;
+        private final int mWidth;
+        private final int mHeight;
+        private long mTimestamp;
+
+        private Frame(PreviewFramePool pool, int width, int height) {
+            mPool = pool;
+            mWidth = width;
+            mHeight = height;
+            // 人脸检测SDK(JNA)只接受byte[]，所以用堆内存，ByteBuffer只是同一块内存的视图
+            mData = new byte[width * height * 3 / 2];
+            mBuffer = ByteBuffer.wrap(mData);
+        }
+
+        public byte[] getData() {
+            return mData;
+        }
+
+        public ByteBuffer getBuffer() {
+            return mBuffer;
+        }
+
+        public int getWidth() {
+            return mWidth;
+        }
+
+        public int getHeight() {
+            return mHeight;
+        }
+
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        public void setTimestamp(long timestamp) {
+            mTimestamp = timestamp;
+        }
+
+        public void fill(ByteBuffer yPlane, int yRowStride,
+                         ByteBuffer uPlane, ByteBuffer vPlane,
+                         int uvRowStride, int uvPixelStride) {
+            packNV21(yPlane, yRowStride, uPlane, vPlane, uvRowStride, uvPixelStride,
+                    mWidth, mHeight, mData);
+        }
+
+        public Frame retain() {
+            mRefCount.incrementAndGet();
+            return this;
+        }
+
+        public void release() {
+            int count = mRefCount.decrementAndGet();
+            if (count == 0) {
+                mPool.recycle(this);
+            } else if (count < 0) {
+                throw new IllegalStateException("frame released too many times");
+            }
+        }
+    }
+}
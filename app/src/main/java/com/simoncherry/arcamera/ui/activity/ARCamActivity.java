@@ -38,8 +38,9 @@ import com.simoncherry.arcamera.R;
 import com.simoncherry.arcamera.codec.CameraRecorder;
 import com.simoncherry.arcamera.contract.ARCamContract;
 import com.simoncherry.arcamera.filter.camera.AFilter;
+import com.simoncherry.arcamera.filter.camera.BeautyFilter;
+import com.simoncherry.arcamera.filter.camera.FaceParamBlock;
 import com.simoncherry.arcamera.filter.camera.FilterFactory;
-import com.simoncherry.arcamera.filter.camera.LandmarkFilter;
 import com.simoncherry.arcamera.gl.Camera1Renderer;
 import com.simoncherry.arcamera.gl.CameraTrackRenderer;
 import com.simoncherry.arcamera.gl.FrameCallback;
@@ -64,6 +65,7 @@ import com.simoncherry.arcamera.util.PermissionUtils;
 
 import org.rajawali3d.renderer.ISurfaceRenderer;
 import org.rajawali3d.view.ISurface;
+import org.rajawali3d.view.SceneLayer;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -112,10 +114,13 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
     private ISurface mRenderSurface;
     private ISurfaceRenderer mISurfaceRenderer;
     // 因为渲染相机和3D模型的SurfaceView是分开的，拍照/录像时只能分别取两路数据，再合并
-    // 拍照用的
+    // 两个EGL上下文共享纹理时，Rajawali把3D模型层渲染到SceneLayer，由TextureController在GL中合成
+    private SceneLayer mSceneLayer = new SceneLayer();
+    private volatile boolean isLayerForRecord = false;
+    private volatile boolean isLayerForPhoto = false;
+    // 不能共享纹理时，读回3D模型层在CPU中合成，拍照用Bitmap，录像用像素数组
     private Bitmap mRajawaliBitmap = null;
-    // 录像用的
-    private int[] mRajawaliPixels = null;
+    private volatile int[] mRajawaliPixels = null;
 
     // 拍照/录像按钮
     private CircularProgressView mCapture;
@@ -129,9 +134,12 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
     // 步长
     private long timeStep = 50;
     // 录像标志位
-    private boolean recordFlag = false;
+    private volatile boolean recordFlag = false;
     // 处理帧数据的标志位 0为拍照 1为录像
     private int mFrameType = TYPE_NONE;
+    // 录像时视频数据的输入方式，Surface方式直接把GL画面送入编码器，不经过CPU；创建不了编码器的Surface时改用回调数据
+    private volatile int mRecordInputMode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+            ? CameraRecorder.INPUT_SURFACE : CameraRecorder.INPUT_BUFFER;
 
     // 滤镜列表
     private CustomBottomSheet mFilterSheet;
@@ -209,7 +217,7 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
                         break;
                     case MotionEvent.ACTION_UP:
                     case MotionEvent.ACTION_CANCEL:
-                        mController.addFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
+                        mController.setFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
                         break;
                 }
                 return true;
@@ -223,9 +231,15 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
         ((org.rajawali3d.view.SurfaceView) mRenderSurface).setTransparent(true);
         // 将Rajawali的SurfaceView的尺寸设为录像的尺寸
         ((org.rajawali3d.view.SurfaceView) mRenderSurface).getHolder().setFixedSize(VIDEO_WIDTH, VIDEO_HEIGHT);
+        // 在setSurfaceRenderer之前设置，Rajawali才会在共享的EGL上下文中渲染
+        ((org.rajawali3d.view.SurfaceView) mRenderSurface).setSceneLayer(mSceneLayer);
         mISurfaceRenderer = new My3DRenderer(this);
         ((My3DRenderer) mISurfaceRenderer).setScreenW(IMAGE_WIDTH);
         ((My3DRenderer) mISurfaceRenderer).setScreenH(IMAGE_HEIGHT);
+        ((My3DRenderer) mISurfaceRenderer).setFaceMotionStream(mPresenter.getFaceMotionStream());
+        FaceParamBlock.getInstance().setFaceMotionStream(mPresenter.getFaceMotionStream());
+        FaceParamBlock.getInstance().setFaceTrackRegistry(mPresenter.getFaceTrackRegistry());
+        ((My3DRenderer) mISurfaceRenderer).setFaceTrackRegistry(mPresenter.getFaceTrackRegistry());
         mRenderSurface.setSurfaceRenderer(mISurfaceRenderer);
         ((org.rajawali3d.view.SurfaceView) mRenderSurface).setOnTouchListener(new View.OnTouchListener() {
             @Override
@@ -241,7 +255,7 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
             }
         });
 
-        // 拍照时，先取Rajawali的帧数据，转成Bitmap待用；再取相机预览的帧数据，最后合成
+        // 不能共享纹理时拍照，先取Rajawali的帧数据，转成Bitmap待用；再取相机预览的帧数据，最后合成
         ((org.rajawali3d.view.SurfaceView) mRenderSurface).setOnTakeScreenshotListener(new org.rajawali3d.view.SurfaceView.OnTakeScreenshotListener() {
             @Override
             public void onTakeScreenshot(Bitmap bitmap) {
@@ -250,7 +264,7 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
                 mController.takePhoto();
             }
         });
-        // 录像时，取Rajawali的帧数据待用
+        // 不能共享纹理时录像，取Rajawali的帧数据待用，在handleVideoFrame中合成
         ((org.rajawali3d.view.SurfaceView) mRenderSurface).setOnTakeScreenshotListener2(new org.rajawali3d.view.SurfaceView.OnTakeScreenshotListener2() {
             @Override
             public void onTakeScreenshot(int[] pixels) {
@@ -291,8 +305,21 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
                             mFrameType = TYPE_PHOTO;
                             mCapture.removeCallbacks(captureTouchRunnable);
                             mController.setFrameCallback(IMAGE_WIDTH, IMAGE_HEIGHT, ARCamActivity.this);
-                            // 拍照时，先取Rajawali的帧数据
-                            ((org.rajawali3d.view.SurfaceView) mRenderSurface).takeScreenshot();
+                            if (mSceneLayer.isAvailable()) {
+                                // 等Rajawali把一帧渲染到SceneLayer，再拍照，3D模型层在GL中叠加到拍照的回调数据上
+                                mRajawaliBitmap = null;
+                                isLayerForPhoto = true;
+                                updateSceneLayer();
+                                mSceneLayer.requestFrame(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        mController.takePhoto();
+                                    }
+                                });
+                            } else {
+                                // 拍照时，先取Rajawali的帧数据
+                                ((org.rajawali3d.view.SurfaceView) mRenderSurface).takeScreenshot();
+                            }
                         }
                         break;
                 }
@@ -547,10 +574,11 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
                     int max = 1;
                     tracker.setMaxDetectableFaces(max);
                 }
-                boolean isSuccess = LandmarkUtils.replaceTexture(mContext, tracker, path);
+                float[] faceUv = LandmarkUtils.detectMaskUv(tracker, path);
+                boolean isSuccess = faceUv != null;
                 Toast.makeText(mContext, "isSuccess: " + isSuccess, Toast.LENGTH_SHORT).show();
                 if (isSuccess) {
-                    Ornament ornament = OrnamentFactory.getMask(path);
+                    Ornament ornament = OrnamentFactory.getMask(path, faceUv);
                     ((My3DRenderer) mISurfaceRenderer).setOrnamentModel(ornament);
                     ((My3DRenderer) mISurfaceRenderer).setIsNeedUpdateOrnament(true);
                     // 获取人脸中心点的颜色
@@ -579,6 +607,15 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
         public void run() {
             mExecutor = Executors.newSingleThreadExecutor();
             mController = new TextureController(mContext);
+            mController.setSceneLayer(mSceneLayer);
+            mController.setEncoderListener(new TextureController.EncoderListener() {
+                @Override
+                public void onEncoderSurfaceError() {
+                    // 编码器的Surface不可用，结束这次录像，以后改用回调数据录像
+                    mRecordInputMode = CameraRecorder.INPUT_BUFFER;
+                    recordFlag = false;
+                }
+            });
             // 设置数据源
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
                 mRenderer = new CameraTrackRenderer(mContext, (CameraManager)getSystemService(CAMERA_SERVICE), mController, cameraId);
@@ -588,9 +625,11 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
                     public void onTrackDetected(STMobileFaceAction[] faceActions, final int orientation, final int value,
                                                 final float pitch, final float roll, final float yaw,
                                                 final int eye_dist, final int id, final int eyeBlink, final int mouthAh,
-                                                final int headYaw, final int headPitch, final int browJump) {
+                                                final int headYaw, final int headPitch, final int browJump,
+                                                final long timestamp) {
                         onTrackDetectedCallback(faceActions, orientation, value,
-                                pitch, roll, yaw, eye_dist, id, eyeBlink, mouthAh, headYaw, headPitch, browJump);
+                                pitch, roll, yaw, eye_dist, id, eyeBlink, mouthAh, headYaw, headPitch, browJump,
+                                timestamp);
                     }
                 });
 
@@ -629,6 +668,14 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
         }
     };
 
+    // 编码线程用完回调数据后交还给TextureController
+    private CameraRecorder.FrameOwner mVideoFrameOwner = new CameraRecorder.FrameOwner() {
+        @Override
+        public void releaseFrame(byte[] data) {
+            mController.releaseFrame(data);
+        }
+    };
+
     private Runnable recordRunnable = new Runnable() {
 
         @Override
@@ -641,12 +688,37 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
             long time = System.currentTimeMillis();
             String savePath = FileUtils.getPath(getApplicationContext(), "video/", time + ".mp4");
             mp4Recorder.setSavePath(FileUtils.getPath(getApplicationContext(), "video/", time+""), "mp4");
+            // 不能共享纹理时3D模型层只能在CPU中合成到回调数据上，这次录像不能直接绘制到编码器
+            boolean isLayerComposite = mSceneLayer.isAvailable();
+            int inputMode = isLayerComposite ? mRecordInputMode : CameraRecorder.INPUT_BUFFER;
             try {
+                mp4Recorder.setInputMode(inputMode);
                 mp4Recorder.prepare(VIDEO_WIDTH, VIDEO_HEIGHT);
                 mp4Recorder.start();
-                mController.setFrameCallback(VIDEO_WIDTH, VIDEO_HEIGHT, ARCamActivity.this);
-                mController.startRecord();
-                ((org.rajawali3d.view.SurfaceView) mRenderSurface).startRecord();
+                boolean isSurfaceInput = inputMode == CameraRecorder.INPUT_SURFACE;
+                if (isSurfaceInput && !mController.setEncoderSurface(mp4Recorder.getInputSurface(),
+                        VIDEO_WIDTH, VIDEO_HEIGHT)) {
+                    // 当前EGL上下文不能绘制到编码器，以后都改用回调数据录像
+                    Log.e(TAG, "encoder surface unavailable, fall back to frame callback");
+                    mController.setEncoderSurface(null, 0, 0);
+                    mp4Recorder.cancel();
+                    mRecordInputMode = CameraRecorder.INPUT_BUFFER;
+                    isSurfaceInput = false;
+                    mp4Recorder.setInputMode(CameraRecorder.INPUT_BUFFER);
+                    mp4Recorder.prepare(VIDEO_WIDTH, VIDEO_HEIGHT);
+                    mp4Recorder.start();
+                }
+                if (!isSurfaceInput) {
+                    mController.setFrameCallback(VIDEO_WIDTH, VIDEO_HEIGHT, ARCamActivity.this);
+                    mController.startRecord();
+                }
+                if (isLayerComposite) {
+                    // 编码器的Surface和回调数据都在GL中叠加SceneLayer，不再逐帧读回Rajawali的画面
+                    isLayerForRecord = true;
+                    updateSceneLayer();
+                } else {
+                    ((org.rajawali3d.view.SurfaceView) mRenderSurface).startRecord();
+                }
 
                 while (timeCount <= maxTime && recordFlag){
                     long start = System.currentTimeMillis();
@@ -659,8 +731,19 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
                     }
                     timeCount += timeStep;
                 }
-                mController.stopRecord();
-                ((org.rajawali3d.view.SurfaceView) mRenderSurface).stopRecord();
+                if (isSurfaceInput) {
+                    // 先停止绘制到编码器，再停止编码器
+                    mController.setEncoderSurface(null, 0, 0);
+                } else {
+                    mController.stopRecord();
+                }
+                if (isLayerComposite) {
+                    isLayerForRecord = false;
+                    updateSceneLayer();
+                } else {
+                    ((org.rajawali3d.view.SurfaceView) mRenderSurface).stopRecord();
+                    mRajawaliPixels = null;
+                }
                 mFrameType = TYPE_NONE;
 
                 if(timeCount < 2000){
@@ -723,8 +806,7 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
     }
 
     private void setSingleFilter(TextureController controller, int menuId) {
-        controller.clearFilter();
-        controller.addFilter(FilterFactory.getFilter(getResources(), menuId));
+        controller.setFilter(FilterFactory.getFilter(getResources(), menuId));
     }
 
     public void switchCamera(){
@@ -753,9 +835,21 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (mController != null && level >= TRIM_MEMORY_RUNNING_LOW) {
+            mController.trimMemory();
+        }
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        FaceParamBlock.getInstance().setFaceMotionStream(null);
+        FaceParamBlock.getInstance().setFaceTrackRegistry(null);
+        FaceParamBlock.getInstance().clearFaces();
+        mPresenter.release();
         if (mController != null) {
             mController.setNeedFrame(false);
             mController.destroy();
@@ -765,7 +859,8 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
     @Override
     public void onFrame(final byte[] bytes, long time) {
         // 录像有问题，暂时跳过
-        if (mIsNeedFrameCallback && mStreamingView != null && mFrameType != TYPE_RECORD) {
+        if (mIsNeedFrameCallback && mStreamingView != null && mFrameType != TYPE_RECORD
+                && mController.retainFrame(bytes)) {
             runOnUiThread(new Runnable() {
                 @Override
                 public void run() {
@@ -775,6 +870,7 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
                             Bitmap.Config.ARGB_8888);
                     ByteBuffer b = ByteBuffer.wrap(bytes);
                     bitmap.copyPixelsFromBuffer(b);
+                    mController.releaseFrame(bytes);
                     if (mStreamingView != null && mStreamingView instanceof ImageView) {
                         ((ImageView) mStreamingView).setImageBitmap(bitmap);
                     }
@@ -805,13 +901,20 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
             }
 
         } else if (mp4Recorder != null && mFrameType == TYPE_RECORD) {  // 处理录像
-            handleVideoFrame(bytes);
+            handleVideoFrame(bytes, time);
         } else if (mFrameType == TYPE_PHOTO) {  // 处理拍照
             mFrameType = TYPE_NONE;
             handlePhotoFrame(bytes);
+            isLayerForPhoto = false;
+            updateSceneLayer();
         }
     }
 
+    // 只在录像或等待拍照时让Rajawali渲染到SceneLayer，平时直接渲染到屏幕
+    private void updateSceneLayer() {
+        mSceneLayer.setEnabled(isLayerForRecord || isLayerForPhoto);
+    }
+
     @Override
     public void onSavePhotoSuccess(final String fileName) {
         runOnUiThread(new Runnable() {
@@ -833,8 +936,13 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
     }
 
     @Override
-    public void onGetVideoData(byte[] bytes) {
-        mp4Recorder.feedData(bytes, time);
+    public void onGetVideoData(byte[] bytes, long timestamp) {
+        // 持有回调数据直接交给编码线程，不再复制一份；持有不到时由录像器复制
+        if (mController.retainFrame(bytes)) {
+            mp4Recorder.feedData(bytes, timestamp, mVideoFrameOwner);
+        } else {
+            mp4Recorder.feedData(bytes, timestamp);
+        }
     }
 
     @Override
@@ -875,10 +983,10 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
             mSamplePoint = new PointF(x, y);
         }
 
+        // 关键点滤镜从FaceParamBlock读取，GL线程每帧从FaceMotionStream取一次
         AFilter aFilter = mController.getLastFilter();
-        if(aFilter != null && aFilter instanceof LandmarkFilter) {
-            ((LandmarkFilter) aFilter).setLandmarks(landmarkX, landmarkY);
-            ((LandmarkFilter) aFilter).setMouthOpen(isMouthOpen);
+        if (aFilter instanceof BeautyFilter) {
+            ((BeautyFilter) aFilter).setFaceMotionStream(mPresenter.getFaceMotionStream());
         }
 
         float[] copyLandmarkX = new float[landmarkX.length];
@@ -893,29 +1001,55 @@ public class ARCamActivity extends AppCompatActivity implements ARCamContract.Vi
         ((My3DRenderer) mISurfaceRenderer).setDynamicPoints(mDynamicPoints);
     }
 
-    private void handleVideoFrame(final byte[] bytes) {
-        mPresenter.handleVideoFrame(bytes, mRajawaliPixels);
+    /**
+     * 设置下一次录像的视频输入方式
+     * @param mode {@link CameraRecorder#INPUT_SURFACE} 或 {@link CameraRecorder#INPUT_BUFFER}
+     */
+    public void setRecordInputMode(int mode) {
+        if (mode == CameraRecorder.INPUT_SURFACE
+                && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            mode = CameraRecorder.INPUT_BUFFER;
+        }
+        mRecordInputMode = mode;
+    }
+
+    private void handleVideoFrame(final byte[] bytes, long timestamp) {
+        // 共享纹理时3D模型层已经在GL中合成，否则传入读回的像素在CPU中合成
+        mPresenter.handleVideoFrame(bytes, mRajawaliPixels, timestamp);
     }
 
     private void handlePhotoFrame(final byte[] bytes) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                mPresenter.handlePhotoFrame(bytes, mRajawaliBitmap, IMAGE_WIDTH, IMAGE_HEIGHT);
-            }
-        }).start();
+        // 在其他线程使用回调数据，先持有，避免被后面的帧覆盖；连拍时持有不到就拷贝一份
+        final boolean isRetained = mController.retainFrame(bytes);
+        byte[] frame = isRetained ? bytes : bytes.clone();
+        boolean isAccepted = mPresenter.handlePhotoFrame(frame, mRajawaliBitmap, IMAGE_WIDTH, IMAGE_HEIGHT,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isRetained) {
+                            mController.releaseFrame(bytes);
+                        }
+                    }
+                });
+        if (!isAccepted && isRetained) {
+            mController.releaseFrame(bytes);
+        }
     }
 
     private void onTrackDetectedCallback(STMobileFaceAction[] faceActions, final int orientation, final int value,
                                          final float pitch, final float roll, final float yaw,
                                          final int eye_dist, final int id, final int eyeBlink, final int mouthAh,
-                                         final int headYaw, final int headPitch, final int browJump) {
+                                         final int headYaw, final int headPitch, final int browJump,
+                                         final long timestamp) {
         // 处理3D模型的旋转
-        mPresenter.handle3dModelRotation(pitch, roll, yaw);
+        mPresenter.handle3dModelRotation(pitch, roll, yaw, timestamp);
         // 处理3D模型的平移
-        mPresenter.handle3dModelTransition(faceActions, orientation, eye_dist, yaw, PREVIEW_WIDTH, PREVIEW_HEIGHT);
+        mPresenter.handle3dModelTransition(faceActions, orientation, eye_dist, yaw, PREVIEW_WIDTH, PREVIEW_HEIGHT,
+                timestamp);
         // 处理人脸关键点
-        mPresenter.handleFaceLandmark(faceActions, orientation, mouthAh, PREVIEW_WIDTH, PREVIEW_HEIGHT);
+        mPresenter.handleFaceLandmark(faceActions, orientation, mouthAh, PREVIEW_WIDTH, PREVIEW_HEIGHT, timestamp);
+        // 处理其余人脸
+        mPresenter.handleMultiFace(faceActions, orientation, PREVIEW_WIDTH, PREVIEW_HEIGHT, timestamp);
         // 显示人脸检测的参数
         runOnUiThread(new Runnable() {
             @Override
@@ -120,7 +120,8 @@ public class Camera3DActivity extends AppCompatActivity implements FrameCallback
                     public void onTrackDetected(STMobileFaceAction[] faceActions, final int orientation, final int value,
                                                 final float pitch, final float roll, final float yaw,
                                                 final int eye_dist, final int id, final int eyeBlink, final int mouthAh,
-                                                final int headYaw, final int headPitch, final int browJump) {
+                                                final int headYaw, final int headPitch, final int browJump,
+                                                final long timestamp) {
                         handle3dModelRotation(pitch, roll, yaw);
                         handle3dModelTransition(faceActions, orientation, eye_dist, yaw);
                         setLandmarkFilter(faceActions, orientation, mouthAh);
@@ -154,7 +155,7 @@ public class Camera3DActivity extends AppCompatActivity implements FrameCallback
                             break;
                         case MotionEvent.ACTION_UP:
                         case MotionEvent.ACTION_CANCEL:
-                            mController.addFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
+                            mController.setFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
                             break;
                     }
                     return true;
@@ -213,8 +214,7 @@ public class Camera3DActivity extends AppCompatActivity implements FrameCallback
     }
 
     private void setSingleFilter(TextureController controller, int menuId) {
-        controller.clearFilter();
-        controller.addFilter(FilterFactory.getFilter(getResources(), menuId));
+        controller.setFilter(FilterFactory.getFilter(getResources(), menuId));
     }
 
     public void switchCamera(){
@@ -74,7 +74,7 @@ public class CameraActivity extends AppCompatActivity implements FrameCallback {
                             break;
                         case MotionEvent.ACTION_UP:
                         case MotionEvent.ACTION_CANCEL:
-                            mController.addFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
+                            mController.setFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
                             break;
                     }
                     return true;
@@ -141,8 +141,7 @@ public class CameraActivity extends AppCompatActivity implements FrameCallback {
     }
 
     private void setSingleFilter(TextureController controller, int menuId) {
-        controller.clearFilter();
-        controller.addFilter(FilterFactory.getFilter(getResources(), menuId));
+        controller.setFilter(FilterFactory.getFilter(getResources(), menuId));
     }
 
     public void switchCamera(){
@@ -93,7 +93,7 @@ public class CameraRecordActivity extends AppCompatActivity implements FrameCall
                             break;
                         case MotionEvent.ACTION_UP:
                         case MotionEvent.ACTION_CANCEL:
-                            mController.addFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
+                            mController.setFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
                             break;
                     }
                     return true;
@@ -178,8 +178,7 @@ public class CameraRecordActivity extends AppCompatActivity implements FrameCall
     }
 
     private void setSingleFilter(TextureController controller, int menuId) {
-        controller.clearFilter();
-        controller.addFilter(FilterFactory.getFilter(getResources(), menuId));
+        controller.setFilter(FilterFactory.getFilter(getResources(), menuId));
     }
 
     public void switchCamera(){
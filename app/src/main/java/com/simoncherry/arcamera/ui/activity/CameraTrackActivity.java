@@ -90,7 +90,8 @@ public class CameraTrackActivity extends AppCompatActivity implements FrameCallb
                     public void onTrackDetected(STMobileFaceAction[] faceActions, final int orientation, final int value,
                                                 final float pitch, final float roll, final float yaw,
                                                 final int eye_dist, final int id, final int eyeBlink, final int mouthAh,
-                                                final int headYaw, final int headPitch, final int browJump) {
+                                                final int headYaw, final int headPitch, final int browJump,
+                                                final long timestamp) {
                         setLandmarkFilter(faceActions, orientation, mouthAh);
 //                        final Bitmap bitmap = handleDrawLandMark(faceActions, orientation);
                         runOnUiThread(new Runnable() {
@@ -122,7 +123,7 @@ public class CameraTrackActivity extends AppCompatActivity implements FrameCallb
                             break;
                         case MotionEvent.ACTION_UP:
                         case MotionEvent.ACTION_CANCEL:
-                            mController.addFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
+                            mController.setFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
                             break;
                     }
                     return true;
@@ -181,8 +182,7 @@ public class CameraTrackActivity extends AppCompatActivity implements FrameCallb
     }
 
     private void setSingleFilter(TextureController controller, int menuId) {
-        controller.clearFilter();
-        controller.addFilter(FilterFactory.getFilter(getResources(), menuId));
+        controller.setFilter(FilterFactory.getFilter(getResources(), menuId));
     }
 
     public void switchCamera(){
@@ -175,7 +175,8 @@ public class DynamicModel3Activity extends AppCompatActivity implements FrameCal
                     public void onTrackDetected(STMobileFaceAction[] faceActions, final int orientation, final int value,
                                                 final float pitch, final float roll, final float yaw,
                                                 final int eye_dist, final int id, final int eyeBlink, final int mouthAh,
-                                                final int headYaw, final int headPitch, final int browJump) {
+                                                final int headYaw, final int headPitch, final int browJump,
+                                                final long timestamp) {
                         setLandmarkFilter(faceActions, orientation, mouthAh);
                         runOnUiThread(new Runnable() {
                             @Override
@@ -203,7 +204,7 @@ public class DynamicModel3Activity extends AppCompatActivity implements FrameCal
                             break;
                         case MotionEvent.ACTION_UP:
                         case MotionEvent.ACTION_CANCEL:
-                            mController.addFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
+                            mController.setFilter(FilterFactory.getFilter(getResources(), mCurrentFilterId));
                             break;
                     }
                     return true;
@@ -262,8 +263,7 @@ public class DynamicModel3Activity extends AppCompatActivity implements FrameCal
     }
 
     private void setSingleFilter(TextureController controller, int menuId) {
-        controller.clearFilter();
-        controller.addFilter(FilterFactory.getFilter(getResources(), menuId));
+        controller.setFilter(FilterFactory.getFilter(getResources(), menuId));
     }
 
     public void switchCamera(){
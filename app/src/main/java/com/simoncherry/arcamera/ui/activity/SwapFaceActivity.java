@@ -50,6 +50,7 @@ public class SwapFaceActivity extends AppCompatActivity {
 
     private String mCurrentImgPath = null;
     private int mSkinColor = 0xffd4c9b5;
+    private byte[] mNv21 = null;    // 人脸检测用的NV21，每次检测复用
 
 
     @Override
@@ -129,7 +130,8 @@ public class SwapFaceActivity extends AppCompatActivity {
             Log.e(TAG, "bitmap width: " + width);
             Log.e(TAG, "bitmap height: " + height);
 
-            byte[] bytes = getNV21(width, height, bitmap);
+            mNv21 = LandmarkUtils.getNV21(bitmap, mNv21);
+            byte[] bytes = mNv21;
             Log.e(TAG, "bytes length: " + bytes.length);
 
             STMobileFaceAction[] faceActions = tracker.trackFaceAction(bytes, 0, width, height);
@@ -253,50 +255,6 @@ public class SwapFaceActivity extends AppCompatActivity {
         return ((B < 128) ? (2 * A * B / 255) : (255 - 2 * (255 - A) * (255 - B) / 255));
     }
 
-    private byte [] getNV21(int inputWidth, int inputHeight, Bitmap scaled) {
-        int [] argb = new int[inputWidth * inputHeight];
-        scaled.getPixels(argb, 0, inputWidth, 0, 0, inputWidth, inputHeight);
-        byte [] yuv = new byte[inputWidth*inputHeight*3/2];
-        encodeYUV420SP(yuv, argb, inputWidth, inputHeight);
-        //scaled.recycle();
-        return yuv;
-    }
-
-    private void encodeYUV420SP(byte[] yuv420sp, int[] argb, int width, int height) {
-        final int frameSize = width * height;
-
-        int yIndex = 0;
-        int uvIndex = frameSize;
-
-        int a, R, G, B, Y, U, V;
-        int index = 0;
-        for (int j = 0; j < height; j++) {
-            for (int i = 0; i < width; i++) {
-
-                a = (argb[index] & 0xff000000) >> 24; // a is not used obviously
-                R = (argb[index] & 0xff0000) >> 16;
-                G = (argb[index] & 0xff00) >> 8;
-                B = (argb[index] & 0xff) >> 0;
-
-                // well known RGB to YUV algorithm
-                Y = ( (  66 * R + 129 * G +  25 * B + 128) >> 8) +  16;
-                U = ( ( -38 * R -  74 * G + 112 * B + 128) >> 8) + 128;
-                V = ( ( 112 * R -  94 * G -  18 * B + 128) >> 8) + 128;
-
-                // NV21 has a plane of Y and interleaved planes of VU each sampled by a factor of 2
-                //    meaning for every 4 Y pixels there are 1 V and 1 U.  Note the sampling is every other
-                //    pixel AND every other scanline.
-                yuv420sp[yIndex++] = (byte) ((Y < 0) ? 0 : ((Y > 255) ? 255 : Y));
-                if (j % 2 == 0 && index % 2 == 0) {
-                    yuv420sp[uvIndex++] = (byte)((V<0) ? 0 : ((V > 255) ? 255 : V));
-                    yuv420sp[uvIndex++] = (byte)((U<0) ? 0 : ((U > 255) ? 255 : U));
-                }
-
-                index ++;
-            }
-        }
-    }
-
     private void replaceTexture() {
         if (mCurrentImgPath == null) {
             Toast.makeText(this, "先点击Load加载第一张图片", Toast.LENGTH_SHORT).show();
@@ -0,0 +1,64 @@
+package com.simoncherry.arcamera.util;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+
+/**
+ * 同一尺寸的ARGB_8888 Bitmap缓冲池，连拍时循环使用，不再每张都分配。
+ * 空闲的最多保留maxIdle个，多出的直接recycle。可以在多个线程中使用。
+ */
+public class BitmapPool {
+
+    private final int mMaxIdle;
+    private final ArrayDeque<Bitmap> mIdle = new ArrayDeque<>();
+    private int mCreated = 0;
+
+    public BitmapPool(int maxIdle) {
+        mMaxIdle = maxIdle;
+    }
+
+    /**
+     * 取一个空闲的，没有时新建。尺寸变化后之前的全部回收
+     */
+    public synchronized Bitmap obtain(int width, int height) {
+        Bitmap bitmap;
+        while ((bitmap = mIdle.poll()) != null) {
+            if (!bitmap.isRecycled() && bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                return bitmap;
+            }
+            bitmap.recycle();
+        }
+        mCreated++;
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    public void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        synchronized (this) {
+            if (mIdle.size() < mMaxIdle) {
+                mIdle.push(bitmap);
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    public synchronized void clear() {
+        Bitmap bitmap;
+        while ((bitmap = mIdle.poll()) != null) {
+            bitmap.recycle();
+        }
+    }
+
+    // 累计新建的数量，用于确认连拍时是否在复用
+    public synchronized int getCreatedCount() {
+        return mCreated;
+    }
+
+    public synchronized int getIdleCount() {
+        return mIdle.size();
+    }
+}
@@ -0,0 +1,344 @@
+package com.simoncherry.arcamera.util;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import com.simoncherry.arcamera.R;
+
+import org.rajawali3d.Object3D;
+import org.rajawali3d.materials.Material;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * 换脸用的人脸网格模板。base_face_uv3_obj只解析一次，展开成与LoaderOBJ相同的顶点顺序，
+ * 并以二进制缓存到cache目录，之后启动直接读取。缓存头记录应用的版本和安装时间，升级或重新安装后重新解析。
+ * 换脸时只需要按关键点计算44个贴图坐标，直接写入新模型的贴图坐标，不再生成和解析OBJ文件。
+ */
+public class FaceMeshTemplate {
+
+    private final static String TAG = FaceMeshTemplate.class.getSimpleName();
+
+    public static final int UV_COUNT = 44;
+    private static final int MAGIC = 0x464D5348;    // "FMSH"
+    private static final int VERSION = 2;
+    private static final String CACHE_NAME = "face_mesh_v" + VERSION + ".bin";
+
+    // 第i个贴图坐标取哪个关键点，-1为36和39的中点
+    private static final int[] UV_LANDMARKS = {
+            0, 52, 34, 3, 8, 12, 84, 61, 90, 20,
+            24, 29, 32, 41, 39, 43, 58, -1, 36, 55,
+            82, 46, 83, 49, 53, 72, 54, 57, 73, 56,
+            59, 75, 60, 63, 76, 62, 97, 98, 99, 102,
+            103, 93, 101, 16
+    };
+
+    private static FaceMeshTemplate sInstance;
+
+    private final String mName;
+    private final float[] mVertices;    // 按面展开，每个顶点3个
+    private final float[] mNormals;
+    private final int[] mTexSource;     // 每个展开后的顶点用第几个贴图坐标
+    private final float[] mBaseUv;      // OBJ中原有的贴图坐标，v未翻转
+
+    FaceMeshTemplate(String name, float[] vertices, float[] normals, int[] texSource, float[] baseUv) {
+        mName = name;
+        mVertices = vertices;
+        mNormals = normals;
+        mTexSource = texSource;
+        mBaseUv = baseUv;
+    }
+
+    /**
+     * 取已经加载的模板，第一次调用时从缓存读取，没有缓存或缓存来自其他安装包时解析raw中的OBJ并写入缓存
+     */
+    public static synchronized FaceMeshTemplate getInstance(Context context) throws IOException {
+        if (sInstance != null) {
+            return sInstance;
+        }
+        File cache = new File(context.getCacheDir(), CACHE_NAME);
+        long stamp = getSourceStamp(context);
+        if (cache.exists()) {
+            try {
+                sInstance = readCache(cache, stamp);
+                return sInstance;
+            } catch (IOException e) {
+                Log.w(TAG, "invalid mesh cache, parse obj again", e);
+            }
+        }
+        InputStream in = context.getResources().openRawResource(R.raw.base_face_uv3_obj);
+        try {
+            sInstance = parseObj(in);
+        } finally {
+            in.close();
+        }
+        try {
+            writeCache(sInstance, cache, stamp);
+        } catch (IOException e) {
+            Log.w(TAG, "write mesh cache failed", e);
+        }
+        return sInstance;
+    }
+
+    // raw中的OBJ随安装包变化，升级（versionCode）和开发时重新安装（lastUpdateTime）都使缓存失效
+    private static long getSourceStamp(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            return info.lastUpdateTime * 31 + info.versionCode;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    static FaceMeshTemplate readCache(File cache, long stamp) throws IOException {
+        InputStream in = new FileInputStream(cache);
+        try {
+            return readBinary(in, stamp);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 先写到临时文件再改名，写入中途退出时不会留下不完整的缓存
+     */
+    static void writeCache(FaceMeshTemplate template, File cache, long stamp) throws IOException {
+        File temp = new File(cache.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        boolean isWritten = false;
+        try {
+            template.writeBinary(out, stamp);
+            out.getFD().sync();
+            isWritten = true;
+        } finally {
+            out.close();
+            if (!isWritten) {
+                temp.delete();
+            }
+        }
+        if (!temp.renameTo(cache)) {
+            temp.delete();
+            throw new IOException("rename " + temp + " failed");
+        }
+    }
+
+    /**
+     * 与LoaderOBJ的展开方式相同：每个面的每个角一个顶点，四边形按0,1,2,0,2,3拆成两个三角形
+     */
+    public static FaceMeshTemplate parseObj(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        String name = "face";
+        List<Float> vertices = new ArrayList<>();
+        List<Float> normals = new ArrayList<>();
+        List<Float> uvs = new ArrayList<>();
+        List<int[]> corners = new ArrayList<>();     // 每个角的顶点、贴图坐标、法线序号
+        for (String line; (line = reader.readLine()) != null; ) {
+            if (line.length() == 0 || line.charAt(0) == '#') {
+                continue;
+            }
+            StringTokenizer parts = new StringTokenizer(line, " ");
+            if (!parts.hasMoreTokens()) {
+                continue;
+            }
+            String type = parts.nextToken();
+            if ("v".equals(type)) {
+                for (int i = 0; i < 3; i++) {
+                    vertices.add(Float.parseFloat(parts.nextToken()));
+                }
+            } else if ("vt".equals(type)) {
+                uvs.add(Float.parseFloat(parts.nextToken()));
+                uvs.add(Float.parseFloat(parts.nextToken()));
+            } else if ("vn".equals(type)) {
+                for (int i = 0; i < 3; i++) {
+                    normals.add(Float.parseFloat(parts.nextToken()));
+                }
+            } else if ("f".equals(type)) {
+                List<int[]> face = new ArrayList<>(4);
+                while (parts.hasMoreTokens()) {
+                    String[] ids = parts.nextToken().split("/");
+                    if (ids.length < 3 || ids[1].length() == 0) {
+                        throw new IOException("face without uv or normal: " + line);
+                    }
+                    face.add(new int[]{
+                            toIndex(ids[0], vertices.size() / 3),
+                            toIndex(ids[1], uvs.size() / 2),
+                            toIndex(ids[2], normals.size() / 3)});
+                }
+                if (face.size() != 3 && face.size() != 4) {
+                    throw new IOException("unsupported face: " + line);
+                }
+                int[] order = face.size() == 4 ? new int[]{0, 1, 2, 0, 2, 3} : new int[]{0, 1, 2};
+                for (int index : order) {
+                    corners.add(face.get(index));
+                }
+            } else if ("o".equals(type) && parts.hasMoreTokens()) {
+                name = parts.nextToken();
+            }
+        }
+
+        int count = corners.size();
+        float[] outVertices = new float[count * 3];
+        float[] outNormals = new float[count * 3];
+        int[] texSource = new int[count];
+        for (int i = 0; i < count; i++) {
+            int[] corner = corners.get(i);
+            for (int k = 0; k < 3; k++) {
+                outVertices[i * 3 + k] = vertices.get(corner[0] * 3 + k);
+                outNormals[i * 3 + k] = normals.get(corner[2] * 3 + k);
+            }
+            texSource[i] = corner[1];
+        }
+        float[] baseUv = new float[uvs.size()];
+        for (int i = 0; i < baseUv.length; i++) {
+            baseUv[i] = uvs.get(i);
+        }
+        return new FaceMeshTemplate(name, outVertices, outNormals, texSource, baseUv);
+    }
+
+    // OBJ的序号从1开始，负数为倒数
+    private static int toIndex(String id, int size) throws IOException {
+        int index = Integer.parseInt(id);
+        index = index < 0 ? size + index : index - 1;
+        if (index < 0 || index >= size) {
+            throw new IOException("index out of range: " + id);
+        }
+        return index;
+    }
+
+    /**
+     * @param stamp 生成这份数据的来源标记，readBinary时必须相同
+     */
+    public void writeBinary(OutputStream out, long stamp) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(stamp);
+        data.writeUTF(mName);
+        data.writeInt(mTexSource.length);
+        for (float value : mVertices) {
+            data.writeFloat(value);
+        }
+        for (float value : mNormals) {
+            data.writeFloat(value);
+        }
+        for (int value : mTexSource) {
+            data.writeInt(value);
+        }
+        data.writeInt(mBaseUv.length / 2);
+        for (float value : mBaseUv) {
+            data.writeFloat(value);
+        }
+        data.flush();
+    }
+
+    public static FaceMeshTemplate readBinary(InputStream in, long stamp) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("not a face mesh cache");
+        }
+        if (data.readLong() != stamp) {
+            throw new IOException("face mesh cache from another package");
+        }
+        String name = data.readUTF();
+        int count = data.readInt();
+        float[] vertices = readFloats(data, count * 3);
+        float[] normals = readFloats(data, count * 3);
+        int[] texSource = new int[count];
+        for (int i = 0; i < count; i++) {
+            texSource[i] = data.readInt();
+        }
+        float[] baseUv = readFloats(data, data.readInt() * 2);
+        for (int source : texSource) {
+            if (source < 0 || source * 2 >= baseUv.length) {
+                throw new IOException("uv index out of range: " + source);
+            }
+        }
+        return new FaceMeshTemplate(name, vertices, normals, texSource, baseUv);
+    }
+
+    private static float[] readFloats(DataInputStream data, int count) throws IOException {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = data.readFloat();
+        }
+        return values;
+    }
+
+    public int getVertexCount() {
+        return mTexSource.length;
+    }
+
+    public int getUvCount() {
+        return mBaseUv.length / 2;
+    }
+
+    /**
+     * 按106个关键点计算44个贴图坐标
+     * @param landmarkX 关键点在图片中的贴图坐标，0~1
+     * @param landmarkY 同上，已经上下翻转（1 - y/height）
+     * @param outUv 长度至少为UV_COUNT * 2，依次为u, v
+     */
+    public static void computeUv(float[] landmarkX, float[] landmarkY, float[] outUv) {
+        for (int i = 0; i < UV_COUNT; i++) {
+            int landmark = UV_LANDMARKS[i];
+            if (landmark < 0) {
+                outUv[i * 2] = (landmarkX[36] + landmarkX[39]) * 0.5f;
+                outUv[i * 2 + 1] = (landmarkY[36] + landmarkY[39]) * 0.5f;
+            } else {
+                outUv[i * 2] = landmarkX[landmark];
+                outUv[i * 2 + 1] = landmarkY[landmark];
+            }
+        }
+    }
+
+    /**
+     * 把贴图坐标展开写入out，v与LoaderOBJ一样翻转
+     * @param uv 为null时使用OBJ中原有的贴图坐标
+     */
+    public void writeTexCoords(float[] uv, FloatBuffer out) {
+        if (uv == null) {
+            uv = mBaseUv;
+        }
+        for (int i = 0; i < mTexSource.length; i++) {
+            int source = mTexSource[i] * 2;
+            out.put(i * 2, uv[source]);
+            out.put(i * 2 + 1, 1f - uv[source + 1]);
+        }
+    }
+
+    /**
+     * 新建模型，贴图坐标为uv，材质只有颜色，贴图由调用方添加
+     */
+    public Object3D createObject3D(float[] uv) {
+        int count = mTexSource.length;
+        float[] texCoords = new float[count * 2];
+        writeTexCoords(uv, FloatBuffer.wrap(texCoords));
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = i;
+        }
+        Object3D object3D = new Object3D(mName);
+        object3D.setData(mVertices.clone(), mNormals.clone(), texCoords, new float[0], indices, false);
+        Material material = new Material();
+        material.setColorInfluence(0);
+        object3D.setMaterial(material);
+        return object3D;
+    }
+}
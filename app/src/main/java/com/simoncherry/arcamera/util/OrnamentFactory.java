@@ -493,12 +493,13 @@ public class OrnamentFactory {
         return ornament;
     }
 
-    public static Ornament getMask(String texturePath) {
+    public static Ornament getMask(String texturePath, float[] faceUv) {
         Ornament ornament = new Ornament();
 
         Ornament.Model model = new Ornament.Model();
         model.setModelResId(-1);
         model.setTexturePath(texturePath);
+        model.setFaceUv(faceUv);
         model.setScale(0.25f);
         model.setOffset(0, 0, 0);
         model.setRotate(0, 0, 0);
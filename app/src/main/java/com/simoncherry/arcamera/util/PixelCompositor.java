@@ -0,0 +1,27 @@
+package com.simoncherry.arcamera.util;
+
+/**
+ * 在CPU中把3D模型层合成到相机画面上，用于不能在GPU中合成的情况（两个EGL上下文不能共享纹理）。
+ * 3D模型层不透明的像素直接覆盖相机画面，与原来ARCamPresenter.handleVideoFrame中的逻辑一致，
+ * 但按int整像素判断和写入，不新建ByteBuffer和数组。
+ */
+public class PixelCompositor {
+
+    /**
+     * @param rgba 相机画面，RGBA，结果直接写回
+     * @param overlay 3D模型层，ScreenGrab.getPixelsArrayFromBuffer的结果，
+     *                每个int在内存中的字节顺序为RGBA（小端），全0为透明
+     */
+    public static void composite(byte[] rgba, int[] overlay) {
+        int count = Math.min(rgba.length >> 2, overlay.length);
+        for (int i = 0, j = 0; i < count; i++, j += 4) {
+            int pixel = overlay[i];
+            if (pixel != 0) {
+                rgba[j] = (byte) pixel;
+                rgba[j + 1] = (byte) (pixel >> 8);
+                rgba[j + 2] = (byte) (pixel >> 16);
+                rgba[j + 3] = (byte) (pixel >>> 24);
+            }
+        }
+    }
+}
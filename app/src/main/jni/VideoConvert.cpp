@@ -68,10 +68,10 @@ void rgbaToYuv(int width,int height,unsigned char * rgb,unsigned char * yuv,int
 
 /*
  * Class:     com_simoncherry_arcamera_codec_DataConvert
- * Method:    rgbaToYuv
+ * Method:    nativeRgbaToYuv
  * Signature: ([BII[BI)V
  */
-JNIEXPORT void JNICALL Java_com_simoncherry_arcamera_codec_DataConvert_rgbaToYuv
+JNIEXPORT void JNICALL Java_com_simoncherry_arcamera_codec_DataConvert_nativeRgbaToYuv
       (JNIEnv * env, jobject obj, jbyteArray rgba, jint width, jint height,
       jbyteArray yuv,jint type){
         jbyte * rgbaBuffer = env->GetByteArrayElements(rgba,0);
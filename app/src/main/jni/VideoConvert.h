@@ -10,10 +10,10 @@ extern "C" {
 
 /*
  * Class:     com_simoncherry_arcamera_codec_DataConvert
- * Method:    rgbaToYuv
+ * Method:    nativeRgbaToYuv
  * Signature: ([BII[BI)V
  */
-JNIEXPORT void JNICALL Java_com_simoncherry_arcamera_codec_DataConvert_rgbaToYuv
+JNIEXPORT void JNICALL Java_com_simoncherry_arcamera_codec_DataConvert_nativeRgbaToYuv
   (JNIEnv *, jclass, jbyteArray, jint, jint, jbyteArray, jint);
 
 #ifdef __cplusplus
@@ -0,0 +1,80 @@
+package com.simoncherry.arcamera.codec;
+
+import java.util.Random;
+
+/**
+ * 人脸检测用的240宽图片和720p/1080p下，原来逐像素的encodeYUV420SP与ArgbYuvConverter的吞吐量对比。
+ * 不是单元测试，需要时直接运行main。
+ */
+public class ArgbYuvConverterBenchmark {
+
+    private static final int[][] SIZES = {{240, 320}, {1280, 720}, {1920, 1080}};
+    private static final int WARMUP = 30;
+    private static final int ROUNDS = 100;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        ParallelYuvConverter parallel = new ParallelYuvConverter(Runtime.getRuntime().availableProcessors());
+        System.out.println("parallelism: " + parallel.getParallelism());
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            int[] argb = ArgbYuvConverterTest.randomArgb(random, width, height);
+            byte[] yuv = new byte[ArgbYuvConverter.getYuvSize(width, height)];
+            int[] back = new int[argb.length];
+
+            for (int i = 0; i < WARMUP; i++) {
+                // 原来每次都分配
+                ArgbYuvConverterTest.legacyEncodeNV21(new byte[width * height * 3 / 2], argb, width, height);
+                ArgbYuvConverter.argbToYuv(argb, width, height, yuv, ArgbYuvConverter.FORMAT_NV21);
+                parallel.argbToYuv(argb, width, height, yuv, ArgbYuvConverter.FORMAT_NV21);
+                ArgbYuvConverter.yuvToArgb(yuv, width, height, back, ArgbYuvConverter.FORMAT_NV21);
+                parallel.yuvToArgb(yuv, width, height, back, ArgbYuvConverter.FORMAT_NV21);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                ArgbYuvConverterTest.legacyEncodeNV21(new byte[width * height * 3 / 2], argb, width, height);
+            }
+            long legacyNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                ArgbYuvConverter.argbToYuv(argb, width, height, yuv, ArgbYuvConverter.FORMAT_NV21);
+            }
+            long singleNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                parallel.argbToYuv(argb, width, height, yuv, ArgbYuvConverter.FORMAT_NV21);
+            }
+            long parallelNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                ArgbYuvConverter.yuvToArgb(yuv, width, height, back, ArgbYuvConverter.FORMAT_NV21);
+            }
+            long toArgbNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                parallel.yuvToArgb(yuv, width, height, back, ArgbYuvConverter.FORMAT_NV21);
+            }
+            long toArgbParallelNs = System.nanoTime() - start;
+
+            double megapixels = width * height / 1e6;
+            System.out.println(width + "x" + height
+                    + "  legacy: " + mps(megapixels, legacyNs)
+                    + "  single: " + mps(megapixels, singleNs)
+                    + "  parallel: " + mps(megapixels, parallelNs)
+                    + "  | nv21->argb single: " + mps(megapixels, toArgbNs)
+                    + "  parallel: " + mps(megapixels, toArgbParallelNs));
+        }
+        parallel.shutdown();
+    }
+
+    // 每秒处理的百万像素
+    private static String mps(double megapixels, long totalNs) {
+        return String.format("%.0f MP/s", megapixels * ROUNDS / (totalNs / 1e9));
+    }
+}
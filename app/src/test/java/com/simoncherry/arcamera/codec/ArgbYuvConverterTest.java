@@ -0,0 +1,221 @@
+package com.simoncherry.arcamera.codec;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * ArgbYuvConverter的本地单元测试，与LandmarkUtils原来的encodeYUV420SP和YuvConverter比较
+ */
+public class ArgbYuvConverterTest {
+
+    static final int[] FORMATS = {
+            ArgbYuvConverter.FORMAT_NV21, ArgbYuvConverter.FORMAT_NV12, ArgbYuvConverter.FORMAT_I420
+    };
+
+    /**
+     * LandmarkUtils原来的encodeYUV420SP，只在宽高都是偶数时不越界
+     */
+    static void legacyEncodeNV21(byte[] yuv420sp, int[] argb, int width, int height) {
+        final int frameSize = width * height;
+
+        int yIndex = 0;
+        int uvIndex = frameSize;
+
+        int R, G, B, Y, U, V;
+        int index = 0;
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                R = (argb[index] & 0xff0000) >> 16;
+                G = (argb[index] & 0xff00) >> 8;
+                B = (argb[index] & 0xff) >> 0;
+
+                Y = ( (  66 * R + 129 * G +  25 * B + 128) >> 8) +  16;
+                U = ( ( -38 * R -  74 * G + 112 * B + 128) >> 8) + 128;
+                V = ( ( 112 * R -  94 * G -  18 * B + 128) >> 8) + 128;
+
+                yuv420sp[yIndex++] = (byte) ((Y < 0) ? 0 : ((Y > 255) ? 255 : Y));
+                if (j % 2 == 0 && index % 2 == 0) {
+                    yuv420sp[uvIndex++] = (byte)((V<0) ? 0 : ((V > 255) ? 255 : V));
+                    yuv420sp[uvIndex++] = (byte)((U<0) ? 0 : ((U > 255) ? 255 : U));
+                }
+
+                index ++;
+            }
+        }
+    }
+
+    // 逐像素的参考实现，UV的位置按getYuvSize的布局，宽高可以是奇数
+    private static int chromaIndex(int format, int width, int height, int i, int j, boolean isV) {
+        int frameSize = width * height;
+        int chromaWidth = (width + 1) / 2;
+        int c = (j / 2) * chromaWidth + i / 2;
+        if (format == ArgbYuvConverter.FORMAT_I420) {
+            return frameSize + c + (isV ? chromaWidth * ((height + 1) / 2) : 0);
+        }
+        boolean isFirst = isV == (format == ArgbYuvConverter.FORMAT_NV21);
+        return frameSize + c * 2 + (isFirst ? 0 : 1);
+    }
+
+    static void referenceArgbToYuv(int[] argb, int width, int height, byte[] yuv, int format) {
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int c = argb[j * width + i];
+                int r = (c >> 16) & 0xFF;
+                int g = (c >> 8) & 0xFF;
+                int b = c & 0xFF;
+                yuv[j * width + i] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+                if (j % 2 == 0 && i % 2 == 0) {
+                    yuv[chromaIndex(format, width, height, i, j, false)] =
+                            (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128);
+                    yuv[chromaIndex(format, width, height, i, j, true)] =
+                            (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);
+                }
+            }
+        }
+    }
+
+    static void referenceYuvToArgb(byte[] yuv, int width, int height, int[] argb, int format) {
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int c = (yuv[j * width + i] & 0xFF) - 16;
+                int d = (yuv[chromaIndex(format, width, height, i, j, false)] & 0xFF) - 128;
+                int e = (yuv[chromaIndex(format, width, height, i, j, true)] & 0xFF) - 128;
+                int r = Math.min(Math.max((298 * c + 409 * e + 128) >> 8, 0), 255);
+                int g = Math.min(Math.max((298 * c - 100 * d - 208 * e + 128) >> 8, 0), 255);
+                int b = Math.min(Math.max((298 * c + 516 * d + 128) >> 8, 0), 255);
+                argb[j * width + i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    static int[] randomArgb(Random random, int width, int height) {
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = random.nextInt();
+        }
+        return argb;
+    }
+
+    @Test
+    public void nv21_matchesLegacyEncoder() {
+        Random random = new Random(3);
+        int[][] sizes = {{240, 320}, {64, 48}, {2, 2}, {6, 4}};
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            int[] argb = randomArgb(random, width, height);
+            byte[] expected = new byte[width * height * 3 / 2];
+            byte[] actual = new byte[ArgbYuvConverter.getYuvSize(width, height)];
+            legacyEncodeNV21(expected, argb, width, height);
+            ArgbYuvConverter.argbToYuv(argb, width, height, actual, ArgbYuvConverter.FORMAT_NV21);
+            assertArrayEquals(width + "x" + height, expected, actual);
+        }
+    }
+
+    @Test
+    public void nv12AndI420_matchYuvConverter() {
+        Random random = new Random(4);
+        int width = 64;
+        int height = 48;
+        int[] argb = randomArgb(random, width, height);
+        byte[] rgba = new byte[width * height * 4];
+        for (int i = 0; i < argb.length; i++) {
+            rgba[i * 4] = (byte) (argb[i] >> 16);
+            rgba[i * 4 + 1] = (byte) (argb[i] >> 8);
+            rgba[i * 4 + 2] = (byte) argb[i];
+            rgba[i * 4 + 3] = (byte) (argb[i] >> 24);
+        }
+        byte[] expected = new byte[width * height * 3 / 2];
+        byte[] actual = new byte[expected.length];
+
+        YuvConverter.convert(rgba, width, height, expected, DataConvert.RGBA_YUV420SP);
+        ArgbYuvConverter.argbToYuv(argb, width, height, actual, ArgbYuvConverter.FORMAT_NV12);
+        assertArrayEquals(expected, actual);
+
+        YuvConverter.convert(rgba, width, height, expected, DataConvert.RGBA_YUV420P);
+        ArgbYuvConverter.argbToYuv(argb, width, height, actual, ArgbYuvConverter.FORMAT_I420);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void bothDirections_matchReferenceForOddSizes() {
+        Random random = new Random(5);
+        int[][] sizes = {{33, 21}, {1, 1}, {3, 2}, {2, 3}, {64, 48}};
+        for (int format : FORMATS) {
+            for (int[] size : sizes) {
+                int width = size[0];
+                int height = size[1];
+                String message = "format=" + format + " " + width + "x" + height;
+                int[] argb = randomArgb(random, width, height);
+                byte[] expected = new byte[ArgbYuvConverter.getYuvSize(width, height)];
+                byte[] actual = new byte[expected.length];
+                referenceArgbToYuv(argb, width, height, expected, format);
+                ArgbYuvConverter.argbToYuv(argb, width, height, actual, format);
+                assertArrayEquals(message, expected, actual);
+
+                // 反向转换用随机的YUV，覆盖需要截断的情况
+                random.nextBytes(actual);
+                int[] expectedArgb = new int[width * height];
+                int[] actualArgb = new int[width * height];
+                referenceYuvToArgb(actual, width, height, expectedArgb, format);
+                ArgbYuvConverter.yuvToArgb(actual, width, height, actualArgb, format);
+                assertArrayEquals(message, expectedArgb, actualArgb);
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip_keepsGray() {
+        int width = 16;
+        int height = 16;
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) {
+            int v = i % 256;
+            argb[i] = 0xFF000000 | (v << 16) | (v << 8) | v;
+        }
+        byte[] yuv = new byte[ArgbYuvConverter.getYuvSize(width, height)];
+        int[] back = new int[argb.length];
+        for (int format : FORMATS) {
+            ArgbYuvConverter.argbToYuv(argb, width, height, yuv, format);
+            ArgbYuvConverter.yuvToArgb(yuv, width, height, back, format);
+            for (int i = 0; i < argb.length; i++) {
+                assertEquals(argb[i] & 0xFF, back[i] & 0xFF, 2);
+            }
+        }
+    }
+
+    @Test
+    public void parallel_matchesSingleThread() {
+        Random random = new Random(6);
+        ParallelYuvConverter parallel = new ParallelYuvConverter(4);
+        try {
+            int width = 1280;
+            int height = 721;
+            int[] argb = randomArgb(random, width, height);
+            byte[] expected = new byte[ArgbYuvConverter.getYuvSize(width, height)];
+            byte[] actual = new byte[expected.length];
+            int[] expectedArgb = new int[argb.length];
+            int[] actualArgb = new int[argb.length];
+            for (int format : FORMATS) {
+                ArgbYuvConverter.argbToYuv(argb, width, height, expected, format);
+                parallel.argbToYuv(argb, width, height, actual, format);
+                assertArrayEquals(expected, actual);
+
+                ArgbYuvConverter.yuvToArgb(expected, width, height, expectedArgb, format);
+                parallel.yuvToArgb(expected, width, height, actualArgb, format);
+                assertArrayEquals(expectedArgb, actualArgb);
+            }
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void argbToYuv_rejectsSmallBuffer() {
+        // 奇数尺寸需要getYuvSize的大小，w*h*3/2不够
+        ArgbYuvConverter.argbToYuv(new int[9], 3, 3, new byte[9 * 3 / 2], ArgbYuvConverter.FORMAT_NV21);
+    }
+}
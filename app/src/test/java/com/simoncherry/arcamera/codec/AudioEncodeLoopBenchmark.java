@@ -0,0 +1,35 @@
+package com.simoncherry.arcamera.codec;
+
+/**
+ * AudioEncodeLoop在假编码器上的吞吐量，同时写MP4（记录）和ADTS两个Sink。
+ * 不是单元测试，需要时直接运行main。
+ */
+public class AudioEncodeLoopBenchmark {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int CHANNELS = 2;
+    private static final int READ_SIZE = 7680;     // 与getMinBufferSize*2接近
+    private static final int WARMUP = 20000;
+    private static final int ROUNDS = 200000;
+
+    public static void main(String[] args) throws Exception {
+        FakeAudioCodec codec = new FakeAudioCodec(4, 8192);
+        AudioEncodeLoop loop = new AudioEncodeLoop(codec, new AudioEncodeLoopTest.SinePcmSource(),
+                READ_SIZE, SAMPLE_RATE, CHANNELS);
+        AudioEncodeLoopTest.DiscardOutputStream out = new AudioEncodeLoopTest.DiscardOutputStream();
+        loop.addSink(new AudioEncodeLoopTest.RecordingSink());
+        loop.addSink(new AdtsSink(out, SAMPLE_RATE, CHANNELS));
+
+        for (int i = 0; i < WARMUP; i++) {
+            loop.step(false, 0);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            loop.step(false, 0);
+        }
+        long ns = System.nanoTime() - start;
+        double audioSeconds = (double) ROUNDS * READ_SIZE / (SAMPLE_RATE * CHANNELS * 2);
+        System.out.println("step: " + (ns / ROUNDS) + " ns/buffer");
+        System.out.println("speed: " + (long) (audioSeconds / (ns / 1e9)) + "x realtime");
+    }
+}
@@ -0,0 +1,270 @@
+package com.simoncherry.arcamera.codec;
+
+import android.media.MediaCodec;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * AudioEncodeLoop的本地单元测试，编码器和PCM来源都是假的实现
+ */
+public class AudioEncodeLoopTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int CHANNELS = 2;
+    private static final int READ_SIZE = 4096;
+
+    /**
+     * 生成正弦波PCM，不分配对象
+     */
+    static class SinePcmSource implements AudioEncodeLoop.PcmSource {
+        private int mPhase = 0;
+
+        @Override
+        public int read(ByteBuffer buffer, int size) {
+            int samples = size / 2;
+            for (int i = 0; i < samples; i++) {
+                buffer.put(i * 2, (byte) (mPhase & 0xFF));
+                buffer.put(i * 2 + 1, (byte) ((mPhase >> 8) & 0xFF));
+                mPhase = (mPhase + 257) & 0xFFFF;
+            }
+            return samples * 2;
+        }
+    }
+
+    /**
+     * 记录收到的packet，预先分配
+     */
+    static class RecordingSink implements AudioEncodeLoop.Sink {
+        final long[] pts = new long[256];
+        int count = 0;
+        int formatChanges = 0;
+        long bytes = 0;
+
+        @Override
+        public void onFormatChanged() {
+            formatChanges++;
+        }
+
+        @Override
+        public void onPacket(ByteBuffer data, AudioEncodeLoop.Packet info) throws IOException {
+            assertEquals(info.size, data.remaining());
+            pts[count % pts.length] = info.presentationTimeUs;
+            count++;
+            bytes += data.remaining();
+        }
+    }
+
+    static class DiscardOutputStream extends OutputStream {
+        long written = 0;
+
+        @Override
+        public void write(int b) {
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+        }
+    }
+
+    @Test
+    public void step_stampsBySampleCount() throws Exception {
+        FakeAudioCodec codec = new FakeAudioCodec(4, 8192);
+        AudioEncodeLoop loop = new AudioEncodeLoop(codec, new SinePcmSource(), READ_SIZE, SAMPLE_RATE, CHANNELS);
+        RecordingSink sink = new RecordingSink();
+        loop.addSink(sink);
+        loop.reset(1000);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(loop.step(false, 0));
+        }
+        assertEquals(1, sink.formatChanges);
+        // 编码配置packet不交给Sink
+        assertEquals(10, sink.count);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1000 + (long) i * READ_SIZE * 1000000L / (SAMPLE_RATE * CHANNELS * 2), sink.pts[i]);
+        }
+        assertEquals(0, codec.outstandingOutputs);
+    }
+
+    @Test
+    public void step_capsReadToInputCapacity() throws Exception {
+        FakeAudioCodec codec = new FakeAudioCodec(2, 1024);
+        AudioEncodeLoop loop = new AudioEncodeLoop(codec, new SinePcmSource(), READ_SIZE, SAMPLE_RATE, CHANNELS);
+        RecordingSink sink = new RecordingSink();
+        loop.addSink(sink);
+        loop.step(false, 0);
+        assertEquals(1024 / 8, sink.bytes);
+    }
+
+    @Test
+    public void finish_drainsUntilEndOfStream() throws Exception {
+        FakeAudioCodec codec = new FakeAudioCodec(4, 8192);
+        AudioEncodeLoop loop = new AudioEncodeLoop(codec, new SinePcmSource(), READ_SIZE, SAMPLE_RATE, CHANNELS);
+        RecordingSink sink = new RecordingSink();
+        loop.addSink(sink);
+        loop.step(false, 0);
+        assertTrue(loop.finish(AudioEncodeLoop.FINISH_TIMEOUT_MS));
+        assertEquals(1, sink.count);
+        assertEquals(0, codec.outstandingOutputs);
+    }
+
+    @Test
+    public void finish_givesUpWhenCodecNeverEnds() throws Exception {
+        // 一直没有输入输出buffer的编码器
+        AudioEncodeLoop.Codec stuck = new AudioEncodeLoop.Codec() {
+            @Override
+            public int dequeueInputBuffer(long timeoutUs) {
+                return MediaCodec.INFO_TRY_AGAIN_LATER;
+            }
+
+            @Override
+            public ByteBuffer getInputBuffer(int index) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void queueInputBuffer(int index, int size, long presentationTimeUs, int flags) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public int dequeueOutputBuffer(AudioEncodeLoop.Packet info, long timeoutUs) {
+                return MediaCodec.INFO_TRY_AGAIN_LATER;
+            }
+
+            @Override
+            public ByteBuffer getOutputBuffer(int index) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void releaseOutputBuffer(int index) {
+                throw new AssertionError();
+            }
+        };
+        AudioEncodeLoop loop = new AudioEncodeLoop(stuck, new SinePcmSource(), READ_SIZE, SAMPLE_RATE, CHANNELS);
+        long start = System.nanoTime();
+        assertFalse(loop.finish(50));
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        assertTrue("elapsed " + elapsedMs, elapsedMs >= 50 && elapsedMs < 1000);
+    }
+
+    @Test
+    public void step_endOfStreamDrainsRemainingOutput() throws Exception {
+        FakeAudioCodec codec = new FakeAudioCodec(4, 8192);
+        AudioEncodeLoop loop = new AudioEncodeLoop(codec, new SinePcmSource(), READ_SIZE, SAMPLE_RATE, CHANNELS);
+        RecordingSink sink = new RecordingSink();
+        loop.addSink(sink);
+        for (int i = 0; i < 3; i++) {
+            loop.step(false, 0);
+        }
+        assertTrue(loop.step(true, 0));
+        assertEquals(3, sink.count);
+        assertEquals(4, codec.queuedInputs);
+        assertEquals(0, codec.outstandingOutputs);
+    }
+
+    @Test
+    public void drain_failingSinkDoesNotBlockOthers() throws Exception {
+        FakeAudioCodec codec = new FakeAudioCodec(4, 8192);
+        AudioEncodeLoop loop = new AudioEncodeLoop(codec, new SinePcmSource(), READ_SIZE, SAMPLE_RATE, CHANNELS);
+        loop.addSink(new AudioEncodeLoop.Sink() {
+            @Override
+            public void onFormatChanged() {
+            }
+
+            @Override
+            public void onPacket(ByteBuffer data, AudioEncodeLoop.Packet info) throws IOException {
+                throw new IOException("stream closed");
+            }
+        });
+        RecordingSink sink = new RecordingSink();
+        loop.addSink(sink);
+        try {
+            loop.step(false, 0);
+            fail();
+        } catch (IOException e) {
+            assertEquals("stream closed", e.getMessage());
+        }
+        assertEquals(1, sink.count);
+        assertEquals(0, codec.outstandingOutputs);
+    }
+
+    @Test
+    public void adtsSink_writesParsableFrames() throws Exception {
+        FakeAudioCodec codec = new FakeAudioCodec(4, 8192);
+        AudioEncodeLoop loop = new AudioEncodeLoop(codec, new SinePcmSource(), READ_SIZE, SAMPLE_RATE, CHANNELS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        loop.addSink(new AdtsSink(out, SAMPLE_RATE, CHANNELS));
+        for (int i = 0; i < 5; i++) {
+            loop.step(false, 0);
+        }
+
+        byte[] stream = out.toByteArray();
+        int frames = 0;
+        int pos = 0;
+        while (pos < stream.length) {
+            assertEquals(0xFF, stream[pos] & 0xFF);
+            assertEquals(0xF0, stream[pos + 1] & 0xF0);
+            assertEquals(3, (stream[pos + 2] >> 2) & 0xF);     // 48kHz
+            int channels = ((stream[pos + 2] & 1) << 2) | ((stream[pos + 3] >> 6) & 3);
+            assertEquals(CHANNELS, channels);
+            int length = ((stream[pos + 3] & 3) << 11) | ((stream[pos + 4] & 0xFF) << 3)
+                    | ((stream[pos + 5] & 0xFF) >> 5);
+            assertEquals(AdtsSink.HEADER_SIZE + READ_SIZE / 8, length);
+            pos += length;
+            frames++;
+        }
+        assertEquals(stream.length, pos);
+        assertEquals(5, frames);
+    }
+
+    @Test
+    public void step_doesNotAllocatePerBuffer() throws Exception {
+        Method allocated = getAllocatedBytesMethod();
+        Assume.assumeNotNull(allocated);
+        Object bean = ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        FakeAudioCodec codec = new FakeAudioCodec(4, 8192);
+        AudioEncodeLoop loop = new AudioEncodeLoop(codec, new SinePcmSource(), READ_SIZE, SAMPLE_RATE, CHANNELS);
+        loop.addSink(new RecordingSink());
+        loop.addSink(new AdtsSink(new DiscardOutputStream(), SAMPLE_RATE, CHANNELS));
+        for (int i = 0; i < 5000; i++) {
+            loop.step(false, 0);
+        }
+
+        int steps = 20000;
+        long before = (Long) allocated.invoke(bean, threadId);
+        for (int i = 0; i < steps; i++) {
+            loop.step(false, 0);
+        }
+        long after = (Long) allocated.invoke(bean, threadId);
+        // 读取计数本身会分配少量对象，允许平均每个buffer不到1字节
+        assertTrue("allocated " + (after - before) + " bytes", after - before < steps);
+        assertEquals(25000, loop.getPacketCount());
+    }
+
+    private static Method getAllocatedBytesMethod() {
+        try {
+            Class<?> clazz = Class.forName("com.sun.management.ThreadMXBean");
+            if (!clazz.isInstance(ManagementFactory.getThreadMXBean())) {
+                return null;
+            }
+            return clazz.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
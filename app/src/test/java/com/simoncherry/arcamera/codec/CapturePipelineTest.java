@@ -0,0 +1,165 @@
+package com.simoncherry.arcamera.codec;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * CapturePipeline的本地单元测试，用sleep模拟合成和编码的耗时
+ */
+public class CapturePipelineTest {
+
+    private static class FakeStages implements CapturePipeline.Stages<Integer, int[]> {
+        final long mCompositeMs;
+        final long mEncodeMs;
+        final AtomicInteger mLiveImages = new AtomicInteger();
+        final AtomicInteger mMaxLiveImages = new AtomicInteger();
+        final AtomicInteger mRecycled = new AtomicInteger();
+        volatile int mFailAt = -1;
+        // 某一张在合成时，是否有其他的在编码
+        final AtomicInteger mEncoding = new AtomicInteger();
+        volatile boolean isOverlapped = false;
+
+        FakeStages(long compositeMs, long encodeMs) {
+            mCompositeMs = compositeMs;
+            mEncodeMs = encodeMs;
+        }
+
+        @Override
+        public int[] composite(Integer input) throws Exception {
+            if (mEncoding.get() > 0) {
+                isOverlapped = true;
+            }
+            Thread.sleep(mCompositeMs);
+            if (input == mFailAt) {
+                throw new IllegalStateException("composite " + input);
+            }
+            int live = mLiveImages.incrementAndGet();
+            int max;
+            while (live > (max = mMaxLiveImages.get()) && !mMaxLiveImages.compareAndSet(max, live)) {
+                // retry
+            }
+            return new int[]{input};
+        }
+
+        @Override
+        public String encode(int[] image) throws Exception {
+            mEncoding.incrementAndGet();
+            try {
+                Thread.sleep(mEncodeMs);
+            } finally {
+                mEncoding.decrementAndGet();
+            }
+            return "photo_" + image[0];
+        }
+
+        @Override
+        public void recycle(int[] image) {
+            mLiveImages.decrementAndGet();
+            mRecycled.incrementAndGet();
+        }
+    }
+
+    private static class RecordingCallback implements CapturePipeline.Callback {
+        final List<String> mPaths = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger mFailures = new AtomicInteger();
+        final CountDownLatch mDone;
+
+        RecordingCallback(int count) {
+            mDone = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onCaptured(String path) {
+            mPaths.add(path);
+            mDone.countDown();
+        }
+
+        @Override
+        public void onCaptureFailed(Exception e) {
+            mFailures.incrementAndGet();
+            mDone.countDown();
+        }
+    }
+
+    @Test
+    public void burst_compositesWhileEncoding() throws Exception {
+        FakeStages stages = new FakeStages(5, 20);
+        CapturePipeline<Integer, int[]> pipeline = new CapturePipeline<>(1, 2, 12, stages);
+        RecordingCallback callback = new RecordingCallback(10);
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(pipeline.submit(i, callback));
+        }
+        assertTrue(callback.mDone.await(5, TimeUnit.SECONDS));
+        long elapsedMs = (System.nanoTime() - start) / 1000000L;
+
+        assertEquals(10, callback.mPaths.size());
+        assertTrue(callback.mPaths.contains("photo_9"));
+        assertTrue(stages.isOverlapped);
+        // 串行需要250ms，两个编码线程且与合成并行时约100ms
+        assertTrue("elapsed " + elapsedMs, elapsedMs < 240);
+        assertTrue(pipeline.awaitIdle(1000));
+        assertEquals(10, stages.mRecycled.get());
+        assertEquals(0, pipeline.getQueueDepth());
+        assertEquals(10, pipeline.getMaxQueueDepth());
+        assertEquals(10, pipeline.getCompletedCount());
+        assertEquals(10, pipeline.getCompositeTime().getCount());
+        assertEquals(10, pipeline.getEncodeWait().getCount());
+        assertEquals(10, pipeline.getTotalTime().getCount());
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void submit_rejectsBeyondCapacity() throws Exception {
+        FakeStages stages = new FakeStages(20, 20);
+        CapturePipeline<Integer, int[]> pipeline = new CapturePipeline<>(1, 1, 3, stages);
+        RecordingCallback callback = new RecordingCallback(3);
+        int accepted = 0;
+        for (int i = 0; i < 6; i++) {
+            if (pipeline.submit(i, callback)) {
+                accepted++;
+            }
+        }
+        assertEquals(3, accepted);
+        assertEquals(3, pipeline.getRejectedCount());
+        assertTrue(callback.mDone.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.awaitIdle(1000));
+        assertTrue(stages.mMaxLiveImages.get() <= 3);
+
+        // 处理完后又可以提交
+        assertTrue(pipeline.submit(7, null));
+        pipeline.shutdown();
+        assertFalse(pipeline.submit(8, null));
+        assertTrue(pipeline.awaitIdle(1000));
+        assertEquals(4, pipeline.getCompletedCount());
+    }
+
+    @Test
+    public void failure_reportedAndSlotReleased() throws Exception {
+        FakeStages stages = new FakeStages(1, 1);
+        stages.mFailAt = 1;
+        CapturePipeline<Integer, int[]> pipeline = new CapturePipeline<>(1, 1, 1, stages);
+        RecordingCallback callback = new RecordingCallback(1);
+        assertTrue(pipeline.submit(1, callback));
+        assertTrue(callback.mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, callback.mFailures.get());
+        assertTrue(pipeline.awaitIdle(1000));
+        assertEquals(1, pipeline.getFailedCount());
+        // 合成失败时没有结果，不回收
+        assertEquals(0, stages.mRecycled.get());
+
+        RecordingCallback next = new RecordingCallback(1);
+        assertTrue(pipeline.submit(2, next));
+        assertTrue(next.mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("photo_2"), next.mPaths);
+        pipeline.shutdown();
+    }
+}
@@ -0,0 +1,50 @@
+package com.simoncherry.arcamera.codec;
+
+import java.util.Random;
+
+/**
+ * 480p/720p/1080p下单线程YuvConverter与ParallelYuvConverter的耗时对比。
+ * 本地JVM上没有libVideoConvert，native的耗时在设备上用DataConvert.chooseFastest的日志查看。
+ * 不是单元测试，需要时直接运行main。
+ */
+public class DataConvertBenchmark {
+
+    private static final int[][] SIZES = {{640, 480}, {1280, 720}, {1920, 1080}};
+    private static final int WARMUP = 30;
+    private static final int ROUNDS = 100;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        ParallelYuvConverter parallel = new ParallelYuvConverter(Runtime.getRuntime().availableProcessors());
+        System.out.println("parallelism: " + parallel.getParallelism());
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            byte[] rgba = new byte[width * height * 4];
+            random.nextBytes(rgba);
+            byte[] yuv = new byte[width * height * 3 / 2];
+
+            for (int i = 0; i < WARMUP; i++) {
+                YuvConverter.convert(rgba, width, height, yuv, DataConvert.RGBA_YUV420SP);
+                parallel.convert(rgba, width, height, yuv, DataConvert.RGBA_YUV420SP);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                YuvConverter.convert(rgba, width, height, yuv, DataConvert.RGBA_YUV420SP);
+            }
+            long singleNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                parallel.convert(rgba, width, height, yuv, DataConvert.RGBA_YUV420SP);
+            }
+            long parallelNs = System.nanoTime() - start;
+
+            System.out.println(width + "x" + height
+                    + "  single: " + (singleNs / ROUNDS / 1000) + " us/frame"
+                    + "  parallel: " + (parallelNs / ROUNDS / 1000) + " us/frame");
+        }
+        parallel.shutdown();
+    }
+}
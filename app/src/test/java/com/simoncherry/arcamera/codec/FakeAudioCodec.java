@@ -0,0 +1,133 @@
+package com.simoncherry.arcamera.codec;
+
+import android.media.MediaCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 本地测试用的假编码器：输入的每个buffer立即"编码"成长度为1/8的输出，
+ * 第一次取输出时先返回格式变化和一个编码配置packet，行为与MediaCodec一致。
+ * 所有buffer和队列都预先分配，自身不产生分配。
+ */
+class FakeAudioCodec implements AudioEncodeLoop.Codec {
+
+    private final ByteBuffer[] mInputs;
+    private final ByteBuffer[] mOutputs;
+    private final boolean[] mInputFree;
+    private final boolean[] mOutputFree;
+
+    // 等待取出的输出，按顺序
+    private final int[] mPendingIndex;
+    private final int[] mPendingSize;
+    private final long[] mPendingPts;
+    private final int[] mPendingFlags;
+    private int mPendingHead = 0;
+    private int mPendingCount = 0;
+
+    private boolean isFormatSent = false;
+    private boolean isConfigSent = false;
+    int queuedInputs = 0;
+    int outstandingOutputs = 0;
+
+    FakeAudioCodec(int count, int inputSize) {
+        mInputs = new ByteBuffer[count];
+        // 最后一个输出buffer专门放编码配置数据
+        mOutputs = new ByteBuffer[count + 1];
+        mInputFree = new boolean[count];
+        mOutputFree = new boolean[count + 1];
+        mPendingIndex = new int[count];
+        mPendingSize = new int[count];
+        mPendingPts = new long[count];
+        mPendingFlags = new int[count];
+        for (int i = 0; i < count; i++) {
+            mInputs[i] = ByteBuffer.allocateDirect(inputSize);
+            mOutputs[i] = ByteBuffer.allocateDirect(inputSize);
+            mInputFree[i] = true;
+            mOutputFree[i] = true;
+        }
+        mOutputs[count] = ByteBuffer.allocateDirect(2);
+        mOutputs[count].put(0, (byte) 0x12);
+    }
+
+    @Override
+    public int dequeueInputBuffer(long timeoutUs) {
+        for (int i = 0; i < mInputs.length; i++) {
+            if (mInputFree[i]) {
+                mInputFree[i] = false;
+                return i;
+            }
+        }
+        return MediaCodec.INFO_TRY_AGAIN_LATER;
+    }
+
+    @Override
+    public ByteBuffer getInputBuffer(int index) {
+        return mInputs[index];
+    }
+
+    @Override
+    public void queueInputBuffer(int index, int size, long presentationTimeUs, int flags) {
+        int out = -1;
+        for (int i = 0; i < mInputs.length; i++) {
+            if (mOutputFree[i]) {
+                out = i;
+                break;
+            }
+        }
+        if (out < 0) {
+            throw new IllegalStateException("no free output buffer");
+        }
+        mOutputFree[out] = false;
+        int outSize = size / 8;
+        ByteBuffer input = mInputs[index];
+        ByteBuffer output = mOutputs[out];
+        output.clear();
+        for (int i = 0; i < outSize; i++) {
+            output.put(input.get(i * 8));
+        }
+        mInputFree[index] = true;
+        queuedInputs++;
+        int tail = (mPendingHead + mPendingCount) % mPendingIndex.length;
+        mPendingIndex[tail] = out;
+        mPendingSize[tail] = outSize;
+        mPendingPts[tail] = presentationTimeUs;
+        mPendingFlags[tail] = flags;
+        mPendingCount++;
+    }
+
+    @Override
+    public int dequeueOutputBuffer(AudioEncodeLoop.Packet info, long timeoutUs) {
+        if (!isFormatSent) {
+            isFormatSent = true;
+            return MediaCodec.INFO_OUTPUT_FORMAT_CHANGED;
+        }
+        if (!isConfigSent && mPendingCount > 0) {
+            isConfigSent = true;
+            info.set(0, 2, 0, MediaCodec.BUFFER_FLAG_CODEC_CONFIG);
+            outstandingOutputs++;
+            return mInputs.length;
+        }
+        if (mPendingCount == 0) {
+            return MediaCodec.INFO_TRY_AGAIN_LATER;
+        }
+        int out = mPendingIndex[mPendingHead];
+        info.set(0, mPendingSize[mPendingHead], mPendingPts[mPendingHead], mPendingFlags[mPendingHead]);
+        mPendingHead = (mPendingHead + 1) % mPendingIndex.length;
+        mPendingCount--;
+        outstandingOutputs++;
+        return out;
+    }
+
+    @Override
+    public ByteBuffer getOutputBuffer(int index) {
+        return mOutputs[index];
+    }
+
+    @Override
+    public void releaseOutputBuffer(int index) {
+        outstandingOutputs--;
+        if (index < mInputs.length) {
+            mOutputFree[index] = true;
+        }
+    }
+}
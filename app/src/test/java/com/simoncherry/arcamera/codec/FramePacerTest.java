@@ -0,0 +1,97 @@
+package com.simoncherry.arcamera.codec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * FramePacer的本地单元测试
+ */
+public class FramePacerTest {
+
+    private static final long MS = 1000000L;
+    private static final long START = 5000 * MS;
+
+    @Test
+    public void onFrame_keepsJitteredFramesOnGrid() throws Exception {
+        FramePacer pacer = new FramePacer(25, 4);
+        long[] offsets = {0, 45, 78, 121, 158};
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(1, pacer.onFrame(START + offsets[i] * MS));
+            assertEquals(START + i * 40 * MS, pacer.getSlotTime(0));
+        }
+        assertEquals(0, pacer.getDroppedCount());
+        assertEquals(0, pacer.getDuplicatedCount());
+    }
+
+    @Test
+    public void onFrame_dropsFramesAboveTargetFps() throws Exception {
+        FramePacer pacer = new FramePacer(25, 4);
+        int encoded = 0;
+        for (int i = 0; i < 50; i++) {
+            encoded += pacer.onFrame(START + i * 20 * MS);
+        }
+        assertEquals(25, encoded);
+        assertEquals(25, pacer.getDroppedCount());
+    }
+
+    @Test
+    public void onFrame_repeatsPreviousFrameToFillGap() throws Exception {
+        FramePacer pacer = new FramePacer(25, 4);
+        pacer.onFrame(START);
+        // 40、80两个网格重复上一帧，新的一帧只占120
+        assertEquals(3, pacer.onFrame(START + 120 * MS));
+        assertEquals(START + 40 * MS, pacer.getSlotTime(0));
+        assertEquals(START + 80 * MS, pacer.getSlotTime(1));
+        assertEquals(START + 120 * MS, pacer.getSlotTime(2));
+        assertEquals(2, pacer.getDuplicatedCount());
+        assertEquals(1, pacer.onFrame(START + 160 * MS));
+    }
+
+    @Test
+    public void onFrame_skipsSlotsBeyondMaxRepeat() throws Exception {
+        FramePacer pacer = new FramePacer(25, 2);
+        pacer.onFrame(START);
+        assertEquals(2, pacer.onFrame(START + 400 * MS));
+        // 最后一次编码落在这一帧的采集时间上
+        assertEquals(START + 400 * MS, pacer.getSlotTime(1));
+        assertEquals(8, pacer.getSkippedSlotCount());
+        assertEquals(1, pacer.getDuplicatedCount());
+    }
+
+    @Test
+    public void onFrame_neverStampsFrameBeforeCapture() throws Exception {
+        FramePacer pacer = new FramePacer(24, 4);
+        long interval = pacer.getIntervalNs();
+        long[] gaps = {0, 41, 45, 170, 30, 260, 12, 90, 600, 43, 125};
+        long timestamp = START;
+        long lastSlot = Long.MIN_VALUE;
+        for (long gap : gaps) {
+            timestamp += gap * MS;
+            int count = pacer.onFrame(timestamp);
+            if (count == 0) {
+                continue;
+            }
+            // 重复上一帧的网格在上一帧和这一帧之间
+            for (int i = 0; i < count - 1; i++) {
+                assertTrue(pacer.getSlotTime(i) > lastSlot);
+                assertTrue(pacer.getSlotTime(i) < pacer.getSlotTime(count - 1));
+            }
+            long slot = pacer.getSlotTime(count - 1);
+            assertTrue(slot >= timestamp - interval / 2);
+            assertTrue(slot <= timestamp + interval / 2);
+            lastSlot = slot;
+        }
+    }
+
+    @Test
+    public void reset_startsNewGrid() throws Exception {
+        FramePacer pacer = new FramePacer(25, 4);
+        pacer.onFrame(START);
+        pacer.onFrame(START + 10 * MS);
+        pacer.reset();
+        assertEquals(0, pacer.getDroppedCount());
+        assertEquals(1, pacer.onFrame(START + 13 * MS));
+        assertEquals(START + 13 * MS, pacer.getSlotTime(0));
+    }
+}
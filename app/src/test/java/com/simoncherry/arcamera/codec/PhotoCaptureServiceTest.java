@@ -0,0 +1,73 @@
+package com.simoncherry.arcamera.codec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * PhotoCaptureService文件命名的本地单元测试
+ */
+public class PhotoCaptureServiceTest {
+
+    private File mDir;
+    private PhotoCaptureService mService;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("photo", "");
+        assertTrue(mDir.delete());
+        assertTrue(mDir.mkdirs());
+        mService = new PhotoCaptureService(mDir, 1, 1, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mService.shutdown();
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void claimFile_sameMillisecondGetsDistinctFiles() throws Exception {
+        final int threads = 4;
+        final int perThread = 25;
+        final Set<String> names = Collections.synchronizedSet(new HashSet<String>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < perThread; i++) {
+                            names.add(mService.claimFile(1000L).getName());
+                        }
+                    } catch (Exception e) {
+                        // 少的张数在下面的断言中体现
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        assertEquals(threads * perThread, names.size());
+        assertEquals(threads * perThread, mDir.listFiles().length);
+        assertTrue(names.contains("1000.jpg"));
+    }
+}
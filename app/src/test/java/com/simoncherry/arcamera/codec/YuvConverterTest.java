@@ -0,0 +1,135 @@
+package com.simoncherry.arcamera.codec;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * YuvConverter的本地单元测试，与jni/VideoConvert.cpp逐行翻译的参考实现比较
+ */
+public class YuvConverterTest {
+
+    static final int[] TYPES = {
+            DataConvert.RGBA_YUV420SP, DataConvert.BGRA_YUV420SP,
+            DataConvert.RGBA_YUV420P, DataConvert.BGRA_YUV420P,
+            DataConvert.RGB_YUV420SP, DataConvert.RGB_YUV420P,
+            DataConvert.BGR_YUV420SP, DataConvert.BGR_YUV420P
+    };
+
+    /**
+     * VideoConvert.cpp中rgbaToYuv的逐行翻译，中间结果按unsigned char截断
+     */
+    static void nativeReference(int width, int height, byte[] rgb, byte[] yuv, int type) {
+        final int frameSize = width * height;
+        final int yuvType = (type & 0x10000) >> 16;
+        final int byteRgba = (type & 0x0F000) >> 12;
+        final int rShift = (type & 0x00F00) >> 8;
+        final int gShift = (type & 0x000F0) >> 4;
+        final int bShift = (type & 0x0000F);
+        final int uIndex = 0;
+        final int vIndex = yuvType;
+
+        int yIndex = 0;
+        int[] uvIndex = {frameSize, frameSize + frameSize / 4};
+        int index;
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                index = j * width + i;
+                int r = rgb[index * byteRgba + rShift] & 0xFF;
+                int g = rgb[index * byteRgba + gShift] & 0xFF;
+                int b = rgb[index * byteRgba + bShift] & 0xFF;
+                int y = (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16) & 0xFF;
+                int u = (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128) & 0xFF;
+                int v = (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128) & 0xFF;
+                yuv[yIndex++] = (byte) y;
+                if (j % 2 == 0 && index % 2 == 0) {
+                    yuv[uvIndex[uIndex]++] = (byte) u;
+                    yuv[uvIndex[vIndex]++] = (byte) v;
+                }
+            }
+        }
+    }
+
+    private static byte[] randomFrame(Random random, int width, int height, int type) {
+        byte[] rgb = new byte[width * height * ((type & 0xF000) >> 12)];
+        random.nextBytes(rgb);
+        return rgb;
+    }
+
+    @Test
+    public void convert_matchesNativeForAllTypes() throws Exception {
+        Random random = new Random(7);
+        int[][] sizes = {{64, 48}, {33, 21}, {1, 1}, {2, 3}};
+        for (int type : TYPES) {
+            for (int[] size : sizes) {
+                int width = size[0];
+                int height = size[1];
+                byte[] rgb = randomFrame(random, width, height, type);
+                // 奇数尺寸时native会写出w*h*3/2之外，留足空间
+                byte[] expected = new byte[width * height * 2 + 4];
+                byte[] actual = new byte[expected.length];
+                nativeReference(width, height, rgb, expected, type);
+                YuvConverter.convert(rgb, width, height, actual, type);
+                assertArrayEquals("type=" + Integer.toHexString(type) + " " + width + "x" + height,
+                        expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void convertRows_bandsMatchWholeFrame() throws Exception {
+        Random random = new Random(8);
+        int width = 40;
+        int height = 30;
+        for (int type : TYPES) {
+            byte[] rgb = randomFrame(random, width, height, type);
+            byte[] expected = new byte[width * height * 3 / 2];
+            byte[] actual = new byte[expected.length];
+            YuvConverter.convert(rgb, width, height, expected, type);
+            YuvConverter.convertRows(rgb, width, height, actual, type, 10, 30);
+            YuvConverter.convertRows(rgb, width, height, actual, type, 0, 10);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void convertRows_rejectsOddStart() throws Exception {
+        YuvConverter.convertRows(new byte[64], 4, 4, new byte[24], DataConvert.RGBA_YUV420SP, 1, 4);
+    }
+
+    @Test
+    public void parallel_matchesSingleThread() throws Exception {
+        Random random = new Random(9);
+        ParallelYuvConverter parallel = new ParallelYuvConverter(4);
+        try {
+            int width = 1280;
+            int height = 720;
+            for (int type : TYPES) {
+                byte[] rgb = randomFrame(random, width, height, type);
+                byte[] expected = new byte[width * height * 3 / 2];
+                byte[] actual = new byte[expected.length];
+                YuvConverter.convert(rgb, width, height, expected, type);
+                parallel.convert(rgb, width, height, actual, type);
+                assertArrayEquals(expected, actual);
+            }
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    public void dataConvert_fallsBackToJavaWithoutNative() throws Exception {
+        assertFalse(DataConvert.isAvailable(DataConvert.IMPL_NATIVE));
+        assertEquals(DataConvert.IMPL_JAVA, DataConvert.getImplementation());
+        assertFalse(DataConvert.setImplementation(DataConvert.IMPL_NATIVE));
+
+        byte[] rgba = randomFrame(new Random(10), 16, 16, DataConvert.RGBA_YUV420SP);
+        byte[] expected = new byte[16 * 16 * 3 / 2];
+        byte[] actual = new byte[expected.length];
+        nativeReference(16, 16, rgba, expected, DataConvert.RGBA_YUV420SP);
+        DataConvert.rgbaToYuv(rgba, 16, 16, actual, DataConvert.RGBA_YUV420SP);
+        assertArrayEquals(expected, actual);
+    }
+}
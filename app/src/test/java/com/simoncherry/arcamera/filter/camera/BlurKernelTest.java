@@ -0,0 +1,120 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * BlurKernel和BlurBudget的本地单元测试
+ */
+public class BlurKernelTest {
+
+    private static CpuBlur randomImage(Random random, int width, int height) {
+        CpuBlur image = new CpuBlur(width, height);
+        for (int i = 0; i < image.data.length; i++) {
+            image.data[i] = random.nextFloat();
+        }
+        return image;
+    }
+
+    @Test
+    public void gaussianWeights_sumToOne() throws Exception {
+        for (int radius = 1; radius <= 21; radius++) {
+            float[] weights = BlurKernel.gaussianWeights(radius, radius / 3f + 0.3f);
+            float sum = weights[0];
+            for (int i = 1; i < weights.length; i++) {
+                sum += 2 * weights[i];
+            }
+            assertEquals(1f, sum, 1e-5f);
+        }
+    }
+
+    @Test
+    public void linearSampling_matchesDiscreteConvolution() throws Exception {
+        Random random = new Random(3);
+        for (int radius = 1; radius <= 9; radius++) {
+            float sigma = Math.max(radius / 3f, 0.5f);
+            BlurKernel kernel = BlurKernel.gaussian(radius, sigma);
+            assertEquals(2 * ((radius + 1) / 2) + 1, kernel.getFetchCount());
+
+            CpuBlur image = randomImage(random, 64, 8);
+            CpuBlur linear = image.pass(kernel, true);
+            CpuBlur discrete = image.convolve(BlurKernel.gaussianWeights(radius, sigma), true);
+            // 边缘处CLAMP_TO_EDGE的插值与逐点取边缘值不同，只比较内部
+            for (int y = 0; y < image.height; y++) {
+                for (int x = radius + 1; x < image.width - radius - 1; x++) {
+                    assertEquals("radius=" + radius + " x=" + x,
+                            discrete.data[y * 64 + x], linear.data[y * 64 + x], 1e-4f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void buildFragmentShader_usesPlainDecimals() throws Exception {
+        BlurKernel kernel = BlurKernel.gaussian(11, 3.5f);
+        String shader = kernel.buildFragmentShader(true);
+        assertFalse(shader.matches("(?s).*\\d[eE][-+]?\\d.*"));
+        assertTrue(shader.contains("uniform float uRange;"));
+        int fetches = shader.split("texture2D\\(").length - 1;
+        assertEquals(kernel.getFetchCount(), fetches);
+
+        String plain = kernel.buildFragmentShader(false);
+        assertFalse(plain.contains("uRange"));
+        assertEquals(count(plain, '{'), count(plain, '}'));
+    }
+
+    @Test
+    public void budget_prefersHigherResolutionWhenAffordable() throws Exception {
+        BlurBudget full = BlurBudget.choose(7f, 100f, 2);
+        assertEquals(1, full.getScale());
+        assertEquals(3, full.getPassCount());
+
+        BlurBudget half = BlurBudget.choose(7f, 9f, 2);
+        assertEquals(2, half.getScale());
+        assertEquals(4, half.getPassCount());
+        assertTrue(half.getCost() <= 9f);
+
+        BlurBudget quarter = BlurBudget.choose(7f, 4f, 2);
+        assertEquals(4, quarter.getScale());
+        assertTrue(quarter.getCost() <= 4f);
+        // 1/4分辨率下核的sigma相应缩小
+        assertEquals(7f / 4, quarter.getKernel().getSigma(), 1e-6f);
+    }
+
+    @Test
+    public void budget_truncatesKernelWhenTooSmall() throws Exception {
+        BlurBudget plan = BlurBudget.choose(20f, 3f, 2);
+        assertEquals(4, plan.getScale());
+        assertTrue(plan.getCost() <= 3f);
+        assertTrue(plan.getKernel().getRadius() < Math.ceil(20f / 4 * 3));
+
+        // 任何预算都至少保留半径1
+        assertEquals(1, BlurBudget.choose(20f, 0.1f, 2).getKernel().getRadius());
+    }
+
+    @Test
+    public void downsampledBlur_closeToFullResolution() throws Exception {
+        Random random = new Random(4);
+        CpuBlur image = randomImage(random, 96, 96);
+        // 先做一次轻微模糊，接近相机画面的频谱
+        image = image.convolve(BlurKernel.gaussianWeights(2, 1f), true)
+                .convolve(BlurKernel.gaussianWeights(2, 1f), false);
+        float sigma = 6f;
+        CpuBlur reference = image.blur(BlurBudget.choose(sigma, 1000f, 2));
+        CpuBlur half = image.blur(BlurBudget.choose(sigma, 9f, 2));
+        assertTrue(CpuBlur.psnr(reference, half) > 35);
+    }
+
+    private static int count(String s, char c) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,54 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import java.util.Random;
+
+/**
+ * 720x1280画面上，不同采样预算下SeparableBlurFilter的方案、遍数、每像素采样次数，
+ * 以及与全分辨率高斯模糊相比的PSNR。原来单遍的BeautyFilter/BlurFilter作为对照列出代价。
+ * 不是单元测试，需要时直接运行main。
+ */
+public class BlurQualityHarness {
+
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 1280;
+    private static final float[] BUDGETS = {3f, 4f, 6f, 9f, 12f, 16f, 48f};
+
+    public static void main(String[] args) {
+        CpuBlur image = syntheticFrame(new Random(1));
+        run("beauty", image, 7f, 2);
+        run("blur", image, 3f, 1);
+        System.out.println("old BeautyFilter: passes=1 fetches=16 (14 samples at full resolution)");
+        System.out.println("old BlurFilter:   passes=1 fetches=13");
+    }
+
+    private static void run(String name, CpuBlur image, float sigma, int compositeFetches) {
+        int radius = (int) Math.ceil(sigma * 3);
+        float[] weights = BlurKernel.gaussianWeights(radius, sigma);
+        CpuBlur reference = image.convolve(weights, true).convolve(weights, false);
+        System.out.println(name + " sigma=" + sigma + " at " + WIDTH + "x" + HEIGHT);
+        for (float budget : BUDGETS) {
+            BlurBudget plan = BlurBudget.choose(sigma, budget, compositeFetches);
+            long start = System.nanoTime();
+            CpuBlur blurred = image.blur(plan);
+            long ms = (System.nanoTime() - start) / 1000000;
+            System.out.println(String.format("  budget %5.1f  %-48s psnr %6.2f dB  (cpu %d ms)",
+                    budget, plan.toString(), CpuBlur.psnr(reference, blurred), ms));
+        }
+    }
+
+    // 平滑的渐变加上边缘和噪声，大致模拟人脸画面
+    private static CpuBlur syntheticFrame(Random random) {
+        CpuBlur image = new CpuBlur(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                float dx = (x - WIDTH / 2f) / (WIDTH * 0.3f);
+                float dy = (y - HEIGHT / 2f) / (HEIGHT * 0.25f);
+                float value = dx * dx + dy * dy < 1 ? 0.7f : 0.3f;
+                value += 0.1f * (float) Math.sin(x * 0.05) * (float) Math.cos(y * 0.03);
+                value += (random.nextFloat() - 0.5f) * 0.1f;
+                image.data[y * WIDTH + x] = Math.min(Math.max(value, 0f), 1f);
+            }
+        }
+        return image;
+    }
+}
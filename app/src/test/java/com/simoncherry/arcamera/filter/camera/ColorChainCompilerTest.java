@@ -0,0 +1,61 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColorChainCompiler生成shader的本地单元测试
+ */
+public class ColorChainCompilerTest {
+
+    private static final String LEVEL_STAGE = "uniform vec3 $level;\n"
+            + "vec4 $apply(vec4 color) {\n"
+            + "    return color + vec4($level, 0.0);\n"
+            + "}";
+    private static final String NEGATIVE_STAGE = "vec4 $apply(vec4 color) {\n"
+            + "    return vec4(1.0 - color.rgb, color.a);\n"
+            + "}";
+
+    @Test
+    public void buildFragmentShader_prefixesEachStage() throws Exception {
+        String shader = ColorChainCompiler.buildFragmentShader(
+                new String[]{LEVEL_STAGE, NEGATIVE_STAGE, LEVEL_STAGE});
+        assertFalse(shader.contains("$"));
+        // 同一种Filter出现两次时uniform不重名
+        assertTrue(shader.contains("uniform vec3 s0_level;"));
+        assertTrue(shader.contains("uniform vec3 s2_level;"));
+        assertTrue(shader.contains("vec4 s1_apply(vec4 color)"));
+    }
+
+    @Test
+    public void buildFragmentShader_appliesStagesInOrderWithClamp() throws Exception {
+        String shader = ColorChainCompiler.buildFragmentShader(
+                new String[]{LEVEL_STAGE, NEGATIVE_STAGE});
+        int first = shader.indexOf("color = clamp(s0_apply(color), 0.0, 1.0);");
+        int second = shader.indexOf("color = clamp(s1_apply(color), 0.0, 1.0);");
+        assertTrue(first > shader.indexOf("void main()"));
+        assertTrue(second > first);
+        assertTrue(shader.indexOf("gl_FragColor = color;") > second);
+        assertEquals(count(shader, '{'), count(shader, '}'));
+    }
+
+    @Test
+    public void buildFragmentShader_sameStagesGiveSameSource() throws Exception {
+        // 程序按源码缓存，同样的组合必须生成同样的源码
+        assertEquals(ColorChainCompiler.buildFragmentShader(new String[]{LEVEL_STAGE, NEGATIVE_STAGE}),
+                ColorChainCompiler.buildFragmentShader(new String[]{LEVEL_STAGE, NEGATIVE_STAGE}));
+        assertNotEquals(ColorChainCompiler.buildFragmentShader(new String[]{LEVEL_STAGE, NEGATIVE_STAGE}),
+                ColorChainCompiler.buildFragmentShader(new String[]{NEGATIVE_STAGE, LEVEL_STAGE}));
+    }
+
+    private static int count(String s, char c) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
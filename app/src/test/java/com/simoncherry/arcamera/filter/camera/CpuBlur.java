@@ -0,0 +1,137 @@
+package com.simoncherry.arcamera.filter.camera;
+
+/**
+ * 在CPU上按GL的采样规则（像素中心、双线性插值、CLAMP_TO_EDGE）模拟SeparableBlurFilter的各遍，
+ * 单通道浮点图像，用于本地测试和BlurQualityHarness
+ */
+class CpuBlur {
+
+    final float[] data;
+    final int width;
+    final int height;
+
+    CpuBlur(int width, int height) {
+        this(new float[width * height], width, height);
+    }
+
+    CpuBlur(float[] data, int width, int height) {
+        this.data = data;
+        this.width = width;
+        this.height = height;
+    }
+
+    float get(int x, int y) {
+        x = Math.min(Math.max(x, 0), width - 1);
+        y = Math.min(Math.max(y, 0), height - 1);
+        return data[y * width + x];
+    }
+
+    // texture2D，u、v为纹理坐标
+    float sample(float u, float v) {
+        float x = u * width - 0.5f;
+        float y = v * height - 0.5f;
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        float fx = x - x0;
+        float fy = y - y0;
+        float top = get(x0, y0) * (1 - fx) + get(x0 + 1, y0) * fx;
+        float bottom = get(x0, y0 + 1) * (1 - fx) + get(x0 + 1, y0 + 1) * fx;
+        return top * (1 - fy) + bottom * fy;
+    }
+
+    /**
+     * SeparableBlurFilter.buildDownsampleShader的模拟
+     */
+    CpuBlur downsample(int scale) {
+        CpuBlur out = new CpuBlur(Math.max(1, width / scale), Math.max(1, height / scale));
+        float stepX = 1f / width;
+        float stepY = 1f / height;
+        for (int y = 0; y < out.height; y++) {
+            for (int x = 0; x < out.width; x++) {
+                float u = (x + 0.5f) / out.width;
+                float v = (y + 0.5f) / out.height;
+                float value;
+                if (scale == 4) {
+                    value = (sample(u - stepX, v - stepY) + sample(u + stepX, v - stepY)
+                            + sample(u - stepX, v + stepY) + sample(u + stepX, v + stepY)) * 0.25f;
+                } else {
+                    value = sample(u, v);
+                }
+                out.data[y * out.width + x] = value;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * BlurKernel.buildFragmentShader(false)的模拟，输出与输入同样大小
+     */
+    CpuBlur pass(BlurKernel kernel, boolean horizontal) {
+        CpuBlur out = new CpuBlur(width, height);
+        float[] offsets = kernel.getOffsets();
+        float[] weights = kernel.getWeights();
+        float stepX = horizontal ? 1f / width : 0;
+        float stepY = horizontal ? 0 : 1f / height;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float u = (x + 0.5f) / width;
+                float v = (y + 0.5f) / height;
+                float sum = sample(u, v) * weights[0];
+                for (int i = 1; i < offsets.length; i++) {
+                    sum += sample(u + stepX * offsets[i], v + stepY * offsets[i]) * weights[i];
+                    sum += sample(u - stepX * offsets[i], v - stepY * offsets[i]) * weights[i];
+                }
+                out.data[y * width + x] = sum;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 离散高斯核的逐点卷积，作为参考
+     */
+    CpuBlur convolve(float[] discrete, boolean horizontal) {
+        CpuBlur out = new CpuBlur(width, height);
+        int radius = discrete.length - 1;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float sum = get(x, y) * discrete[0];
+                for (int i = 1; i <= radius; i++) {
+                    if (horizontal) {
+                        sum += (get(x + i, y) + get(x - i, y)) * discrete[i];
+                    } else {
+                        sum += (get(x, y + i) + get(x, y - i)) * discrete[i];
+                    }
+                }
+                out.data[y * width + x] = sum;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 按BlurBudget的方案模糊后放大回原尺寸，与合成shader读到的uBlurTexture一致
+     */
+    CpuBlur blur(BlurBudget plan) {
+        CpuBlur low = plan.getScale() > 1 ? downsample(plan.getScale()) : this;
+        low = low.pass(plan.getKernel(), true).pass(plan.getKernel(), false);
+        CpuBlur out = new CpuBlur(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                out.data[y * width + x] = low.sample((x + 0.5f) / width, (y + 0.5f) / height);
+            }
+        }
+        return out;
+    }
+
+    // 取值范围为[0, 1]时的峰值信噪比
+    static double psnr(CpuBlur a, CpuBlur b) {
+        double mse = 0;
+        for (int i = 0; i < a.data.length; i++) {
+            double d = a.data[i] - b.data[i];
+            mse += d * d;
+        }
+        mse /= a.data.length;
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(1.0 / mse);
+    }
+}
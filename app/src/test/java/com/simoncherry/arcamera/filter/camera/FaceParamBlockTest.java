@@ -0,0 +1,229 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import com.simoncherry.arcamera.track.FaceMotionStream;
+import com.simoncherry.arcamera.track.FaceTrackRegistry;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * FaceParamBlock的本地单元测试，只测试打包和脏标记，不涉及GL调用
+ */
+public class FaceParamBlockTest {
+
+    private static final int ROW_BYTES = FaceParamBlock.TEXTURE_WIDTH * 4;
+
+    private static float[] landmarks(float offset) {
+        float[] values = new float[FaceParamBlock.LANDMARK_COUNT];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = offset + i / (float) values.length;
+        }
+        return values;
+    }
+
+    private static ByteBuffer newBuffer() {
+        return ByteBuffer.allocate(ROW_BYTES * FaceParamBlock.MAX_FACES);
+    }
+
+    // 与GLSL中faceLandmark的还原方式相同
+    private static float shaderDecode(ByteBuffer pixels, int offset) {
+        float hi = (pixels.get(offset) & 0xFF) / 255f;
+        float lo = (pixels.get(offset + 1) & 0xFF) / 255f;
+        return (hi * 65280f + lo * 255f) * (FaceParamBlock.RANGE / 65535f) + FaceParamBlock.RANGE_MIN;
+    }
+
+    @Test
+    public void encode_roundTripsWithinOneStep() throws Exception {
+        float step = FaceParamBlock.RANGE / 65535f;
+        for (float value = -0.9f; value < 1.9f; value += 0.0137f) {
+            assertEquals(value, FaceParamBlock.decode(FaceParamBlock.encode(value)), step);
+        }
+        // 超出范围时截断
+        assertEquals(0, FaceParamBlock.encode(-5f));
+        assertEquals(65535, FaceParamBlock.encode(5f));
+    }
+
+    @Test
+    public void pack_layoutMatchesShader() throws Exception {
+        FaceParamBlock block = new FaceParamBlock();
+        float[] x = landmarks(0f);
+        float[] y = landmarks(0.5f);
+        block.setLandmarks(1, x, y);
+        block.setMouthOpen(1, 1);
+
+        ByteBuffer pixels = newBuffer();
+        assertTrue(block.packIfDirty(pixels));
+        assertEquals(ROW_BYTES * FaceParamBlock.MAX_FACES, pixels.remaining());
+        assertEquals(2, block.getFaceCount());
+
+        float step = FaceParamBlock.RANGE / 65535f;
+        for (int i = 0; i < FaceParamBlock.LANDMARK_COUNT; i++) {
+            int offset = ROW_BYTES + i * 4;
+            assertEquals(x[i], shaderDecode(pixels, offset), step);
+            assertEquals(y[i], shaderDecode(pixels, offset + 2), step);
+        }
+        // 第107个像素：R为张嘴标记，G为这一行是否有脸
+        int flags = ROW_BYTES + FaceParamBlock.LANDMARK_COUNT * 4;
+        assertEquals((byte) 0xFF, pixels.get(flags));
+        assertEquals((byte) 0xFF, pixels.get(flags + 1));
+        assertEquals((byte) 0xFF, pixels.get(FaceParamBlock.LANDMARK_COUNT * 4 + 1));
+        assertEquals(0, pixels.get(ROW_BYTES * 2 + FaceParamBlock.LANDMARK_COUNT * 4 + 1));
+    }
+
+    @Test
+    public void pack_skipsWhenNothingChanged() throws Exception {
+        FaceParamBlock block = new FaceParamBlock();
+        ByteBuffer pixels = newBuffer();
+        assertTrue(block.packIfDirty(pixels));
+        assertFalse(block.packIfDirty(pixels));
+
+        block.setMouthOpen(0, 0);
+        assertFalse(block.packIfDirty(pixels));
+        block.setLandmarks(0, landmarks(0f), landmarks(0f));
+        assertTrue(block.packIfDirty(pixels));
+        block.clearFaces();
+        assertTrue(block.packIfDirty(pixels));
+        block.clearFaces();
+        assertFalse(block.packIfDirty(pixels));
+    }
+
+    @Test
+    public void beginFrame_dirtyOnlyForNewTrackerData() throws Exception {
+        FaceParamBlock block = new FaceParamBlock();
+        FaceMotionStream stream = new FaceMotionStream();
+        block.setFaceMotionStream(stream);
+        ByteBuffer pixels = newBuffer();
+        block.packIfDirty(pixels);
+
+        // 没有检测结果时不写入
+        block.beginFrame(1000000L);
+        assertFalse(block.packIfDirty(pixels));
+        assertEquals(0, block.getFaceCount());
+
+        long now = 1000000000L;
+        stream.updateLandmarks(now, landmarks(0.2f), landmarks(0.3f), 1);
+        block.beginFrame(now);
+        assertTrue(block.packIfDirty(pixels));
+        assertEquals(1, block.getMouthOpen(0));
+
+        // 同一帧内多次调用、以及检测停止后外推不再变化时都不重新上传
+        block.beginFrame(now);
+        assertFalse(block.packIfDirty(pixels));
+        block.beginFrame(now + 250000000L);
+        assertFalse(block.packIfDirty(pixels));
+
+        float[] outX = new float[FaceParamBlock.LANDMARK_COUNT];
+        float[] outY = new float[FaceParamBlock.LANDMARK_COUNT];
+        assertTrue(block.getLandmarks(0, outX, outY));
+        assertArrayEquals(landmarks(0.3f), outY, 1e-6f);
+        assertFalse(block.getLandmarks(1, outX, outY));
+
+        // 超过消失时间后清空人脸，BeautyFilter回到整帧磨皮
+        block.beginFrame(now + FaceParamBlock.LOST_TIMEOUT_NS + 1);
+        assertTrue(block.packIfDirty(pixels));
+        assertEquals(0, block.getFaceCount());
+        assertFalse(block.getLandmarks(0, outX, outY));
+        assertEquals(0, block.getMouthOpen(0));
+        block.beginFrame(now + FaceParamBlock.LOST_TIMEOUT_NS + 2);
+        assertFalse(block.packIfDirty(pixels));
+    }
+
+    @Test
+    public void beginFrame_fillsOtherFacesFromRegistry() throws Exception {
+        FaceParamBlock block = new FaceParamBlock();
+        FaceMotionStream stream = new FaceMotionStream();
+        FaceTrackRegistry registry = new FaceTrackRegistry();
+        block.setFaceMotionStream(stream);
+        block.setFaceTrackRegistry(registry);
+        ByteBuffer pixels = newBuffer();
+        block.packIfDirty(pixels);
+
+        long now = 1000000000L;
+        stream.updateLandmarks(now, landmarks(0.1f), landmarks(0.1f), 0);
+        registry.setPrimaryId(1);
+        registry.obtain(1, now).getMotion().updateLandmarks(now, landmarks(0.1f), landmarks(0.1f), 0);
+        registry.obtain(2, now).getMotion().updateLandmarks(now, landmarks(0.4f), landmarks(0.5f), 1);
+        block.beginFrame(now);
+        assertTrue(block.packIfDirty(pixels));
+        assertEquals(2, block.getFaceCount());
+
+        // 第0行是主人脸，主人脸在registry中的槽位不重复写入
+        float[] outX = new float[FaceParamBlock.LANDMARK_COUNT];
+        float[] outY = new float[FaceParamBlock.LANDMARK_COUNT];
+        assertTrue(block.getLandmarks(0, outX, outY));
+        assertArrayEquals(landmarks(0.1f), outX, 1e-6f);
+        assertTrue(block.getLandmarks(1, outX, outY));
+        assertArrayEquals(landmarks(0.4f), outX, 1e-6f);
+        assertArrayEquals(landmarks(0.5f), outY, 1e-6f);
+        assertEquals(1, block.getMouthOpen(1));
+        assertFalse(block.getLandmarks(2, outX, outY));
+
+        // 只有主人脸还在时其他行被清掉
+        long later = now + FaceParamBlock.LOST_TIMEOUT_NS + 1;
+        stream.updateLandmarks(later, landmarks(0.1f), landmarks(0.1f), 0);
+        block.beginFrame(later);
+        assertTrue(block.packIfDirty(pixels));
+        assertEquals(1, block.getFaceCount());
+        assertFalse(block.getLandmarks(1, outX, outY));
+    }
+
+    @Test
+    public void withFaceParams_insertsAfterPrecision() throws Exception {
+        String fragment = "precision mediump float;\nvarying vec2 textureCoordinate;\n";
+        String source = FaceParamBlock.withFaceParams(fragment);
+        assertTrue(source.startsWith("precision mediump float;\n"));
+        assertTrue(source.indexOf("uniform sampler2D uFaceParams;") < source.indexOf("varying"));
+        assertTrue(source.contains("/ 107.0"));
+        assertFalse(source.matches("(?s).*\\d,\\d.*"));
+        assertTrue(FaceParamBlock.withFaceParams("void main() {}").startsWith("\n#ifdef"));
+    }
+
+    @Test
+    public void packBlock_layoutMatchesStd140Block() throws Exception {
+        FaceParamBlock block = new FaceParamBlock();
+        float[] x = landmarks(0f);
+        float[] y = landmarks(0.5f);
+        block.setLandmarks(1, x, y);
+        block.setMouthOpen(1, 1);
+
+        FloatBuffer data = FloatBuffer.allocate(FaceParamBlock.BLOCK_FLOATS);
+        assertTrue(block.packBlockIfDirty(data));
+        assertEquals(FaceParamBlock.BLOCK_FLOATS, data.remaining());
+        // 第1张脸从第BLOCK_FACE_VECTORS个vec4开始，关键点k在第k/2个vec4的xy或zw
+        int base = FaceParamBlock.BLOCK_FACE_VECTORS * 4;
+        for (int k = 0; k < FaceParamBlock.LANDMARK_COUNT; k++) {
+            int offset = base + (k / 2) * 4 + (k % 2) * 2;
+            assertEquals(x[k], data.get(offset), 0f);
+            assertEquals(y[k], data.get(offset + 1), 0f);
+        }
+        // 第0张脸没有写入，全为0
+        assertEquals(0f, data.get(0), 0f);
+        int mouth = FaceParamBlock.MAX_FACES * FaceParamBlock.BLOCK_FACE_VECTORS * 4;
+        assertEquals(0f, data.get(mouth), 0f);
+        assertEquals(1f, data.get(mouth + 1), 0f);
+        assertFalse(block.packBlockIfDirty(data));
+    }
+
+    @Test
+    public void withFaceParamBlock_convertsToGlsl300() throws Exception {
+        String fragment = "precision mediump float;\nvarying vec2 textureCoordinate;\nuniform sampler2D vTexture;\n"
+                + "void main() { gl_FragColor = texture2D(vTexture, textureCoordinate); }";
+        String source = FaceParamBlock.withFaceParamBlock(fragment);
+        assertTrue(source.startsWith("#version 300 es\nprecision mediump float;\n"));
+        assertTrue(source.contains("in vec2 textureCoordinate;"));
+        assertTrue(source.contains("fragColor = texture(vTexture, textureCoordinate);"));
+        assertTrue(source.indexOf("out vec4 fragColor;") < source.indexOf("void main"));
+        assertTrue(source.contains("uniform FaceParams {"));
+        assertTrue(source.contains("uFaceLandmarks[212]"));
+        assertFalse(source.contains("varying"));
+        assertFalse(source.contains("texture2D"));
+        assertFalse(source.contains("gl_FragColor"));
+
+        String vertex = FaceParamBlock.toVertexEs3("attribute vec4 vPosition;\nvarying vec2 textureCoordinate;\n");
+        assertEquals("#version 300 es\nin vec4 vPosition;\nout vec2 textureCoordinate;\n", vertex);
+    }
+}
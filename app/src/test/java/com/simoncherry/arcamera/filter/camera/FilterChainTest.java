@@ -0,0 +1,300 @@
+package com.simoncherry.arcamera.filter.camera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * FilterChain的本地单元测试，包括多个线程修改、一个线程模拟逐帧绘制的压力测试
+ */
+public class FilterChainTest {
+
+    private static class FakeFilter {
+        final int mId;
+        final AtomicBoolean isAttached = new AtomicBoolean();
+        final AtomicInteger mAttachCount = new AtomicInteger();
+
+        FakeFilter(int id) {
+            mId = id;
+        }
+
+        @Override
+        public String toString() {
+            return "F" + mId;
+        }
+    }
+
+    // 模拟GL线程：attach/detach必须成对，只能在绘制线程中调用
+    private static class RecordingListener implements FilterChain.Listener<FakeFilter> {
+        final List<String> mEvents = new ArrayList<>();
+        volatile Thread mDrawThread;
+        final AtomicReference<Throwable> mError = new AtomicReference<>();
+
+        @Override
+        public void onAttach(FakeFilter item) {
+            check(item.isAttached.compareAndSet(false, true), "attach twice " + item);
+            item.mAttachCount.incrementAndGet();
+            mEvents.add("+" + item);
+        }
+
+        @Override
+        public void onDetach(FakeFilter item) {
+            check(item.isAttached.compareAndSet(true, false), "detach without attach " + item);
+            mEvents.add("-" + item);
+        }
+
+        void check(boolean condition, String message) {
+            if (mDrawThread != null && Thread.currentThread() != mDrawThread) {
+                mError.compareAndSet(null, new AssertionError("callback off draw thread"));
+            }
+            if (!condition) {
+                mError.compareAndSet(null, new AssertionError(message));
+            }
+        }
+    }
+
+    private static String order(FilterChain.Snapshot<FakeFilter> snapshot) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < snapshot.size(); i++) {
+            builder.append(snapshot.get(i)).append(' ');
+        }
+        return builder.toString().trim();
+    }
+
+    @Test
+    public void edits_keepOrder() throws Exception {
+        FilterChain<FakeFilter> chain = new FilterChain<>();
+        FakeFilter a = new FakeFilter(1), b = new FakeFilter(2), c = new FakeFilter(3), d = new FakeFilter(4);
+        chain.add(a);
+        chain.add(b);
+        chain.add(0, c);
+        assertEquals("F3 F1 F2", order(chain.getSnapshot()));
+
+        assertTrue(chain.move(c, 5));
+        assertEquals("F1 F2 F3", order(chain.getSnapshot()));
+        assertTrue(chain.replace(b, d));
+        assertEquals("F1 F4 F3", order(chain.getSnapshot()));
+        assertFalse(chain.replace(b, a));
+        assertSame(a, chain.remove(0));
+        assertNull(chain.remove(7));
+        assertFalse(chain.remove(a));
+        assertSame(c, chain.getLast());
+
+        long version = chain.getSnapshot().getVersion();
+        chain.clear();
+        chain.clear();
+        assertEquals(version + 1, chain.getSnapshot().getVersion());
+        assertNull(chain.getLast());
+    }
+
+    @Test
+    public void edits_rejectDuplicates() throws Exception {
+        FilterChain<FakeFilter> chain = new FilterChain<>();
+        FakeFilter a = new FakeFilter(1);
+        chain.add(a);
+        try {
+            chain.add(a);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            chain.setAll(Arrays.asList(new FakeFilter(2), a, a));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(1, chain.size());
+    }
+
+    @Test
+    public void sync_detachesBeforeAttachingAndSkipsTransientEdits() throws Exception {
+        FilterChain<FakeFilter> chain = new FilterChain<>();
+        RecordingListener listener = new RecordingListener();
+        FakeFilter a = new FakeFilter(1), b = new FakeFilter(2), c = new FakeFilter(3);
+        chain.add(a);
+        chain.add(b);
+        chain.sync(listener);
+        assertEquals(Arrays.asList("+F1", "+F2"), listener.mEvents);
+
+        listener.mEvents.clear();
+        chain.replace(a, c);
+        // 移除后在下一帧之前又加回来，不需要重新创建
+        chain.remove(b);
+        chain.add(0, b);
+        FilterChain.Snapshot<FakeFilter> snapshot = chain.sync(listener);
+        assertEquals(Arrays.asList("-F1", "+F3"), listener.mEvents);
+        assertEquals("F2 F3", order(snapshot));
+        assertEquals(1, b.mAttachCount.get());
+
+        listener.mEvents.clear();
+        assertSame(snapshot, chain.sync(listener));
+        assertTrue(listener.mEvents.isEmpty());
+        assertNull(listener.mError.get());
+    }
+
+    @Test
+    public void replace_neverExposesEmptyChain() throws Exception {
+        final FilterChain<FakeFilter> chain = new FilterChain<>();
+        final RecordingListener listener = new RecordingListener();
+        chain.setAll(Collections.singletonList(new FakeFilter(0)));
+        final AtomicBoolean isDone = new AtomicBoolean();
+        final AtomicInteger badFrames = new AtomicInteger();
+        Thread draw = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!isDone.get()) {
+                    if (chain.sync(listener).size() != 1) {
+                        badFrames.incrementAndGet();
+                    }
+                }
+            }
+        });
+        listener.mDrawThread = draw;
+        draw.start();
+        for (int i = 1; i <= 20000; i++) {
+            chain.setAll(Collections.singletonList(new FakeFilter(i)));
+        }
+        isDone.set(true);
+        draw.join();
+        assertEquals(0, badFrames.get());
+        assertNull(listener.mError.get());
+    }
+
+    @Test
+    public void stress_concurrentEditsAgainstDrawLoop() throws Exception {
+        final FilterChain<FakeFilter> chain = new FilterChain<>();
+        final RecordingListener listener = new RecordingListener();
+        final List<FakeFilter> created = Collections.synchronizedList(new ArrayList<FakeFilter>());
+        final AtomicInteger ids = new AtomicInteger();
+        final int threads = 4;
+        final int edits = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean isDone = new AtomicBoolean();
+        final AtomicInteger frames = new AtomicInteger();
+        final AtomicInteger changes = new AtomicInteger();
+
+        Thread draw = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!isDone.get()) {
+                    FilterChain.Snapshot<FakeFilter> snapshot = chain.sync(listener);
+                    Set<FakeFilter> seen = Collections.newSetFromMap(new IdentityHashMap<FakeFilter, Boolean>());
+                    for (int i = 0; i < snapshot.size(); i++) {
+                        FakeFilter filter = snapshot.get(i);
+                        // 绘制的每个Filter都已经创建，并且同一帧中只出现一次
+                        listener.check(filter.isAttached.get(), "drawn before attach " + filter);
+                        listener.check(seen.add(filter), "duplicate in frame " + filter);
+                    }
+                    frames.incrementAndGet();
+                }
+            }
+        });
+        listener.mDrawThread = draw;
+        draw.start();
+
+        List<Thread> editors = new ArrayList<>();
+        final AtomicReference<Throwable> editError = new AtomicReference<>();
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            Thread editor = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < edits; i++) {
+                            if (edit(chain, random, created, ids)) {
+                                changes.incrementAndGet();
+                            }
+                        }
+                    } catch (Throwable e) {
+                        editError.compareAndSet(null, e);
+                    }
+                }
+            });
+            editors.add(editor);
+            editor.start();
+        }
+        start.countDown();
+        for (Thread editor : editors) {
+            editor.join();
+        }
+        isDone.set(true);
+        draw.join();
+
+        assertNull(editError.get());
+        assertNull(listener.mError.get());
+        assertTrue(frames.get() > 0);
+
+        // 绘制线程结束后由当前线程接着绘制一帧，之后创建着的正好是链中的Filter
+        listener.mDrawThread = Thread.currentThread();
+        FilterChain.Snapshot<FakeFilter> last = chain.sync(listener);
+        assertNull(listener.mError.get());
+        Set<FakeFilter> inChain = Collections.newSetFromMap(new IdentityHashMap<FakeFilter, Boolean>());
+        for (int i = 0; i < last.size(); i++) {
+            inChain.add(last.get(i));
+        }
+        for (FakeFilter filter : created) {
+            assertEquals(filter.toString(), inChain.contains(filter), filter.isAttached.get());
+        }
+        assertEquals(inChain.size(), chain.getAttached().size());
+        // 每次实际的修改正好产生一个版本，没有丢失的修改
+        assertEquals(changes.get(), last.getVersion());
+    }
+
+    // 返回是否修改了链，没有修改的操作（例如移除已经不在链中的项）不产生新版本
+    private static boolean edit(FilterChain<FakeFilter> chain, Random random,
+                                List<FakeFilter> created, AtomicInteger ids) {
+        FilterChain.Snapshot<FakeFilter> snapshot = chain.getSnapshot();
+        FakeFilter existing = snapshot.size() == 0 ? null : snapshot.get(random.nextInt(snapshot.size()));
+        FakeFilter fresh = new FakeFilter(ids.incrementAndGet());
+        created.add(fresh);
+        boolean changed;
+        switch (random.nextInt(7)) {
+            case 0:
+                chain.add(fresh);
+                changed = true;
+                break;
+            case 1:
+                chain.add(random.nextInt(4), fresh);
+                changed = true;
+                break;
+            case 2:
+                changed = existing != null && chain.replace(existing, fresh);
+                break;
+            case 3:
+                changed = existing != null && chain.move(existing, random.nextInt(4));
+                break;
+            case 4:
+                changed = existing != null && chain.remove(existing);
+                break;
+            case 5:
+                changed = chain.remove(random.nextInt(4)) != null;
+                break;
+            default:
+                if (random.nextInt(20) == 0) {
+                    FakeFilter other = new FakeFilter(-fresh.mId);
+                    created.add(other);
+                    chain.setAll(Arrays.asList(fresh, other));
+                    changed = true;
+                } else {
+                    chain.add(fresh);
+                    changed = true;
+                }
+                break;
+        }
+        return changed;
+    }
+}
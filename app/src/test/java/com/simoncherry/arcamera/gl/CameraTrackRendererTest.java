@@ -0,0 +1,33 @@
+package com.simoncherry.arcamera.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * CameraTrackRenderer中相机时间戳换算的本地单元测试
+ */
+public class CameraTrackRendererTest {
+
+    private static final long NOW = 5000000000L;
+    private static final long REALTIME = 9000000000L;
+
+    @Test
+    public void toNanoTime_keepsMonotonicTimestamp() throws Exception {
+        assertEquals(NOW - 40000000L, CameraTrackRenderer.toNanoTime(NOW - 40000000L, false, NOW, REALTIME));
+    }
+
+    @Test
+    public void toNanoTime_convertsRealtimeTimestamp() throws Exception {
+        // 40ms之前采集，elapsedRealtime比nanoTime多4秒
+        long sensor = REALTIME - 40000000L;
+        assertEquals(NOW - 40000000L, CameraTrackRenderer.toNanoTime(sensor, true, NOW, REALTIME));
+    }
+
+    @Test
+    public void toNanoTime_usesNowForUnknownBase() throws Exception {
+        // 基准未知的REALTIME时间戳、晚于当前的时间戳
+        assertEquals(NOW, CameraTrackRenderer.toNanoTime(REALTIME - 40000000L, false, NOW, REALTIME));
+        assertEquals(NOW, CameraTrackRenderer.toNanoTime(NOW + 1, false, NOW, REALTIME));
+    }
+}
@@ -0,0 +1,54 @@
+package com.simoncherry.arcamera.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * FrameBufferRing的本地单元测试
+ */
+public class FrameBufferRingTest {
+
+    @Test
+    public void obtain_skipsRetainedBuffers() throws Exception {
+        FrameBufferRing ring = new FrameBufferRing(2, 16);
+        FrameBufferRing.Buffer first = ring.obtain();
+        assertTrue(ring.retain(first.getData()));
+        ring.release(first);
+
+        // first仍被回调方持有，不会被再次写入
+        FrameBufferRing.Buffer second = ring.obtain();
+        assertNotSame(first, second);
+        ring.release(second);
+        assertSame(second, ring.obtain());
+        ring.release(second);
+
+        ring.release(first.getData());
+        assertEquals(0, first.getRefCount());
+    }
+
+    @Test
+    public void obtain_returnsNullWhenAllHeld() throws Exception {
+        FrameBufferRing ring = new FrameBufferRing(2, 16);
+        assertNotNull(ring.obtain());
+        assertNotNull(ring.obtain());
+        assertNull(ring.obtain());
+    }
+
+    @Test
+    public void retain_rejectsRecycledOrForeignData() throws Exception {
+        FrameBufferRing ring = new FrameBufferRing(1, 16);
+        FrameBufferRing.Buffer buffer = ring.obtain();
+        ring.release(buffer);
+        assertFalse(ring.retain(buffer.getData()));
+        assertFalse(ring.retain(new byte[16]));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void release_tooManyTimes_throws() throws Exception {
+        FrameBufferRing ring = new FrameBufferRing(1, 16);
+        FrameBufferRing.Buffer buffer = ring.obtain();
+        ring.release(buffer);
+        ring.release(buffer);
+    }
+}
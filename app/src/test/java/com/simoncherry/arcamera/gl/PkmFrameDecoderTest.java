@@ -0,0 +1,208 @@
+package com.simoncherry.arcamera.gl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * PkmArchive和PkmFrameDecoder的本地单元测试，使用生成的PKM序列帧zip
+ */
+public class PkmFrameDecoderTest {
+
+    private static final int WIDTH = 30;     // 不是4的倍数，数据按32x20计算
+    private static final int HEIGHT = 18;
+    private static final long TIMEOUT_MS = 2000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    // 每帧颜色和alpha两项，数据的每个字节都是这一项的序号
+    static byte[] buildArchive(int frames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        int size = PkmArchive.getEncodedDataSize(WIDTH, HEIGHT);
+        for (int i = 0; i < frames * 2; i++) {
+            zip.putNextEntry(new ZipEntry(String.format("anim_%03d%s.pkm", i / 2, i % 2 == 0 ? "" : "_alpha")));
+            zip.write(header(WIDTH, HEIGHT));
+            byte[] data = new byte[size];
+            Arrays.fill(data, (byte) i);
+            zip.write(data);
+            zip.closeEntry();
+        }
+        zip.close();
+        return bytes.toByteArray();
+    }
+
+    static byte[] header(int width, int height) {
+        int encodedWidth = (width + 3) & ~3;
+        int encodedHeight = (height + 3) & ~3;
+        return new byte[]{'P', 'K', 'M', ' ', '1', '0', 0, 0,
+                (byte) (encodedWidth >> 8), (byte) encodedWidth,
+                (byte) (encodedHeight >> 8), (byte) encodedHeight,
+                (byte) (width >> 8), (byte) width, (byte) (height >> 8), (byte) height};
+    }
+
+    private static PkmArchive streamArchive(final byte[] zip, final int[] opens) {
+        return new PkmArchive(new PkmArchive.Opener() {
+            @Override
+            public InputStream open() throws IOException {
+                opens[0]++;
+                return new ByteArrayInputStream(zip);
+            }
+        });
+    }
+
+    private File writeArchive(byte[] zip) throws IOException {
+        File file = mFolder.newFile("anim.zip");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(zip);
+        out.close();
+        return file;
+    }
+
+    private static void assertFilled(ByteBuffer buffer, int value) {
+        assertEquals(PkmArchive.getEncodedDataSize(WIDTH, HEIGHT), buffer.remaining());
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            assertEquals((byte) value, buffer.get(i));
+        }
+    }
+
+    private static PkmFrameDecoder.Frame pollBlocking(PkmFrameDecoder decoder) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        PkmFrameDecoder.Frame frame;
+        while ((frame = decoder.poll()) == null) {
+            assertTrue("timeout", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        return frame;
+    }
+
+    @Test
+    public void archive_randomAccessFromFileAndStream() throws Exception {
+        byte[] zip = buildArchive(5);
+        int[] opens = new int[1];
+        PkmArchive[] archives = {new PkmArchive(writeArchive(zip)), streamArchive(zip, opens)};
+        for (PkmArchive archive : archives) {
+            assertEquals(10, archive.getEntryCount());
+            assertEquals(WIDTH, archive.getEntry(3).getWidth());
+            assertEquals(HEIGHT, archive.getEntry(3).getHeight());
+            assertEquals("anim_001_alpha.pkm", archive.getEntry(3).getName());
+            assertEquals(32 * 20 / 2, archive.getMaxDataSize());
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(archive.getMaxDataSize());
+            int[] order = {7, 8, 2, 9, 0};
+            for (int index : order) {
+                archive.read(index, buffer);
+                assertFilled(buffer, index);
+            }
+            archive.close();
+        }
+        // 建立索引一次，向前读取两次（2和0）时重新打开
+        assertEquals(1 + 1 + 2, opens[0]);
+    }
+
+    @Test(expected = IOException.class)
+    public void archive_rejectsInvalidHeader() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        zip.putNextEntry(new ZipEntry("bad.pkm"));
+        zip.write(new byte[32]);
+        zip.closeEntry();
+        zip.close();
+        streamArchive(bytes.toByteArray(), new int[1]).getEntryCount();
+    }
+
+    @Test
+    public void decoder_loopsSeamlesslyWithPooledBuffers() throws Exception {
+        int frames = 5;
+        PkmFrameDecoder decoder = new PkmFrameDecoder(new PkmArchive(writeArchive(buildArchive(frames))), 3);
+        decoder.start();
+        try {
+            Set<ByteBuffer> buffers = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+            for (int i = 0; i < frames * 3; i++) {
+                PkmFrameDecoder.Frame frame = pollBlocking(decoder);
+                assertEquals(i % frames, frame.getIndex());
+                assertEquals(WIDTH, frame.getWidth());
+                assertFilled(frame.getColor(), frame.getIndex() * 2);
+                assertFilled(frame.getAlpha(), frame.getIndex() * 2 + 1);
+                buffers.add(frame.getColor());
+                decoder.recycle(frame);
+            }
+            // 只使用预先分配的buffer（ByteBuffer的equals比较内容，这里按对象比较）
+            assertTrue(buffers.size() <= 3);
+            assertEquals(frames, decoder.getFrameCount());
+            assertTrue(decoder.getDecodedFrames() >= frames * 3);
+            assertTrue(decoder.getDecodeTime().getCount() >= frames * 3);
+            assertNull(decoder.getError());
+        } finally {
+            decoder.stop();
+        }
+    }
+
+    @Test
+    public void decoder_seekDiscardsPrefetchedFrames() throws Exception {
+        int[] opens = new int[1];
+        PkmFrameDecoder decoder = new PkmFrameDecoder(streamArchive(buildArchive(8), opens), 4);
+        decoder.start();
+        try {
+            PkmFrameDecoder.Frame frame = pollBlocking(decoder);
+            assertEquals(0, frame.getIndex());
+            decoder.recycle(frame);
+
+            decoder.seek(6);
+            frame = pollBlocking(decoder);
+            assertEquals(6, frame.getIndex());
+            assertFilled(frame.getColor(), 12);
+            decoder.recycle(frame);
+            assertEquals(7, pollBlocking(decoder).getIndex());
+
+            // 向前seek，assets中的zip需要重新打开
+            decoder.seek(1);
+            assertEquals(1, pollBlocking(decoder).getIndex());
+        } finally {
+            decoder.stop();
+        }
+    }
+
+    @Test
+    public void decoder_finishesWithoutLoop() throws Exception {
+        PkmFrameDecoder decoder = new PkmFrameDecoder(new PkmArchive(writeArchive(buildArchive(3))), 2);
+        decoder.setLoop(false);
+        decoder.start();
+        try {
+            for (int i = 0; i < 3; i++) {
+                PkmFrameDecoder.Frame frame = pollBlocking(decoder);
+                assertEquals(i, frame.getIndex());
+                decoder.recycle(frame);
+            }
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (!decoder.isFinished()) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+            assertNull(decoder.poll());
+
+            // seek后可以重新播放
+            decoder.seek(0);
+            assertEquals(0, pollBlocking(decoder).getIndex());
+        } finally {
+            decoder.stop();
+        }
+    }
+}
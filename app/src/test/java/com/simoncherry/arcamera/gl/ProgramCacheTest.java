@@ -0,0 +1,316 @@
+package com.simoncherry.arcamera.gl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * ProgramCache的本地单元测试，GL调用由FakeBackend记录
+ */
+public class ProgramCacheTest {
+
+    private static final String VERTEX = "attribute vec4 vPosition;";
+    private static final String GRAY = "void main() { gl_FragColor = vec4(0.5); }";
+    private static final String NEGATIVE = "void main() { gl_FragColor = vec4(1.0); }";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    static class FakeBackend implements ProgramCache.Backend {
+        Object context = "ctx0";
+        boolean supportsBinary = true;
+        int compiles = 0;
+        int binaryLoads = 0;
+        int uniformQueries = 0;
+        int nextId = 1;
+        final Set<Integer> live = new HashSet<>();
+        final Set<Integer> deleted = new HashSet<>();
+        final Map<Integer, String> sources = new HashMap<>();
+
+        @Override
+        public Object getCurrentContext() {
+            return context;
+        }
+
+        @Override
+        public int compile(String vertex, String fragment) {
+            compiles++;
+            if (fragment.contains("error")) {
+                return 0;
+            }
+            int id = nextId++;
+            live.add(id);
+            sources.put(id, vertex + "\n" + fragment);
+            return id;
+        }
+
+        @Override
+        public boolean isProgram(int program) {
+            return live.contains(program);
+        }
+
+        @Override
+        public void deleteProgram(int program) {
+            live.remove(program);
+            deleted.add(program);
+        }
+
+        @Override
+        public int getUniformLocation(int program, String name) {
+            uniformQueries++;
+            return name.length();
+        }
+
+        @Override
+        public int getAttribLocation(int program, String name) {
+            return name.length();
+        }
+
+        @Override
+        public byte[] getProgramBinary(int program, int[] format) {
+            if (!supportsBinary) {
+                return null;
+            }
+            format[0] = 0x1234;
+            return sources.get(program).getBytes();
+        }
+
+        @Override
+        public int loadProgramBinary(int format, byte[] binary) {
+            if (!supportsBinary || format != 0x1234) {
+                return 0;
+            }
+            binaryLoads++;
+            int id = nextId++;
+            live.add(id);
+            sources.put(id, new String(binary));
+            return id;
+        }
+
+        @Override
+        public String getDriverId() {
+            return "fake-driver";
+        }
+    }
+
+    @Test
+    public void acquire_sharesProgramForSameSource() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        ProgramCache cache = new ProgramCache(backend);
+
+        ProgramCache.Program first = cache.acquire(VERTEX, GRAY);
+        ProgramCache.Program second = cache.acquire(VERTEX, GRAY);
+        ProgramCache.Program other = cache.acquire(VERTEX, NEGATIVE);
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, first.getRefCount());
+        assertEquals(2, backend.compiles);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getCompileTime().getCount());
+        assertEquals(2, cache.getCachedCount());
+    }
+
+    @Test
+    public void release_keepsIdleProgramForReuse() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        ProgramCache cache = new ProgramCache(backend);
+
+        ProgramCache.Program first = cache.acquire(VERTEX, GRAY);
+        ProgramCache.Program second = cache.acquire(VERTEX, GRAY);
+        int id = first.getId();
+        cache.release(first);
+        cache.release(second);
+        assertTrue(backend.deleted.isEmpty());
+        assertEquals(1, cache.getIdleCount());
+        // 多余的release不会重复放入
+        cache.release(second);
+        assertEquals(1, cache.getIdleCount());
+
+        // 切换回来时直接复用，不再编译
+        ProgramCache.Program again = cache.acquire(VERTEX, GRAY);
+        assertSame(first, again);
+        assertEquals(id, again.getId());
+        assertEquals(1, backend.compiles);
+        assertEquals(0, cache.getIdleCount());
+    }
+
+    @Test
+    public void release_deletesLeastRecentlyUsedBeyondLimit() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        ProgramCache cache = new ProgramCache(backend, 1);
+
+        ProgramCache.Program gray = cache.acquire(VERTEX, GRAY);
+        ProgramCache.Program negative = cache.acquire(VERTEX, NEGATIVE);
+        int grayId = gray.getId();
+        cache.release(gray);
+        cache.release(negative);
+        assertEquals(Collections.singleton(grayId), backend.deleted);
+        assertEquals(1, cache.getIdleCount());
+        assertEquals(1, cache.getCachedCount());
+    }
+
+    @Test
+    public void trimIdle_deletesIdlePrograms() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        ProgramCache cache = new ProgramCache(backend);
+
+        ProgramCache.Program used = cache.acquire(VERTEX, GRAY);
+        ProgramCache.Program idle = cache.acquire(VERTEX, NEGATIVE);
+        int idleId = idle.getId();
+        cache.release(idle);
+        cache.trimIdle();
+        assertEquals(Collections.singleton(idleId), backend.deleted);
+        assertEquals(0, cache.getIdleCount());
+        assertEquals(1, cache.getCachedCount());
+        assertNotEquals(0, used.getId());
+
+        assertNotEquals(idleId, cache.acquire(VERTEX, NEGATIVE).getId());
+        assertEquals(3, backend.compiles);
+    }
+
+    @Test
+    public void onContextCreated_dropsIdleWithoutDeleting() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        ProgramCache cache = new ProgramCache(backend);
+
+        cache.release(cache.acquire(VERTEX, GRAY));
+        // 新的上下文复用了同样的句柄
+        cache.onContextCreated();
+        assertTrue(backend.deleted.isEmpty());
+        assertEquals(0, cache.getCachedCount());
+        cache.acquire(VERTEX, GRAY);
+        assertEquals(2, backend.compiles);
+    }
+
+    @Test
+    public void acquire_separatesContexts() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        ProgramCache cache = new ProgramCache(backend);
+
+        ProgramCache.Program first = cache.acquire(VERTEX, GRAY);
+        backend.context = "ctx1";
+        ProgramCache.Program second = cache.acquire(VERTEX, GRAY);
+        assertNotSame(first, second);
+        assertEquals(2, backend.compiles);
+
+        // 在其他上下文中release只移出缓存，不删除
+        int secondId = second.getId();
+        cache.release(first);
+        assertTrue(backend.deleted.isEmpty());
+        assertEquals(1, cache.getCachedCount());
+        cache.release(second);
+        assertEquals(1, cache.getIdleCount());
+        cache.trimIdle();
+        assertTrue(backend.deleted.contains(secondId));
+        assertEquals(0, cache.getCachedCount());
+    }
+
+    @Test
+    public void acquire_recompilesStaleProgram() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        ProgramCache cache = new ProgramCache(backend);
+
+        ProgramCache.Program first = cache.acquire(VERTEX, GRAY);
+        int staleId = first.getId();
+        // 上下文丢失后句柄被新的上下文复用
+        backend.live.clear();
+        ProgramCache.Program second = cache.acquire(VERTEX, GRAY);
+        assertNotSame(first, second);
+        assertEquals(2, backend.compiles);
+
+        // 失效的程序release时不删除新上下文中可能复用的id
+        cache.release(first);
+        assertFalse(backend.deleted.contains(staleId));
+        assertEquals(1, cache.getCachedCount());
+    }
+
+    @Test
+    public void acquire_returnsNullOnCompileError() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        ProgramCache cache = new ProgramCache(backend);
+
+        assertNull(cache.acquire(VERTEX, "error"));
+        assertNull(cache.acquire(null, GRAY));
+        assertEquals(2, cache.getFailureCount());
+        assertEquals(0, cache.getCachedCount());
+    }
+
+    @Test
+    public void uniformLocation_queriedOncePerProgram() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        ProgramCache cache = new ProgramCache(backend);
+
+        ProgramCache.Program program = cache.acquire(VERTEX, GRAY);
+        assertEquals(7, cache.getUniformLocation(program, "vMatrix"));
+        assertEquals(7, cache.getUniformLocation(program, "vMatrix"));
+        assertEquals(8, cache.getUniformLocation(program, "vTexture"));
+        assertEquals(2, backend.uniformQueries);
+    }
+
+    @Test
+    public void binary_loadedOnWarmStart() throws Exception {
+        File dir = mFolder.newFolder("programs");
+        FakeBackend cold = new FakeBackend();
+        ProgramCache coldCache = new ProgramCache(cold);
+        coldCache.setBinaryDir(dir);
+        coldCache.acquire(VERTEX, GRAY);
+        assertEquals(1, cold.compiles);
+        assertEquals(1, dir.listFiles().length);
+
+        // 新进程中相同的shader直接加载二进制
+        FakeBackend warm = new FakeBackend();
+        ProgramCache warmCache = new ProgramCache(warm);
+        warmCache.setBinaryDir(dir);
+        ProgramCache.Program program = warmCache.acquire(VERTEX, GRAY);
+        assertNotNull(program);
+        assertEquals(0, warm.compiles);
+        assertEquals(1, warm.binaryLoads);
+        assertEquals(1, warmCache.getBinaryLoadCount());
+        assertEquals(VERTEX + "\n" + GRAY, warm.sources.get(program.getId()));
+    }
+
+    @Test
+    public void binary_corruptFileFallsBackToCompile() throws Exception {
+        File dir = mFolder.newFolder("programs");
+        FakeBackend cold = new FakeBackend();
+        ProgramCache coldCache = new ProgramCache(cold);
+        coldCache.setBinaryDir(dir);
+        coldCache.acquire(VERTEX, GRAY);
+        File file = dir.listFiles()[0];
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+
+        FakeBackend warm = new FakeBackend();
+        ProgramCache warmCache = new ProgramCache(warm);
+        warmCache.setBinaryDir(dir);
+        assertNotNull(warmCache.acquire(VERTEX, GRAY));
+        assertEquals(1, warm.compiles);
+        assertEquals(0, warmCache.getBinaryLoadCount());
+        // 重新编译后写入了新的二进制
+        assertTrue(file.length() > 3);
+    }
+
+    @Test
+    public void binary_skippedWhenUnsupported() throws Exception {
+        File dir = mFolder.newFolder("programs");
+        FakeBackend backend = new FakeBackend();
+        backend.supportsBinary = false;
+        ProgramCache cache = new ProgramCache(backend);
+        cache.setBinaryDir(dir);
+        assertNotNull(cache.acquire(VERTEX, GRAY));
+        assertEquals(0, dir.listFiles().length);
+    }
+}
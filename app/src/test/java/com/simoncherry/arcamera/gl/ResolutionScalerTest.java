@@ -0,0 +1,128 @@
+package com.simoncherry.arcamera.gl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ResolutionScaler的本地单元测试，用固定的耗时模拟GPU
+ */
+public class ResolutionScalerTest {
+
+    private static final long MS = 1000000L;
+    private static final int WINDOW = 5;
+
+    private static ResolutionScaler newScaler() {
+        ResolutionScaler scaler = new ResolutionScaler(ResolutionScaler.DEFAULT_LEVELS, WINDOW);
+        scaler.setTargetFrameRate(30);
+        scaler.setBaseSize(720, 1280);
+        // 全部开销都随分辨率变化，耗时与面积成正比
+        scaler.setCostHints(1f, 0f);
+        return scaler;
+    }
+
+    // 加入一个窗口的样本，返回缩放比例是否改变
+    private static boolean addWindow(ResolutionScaler scaler, long frameNs) {
+        boolean isChanged = false;
+        for (int i = 0; i < WINDOW; i++) {
+            isChanged |= scaler.addSample(frameNs);
+        }
+        return isChanged;
+    }
+
+    @Test
+    public void downscale_needsConsecutiveWindowsAndUsesPrediction() throws Exception {
+        ResolutionScaler scaler = newScaler();
+        // 全分辨率时50ms，面积降到0.85*33.3/50以下才够，0.7*0.7=0.49满足
+        assertFalse(addWindow(scaler, 50 * MS));
+        assertEquals(1f, scaler.getScale(), 0f);
+        assertTrue(addWindow(scaler, 50 * MS));
+        assertEquals(0.7f, scaler.getScale(), 0f);
+        assertEquals(504, scaler.getWidth());
+        assertEquals(896, scaler.getHeight());
+        assertEquals(1, scaler.getScaleChanges());
+    }
+
+    @Test
+    public void upscale_waitsForHeadroomAndSettles() throws Exception {
+        ResolutionScaler scaler = newScaler();
+        addWindow(scaler, 50 * MS);
+        addWindow(scaler, 50 * MS);
+        assertEquals(0.7f, scaler.getScale(), 0f);
+
+        // 切换后的第一个窗口不判断，即使耗时很低
+        assertFalse(addWindow(scaler, 5 * MS));
+        // 升高一档预测为5*(0.85/0.7)^2=7.4ms，余量足够，但要连续几个窗口
+        for (int i = 1; i < ResolutionScaler.UP_WINDOWS; i++) {
+            assertFalse(addWindow(scaler, 5 * MS));
+        }
+        assertTrue(addWindow(scaler, 5 * MS));
+        assertEquals(0.85f, scaler.getScale(), 0f);
+    }
+
+    @Test
+    public void hysteresis_noOscillationNearBudget() throws Exception {
+        ResolutionScaler scaler = newScaler();
+        addWindow(scaler, 50 * MS);
+        addWindow(scaler, 50 * MS);
+        addWindow(scaler, 24 * MS);
+        // 0.7时24ms，升高到0.85预测为35ms超出预算，不升高；也没有超出预算，不降低
+        for (int i = 0; i < 20; i++) {
+            assertFalse(addWindow(scaler, 24 * MS));
+        }
+        assertEquals(0.7f, scaler.getScale(), 0f);
+        // 中间有一个窗口超出预算不会降低，连续两个才降低
+        assertFalse(addWindow(scaler, 33 * MS));
+        assertFalse(addWindow(scaler, 24 * MS));
+        assertFalse(addWindow(scaler, 33 * MS));
+        assertTrue(addWindow(scaler, 33 * MS));
+        assertEquals(0.6f, scaler.getScale(), 0f);
+    }
+
+    @Test
+    public void predict_fixedCostDoesNotScale() throws Exception {
+        ResolutionScaler scaler = newScaler();
+        scaler.setCostHints(1f, 0f);
+        assertEquals(25 * MS, scaler.predict(100 * MS, 4), MS / 100);
+        // 一半开销不随分辨率变化
+        scaler.setCostHints(1f, 1f);
+        assertEquals(62500000L, scaler.predict(100 * MS, 4), MS / 100);
+
+        // 固定开销较大时，同样超出预算需要降得更多，降不够时停在最低一档
+        addWindow(scaler, 50 * MS);
+        addWindow(scaler, 50 * MS);
+        assertEquals(0.5f, scaler.getScale(), 0f);
+    }
+
+    @Test
+    public void listener_reportsEachWindow() throws Exception {
+        ResolutionScaler scaler = newScaler();
+        scaler.setSource(GpuFrameTimer.SOURCE_FENCE);
+        final List<ResolutionScaler.Metrics> reports = new ArrayList<>();
+        scaler.setListener(new ResolutionScaler.Listener() {
+            @Override
+            public void onMetrics(ResolutionScaler.Metrics metrics) {
+                reports.add(metrics);
+            }
+        });
+        addWindow(scaler, 50 * MS);
+        addWindow(scaler, 50 * MS);
+        assertEquals(2, reports.size());
+        ResolutionScaler.Metrics last = reports.get(1);
+        assertEquals(0.7f, last.scale, 0f);
+        assertEquals(504, last.width);
+        assertEquals(50f, last.meanFrameMs, 0.01f);
+        assertEquals(33.3f, last.targetFrameMs, 0.1f);
+        assertEquals("fence", last.source);
+        assertEquals(1, last.scaleChanges);
+        assertEquals(2 * WINDOW, last.frameTime.getCount());
+
+        // reset后回到全分辨率
+        scaler.reset();
+        assertEquals(1f, scaler.getScale(), 0f);
+        assertEquals(720, scaler.getWidth());
+    }
+}
@@ -0,0 +1,67 @@
+package com.simoncherry.arcamera.track;
+
+/**
+ * 多人脸时检测线程写入和渲染线程采样的耗时，分别测1/2/4张脸。
+ * 不是单元测试，需要时直接运行main。
+ */
+public class FaceTrackBenchmark {
+
+    private static final int WARMUP_FRAMES = 20000;
+    private static final int FRAMES = 100000;
+    private static final long FRAME_NS = 33 * 1000000L;
+
+    public static void main(String[] args) {
+        int[] faceCounts = {1, 2, 4};
+        for (int faceCount : faceCounts) {
+            run(faceCount, WARMUP_FRAMES);
+        }
+        for (int faceCount : faceCounts) {
+            long[] result = run(faceCount, FRAMES);
+            System.out.println(faceCount + " face(s): update " + (result[0] / FRAMES) + " ns/frame, "
+                    + "sample " + (result[1] / FRAMES) + " ns/frame");
+        }
+    }
+
+    /**
+     * @return {写入总耗时, 采样总耗时}，单位纳秒
+     */
+    private static long[] run(int faceCount, int frames) {
+        FaceTrackRegistry registry = new FaceTrackRegistry();
+        float[] landmarkX = new float[FaceMotionStream.LANDMARK_COUNT];
+        float[] landmarkY = new float[FaceMotionStream.LANDMARK_COUNT];
+        boolean[] active = new boolean[registry.getMaxFaces()];
+        float[] poses = new float[registry.getMaxFaces() * FaceTrackRegistry.POSE_SIZE];
+        long updateNs = 0;
+        long sampleNs = 0;
+        float sink = 0;
+
+        for (int frame = 0; frame < frames; frame++) {
+            long timestamp = frame * FRAME_NS;
+            for (int i = 0; i < landmarkX.length; i++) {
+                landmarkX[i] = (float) Math.sin(frame * 0.01 + i);
+                landmarkY[i] = (float) Math.cos(frame * 0.01 + i);
+            }
+
+            long start = System.nanoTime();
+            for (int id = 0; id < faceCount; id++) {
+                FaceMotionStream motion = registry.obtain(id, timestamp).getMotion();
+                motion.updateRotation(timestamp, frame, frame, frame);
+                motion.updateTransition(timestamp, landmarkX[id], landmarkY[id], 1);
+                motion.updateLandmarks(timestamp, landmarkX, landmarkY, 0);
+            }
+            long mid = System.nanoTime();
+            // 渲染频率按检测频率的两倍算
+            registry.samplePoses(timestamp + FRAME_NS / 2, active, poses);
+            registry.samplePoses(timestamp + FRAME_NS, active, poses);
+            long end = System.nanoTime();
+
+            updateNs += mid - start;
+            sampleNs += end - mid;
+            sink += poses[0];
+        }
+        if (sink == Float.MIN_VALUE) {
+            System.out.println(sink);
+        }
+        return new long[]{updateNs, sampleNs};
+    }
+}
@@ -0,0 +1,57 @@
+package com.simoncherry.arcamera.track;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * FaceTrackRegistry的本地单元测试
+ */
+public class FaceTrackRegistryTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void obtain_keepsSlotPerFaceId() throws Exception {
+        FaceTrackRegistry registry = new FaceTrackRegistry(2);
+        FaceTrackRegistry.Face a = registry.obtain(11, 0);
+        FaceTrackRegistry.Face b = registry.obtain(22, 0);
+        assertNotSame(a, b);
+        assertSame(a, registry.obtain(11, 33 * MS));
+        assertSame(b, registry.obtain(22, 33 * MS));
+        // 槽位已满
+        assertNull(registry.obtain(33, 33 * MS));
+        assertEquals(2, registry.getActiveCount(33 * MS));
+    }
+
+    @Test
+    public void obtain_reusesSlotOfLostFace() throws Exception {
+        FaceTrackRegistry registry = new FaceTrackRegistry(1);
+        registry.setLostTimeoutMs(100);
+        FaceTrackRegistry.Face a = registry.obtain(11, 0);
+        assertTrue(registry.isActive(a.getSlot(), 100 * MS));
+        assertFalse(registry.isActive(a.getSlot(), 101 * MS));
+
+        FaceTrackRegistry.Face b = registry.obtain(22, 200 * MS);
+        assertSame(a, b);
+        assertEquals(22, b.getId());
+    }
+
+    @Test
+    public void samplePoses_writesPerSlot() throws Exception {
+        FaceTrackRegistry registry = new FaceTrackRegistry(2);
+        registry.obtain(11, 0).getMotion().updateRotation(0, 1, 2, 3);
+        registry.getFace(0).getMotion().updateTransition(0, 4, 5, 6);
+        registry.setPrimaryId(11);
+
+        boolean[] active = new boolean[2];
+        float[] poses = new float[2 * FaceTrackRegistry.POSE_SIZE];
+        assertEquals(1, registry.samplePoses(0, active, poses));
+        assertTrue(active[0]);
+        assertFalse(active[1]);
+        assertEquals(0, registry.getPrimarySlot());
+        for (int i = 0; i < FaceTrackRegistry.POSE_SIZE; i++) {
+            assertEquals(i + 1, poses[i], 0);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.simoncherry.arcamera.track;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * LatencyHistogram的本地单元测试
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void record_putsValuesIntoBuckets() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(new long[]{10, 20});
+        histogram.record(3);
+        histogram.record(10);
+        histogram.record(15);
+        histogram.record(40);
+
+        assertEquals(3, histogram.getBucketCount());
+        assertEquals(2, histogram.getBucket(0));
+        assertEquals(1, histogram.getBucket(1));
+        assertEquals(1, histogram.getBucket(2));
+        assertEquals(4, histogram.getCount());
+        assertEquals(40, histogram.getMax());
+        assertEquals(17f, histogram.getMean(), 0.001f);
+    }
+
+    @Test
+    public void percentile_returnsBucketBound() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(new long[]{10, 20, 30});
+        for (int i = 0; i < 90; i++) {
+            histogram.record(5);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(25);
+        }
+        assertEquals(10, histogram.getPercentile(0.5f));
+        assertEquals(30, histogram.getPercentile(0.95f));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.5f));
+    }
+}
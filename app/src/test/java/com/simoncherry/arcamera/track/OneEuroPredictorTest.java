@@ -0,0 +1,67 @@
+package com.simoncherry.arcamera.track;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * OneEuroPredictor的本地单元测试
+ */
+public class OneEuroPredictorTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void predict_beforeUpdate_returnsFalse() throws Exception {
+        OneEuroPredictor predictor = new OneEuroPredictor(2, 1.0f, 0.0f, 1.0f);
+        float[] out = {7, 7};
+        assertFalse(predictor.predict(0, out, 0));
+        assertEquals(7, out[0], 0);
+    }
+
+    @Test
+    public void update_smoothsJitter() throws Exception {
+        OneEuroPredictor predictor = new OneEuroPredictor(1, 1.0f, 0.0f, 1.0f);
+        float[] in = new float[1];
+        float[] out = new float[1];
+        for (int i = 0; i < 30; i++) {
+            in[0] = (i % 2 == 0) ? 0.49f : 0.51f;
+            predictor.update(i * 33 * MS, in, 0);
+        }
+        assertTrue(predictor.predict(29 * 33 * MS, out, 0));
+        assertEquals(0.5f, out[0], 0.006f);
+    }
+
+    @Test
+    public void predict_extrapolatesAndClamps() throws Exception {
+        OneEuroPredictor predictor = new OneEuroPredictor(1, 1.0f, 50.0f, 10.0f);
+        predictor.setMaxPredictionMs(100);
+        float[] in = new float[1];
+        float[] out = new float[1];
+        // 匀速运动，每秒移动1.0
+        for (int i = 0; i <= 30; i++) {
+            in[0] = i * 0.033f;
+            predictor.update(i * 33 * MS, in, 0);
+        }
+        long last = 30 * 33 * MS;
+        predictor.predict(last, out, 0);
+        float current = out[0];
+        predictor.predict(last + 50 * MS, out, 0);
+        assertEquals(current + 0.05f, out[0], 0.01f);
+        // 超过最大外推时长后不再继续外推
+        predictor.predict(last + 1000 * MS, out, 0);
+        assertEquals(current + 0.1f, out[0], 0.02f);
+    }
+
+    @Test
+    public void update_afterLongGap_resets() throws Exception {
+        OneEuroPredictor predictor = new OneEuroPredictor(1, 1.0f, 0.0f, 1.0f);
+        float[] in = {0.1f};
+        float[] out = new float[1];
+        predictor.update(0, in, 0);
+        in[0] = 0.9f;
+        predictor.update(2000 * MS, in, 0);
+        predictor.predict(2000 * MS, out, 0);
+        assertEquals(0.9f, out[0], 0);
+    }
+}
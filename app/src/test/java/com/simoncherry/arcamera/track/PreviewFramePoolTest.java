@@ -0,0 +1,65 @@
+package com.simoncherry.arcamera.track;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * PreviewFramePool的本地单元测试
+ */
+public class PreviewFramePoolTest {
+
+    @Test
+    public void obtain_returnsNullWhenExhausted() throws Exception {
+        PreviewFramePool pool = new PreviewFramePool(4, 2, 2);
+        PreviewFramePool.Frame a = pool.obtain();
+        PreviewFramePool.Frame b = pool.obtain();
+        assertNotNull(a);
+        assertNotNull(b);
+        assertNull(pool.obtain());
+
+        a.release();
+        assertEquals(1, pool.getFreeCount());
+        assertSame(a, pool.obtain());
+    }
+
+    @Test
+    public void release_waitsForLastReference() throws Exception {
+        PreviewFramePool pool = new PreviewFramePool(4, 2, 1);
+        PreviewFramePool.Frame frame = pool.obtain();
+        frame.retain();
+        frame.release();
+        assertEquals(0, pool.getFreeCount());
+        frame.release();
+        assertEquals(1, pool.getFreeCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void release_tooManyTimesThrows() throws Exception {
+        PreviewFramePool pool = new PreviewFramePool(4, 2, 1);
+        PreviewFramePool.Frame frame = pool.obtain();
+        frame.release();
+        frame.release();
+    }
+
+    @Test
+    public void packNV21_honoursRowAndPixelStride() throws Exception {
+        int width = 4;
+        int height = 2;
+        int yRowStride = 6;
+        // Y平面每行末尾有2字节padding
+        ByteBuffer y = ByteBuffer.wrap(new byte[]{
+                1, 2, 3, 4, 0, 0,
+                5, 6, 7, 8, 0, 0});
+        // U/V平面像素跨度为2，模拟大多数设备上的半平面布局
+        ByteBuffer u = ByteBuffer.wrap(new byte[]{10, 0, 11, 0});
+        ByteBuffer v = ByteBuffer.wrap(new byte[]{20, 0, 21, 0});
+
+        byte[] out = new byte[width * height * 3 / 2];
+        PreviewFramePool.packNV21(y, yRowStride, u, v, 4, 2, width, height, out);
+
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 20, 10, 21, 11}, out);
+    }
+}
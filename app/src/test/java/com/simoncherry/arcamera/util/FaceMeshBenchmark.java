@@ -0,0 +1,94 @@
+package com.simoncherry.arcamera.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.text.DecimalFormat;
+
+/**
+ * 换脸时原来改写OBJ文本再重新解析，与FaceMeshTemplate直接写贴图坐标的耗时对比。
+ * 不是单元测试，需要时直接运行main。
+ */
+public class FaceMeshBenchmark {
+
+    private static final int WARMUP = 50;
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws IOException {
+        File obj = FaceMeshTemplateTest.findObj();
+        File out = File.createTempFile("base_face_uv3_obj", null);
+        out.deleteOnExit();
+        float[] uv = new float[FaceMeshTemplate.UV_COUNT * 2];
+        for (int i = 0; i < uv.length; i++) {
+            uv[i] = (i % 17) / 17f;
+        }
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        FaceMeshTemplateTest.parse().writeBinary(binary, 0L);
+        byte[] cache = binary.toByteArray();
+
+        for (int i = 0; i < WARMUP; i++) {
+            legacy(obj, out, uv);
+            cold(cache, uv);
+        }
+
+        long legacyNs = 0;
+        long coldNs = 0;
+        long patchNs = 0;
+        FaceMeshTemplate template = FaceMeshTemplateTest.parse();
+        FloatBuffer texCoords = FloatBuffer.allocate(template.getVertexCount() * 2);
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            legacy(obj, out, uv);
+            legacyNs += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            cold(cache, uv);
+            coldNs += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            template.writeTexCoords(uv, texCoords);
+            patchNs += System.nanoTime() - start;
+        }
+        System.out.println("legacy obj rewrite + parse: " + (legacyNs / ROUNDS / 1000) + " us");
+        System.out.println("binary cache load + uv: " + (coldNs / ROUNDS / 1000) + " us");
+        System.out.println("uv patch only: " + (patchNs / ROUNDS / 1000) + " us");
+    }
+
+    // 原来的做法：读入整个OBJ，替换vt行，写文件，再解析写出的文件
+    private static void legacy(File obj, File out, float[] uv) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new FileReader(obj));
+        for (String str; (str = reader.readLine()) != null; ) {
+            builder.append(str).append("\n");
+        }
+        reader.close();
+        DecimalFormat decimalFormat = new DecimalFormat(".0000");
+        String[] lines = builder.toString().split("\n");
+        for (int i = 0; i < FaceMeshTemplate.UV_COUNT; i++) {
+            lines[48 + i] = "vt " + decimalFormat.format(uv[i * 2]) + " " + decimalFormat.format(uv[i * 2 + 1]);
+        }
+        FileWriter writer = new FileWriter(out);
+        for (String line : lines) {
+            writer.write(line + "\n");
+        }
+        writer.close();
+        InputStream in = new FileInputStream(out);
+        try {
+            FaceMeshTemplate.parseObj(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void cold(byte[] cache, float[] uv) throws IOException {
+        FaceMeshTemplate template = FaceMeshTemplate.readBinary(new ByteArrayInputStream(cache), 0L);
+        template.writeTexCoords(uv, FloatBuffer.allocate(template.getVertexCount() * 2));
+    }
+}
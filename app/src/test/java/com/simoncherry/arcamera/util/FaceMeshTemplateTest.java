@@ -0,0 +1,136 @@
+package com.simoncherry.arcamera.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * FaceMeshTemplate的本地单元测试，使用res/raw中的base_face_uv3_obj
+ */
+public class FaceMeshTemplateTest {
+
+    static File findObj() {
+        // gradle在app目录下运行，IDE可能在工程目录下运行
+        String[] candidates = {"src/main/res/raw/base_face_uv3_obj", "app/src/main/res/raw/base_face_uv3_obj"};
+        for (String candidate : candidates) {
+            File file = new File(candidate);
+            if (file.exists()) {
+                return file;
+            }
+        }
+        throw new IllegalStateException("base_face_uv3_obj not found");
+    }
+
+    static FaceMeshTemplate parse() throws IOException {
+        InputStream in = new FileInputStream(findObj());
+        try {
+            return FaceMeshTemplate.parseObj(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void parseObj_expandsFaces() throws Exception {
+        FaceMeshTemplate template = parse();
+        // 54个三角形
+        assertEquals(54 * 3, template.getVertexCount());
+        assertEquals(FaceMeshTemplate.UV_COUNT, template.getUvCount());
+    }
+
+    @Test
+    public void binary_roundTrip() throws Exception {
+        FaceMeshTemplate template = parse();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.writeBinary(out, 7L);
+        FaceMeshTemplate loaded = FaceMeshTemplate.readBinary(new ByteArrayInputStream(out.toByteArray()), 7L);
+        assertEquals(template.getVertexCount(), loaded.getVertexCount());
+
+        float[] uv = new float[FaceMeshTemplate.UV_COUNT * 2];
+        for (int i = 0; i < uv.length; i++) {
+            uv[i] = i / (float) uv.length;
+        }
+        FloatBuffer expected = FloatBuffer.allocate(template.getVertexCount() * 2);
+        FloatBuffer actual = FloatBuffer.allocate(template.getVertexCount() * 2);
+        template.writeTexCoords(uv, expected);
+        loaded.writeTexCoords(uv, actual);
+        assertArrayEquals(expected.array(), actual.array(), 0f);
+    }
+
+    @Test(expected = IOException.class)
+    public void readBinary_rejectsOtherData() throws Exception {
+        FaceMeshTemplate.readBinary(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}), 0L);
+    }
+
+    @Test(expected = IOException.class)
+    public void readBinary_rejectsOtherStamp() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parse().writeBinary(out, 1L);
+        FaceMeshTemplate.readBinary(new ByteArrayInputStream(out.toByteArray()), 2L);
+    }
+
+    @Test
+    public void writeCache_replacesCacheWithoutTempFile() throws Exception {
+        File dir = File.createTempFile("mesh", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        File cache = new File(dir, "face_mesh.bin");
+        try {
+            FaceMeshTemplate template = parse();
+            FaceMeshTemplate.writeCache(template, cache, 1L);
+            FaceMeshTemplate.writeCache(template, cache, 2L);
+            assertArrayEquals(new String[]{"face_mesh.bin"}, dir.list());
+            assertEquals(template.getVertexCount(), FaceMeshTemplate.readCache(cache, 2L).getVertexCount());
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void writeTexCoords_flipsV() throws Exception {
+        FaceMeshTemplate template = parse();
+        float[] uv = new float[FaceMeshTemplate.UV_COUNT * 2];
+        for (int i = 0; i < FaceMeshTemplate.UV_COUNT; i++) {
+            uv[i * 2] = i;
+            uv[i * 2 + 1] = 0.25f;
+        }
+        FloatBuffer texCoords = FloatBuffer.allocate(template.getVertexCount() * 2);
+        template.writeTexCoords(uv, texCoords);
+        // 第一个面是f 22/1/1 20/2/1 30/3/1
+        assertEquals(0f, texCoords.get(0), 0f);
+        assertEquals(1f, texCoords.get(2), 0f);
+        assertEquals(2f, texCoords.get(4), 0f);
+        for (int i = 0; i < template.getVertexCount(); i++) {
+            assertEquals(0.75f, texCoords.get(i * 2 + 1), 0f);
+        }
+    }
+
+    @Test
+    public void computeUv_remapsLandmarks() {
+        float[] x = new float[106];
+        float[] y = new float[106];
+        for (int i = 0; i < 106; i++) {
+            x[i] = i;
+            y[i] = -i;
+        }
+        float[] uv = new float[FaceMeshTemplate.UV_COUNT * 2];
+        FaceMeshTemplate.computeUv(x, y, uv);
+        assertEquals(0f, uv[0], 0f);
+        assertEquals(52f, uv[2], 0f);
+        assertEquals(-52f, uv[3], 0f);
+        // 第18个是36和39的中点
+        assertEquals(37.5f, uv[17 * 2], 0f);
+        assertEquals(-37.5f, uv[17 * 2 + 1], 0f);
+        assertEquals(16f, uv[43 * 2], 0f);
+    }
+}
@@ -0,0 +1,52 @@
+package com.simoncherry.arcamera.util;
+
+import java.util.Random;
+
+/**
+ * 720x1280画面上，原来逐字节合成与PixelCompositor的耗时对比。
+ * 不是单元测试，需要时直接运行main。
+ */
+public class PixelCompositorBenchmark {
+
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 1280;
+    private static final int WARMUP = 50;
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        int[] overlay = new int[WIDTH * HEIGHT];
+        // 模型在画面中间，大约占三分之一
+        for (int y = HEIGHT / 4; y < HEIGHT * 3 / 4; y++) {
+            for (int x = WIDTH / 6; x < WIDTH * 5 / 6; x++) {
+                overlay[y * WIDTH + x] = random.nextInt() | 0xFF000000;
+            }
+        }
+        byte[] camera = new byte[WIDTH * HEIGHT * 4];
+        random.nextBytes(camera);
+        byte[] frame = new byte[camera.length];
+
+        for (int i = 0; i < WARMUP; i++) {
+            System.arraycopy(camera, 0, frame, 0, camera.length);
+            PixelCompositorTest.legacyComposite(frame, overlay);
+            System.arraycopy(camera, 0, frame, 0, camera.length);
+            PixelCompositor.composite(frame, overlay);
+        }
+
+        long legacyNs = 0;
+        long compositorNs = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            System.arraycopy(camera, 0, frame, 0, camera.length);
+            long start = System.nanoTime();
+            PixelCompositorTest.legacyComposite(frame, overlay);
+            legacyNs += System.nanoTime() - start;
+
+            System.arraycopy(camera, 0, frame, 0, camera.length);
+            start = System.nanoTime();
+            PixelCompositor.composite(frame, overlay);
+            compositorNs += System.nanoTime() - start;
+        }
+        System.out.println("legacy: " + (legacyNs / ROUNDS / 1000) + " us/frame");
+        System.out.println("PixelCompositor: " + (compositorNs / ROUNDS / 1000) + " us/frame");
+    }
+}
@@ -0,0 +1,63 @@
+package com.simoncherry.arcamera.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * PixelCompositor的本地单元测试
+ */
+public class PixelCompositorTest {
+
+    @Test
+    public void composite_matchesLegacyLoop() throws Exception {
+        Random random = new Random(7);
+        int count = 64 * 48;
+        int[] overlay = new int[count];
+        for (int i = 0; i < count; i++) {
+            // 一半透明，一半随机颜色
+            overlay[i] = random.nextBoolean() ? 0 : random.nextInt();
+        }
+        byte[] camera = new byte[count * 4];
+        random.nextBytes(camera);
+
+        byte[] expected = camera.clone();
+        legacyComposite(expected, overlay);
+        byte[] actual = camera.clone();
+        PixelCompositor.composite(actual, overlay);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void composite_keepsCameraWhereTransparent() throws Exception {
+        byte[] camera = {1, 2, 3, 4, 5, 6, 7, 8};
+        PixelCompositor.composite(camera, new int[]{0, 0x44332211});
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 0x11, 0x22, 0x33, 0x44}, camera);
+    }
+
+    // 原来ARCamPresenter.handleVideoFrame中的合成方式
+    static void legacyComposite(byte[] bytes, int[] pixels) {
+        final ByteBuffer buf = ByteBuffer.allocate(pixels.length * 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.asIntBuffer().put(pixels);
+        byte[] tmpArray = buf.array();
+        for (int i=0; i<bytes.length; i+=4) {
+            byte a = tmpArray[i];
+            byte r = tmpArray[i+1];
+            byte g = tmpArray[i+2];
+            byte b = tmpArray[i+3];
+            boolean isBackground = r == 0 && g == 0 && b == 0 && a == 0;
+            if (!isBackground) {
+                bytes[i] = a;
+                bytes[i + 1] = r;
+                bytes[i + 2] = g;
+                bytes[i + 3] = b;
+            }
+        }
+    }
+}
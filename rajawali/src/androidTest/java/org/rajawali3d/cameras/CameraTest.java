@@ -0,0 +1,44 @@
+package org.rajawali3d.cameras;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import org.junit.Test;
+import org.rajawali3d.math.Matrix4;
+
+/**
+ * View-projection version tests of {@link Camera}.
+ */
+@SmallTest
+public class CameraTest {
+
+    @Test
+    public void testViewProjectionVersion() throws Exception {
+        final Camera camera = new Camera();
+        assertEquals(0, camera.getViewProjectionVersion());
+
+        final Matrix4 vpMatrix = new Matrix4().setToPerspective(1, 100, 60, 1);
+        camera.updateFrustum(vpMatrix);
+        final int version = camera.getViewProjectionVersion();
+        assertNotEquals(0, version);
+
+        // The same matrix in another instance keeps the version
+        camera.updateFrustum(new Matrix4(vpMatrix));
+        assertEquals(version, camera.getViewProjectionVersion());
+
+        vpMatrix.translate(0, 0, -1);
+        camera.updateFrustum(vpMatrix);
+        assertNotEquals(version, camera.getViewProjectionVersion());
+    }
+
+    @Test
+    public void testViewProjectionVersionUniqueAcrossCameras() throws Exception {
+        final Matrix4 vpMatrix = new Matrix4().setToPerspective(1, 100, 60, 1);
+        final Camera first = new Camera();
+        final Camera second = new Camera();
+        first.updateFrustum(vpMatrix);
+        second.updateFrustum(vpMatrix);
+        assertNotEquals(first.getViewProjectionVersion(), second.getViewProjectionVersion());
+    }
+}
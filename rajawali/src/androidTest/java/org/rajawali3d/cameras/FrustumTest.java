@@ -0,0 +1,73 @@
+package org.rajawali3d.cameras;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.rajawali3d.bounds.BoundingBox;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.vector.Vector3;
+
+/**
+ * Plane extraction and box tests of {@link Frustum}, with a camera at the origin looking down -Z.
+ */
+@SmallTest
+public class FrustumTest {
+
+    private static final int RIGHT = 0;
+    private static final int NEAR = 5;
+
+    private Frustum mFrustum;
+
+    @Before
+    public void setUp() throws Exception {
+        mFrustum = new Frustum();
+        mFrustum.update(new Matrix4().setToPerspective(1, 100, 60, 1));
+    }
+
+    private int intersect(double x, double y, double z, double halfSize, int planeMask, int firstPlane) {
+        return mFrustum.intersectBounds(new Vector3(x - halfSize, y - halfSize, z - halfSize),
+                new Vector3(x + halfSize, y + halfSize, z + halfSize), planeMask, firstPlane);
+    }
+
+    @Test
+    public void testPlanesFromViewProjection() throws Exception {
+        assertTrue(mFrustum.pointInFrustum(new Vector3(0, 0, -10)));
+        assertFalse(mFrustum.pointInFrustum(new Vector3(0, 0, 10)));
+        assertFalse(mFrustum.pointInFrustum(new Vector3(0, 0, -101)));
+        assertFalse(mFrustum.pointInFrustum(new Vector3(10, 0, -10)));
+        assertEquals(-1, mFrustum.getPlane(NEAR).getDistanceTo(new Vector3(0, 0, 0)), 1e-6);
+    }
+
+    @Test
+    public void testIntersectBoundsMask() throws Exception {
+        assertEquals(0, intersect(0, 0, -10, 1, Frustum.ALL_PLANES, 0));
+        // Straddles only the near plane
+        assertEquals(1 << NEAR, intersect(0, 0, -1, 0.1, Frustum.ALL_PLANES, 0));
+        // Planes left out of the mask are not tested
+        assertEquals(Frustum.OUTSIDE, intersect(50, 0, -10, 1, Frustum.ALL_PLANES, 0));
+        assertEquals(RIGHT, mFrustum.getFailedPlane());
+        assertEquals(0, intersect(50, 0, -10, 1, Frustum.ALL_PLANES & ~(1 << RIGHT), 0));
+    }
+
+    @Test
+    public void testFirstPlaneIsTestedFirst() throws Exception {
+        // Behind the camera, outside both the near and the right plane
+        assertEquals(Frustum.OUTSIDE, intersect(0, 0, 10, 1, Frustum.ALL_PLANES, NEAR));
+        assertEquals(NEAR, mFrustum.getFailedPlane());
+        assertEquals(Frustum.OUTSIDE, intersect(0, 0, 10, 1, Frustum.ALL_PLANES, RIGHT));
+        assertEquals(RIGHT, mFrustum.getFailedPlane());
+    }
+
+    @Test
+    public void testBoundsInFrustumUsesTransformedBounds() throws Exception {
+        final BoundingBox box = new BoundingBox(new Vector3(-1, -1, -1), new Vector3(1, 1, 1));
+        box.transform(new Matrix4().setToTranslation(0, 0, -10));
+        assertTrue(mFrustum.boundsInFrustum(box));
+        box.transform(new Matrix4().setToTranslation(0, 0, 10));
+        assertFalse(mFrustum.boundsInFrustum(box));
+    }
+}
@@ -0,0 +1,113 @@
+package org.rajawali3d.math.batch;
+
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.Random;
+
+/**
+ * {@link FloatMatrix4} and {@link FloatQuaternion} batches versus the same work done through
+ * {@link Matrix4#multiply(Matrix4)} plus the float conversion for GL, and through
+ * {@link Quaternion#slerp(Quaternion, Quaternion, double)}.
+ * <p>
+ * Not a unit test, run main when needed.
+ */
+public class FloatMathBenchmark {
+
+    private static final int WARMUP = 2000;
+    private static final int ROUNDS = 5000;
+
+    private static float sSink;
+
+    public static void main(String[] args) {
+        final Random random = new Random(1);
+        for (int count : new int[]{16, 128, 1024}) {
+            benchmarkMultiply(random, count);
+            benchmarkSlerp(random, count);
+        }
+        System.out.println("(ignore) " + sSink);
+    }
+
+    private static void benchmarkMultiply(Random random, int count) {
+        final Matrix4 viewProjection = new Matrix4().setToPerspective(1, 100, 60, 1.5);
+        final Matrix4[] models = new Matrix4[count];
+        final float[] modelValues = new float[count * FloatMatrix4.STRIDE];
+        for (int i = 0; i < count; i++) {
+            models[i] = FloatMatrix4Test.createModelMatrix(random);
+            FloatMatrix4.set(modelValues, i, models[i]);
+        }
+        final float[] vp = viewProjection.getFloatValues().clone();
+        final Matrix4 mvp = new Matrix4();
+        final float[] result = new float[modelValues.length];
+
+        for (int i = 0; i < WARMUP; i++) {
+            multiplyMatrix4(viewProjection, models, mvp);
+            FloatMatrix4.multiply(vp, 0, modelValues, 0, result, 0, count);
+        }
+        long objectNs = 0;
+        long batchNs = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            multiplyMatrix4(viewProjection, models, mvp);
+            objectNs += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            FloatMatrix4.multiply(vp, 0, modelValues, 0, result, 0, count);
+            batchNs += System.nanoTime() - start;
+            sSink += result[i % result.length];
+        }
+        System.out.println(count + " MVP matrices: Matrix4 " + (objectNs / ROUNDS) + " ns, FloatMatrix4 "
+                + (batchNs / ROUNDS) + " ns");
+    }
+
+    private static void multiplyMatrix4(Matrix4 viewProjection, Matrix4[] models, Matrix4 mvp) {
+        for (Matrix4 model : models) {
+            // As Object3D does it, including the conversion for the uniform upload
+            sSink += mvp.setAll(viewProjection).multiply(model).getFloatValues()[0];
+        }
+    }
+
+    private static void benchmarkSlerp(Random random, int count) {
+        final Quaternion[] starts = new Quaternion[count];
+        final Quaternion[] ends = new Quaternion[count];
+        final float[] start = new float[count * FloatQuaternion.STRIDE];
+        final float[] end = new float[count * FloatQuaternion.STRIDE];
+        for (int i = 0; i < count; i++) {
+            starts[i] = new Quaternion(new Vector3(random.nextDouble() + 0.1, random.nextDouble(),
+                    random.nextDouble()), random.nextDouble() * 360);
+            ends[i] = new Quaternion(new Vector3(random.nextDouble(), random.nextDouble() + 0.1,
+                    random.nextDouble()), random.nextDouble() * 360);
+            FloatQuaternion.set(start, i, starts[i]);
+            FloatQuaternion.set(end, i, ends[i]);
+        }
+        final Quaternion out = new Quaternion();
+        final float[] result = new float[start.length];
+
+        for (int i = 0; i < WARMUP; i++) {
+            slerpQuaternion(starts, ends, out, 0.3);
+            FloatQuaternion.slerp(start, 0, end, 0, 0.3f, result, 0, count);
+        }
+        long objectNs = 0;
+        long batchNs = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            final float t = (i % 100) / 100f;
+            long begin = System.nanoTime();
+            slerpQuaternion(starts, ends, out, t);
+            objectNs += System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            FloatQuaternion.slerp(start, 0, end, 0, t, result, 0, count);
+            batchNs += System.nanoTime() - begin;
+            sSink += result[i % result.length];
+        }
+        System.out.println(count + " slerps: Quaternion " + (objectNs / ROUNDS) + " ns, FloatQuaternion "
+                + (batchNs / ROUNDS) + " ns");
+    }
+
+    private static void slerpQuaternion(Quaternion[] starts, Quaternion[] ends, Quaternion out, double t) {
+        for (int i = 0; i < starts.length; i++) {
+            sSink += (float) out.slerp(starts[i], ends[i], t).w;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.rajawali3d.math.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import org.junit.Test;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks {@link FloatMatrix4} against the expectations of {@link org.rajawali3d.math.Matrix4Test}
+ * and against {@link Matrix4} itself.
+ */
+@SmallTest
+public class FloatMatrix4Test {
+
+    static Matrix4 createModelMatrix(Random random) {
+        final Quaternion rotation = new Quaternion(new Vector3(random.nextDouble() + 0.1, random.nextDouble(),
+                random.nextDouble()), random.nextDouble() * 360);
+        return new Matrix4().setAll(new Vector3(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10,
+                random.nextDouble() * 20 - 10), new Vector3(random.nextDouble() + 0.5), rotation);
+    }
+
+    @Test
+    public void testMultiply() throws Exception {
+        final float[] from = new float[]{
+                1f, 2f, 3f, 4f,
+                5f, 6f, 7f, 8f,
+                9f, 10f, 11f, 12f,
+                13f, 14f, 15f, 16f
+        };
+        final float[] multiply = new float[]{
+                15f, 14f, 13f, 12f,
+                11f, 10f, 9f, 8f,
+                7f, 6f, 5f, 4f,
+                3f, 2f, 1f, 0f
+        };
+        final float[] expected = new float[]{
+                358f, 412f, 466f, 520f,
+                246f, 284f, 322f, 360f,
+                134f, 156f, 178f, 200f,
+                22f, 28f, 34f, 40f
+        };
+        final float[] result = new float[20];
+        FloatMatrix4.multiply(from, 0, multiply, 0, result, 4, 1);
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals("Index " + i + " Result: " + Arrays.toString(result), expected[i], result[i + 4], 0);
+        }
+        // In place on rhs
+        FloatMatrix4.multiply(from, 0, multiply, 0, multiply, 0, 1);
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i], multiply[i], 0);
+        }
+    }
+
+    @Test
+    public void testMultiplyBatchMatchesMatrix4() throws Exception {
+        final Random random = new Random(7);
+        final int count = 33;
+        final Matrix4 viewProjection = new Matrix4().setToPerspective(1, 100, 60, 1.5)
+                .multiply(new Matrix4().setToLookAt(new Vector3(3, 4, 5), Vector3.ZERO, Vector3.Y));
+        final float[] vp = viewProjection.getFloatValues().clone();
+        final float[] models = new float[count * FloatMatrix4.STRIDE];
+        final Matrix4[] expected = new Matrix4[count];
+        for (int i = 0; i < count; i++) {
+            final Matrix4 model = createModelMatrix(random);
+            FloatMatrix4.set(models, i, model);
+            expected[i] = viewProjection.clone().multiply(model);
+        }
+
+        final float[] result = new float[models.length];
+        FloatMatrix4.multiply(vp, 0, models, 0, result, 0, count);
+        final float[] each = new float[models.length];
+        final float[] vps = new float[models.length];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(vp, 0, vps, i * FloatMatrix4.STRIDE, FloatMatrix4.STRIDE);
+        }
+        FloatMatrix4.multiplyEach(vps, 0, models, 0, each, 0, count);
+
+        final Matrix4 out = new Matrix4();
+        for (int i = 0; i < count; i++) {
+            final double[] values = expected[i].getDoubleValues();
+            assertSame(out, FloatMatrix4.get(result, i, out));
+            for (int j = 0; j < 16; j++) {
+                assertEquals("Matrix " + i + " index " + j, values[j], out.getDoubleValues()[j], 1e-4);
+                assertEquals(result[i * FloatMatrix4.STRIDE + j], each[i * FloatMatrix4.STRIDE + j], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testTransformPoints() throws Exception {
+        final float[] m = new Matrix4(new Quaternion(Vector3.X, 45d)).getFloatValues();
+        final float[] points = new float[]{0f, 1f, 0f};
+        FloatMatrix4.transformPoints(m, 0, points, 0, points, 0, 1);
+        assertEquals(0f, points[0], 1e-6);
+        assertEquals(0.7071067811865475, points[1], 1e-6);
+        assertEquals(-0.7071067811865475, points[2], 1e-6);
+    }
+
+    @Test
+    public void testTransformPointsLayoutsAgree() throws Exception {
+        final Random random = new Random(11);
+        final int count = 50;
+        final Matrix4 matrix = createModelMatrix(random);
+        final float[] m = matrix.getFloatValues().clone();
+        final float[] points = new float[count * FloatMatrix4.POINT_STRIDE];
+        final float[] x = new float[count];
+        final float[] y = new float[count];
+        final float[] z = new float[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = points[i * 3] = random.nextFloat() * 10 - 5;
+            y[i] = points[i * 3 + 1] = random.nextFloat() * 10 - 5;
+            z[i] = points[i * 3 + 2] = random.nextFloat() * 10 - 5;
+        }
+        final float[] result = new float[points.length];
+        FloatMatrix4.transformPoints(m, 0, points, 0, result, 0, count);
+        FloatMatrix4.transformPoints(m, 0, x, y, z, x, y, z, count);
+
+        final Vector3 v = new Vector3();
+        for (int i = 0; i < count; i++) {
+            v.setAll(points, i * 3).multiply(matrix);
+            assertEquals(v.x, result[i * 3], 1e-4);
+            assertEquals(v.y, result[i * 3 + 1], 1e-4);
+            assertEquals(v.z, result[i * 3 + 2], 1e-4);
+            assertEquals(result[i * 3], x[i], 0);
+            assertEquals(result[i * 3 + 1], y[i], 0);
+            assertEquals(result[i * 3 + 2], z[i], 0);
+        }
+    }
+
+    @Test
+    public void testTransformBoundsEnclosesCorners() throws Exception {
+        final Random random = new Random(3);
+        final Matrix4 matrix = createModelMatrix(random);
+        final float[] m = matrix.getFloatValues().clone();
+        final float[] bounds = new float[]{-1f, -2f, -3f, 1f, 2f, 3f, 4f, 5f, 6f, 4.5f, 7f, 6f};
+        final float[] result = new float[bounds.length];
+        FloatMatrix4.transformBounds(m, 0, bounds, 0, result, 0, 2);
+
+        final Vector3 corner = new Vector3();
+        for (int b = 0; b < 2; b++) {
+            final double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+            final double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+            for (int c = 0; c < 8; c++) {
+                corner.setAll(bounds[b * 6 + ((c & 1) == 0 ? 0 : 3)], bounds[b * 6 + ((c & 2) == 0 ? 1 : 4)],
+                        bounds[b * 6 + ((c & 4) == 0 ? 2 : 5)]).multiply(matrix);
+                final double[] values = corner.toArray();
+                for (int k = 0; k < 3; k++) {
+                    min[k] = Math.min(min[k], values[k]);
+                    max[k] = Math.max(max[k], values[k]);
+                }
+            }
+            for (int k = 0; k < 3; k++) {
+                assertEquals(min[k], result[b * 6 + k], 1e-4);
+                assertEquals(max[k], result[b * 6 + 3 + k], 1e-4);
+            }
+        }
+    }
+
+    @Test
+    public void testAdapters() throws Exception {
+        final Matrix4 matrix = createModelMatrix(new Random(5));
+        final float[] matrices = new float[2 * FloatMatrix4.STRIDE];
+        FloatMatrix4.set(matrices, 1, matrix);
+        final float[] expected = matrix.getFloatValues();
+        for (int i = 0; i < 16; i++) {
+            assertEquals(0f, matrices[i], 0);
+            assertEquals(expected[i], matrices[FloatMatrix4.STRIDE + i], 0);
+        }
+        final Matrix4 out = FloatMatrix4.get(matrices, 1, new Matrix4());
+        for (int i = 0; i < 16; i++) {
+            assertEquals(matrix.getDoubleValues()[i], out.getDoubleValues()[i], 1e-6);
+        }
+
+        final float[] vector = new float[4];
+        new Vector3(1d, 2d, 3d).toFloatArray(vector, 1);
+        assertEquals(0f, vector[0], 0);
+        assertEquals(1f, vector[1], 0);
+        assertEquals(2f, vector[2], 0);
+        assertEquals(3f, vector[3], 0);
+        final Vector3 v = new Vector3().setAll(vector, 1);
+        assertEquals(1d, v.x, 0);
+        assertEquals(2d, v.y, 0);
+        assertEquals(3d, v.z, 0);
+    }
+}
@@ -0,0 +1,81 @@
+package org.rajawali3d.math.batch;
+
+import static org.junit.Assert.assertEquals;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import org.junit.Test;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.Random;
+
+/**
+ * Checks {@link FloatQuaternion} against the expectations of
+ * {@link org.rajawali3d.math.QuaternionTest} and against {@link Quaternion} itself.
+ */
+@SmallTest
+public class FloatQuaternionTest {
+
+    private static void assertQuaternion(Quaternion expected, float[] actual, int index, double delta) {
+        final int offset = index * FloatQuaternion.STRIDE;
+        assertEquals("w of " + index, expected.w, actual[offset], delta);
+        assertEquals("x of " + index, expected.x, actual[offset + 1], delta);
+        assertEquals("y of " + index, expected.y, actual[offset + 2], delta);
+        assertEquals("z of " + index, expected.z, actual[offset + 3], delta);
+    }
+
+    @Test
+    public void testSlerp() throws Exception {
+        final float[] start = new float[8];
+        final float[] end = new float[8];
+        FloatQuaternion.set(start, 0, new Quaternion(Vector3.X, 0d));
+        FloatQuaternion.set(end, 0, new Quaternion(Vector3.X, 90d));
+        // Opposite sign, same rotation: takes the shortest path
+        FloatQuaternion.set(start, 1, new Quaternion(Vector3.X, 0d));
+        FloatQuaternion.set(end, 1, new Quaternion(Vector3.X, 90d).multiply(-1));
+        final Quaternion middle = new Quaternion(0.9238795325112868, 0.3826834323650898, 0.0, 0.0);
+
+        final float[] result = new float[8];
+        FloatQuaternion.slerp(start, 0, end, 0, 0f, result, 0, 2);
+        assertQuaternion(new Quaternion(Vector3.X, 0d), result, 0, 1e-6);
+        assertQuaternion(new Quaternion(Vector3.X, 0d), result, 1, 1e-6);
+        FloatQuaternion.slerp(start, 0, end, 0, 0.5f, result, 0, 2);
+        assertQuaternion(middle, result, 0, 1e-6);
+        assertQuaternion(middle, result, 1, 1e-6);
+        FloatQuaternion.slerp(start, 0, end, 0, 1f, result, 0, 1);
+        assertQuaternion(new Quaternion(Vector3.X, 90d), result, 0, 1e-6);
+        // end is left alone
+        assertQuaternion(new Quaternion(Vector3.X, 90d).multiply(-1), end, 1, 1e-6);
+    }
+
+    @Test
+    public void testSlerpBatchMatchesQuaternion() throws Exception {
+        final Random random = new Random(13);
+        final int count = 40;
+        final float[] start = new float[count * FloatQuaternion.STRIDE];
+        final float[] end = new float[count * FloatQuaternion.STRIDE];
+        final Quaternion[] starts = new Quaternion[count];
+        final Quaternion[] ends = new Quaternion[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = new Quaternion(new Vector3(random.nextDouble() + 0.1, random.nextDouble(), random.nextDouble()),
+                    random.nextDouble() * 360);
+            // Half of the pairs are close together and interpolated linearly
+            ends[i] = new Quaternion(new Vector3(random.nextDouble(), random.nextDouble() + 0.1, random.nextDouble()),
+                    (i & 1) == 0 ? random.nextDouble() * 360 : random.nextDouble() * 10).multiply(starts[i]);
+            FloatQuaternion.set(start, i, starts[i]);
+            FloatQuaternion.set(end, i, ends[i]);
+        }
+
+        final Quaternion expected = new Quaternion();
+        final Quaternion out = new Quaternion();
+        for (float t : new float[]{0f, 0.25f, 0.5f, 0.9f, 1f}) {
+            final float[] result = start.clone();
+            FloatQuaternion.slerp(result, 0, end, 0, t, result, 0, count);
+            for (int i = 0; i < count; i++) {
+                expected.slerp(new Quaternion(starts[i]), new Quaternion(ends[i]), t);
+                assertQuaternion(expected, result, i, 1e-5);
+                assertEquals(1d, FloatQuaternion.get(result, i, out).length(), 1e-6);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.rajawali3d.scene;
+
+import static org.junit.Assert.assertTrue;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import org.junit.Test;
+
+/**
+ * Ordering of the {@link RenderQueue} sort keys.
+ */
+@SmallTest
+public class RenderQueueTest {
+
+    @Test
+    public void testOpaqueKeyGroupsByProgramThenTexture() throws Exception {
+        final long program1Texture9 = RenderQueue.opaqueKey(1, 9, 0, 0);
+        final long program2Texture1 = RenderQueue.opaqueKey(2, 1, 0, 0);
+        final long program1Texture2 = RenderQueue.opaqueKey(1, 2, 63, 15);
+        assertTrue(program1Texture2 < program1Texture9);
+        assertTrue(program1Texture9 < program2Texture1);
+    }
+
+    @Test
+    public void testOpaqueKeyFitsBelowTransparentFlag() throws Exception {
+        final long max = RenderQueue.opaqueKey(-1, -1, -1, -1);
+        assertTrue(max > 0);
+        assertTrue(max < (1L << 49));
+        assertTrue((max & 0xFFFF) == 0);
+    }
+
+    @Test
+    public void testTransparentKeyIsBackToFront() throws Exception {
+        final long far = RenderQueue.transparentKey(100);
+        final long near = RenderQueue.transparentKey(0.5);
+        final long behindCamera = RenderQueue.transparentKey(-3);
+        assertTrue(far < near);
+        assertTrue(near < behindCamera);
+        assertTrue(behindCamera < (1L << 49));
+        assertTrue((far & 0xFFFF) == 0);
+    }
+}
@@ -0,0 +1,77 @@
+package org.rajawali3d.scenegraph;
+
+import org.rajawali3d.cameras.Frustum;
+
+import java.util.List;
+
+/**
+ * Frustum culling of synthetic grid scenes: testing every member against the frustum, as
+ * {@link org.rajawali3d.Object3D} does on its own, versus culling through an {@link Octree}. The
+ * frustum is the same for every scene, so the number of visible members stays about the same
+ * while the total grows.
+ * <p>
+ * Not a unit test, run main when needed.
+ */
+public class OctreeCullingBenchmark {
+
+    private static final int WARMUP = 200;
+    private static final int ROUNDS = 1000;
+
+    public static void main(String[] args) {
+        final Frustum frustum = OctreeTest.createFrustum(45, 80);
+        for (int side : new int[]{10, 16, 22, 28}) {
+            final List<OctreeTest.BoxMember> members = OctreeTest.createGrid(side, 20, 1, side);
+            final Octree octree = new Octree();
+            for (OctreeTest.BoxMember member : members) {
+                octree.addObject(member);
+            }
+
+            int visible = 0;
+            for (int i = 0; i < WARMUP; i++) {
+                visible = flat(frustum, members);
+                graph(frustum, octree, members);
+            }
+
+            long flatNs = 0;
+            long graphNs = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                flat(frustum, members);
+                flatNs += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                graph(frustum, octree, members);
+                graphNs += System.nanoTime() - start;
+            }
+            System.out.println(members.size() + " members, " + visible + " visible: every member "
+                    + (flatNs / ROUNDS / 1000) + " us, octree " + (graphNs / ROUNDS / 1000) + " us");
+        }
+    }
+
+    private static int flat(Frustum frustum, List<OctreeTest.BoxMember> members) {
+        int visible = 0;
+        for (int i = 0, j = members.size(); i < j; i++) {
+            if (OctreeTest.intersect(frustum, members.get(i), Frustum.ALL_PLANES) != Frustum.OUTSIDE) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+
+    // The scene still resets every member before culling, so that is part of the cost
+    private static int graph(Frustum frustum, Octree octree, List<OctreeTest.BoxMember> members) {
+        for (int i = 0, j = members.size(); i < j; i++) {
+            members.get(i).mPlaneMask = Frustum.OUTSIDE;
+        }
+        octree.cullFromFrustum(frustum);
+        int visible = 0;
+        for (int i = 0, j = members.size(); i < j; i++) {
+            final OctreeTest.BoxMember member = members.get(i);
+            if (member.mPlaneMask != Frustum.OUTSIDE
+                    && (member.mPlaneMask == 0 || OctreeTest.intersect(frustum, member, member.mPlaneMask) != Frustum.OUTSIDE)) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+}
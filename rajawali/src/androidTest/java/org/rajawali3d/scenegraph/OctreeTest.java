@@ -0,0 +1,165 @@
+package org.rajawali3d.scenegraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import org.junit.Test;
+import org.rajawali3d.ATransformable3D;
+import org.rajawali3d.bounds.BoundingBox;
+import org.rajawali3d.bounds.IBoundingVolume;
+import org.rajawali3d.cameras.Frustum;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Frustum culling through an {@link Octree} of synthetic members.
+ */
+@SmallTest
+public class OctreeTest {
+
+    /**
+     * A graph member that is just a box, recording the plane mask it was given.
+     */
+    static class BoxMember extends ATransformable3D {
+        static final int NOT_VISITED = -2;
+
+        final BoundingBox mBox = new BoundingBox();
+        final Vector3 mCenter = new Vector3();
+        final Matrix4 mTranslation = new Matrix4();
+        int mPlaneMask = NOT_VISITED;
+
+        BoxMember(double x, double y, double z, double halfSize) {
+            mBox.setMin(new Vector3(-halfSize, -halfSize, -halfSize));
+            mBox.setMax(new Vector3(halfSize, halfSize, halfSize));
+            mBox.calculatePoints();
+            moveTo(x, y, z);
+        }
+
+        void moveTo(double x, double y, double z) {
+            mCenter.setAll(x, y, z);
+            mBox.transform(mTranslation.setToTranslation(x, y, z));
+        }
+
+        @Override
+        public IBoundingVolume getTransformedBoundingVolume() {
+            return mBox;
+        }
+
+        @Override
+        public Vector3 getScenePosition() {
+            return mCenter;
+        }
+
+        @Override
+        public void setFrustumPlaneMask(int planeMask) {
+            mPlaneMask = planeMask;
+        }
+    }
+
+    /**
+     * Members on a grid of side * side * side cells, added in random order.
+     */
+    static List<BoxMember> createGrid(int side, double spacing, double halfSize, long seed) {
+        final List<BoxMember> members = new ArrayList<BoxMember>();
+        final double offset = (side - 1) * spacing / 2;
+        for (int x = 0; x < side; ++x) {
+            for (int y = 0; y < side; ++y) {
+                for (int z = 0; z < side; ++z) {
+                    members.add(new BoxMember(x * spacing - offset, y * spacing - offset,
+                            z * spacing - offset, halfSize));
+                }
+            }
+        }
+        Collections.shuffle(members, new Random(seed));
+        return members;
+    }
+
+    static Frustum createFrustum(double fov, double far) {
+        final Frustum frustum = new Frustum();
+        frustum.update(new Matrix4().setToPerspective(1, far, fov, 1));
+        return frustum;
+    }
+
+    static int intersect(Frustum frustum, BoxMember member, int planeMask) {
+        return frustum.intersectBounds(member.mBox.getTransformedMin(), member.mBox.getTransformedMax(),
+                planeMask, 0);
+    }
+
+    private static int assertMatchesBruteForce(Frustum frustum, List<BoxMember> members) {
+        int visited = 0;
+        for (BoxMember member : members) {
+            final boolean visible = intersect(frustum, member, Frustum.ALL_PLANES) != Frustum.OUTSIDE;
+            if (member.mPlaneMask == BoxMember.NOT_VISITED) {
+                assertTrue("visible member was culled", !visible);
+            } else {
+                ++visited;
+                assertEquals(visible, intersect(frustum, member, member.mPlaneMask) != Frustum.OUTSIDE);
+            }
+        }
+        return visited;
+    }
+
+    @Test
+    public void testCullMatchesBruteForce() throws Exception {
+        final Octree octree = new Octree();
+        final List<BoxMember> members = createGrid(10, 20, 1, 1);
+        for (BoxMember member : members) {
+            octree.addObject(member);
+        }
+        assertEquals(members.size(), octree.getObjectCount());
+
+        final Frustum frustum = createFrustum(45, 80);
+        octree.cullFromFrustum(frustum);
+        final int visited = assertMatchesBruteForce(frustum, members);
+        assertTrue("visited " + visited, visited < members.size() / 4);
+
+        // Again, now starting with the planes that rejected each node
+        for (BoxMember member : members) {
+            member.mPlaneMask = BoxMember.NOT_VISITED;
+        }
+        octree.cullFromFrustum(frustum);
+        assertEquals(visited, assertMatchesBruteForce(frustum, members));
+    }
+
+    @Test
+    public void testUpdateMovesMemberToContainingNode() throws Exception {
+        final Octree octree = new Octree();
+        final List<BoxMember> members = createGrid(6, 20, 1, 2);
+        for (BoxMember member : members) {
+            octree.addObject(member);
+        }
+        final Frustum frustum = createFrustum(45, 80);
+        for (BoxMember member : members) {
+            // Move everything just in front of the camera, across the octants
+            member.moveTo(member.mCenter.x / 10, member.mCenter.y / 10, -20 - member.mCenter.z / 10);
+            member.getGraphNode().updateObject(member);
+            final A_nAABBTree node = (A_nAABBTree) member.getGraphNode();
+            assertTrue(!member.isInGraph() || node.contains(member.mBox));
+        }
+        assertEquals(members.size(), octree.getObjectCount());
+
+        octree.cullFromFrustum(frustum);
+        assertEquals(members.size(), assertMatchesBruteForce(frustum, members));
+    }
+
+    @Test
+    public void testRemoveOutsideMember() throws Exception {
+        final Octree octree = new Octree();
+        final BoxMember first = new BoxMember(0, 0, 0, 1);
+        final BoxMember far = new BoxMember(1000, 0, 0, 1);
+        octree.addObject(first);
+        octree.addObject(far);
+        assertTrue(!far.isInGraph());
+        octree.removeObject(far);
+        assertEquals(1, octree.getObjectCount());
+
+        octree.cullFromFrustum(createFrustum(45, 80));
+        assertEquals(BoxMember.NOT_VISITED, far.mPlaneMask);
+    }
+}
@@ -0,0 +1,75 @@
+package org.rajawali3d.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.opengl.GLES20;
+import android.test.suitebuilder.annotation.SmallTest;
+import org.junit.Test;
+
+/**
+ * Which calls the {@link GLStateCache} issues and which it drops. Only the counters are checked,
+ * so no GL context is needed.
+ */
+@SmallTest
+public class GLStateCacheTest {
+
+    @Test
+    public void testRepeatedStateIsElided() throws Exception {
+        final GLStateCache cache = new GLStateCache();
+        cache.enable(GLES20.GL_CULL_FACE);
+        cache.enable(GLES20.GL_CULL_FACE);
+        cache.cullFace(GLES20.GL_BACK);
+        cache.cullFace(GLES20.GL_BACK);
+        cache.blendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        cache.blendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        cache.blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        cache.useProgram(3);
+        cache.useProgram(3);
+        cache.depthMask(false);
+        cache.depthMask(false);
+        assertEquals(6, cache.getIssuedCount());
+        assertEquals(5, cache.getElidedCount());
+        assertTrue(cache.isEnabled(GLES20.GL_CULL_FACE));
+        assertEquals(6, cache.getIssuedCount());
+    }
+
+    @Test
+    public void testInvalidateIssuesAgain() throws Exception {
+        final GLStateCache cache = new GLStateCache();
+        cache.disable(GLES20.GL_BLEND);
+        cache.activeTexture(GLES20.GL_TEXTURE1);
+        cache.invalidate();
+        cache.disable(GLES20.GL_BLEND);
+        cache.activeTexture(GLES20.GL_TEXTURE1);
+        assertEquals(4, cache.getIssuedCount());
+        assertEquals(0, cache.getElidedCount());
+    }
+
+    @Test
+    public void testUntrackedStateIsAlwaysIssued() throws Exception {
+        final GLStateCache cache = new GLStateCache();
+        cache.enable(GLES20.GL_POLYGON_OFFSET_FILL);
+        cache.enable(GLES20.GL_POLYGON_OFFSET_FILL);
+        cache.bindBuffer(GLES20.GL_RENDERBUFFER, 2);
+        cache.bindBuffer(GLES20.GL_RENDERBUFFER, 2);
+        assertEquals(4, cache.getIssuedCount());
+        assertEquals(0, cache.getElidedCount());
+    }
+
+    @Test
+    public void testDeletedObjectsAreForgotten() throws Exception {
+        final GLStateCache cache = new GLStateCache();
+        cache.useProgram(5);
+        cache.bindBuffer(GLES20.GL_ARRAY_BUFFER, 7);
+        cache.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 8);
+        cache.deleteProgram(5);
+        cache.deleteBuffers(2, new int[] { 0, 7, 8 }, 1);
+        // GL hands out the deleted names again
+        cache.useProgram(5);
+        cache.bindBuffer(GLES20.GL_ARRAY_BUFFER, 7);
+        cache.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        assertEquals(5, cache.getIssuedCount());
+        assertEquals(1, cache.getElidedCount());
+    }
+}
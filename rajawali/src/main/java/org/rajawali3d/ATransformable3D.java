@@ -34,6 +34,7 @@ public abstract class ATransformable3D implements IGraphNodeMember {
     protected boolean mLookAtEnabled; //Should we auto enforce look at target?
     protected boolean mIsCamera; //is this a camera object?
     protected boolean mIsModelMatrixDirty = true; // If true, the model matrix needs to be recalculated.
+    protected int mModelMatrixVersion = 0; // Incremented every time the model matrix is calculated
     protected boolean mInsideGraph = false; //Default to being outside the graph
     protected IGraphNode mGraphNode; //Which graph node are we in?
 
@@ -92,6 +93,17 @@ public abstract class ATransformable3D implements IGraphNodeMember {
         if (parentMatrix != null) {
             mMMatrix.leftMultiply(parentMatrix);
         }
+        mModelMatrixVersion++;
+    }
+
+    /**
+     * Retrieves the version of the model matrix. It changes every time the model matrix is
+     * calculated, so anything derived from it only needs to be updated when it differs.
+     *
+     * @return int The model matrix version.
+     */
+    public int getModelMatrixVersion() {
+        return mModelMatrixVersion;
     }
 
     /**
@@ -979,4 +991,11 @@ public abstract class ATransformable3D implements IGraphNodeMember {
     public Vector3 getScenePosition() {
         return mMMatrix.getTranslation(mTempVec);
     }
+
+    /*
+     * (non-Javadoc)
+     * @see rajawali.scenegraph.IGraphNodeMember#setFrustumPlaneMask(int)
+     */
+    public void setFrustumPlaneMask(int planeMask) {
+    }
 }
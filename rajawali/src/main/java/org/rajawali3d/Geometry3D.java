@@ -18,6 +18,7 @@ import org.rajawali3d.animation.mesh.VertexAnimationObject3D;
 import org.rajawali3d.bounds.BoundingBox;
 import org.rajawali3d.bounds.BoundingSphere;
 import org.rajawali3d.math.vector.Vector3;
+import org.rajawali3d.util.GLStateCache;
 
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
@@ -493,8 +494,8 @@ public class Geometry3D {
             createBuffer(info);
         }
 
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLStateCache.getInstance().bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
         mHaveCreatedBuffers = true;
     }
@@ -538,8 +539,8 @@ public class Geometry3D {
         createBuffer(mBuffers.get(VERTEX_BUFFER_KEY), BufferType.FLOAT_BUFFER, GLES20.GL_ARRAY_BUFFER);
         createBuffer(mBuffers.get(NORMAL_BUFFER_KEY), BufferType.FLOAT_BUFFER, GLES20.GL_ARRAY_BUFFER);
 
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLStateCache.getInstance().bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
     }
 
     /**
@@ -582,9 +583,9 @@ public class Geometry3D {
 
         if (buffer != null) {
             buffer.rewind();
-            GLES20.glBindBuffer(target, handle);
+            GLStateCache.getInstance().bindBuffer(target, handle);
             GLES20.glBufferData(target, buffer.capacity() * byteSize, buffer, usage);
-            GLES20.glBindBuffer(target, 0);
+            GLStateCache.getInstance().bindBuffer(target, 0);
         }
 
         bufferInfo.bufferHandle = handle;
@@ -666,7 +667,7 @@ public class Geometry3D {
      * @param usage
      */
     public void changeBufferUsage(BufferInfo bufferInfo, final int usage) {
-        GLES20.glDeleteBuffers(1, new int[]{ bufferInfo.bufferHandle }, 0);
+        GLStateCache.getInstance().deleteBuffers(1, new int[]{ bufferInfo.bufferHandle }, 0);
         createBuffer(bufferInfo, bufferInfo.bufferType, bufferInfo.target, usage);
     }
 
@@ -717,14 +718,14 @@ public class Geometry3D {
     public void changeBufferData(BufferInfo bufferInfo, Buffer newData, int index, int size, boolean resizeBuffer) {
         newData.rewind();
 
-        GLES20.glBindBuffer(bufferInfo.target, bufferInfo.bufferHandle);
+        GLStateCache.getInstance().bindBuffer(bufferInfo.target, bufferInfo.bufferHandle);
         if (resizeBuffer) {
             bufferInfo.buffer = newData;
             GLES20.glBufferData(bufferInfo.target, size * bufferInfo.byteSize, newData, bufferInfo.usage);
         } else {
             GLES20.glBufferSubData(bufferInfo.target, index * bufferInfo.byteSize, size * bufferInfo.byteSize, newData);
         }
-        GLES20.glBindBuffer(bufferInfo.target, 0);
+        GLStateCache.getInstance().bindBuffer(bufferInfo.target, 0);
     }
 
     public void setVertices(float[] vertices) {
@@ -929,11 +930,11 @@ public class Geometry3D {
         if (createNewBuffer) {
             createBuffer(colorInfo, BufferType.FLOAT_BUFFER, GLES20.GL_ARRAY_BUFFER);
         } else {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, colorInfo.bufferHandle);
+            GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, colorInfo.bufferHandle);
             GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, colorInfo.buffer.limit() * FLOAT_SIZE_BYTES, colorInfo.buffer,
                                 GLES20.GL_STATIC_DRAW);
         }
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
     }
 
     public String toString() {
@@ -983,7 +984,7 @@ public class Geometry3D {
                 info.buffer = null;
             }
         }
-        GLES20.glDeleteBuffers(buffers.length, buffers, 0);
+        GLStateCache.getInstance().deleteBuffers(buffers.length, buffers, 0);
 
         mOriginalGeometry = null;
 
@@ -18,6 +18,7 @@ import android.support.annotation.NonNull;
 import org.rajawali3d.bounds.BoundingBox;
 import org.rajawali3d.bounds.IBoundingVolume;
 import org.rajawali3d.cameras.Camera;
+import org.rajawali3d.cameras.Frustum;
 import org.rajawali3d.materials.Material;
 import org.rajawali3d.materials.MaterialManager;
 import org.rajawali3d.materials.textures.TextureAtlas;
@@ -25,6 +26,8 @@ import org.rajawali3d.materials.textures.TexturePacker.Tile;
 import org.rajawali3d.math.Matrix;
 import org.rajawali3d.math.Matrix4;
 import org.rajawali3d.math.vector.Vector3;
+import org.rajawali3d.scene.RenderQueue;
+import org.rajawali3d.util.GLStateCache;
 import org.rajawali3d.util.GLU;
 import org.rajawali3d.util.RajLog;
 import org.rajawali3d.visitors.INode;
@@ -50,11 +53,25 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 
     public static final int UNPICKABLE = -1;
 
+	/**
+	 * Matrices recomputed by {@link #updateForRender} in the current and the previous frame,
+	 * counted on all render threads together.
+	 */
+	private static int sMatrixUpdateCount;
+	private static int sLastMatrixUpdateCount;
+
 	protected final Matrix4 mMVPMatrix = new Matrix4();
 
 	protected final Matrix4 mMVMatrix = new Matrix4();
 	protected Matrix4 mPMatrix;
 	protected Matrix4 mParentMatrix;
+	// The model matrix and camera versions the model-view and model-view-projection matrices
+	// were computed with, and the model matrix version the bounding volumes were transformed with
+	protected int mMVPModelVersion = -1;
+	protected int mMVPCameraVersion;
+	protected int mBoundsModelVersion = -1;
+	protected IBoundingVolume mTransformedBox;
+	protected IBoundingVolume mTransformedSphere;
 	protected final Matrix4 mRotationMatrix = new Matrix4();
 
 	protected float[] mColor;
@@ -83,6 +100,14 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 
 	protected boolean mFrustumTest = false;
 	protected boolean mIsInFrustum;
+	/**
+	 * The planes still to be tested this frame, as set by the scene graph. Reset after each use.
+	 */
+	protected int mFrustumPlaneMask = Frustum.ALL_PLANES;
+	/**
+	 * The plane that rejected the bounding box last time, tested first next time.
+	 */
+	protected int mFrustumPlane = 0;
 
 	protected boolean mRenderChildrenAsBatch = false;
 	protected boolean mIsPartOfBatch = false;
@@ -200,59 +225,38 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
             return;
         }
 
-        if (parentMatrix != null) {
-            if (mParentMatrix == null) {
-                mParentMatrix = new Matrix4();
-            }
-            mParentMatrix.setAll(parentMatrix);
-        }
+		if (isCulledBySceneGraph()) {
+			return;
+		}
 
 		Material material = sceneMaterial == null ? mMaterial : sceneMaterial;
-		preRender();
-
-		// -- move view matrix transformation first
-		boolean modelMatrixWasRecalculated = onRecalculateModelMatrix(parentMatrix);
-		// -- calculate model view matrix;
-		mMVMatrix.setAll(vMatrix).multiply(mMMatrix);
-		//Create MVP Matrix from View-Projection Matrix
-		mMVPMatrix.setAll(vpMatrix).multiply(mMMatrix);
-
-        // Transform the bounding volumes if they exist
-        if (mGeometry.hasBoundingBox()) getBoundingBox().transform(getModelMatrix());
-        if (mGeometry.hasBoundingSphere()) mGeometry.getBoundingSphere().transform(getModelMatrix());
-
-		mIsInFrustum = true; // only if mFrustrumTest == true it check frustum
-		if (mFrustumTest && mGeometry.hasBoundingBox()) {
-			BoundingBox bbox = getBoundingBox();
-			if (!camera.getFrustum().boundsInFrustum(bbox)) {
-				mIsInFrustum = false;
-			}
-		}
+		boolean modelMatrixWasRecalculated = updateForRender(camera, vpMatrix, vMatrix, parentMatrix);
 
 		if (!mIsContainerOnly && mIsInFrustum) {
 			mPMatrix = projMatrix;
+			GLStateCache glState = GLStateCache.getInstance();
 			if (mDoubleSided) {
-				GLES20.glDisable(GLES20.GL_CULL_FACE);
+				glState.disable(GLES20.GL_CULL_FACE);
 			} else {
-				GLES20.glEnable(GLES20.GL_CULL_FACE);
+				glState.enable(GLES20.GL_CULL_FACE);
 			     if (mBackSided) {
-			          GLES20.glCullFace(GLES20.GL_FRONT);
+			          glState.cullFace(GLES20.GL_FRONT);
 			     } else {
-			          GLES20.glCullFace(GLES20.GL_BACK);
-			          GLES20.glFrontFace(GLES20.GL_CCW);
+			          glState.cullFace(GLES20.GL_BACK);
+			          glState.frontFace(GLES20.GL_CCW);
 			     }
 			}
 			if (mEnableBlending) {
-				GLES20.glEnable(GLES20.GL_BLEND);
-				GLES20.glBlendFunc(mBlendFuncSFactor, mBlendFuncDFactor);
+				glState.enable(GLES20.GL_BLEND);
+				glState.blendFunc(mBlendFuncSFactor, mBlendFuncDFactor);
 			}
-			if (!mEnableDepthTest) GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+			if (!mEnableDepthTest) glState.disable(GLES20.GL_DEPTH_TEST);
 			else {
-				GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-				GLES20.glDepthFunc(GLES20.GL_LESS);
+				glState.enable(GLES20.GL_DEPTH_TEST);
+				glState.depthFunc(GLES20.GL_LESS);
 			}
 
-			GLES20.glDepthMask(mEnableDepthMask);
+			glState.depthMask(mEnableDepthMask);
 
 			if (!mIsPartOfBatch) {
 				if (material == null) {
@@ -261,17 +265,17 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 					/*throw new RuntimeException(
 							"This object can't render because there's no material attached to it.");*/
 					if (mEnableBlending) {
-						GLES20.glDisable(GLES20.GL_BLEND);
+						glState.disable(GLES20.GL_BLEND);
 					}
 
 					if (mDoubleSided) {
-						GLES20.glEnable(GLES20.GL_CULL_FACE);
+						glState.enable(GLES20.GL_CULL_FACE);
 					} else if (mBackSided) {
-						GLES20.glCullFace(GLES20.GL_BACK);
+						glState.cullFace(GLES20.GL_BACK);
 					}
 					if (!mEnableDepthTest) {
-						GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-						GLES20.glDepthFunc(GLES20.GL_LESS);
+						glState.enable(GLES20.GL_DEPTH_TEST);
+						glState.depthFunc(GLES20.GL_LESS);
 					}
 					return;
 				}
@@ -294,7 +298,7 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
             }
             material.applyParams();
 
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
 			material.setMVPMatrix(mMVPMatrix);
 			material.setModelMatrix(mMMatrix);
@@ -302,9 +306,9 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 
 			if(mIsVisible) {
                 int bufferType = mGeometry.getIndexBufferInfo().bufferType == Geometry3D.BufferType.SHORT_BUFFER ? GLES20.GL_UNSIGNED_SHORT : GLES20.GL_UNSIGNED_INT;
-				GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mGeometry.getIndexBufferInfo().bufferHandle);
+				glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mGeometry.getIndexBufferInfo().bufferHandle);
 				GLES20.glDrawElements(mDrawingMode, mGeometry.getNumIndices(), bufferType, 0);
-				GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+				glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
 			}
 			if (!mIsPartOfBatch && !mRenderChildrenAsBatch && sceneMaterial == null) {
 				material.unbindTextures();
@@ -313,17 +317,17 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 			material.unsetCurrentObject(this);
 
 			if (mEnableBlending) {
-				GLES20.glDisable(GLES20.GL_BLEND);
+				glState.disable(GLES20.GL_BLEND);
 			}
 
 			if (mDoubleSided) {
-				GLES20.glEnable(GLES20.GL_CULL_FACE);
+				glState.enable(GLES20.GL_CULL_FACE);
 			} else if (mBackSided) {
-				GLES20.glCullFace(GLES20.GL_BACK);
+				glState.cullFace(GLES20.GL_BACK);
 			}
 			if (!mEnableDepthTest) {
-				GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-				GLES20.glDepthFunc(GLES20.GL_LESS);
+				glState.enable(GLES20.GL_DEPTH_TEST);
+				glState.depthFunc(GLES20.GL_LESS);
 			}
 		}
 
@@ -348,6 +352,224 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 		}
 	}
 
+	/**
+	 * Updates the matrices, bounding volumes and frustum state of this object for the current frame.
+	 *
+	 * @return true if the model matrix was recalculated
+	 */
+	private boolean updateForRender(Camera camera, final Matrix4 vpMatrix, final Matrix4 vMatrix,
+			final Matrix4 parentMatrix) {
+		preRender();
+
+		// -- move view matrix transformation first
+		boolean modelMatrixWasRecalculated = onRecalculateModelMatrix(parentMatrix);
+		if (parentMatrix != null && (modelMatrixWasRecalculated || mParentMatrix == null)) {
+			if (mParentMatrix == null) {
+				mParentMatrix = new Matrix4();
+			}
+			mParentMatrix.setAll(parentMatrix);
+		}
+		if (modelMatrixWasRecalculated) {
+			sMatrixUpdateCount++;
+		}
+
+		// Only when this object, an ancestor or the camera changed. A camera without a
+		// view-projection version is always assumed to have changed.
+		final int cameraVersion = camera.getViewProjectionVersion();
+		if (mMVPModelVersion != mModelMatrixVersion || mMVPCameraVersion != cameraVersion
+				|| cameraVersion == 0) {
+			// -- calculate model view matrix;
+			mMVMatrix.setAll(vMatrix).multiply(mMMatrix);
+			//Create MVP Matrix from View-Projection Matrix
+			mMVPMatrix.setAll(vpMatrix).multiply(mMMatrix);
+			mMVPModelVersion = mModelMatrixVersion;
+			mMVPCameraVersion = cameraVersion;
+			sMatrixUpdateCount += 2;
+		}
+
+		// Transform the bounding volumes if they exist and the model matrix or the volumes changed
+		final IBoundingVolume box = mGeometry.hasBoundingBox() ? getBoundingBox() : null;
+		final IBoundingVolume sphere = mGeometry.hasBoundingSphere() ? mGeometry.getBoundingSphere() : null;
+		if (mBoundsModelVersion != mModelMatrixVersion || box != mTransformedBox || sphere != mTransformedSphere) {
+			if (box != null) box.transform(getModelMatrix());
+			if (sphere != null) sphere.transform(getModelMatrix());
+			mBoundsModelVersion = mModelMatrixVersion;
+			mTransformedBox = box;
+			mTransformedSphere = sphere;
+		}
+
+		final int planeMask = mFrustumPlaneMask;
+		mFrustumPlaneMask = Frustum.ALL_PLANES;
+		mIsInFrustum = true; // only if mFrustrumTest == true it check frustum
+		if (mFrustumTest && mGeometry.hasBoundingBox()) {
+			mIsInFrustum = isBoundingBoxInFrustum(camera.getFrustum(), planeMask);
+		}
+		return modelMatrixWasRecalculated;
+	}
+
+	/**
+	 * Tests the transformed bounding box against the planes in a mask, starting with the plane
+	 * that rejected it last time.
+	 *
+	 * @param frustum The camera's {@link Frustum}
+	 * @param planeMask The planes to test, {@link Frustum#OUTSIDE} if the scene graph already
+	 * rejected this object
+	 * @return false if the bounding box is outside the frustum
+	 */
+	private boolean isBoundingBoxInFrustum(Frustum frustum, int planeMask) {
+		if (planeMask == 0 || planeMask == Frustum.OUTSIDE) {
+			return planeMask == 0;
+		}
+		BoundingBox bbox = getBoundingBox();
+		if (frustum.intersectBounds(bbox.getTransformedMin(), bbox.getTransformedMax(), planeMask,
+				mFrustumPlane) == Frustum.OUTSIDE) {
+			mFrustumPlane = frustum.getFailedPlane();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the scene graph rejected this object for the current frame and it has no
+	 * children that would still need their matrices updated. Such an object skips the frame
+	 * without transforming its bounds. The scene graph has already updated its model matrix in
+	 * {@link #prepareGraphCulling()}.
+	 *
+	 * @return true if the rest of the frame can be skipped
+	 */
+	private boolean isCulledBySceneGraph() {
+		if (mFrustumTest && mFrustumPlaneMask == Frustum.OUTSIDE && mChildren.isEmpty()) {
+			mFrustumPlaneMask = Frustum.ALL_PLANES;
+			mIsInFrustum = false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Called by the {@link org.rajawali3d.scene.Scene} on its children that are members of its
+	 * scene graph before the graph is culled. Recalculates the model matrix if needed, which moves
+	 * the object to the node that now contains it, and marks it as outside the frustum until
+	 * {@link #setFrustumPlaneMask(int)} says otherwise.
+	 */
+	public void prepareGraphCulling() {
+		if (onRecalculateModelMatrix(null)) {
+			for (int i = 0, j = mChildren.size(); i < j; i++) {
+				mChildren.get(i).markModelMatrixDirty();
+			}
+		}
+		mFrustumPlaneMask = Frustum.OUTSIDE;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see rajawali.scenegraph.IGraphNodeMember#setFrustumPlaneMask(int)
+	 */
+	@Override
+	public void setFrustumPlaneMask(int planeMask) {
+		mFrustumPlaneMask = planeMask;
+	}
+
+	/**
+	 * Indicates whether this object can be split into draw items by a {@link RenderQueue}. When it
+	 * returns false the queue renders the whole subtree through
+	 * {@link #render(Camera, Matrix4, Matrix4, Matrix4, Matrix4, Material)} at its collected position.
+	 * Subclasses that override render must return false.
+	 */
+	public boolean isRenderQueueable() {
+		return !mRenderChildrenAsBatch && !mIsPartOfBatch && !mShowBoundingVolume;
+	}
+
+	/**
+	 * First pass of queued rendering. Updates this object and its children for the current frame
+	 * like {@link #render(Camera, Matrix4, Matrix4, Matrix4, Matrix4, Material)} does and adds the
+	 * drawable ones to the queue instead of drawing them.
+	 *
+	 * @param queue The {@link RenderQueue} of the scene
+	 * @param camera The camera
+	 * @param vpMatrix {@link Matrix4} The view-projection matrix
+	 * @param projMatrix {@link Matrix4} The projection matrix
+	 * @param vMatrix {@link Matrix4} The view matrix
+	 * @param parentMatrix {@link Matrix4} This object's parent matrix
+	 */
+	public void collectRenderables(RenderQueue queue, Camera camera, final Matrix4 vpMatrix,
+			final Matrix4 projMatrix, final Matrix4 vMatrix, final Matrix4 parentMatrix) {
+		if (isDestroyed() || isZeroScale()) {
+			return;
+		}
+		if (!isRenderQueueable()) {
+			queue.addSubtree(this, parentMatrix);
+			return;
+		}
+		if (!mIsVisible || isCulledBySceneGraph()) {
+			return;
+		}
+
+		boolean modelMatrixWasRecalculated = updateForRender(camera, vpMatrix, vMatrix, parentMatrix);
+
+		if (!mIsContainerOnly && mIsInFrustum) {
+			if (mMaterial == null) {
+				RajLog.e("[" + this.getClass().getName()
+						+ "] This object can't render because there's no material attached to it.");
+			} else {
+				mPMatrix = projMatrix;
+				queue.add(this);
+			}
+		}
+
+		for (int i = 0, j = mChildren.size(); i < j; i++) {
+			Object3D child = mChildren.get(i);
+			if (modelMatrixWasRecalculated) child.markModelMatrixDirty();
+			child.collectRenderables(queue, camera, vpMatrix, projMatrix, vMatrix, mMMatrix);
+		}
+	}
+
+	/**
+	 * Second pass of queued rendering. The queue has already applied the culling, blending and depth
+	 * state of this object.
+	 *
+	 * @param camera The camera
+	 * @param isNewMaterial false if the program and textures of this object's material are still bound
+	 *                      from the previous draw item
+	 */
+	public void drawQueued(Camera camera, boolean isNewMaterial) {
+		Material material = mMaterial;
+		GLStateCache glState = GLStateCache.getInstance();
+		if (isNewMaterial) {
+			material.useProgram();
+		}
+		setShaderParams(camera);
+		if (isNewMaterial) {
+			material.bindTextures();
+		}
+		if(mGeometry.hasTextureCoordinates())
+			material.setTextureCoords(mGeometry.getTexCoordBufferInfo());
+		if(mGeometry.hasNormals())
+			material.setNormals(mGeometry.getNormalBufferInfo());
+		if(material.usingVertexColors())
+			material.setVertexColors(mGeometry.getColorBufferInfo());
+		material.setVertices(mGeometry.getVertexBufferInfo());
+
+		material.setCurrentObject(this);
+		if(mOverrideMaterialColor) {
+			material.setColor(mColor);
+		}
+		material.applyParams();
+
+		glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+		material.setMVPMatrix(mMVPMatrix);
+		material.setModelMatrix(mMMatrix);
+		material.setModelViewMatrix(mMVMatrix);
+
+		int bufferType = mGeometry.getIndexBufferInfo().bufferType == Geometry3D.BufferType.SHORT_BUFFER ? GLES20.GL_UNSIGNED_SHORT : GLES20.GL_UNSIGNED_INT;
+		glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mGeometry.getIndexBufferInfo().bufferHandle);
+		GLES20.glDrawElements(mDrawingMode, mGeometry.getNumIndices(), bufferType, 0);
+		glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+		material.unsetCurrentObject(this);
+	}
+
 	/**
 	 * Returns a {@link BoundingBox} for this Object3D and creates it if needed.
 	 * Utilizes children's bounding values to calculate its own {@link BoundingBox}.
@@ -405,24 +627,22 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 
 		mIsInFrustum = true; // only if mFrustrumTest == true it check frustum
 		if (mFrustumTest && mGeometry.hasBoundingBox()) {
-			BoundingBox bbox = getBoundingBox();
-			if (!camera.getFrustum().boundsInFrustum(bbox)) {
-				mIsInFrustum = false;
-			}
+			mIsInFrustum = isBoundingBoxInFrustum(camera.getFrustum(), Frustum.ALL_PLANES);
 		}
 
 		// Render this object only if it has visible geometry and didn't fail frustum test
 		if (!mIsContainerOnly && mIsInFrustum && mIsVisible) {
 			// Render same faces as visible render
+			GLStateCache glState = GLStateCache.getInstance();
 			if (mDoubleSided) {
-				GLES20.glDisable(GLES20.GL_CULL_FACE);
+				glState.disable(GLES20.GL_CULL_FACE);
 			} else {
-				GLES20.glEnable(GLES20.GL_CULL_FACE);
+				glState.enable(GLES20.GL_CULL_FACE);
 				if (mBackSided) {
-					GLES20.glCullFace(GLES20.GL_FRONT);
+					glState.cullFace(GLES20.GL_FRONT);
 				} else {
-					GLES20.glCullFace(GLES20.GL_BACK);
-					GLES20.glFrontFace(GLES20.GL_CCW);
+					glState.cullFace(GLES20.GL_BACK);
+					glState.frontFace(GLES20.GL_CCW);
 				}
 			}
 
@@ -436,7 +656,7 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 			pickingMaterial.applyParams();
 
 			// Unbind the array buffer
-			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+			glState.bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
 			// Apply this object's matrices to the pickingMaterial
 			pickingMaterial.setMVPMatrix(mMVPMatrix);
@@ -445,15 +665,15 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 
 			// Draw the object using its picking color
 			int bufferType = mGeometry.getIndexBufferInfo().bufferType == Geometry3D.BufferType.SHORT_BUFFER ? GLES20.GL_UNSIGNED_SHORT : GLES20.GL_UNSIGNED_INT;
-			GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mGeometry.getIndexBufferInfo().bufferHandle);
+			glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mGeometry.getIndexBufferInfo().bufferHandle);
 			GLES20.glDrawElements(mDrawingMode, mGeometry.getNumIndices(), bufferType, 0);
-			GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+			glState.bindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
 
 			// Only need to undo face culling
 			if (mDoubleSided) {
-				GLES20.glEnable(GLES20.GL_CULL_FACE);
+				glState.enable(GLES20.GL_CULL_FACE);
 			} else if (mBackSided) {
-				GLES20.glCullFace(GLES20.GL_BACK);
+				glState.cullFace(GLES20.GL_BACK);
 			}
 		}
 
@@ -613,6 +833,8 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 			child.getParent().removeChild(child);
 		mChildren.add(child);
 		child.setParent(this);
+		// The new parent's matrix has to be applied
+		child.markModelMatrixDirty();
 		if (mRenderChildrenAsBatch)
 			child.setPartOfBatch(true);
 	}
@@ -796,6 +1018,31 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 		this.mShowBoundingVolume = showBoundingVolume;
 	}
 
+	/**
+	 * Starts counting recomputed matrices for a new frame. Called by the
+	 * {@link org.rajawali3d.renderer.Renderer} on the render thread.
+	 */
+	public static void beginMatrixUpdateCount() {
+		sLastMatrixUpdateCount = sMatrixUpdateCount;
+		sMatrixUpdateCount = 0;
+	}
+
+	/**
+	 * @return Number of model, model-view and model-view-projection matrices recomputed for
+	 * rendering since the frame started.
+	 */
+	public static int getMatrixUpdateCount() {
+		return sMatrixUpdateCount;
+	}
+
+	/**
+	 * @return Number of model, model-view and model-view-projection matrices recomputed for
+	 * rendering in the previous frame. Static objects under an unmoving camera cost none.
+	 */
+	public static int getLastMatrixUpdateCount() {
+		return sLastMatrixUpdateCount;
+	}
+
 	public void setFrustumTest(boolean value) {
 		mFrustumTest = value;
 	}
@@ -841,6 +1088,14 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 		mBlendFuncDFactor = dFactor;
 	}
 
+	public int getBlendFuncSFactor() {
+		return mBlendFuncSFactor;
+	}
+
+	public int getBlendFuncDFactor() {
+		return mBlendFuncDFactor;
+	}
+
 	public void setDepthTestEnabled(boolean value) {
 		mEnableDepthTest = value;
 	}
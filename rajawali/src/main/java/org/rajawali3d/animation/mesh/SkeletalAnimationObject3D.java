@@ -34,6 +34,7 @@ import org.rajawali3d.materials.Material;
 import org.rajawali3d.math.Matrix;
 import org.rajawali3d.math.Matrix4;
 import org.rajawali3d.math.vector.Vector3;
+import org.rajawali3d.util.GLStateCache;
 import org.rajawali3d.util.RajLog;
 
 import java.nio.ByteBuffer;
@@ -444,7 +445,7 @@ public class SkeletalAnimationObject3D extends AAnimationObject3D {
 	public void destroy() {
 	    int[] buffers  = new int[1];
 	    if(mBoneMatricesBufferInfo != null) buffers[0] = mBoneMatricesBufferInfo.bufferHandle;
-	    GLES20.glDeleteBuffers(buffers.length, buffers, 0);
+	    GLStateCache.getInstance().deleteBuffers(buffers.length, buffers, 0);
 
 	    if(mBoneMatrices != null) mBoneMatrices.clear();
 
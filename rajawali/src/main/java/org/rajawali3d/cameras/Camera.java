@@ -19,8 +19,16 @@ import org.rajawali3d.math.Matrix4;
 import org.rajawali3d.math.Quaternion;
 import org.rajawali3d.math.vector.Vector3;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Camera extends ATransformable3D {
 
+	/**
+	 * Source of view-projection versions, unique across cameras. 0 is never handed out.
+	 */
+	private static final AtomicInteger sViewProjectionVersion = new AtomicInteger();
+
 	protected final Object mFrustumLock = new Object();
 
 	/**
@@ -40,6 +48,8 @@ public class Camera extends ATransformable3D {
 	protected Vector3[] mFrustumCorners;
 	protected Quaternion mLocalOrientation;
     protected boolean mIsInitialized;
+	protected final Matrix4 mLastVPMatrix = new Matrix4();
+	protected int mViewProjectionVersion;
 	/**
 	 * End guarded members
 	 */
@@ -182,12 +192,40 @@ public class Camera extends ATransformable3D {
         }
 	}
 
-	public void updateFrustum(Matrix4 invVPMatrix) {
+	/**
+	 * Updates the frustum planes and the view-projection version, unless the view-projection
+	 * matrix is the same as at the last call.
+	 *
+	 * @param vpMatrix {@link Matrix4} The view-projection matrix objects are rendered with.
+	 */
+	public void updateFrustum(Matrix4 vpMatrix) {
 		synchronized (mFrustumLock) {
-			mFrustum.update(invVPMatrix);
+			if (mViewProjectionVersion != 0
+					&& Arrays.equals(mLastVPMatrix.getDoubleValues(), vpMatrix.getDoubleValues())) {
+				return;
+			}
+			mLastVPMatrix.setAll(vpMatrix);
+			int version = sViewProjectionVersion.incrementAndGet();
+			if (version == 0) {
+				version = sViewProjectionVersion.incrementAndGet();
+			}
+			mViewProjectionVersion = version;
+			mFrustum.update(vpMatrix);
 		}
 	}
 
+	/**
+	 * Identifies the view-projection matrix last passed to {@link #updateFrustum(Matrix4)}. It
+	 * changes whenever that matrix changes and is unique across cameras, so objects can keep
+	 * their model-view-projection matrix while it stays the same. Only read on the render thread.
+	 *
+	 * @return The version, or 0 if {@link #updateFrustum(Matrix4)} was never called and the
+	 * view-projection matrix is unknown.
+	 */
+	public int getViewProjectionVersion() {
+		return mViewProjectionVersion;
+	}
+
 	public Frustum getFrustum() {
         synchronized (mFrustumLock) {
             return mFrustum;
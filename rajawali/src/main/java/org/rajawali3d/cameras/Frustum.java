@@ -17,21 +17,48 @@ import org.rajawali3d.math.Matrix4;
 import org.rajawali3d.math.Plane;
 import org.rajawali3d.math.vector.Vector3;
 
+/**
+ * The six clipping planes of a camera, extracted from its view-projection matrix. A point is
+ * inside the frustum when its distance to every plane is non-negative.
+ * <p>
+ * Planes are indexed 0 to 5 (right, left, bottom, top, far, near). {@link #intersectBounds} takes
+ * a bit mask of the planes still to be tested, so that a hierarchy can pass to its children only
+ * the planes that the parent's bounds straddle, and a first plane to test, so that callers can
+ * start with the plane that rejected them in the previous frame.
+ * <p>
+ * Not thread safe.
+ */
 public class Frustum {
+	/**
+	 * Returned by {@link #intersectBounds} when the bounds are completely outside.
+	 */
+	public static final int OUTSIDE = -1;
+	/**
+	 * Plane mask with all six planes set.
+	 */
+	public static final int ALL_PLANES = 0x3F;
+
+	private static final int PLANE_COUNT = 6;
+
 	private final Plane[] mPlanes;
-	private Vector3 mPoint1;
-	private Vector3 mPoint2;
+	private final double[] mPlaneData; // nx, ny, nz, d per plane
+	private int mFailedPlane;
 
 	public Frustum() {
-		mPlanes = new Plane[6];
-		mPoint1 = new Vector3();
-		mPoint2 = new Vector3();
-		for (int i = 0; i < 6; i++)
+		mPlanes = new Plane[PLANE_COUNT];
+		mPlaneData = new double[PLANE_COUNT * 4];
+		for (int i = 0; i < PLANE_COUNT; i++)
 			mPlanes[i] = new Plane();
 	}
 
-	public void update(Matrix4 inverseProjectionView) {
-		float[] m = inverseProjectionView.getFloatValues();
+	/**
+	 * Extracts the planes from a view-projection matrix. With a model-view-projection matrix the
+	 * planes are in the model's space.
+	 *
+	 * @param projectionView {@link Matrix4} The view-projection matrix, not its inverse.
+	 */
+	public void update(Matrix4 projectionView) {
+		float[] m = projectionView.getFloatValues();
 		
 		mPlanes[0].setComponents(m[Matrix4.M30] - m[Matrix4.M00], m[Matrix4.M31] - m[Matrix4.M01], m[Matrix4.M32] - m[Matrix4.M02], m[Matrix4.M33] - m[Matrix4.M03]);
 		mPlanes[1].setComponents(m[Matrix4.M30] + m[Matrix4.M00], m[Matrix4.M31] + m[Matrix4.M01], m[Matrix4.M32] + m[Matrix4.M02], m[Matrix4.M33] + m[Matrix4.M03]);
@@ -40,12 +67,22 @@ public class Frustum {
 		mPlanes[4].setComponents(m[Matrix4.M30] - m[Matrix4.M20], m[Matrix4.M31] - m[Matrix4.M21], m[Matrix4.M32] - m[Matrix4.M22], m[Matrix4.M33] - m[Matrix4.M23]);
 		mPlanes[5].setComponents(m[Matrix4.M30] + m[Matrix4.M20], m[Matrix4.M31] + m[Matrix4.M21], m[Matrix4.M32] + m[Matrix4.M22], m[Matrix4.M33] + m[Matrix4.M23]);
 		
-		mPlanes[0].normalize();
-		mPlanes[1].normalize();
-		mPlanes[2].normalize();
-		mPlanes[3].normalize();
-		mPlanes[4].normalize();
-		mPlanes[5].normalize();
+		for (int i = 0; i < PLANE_COUNT; i++) {
+			Plane p = mPlanes[i];
+			p.normalize();
+			mPlaneData[i * 4] = p.getNormal().x;
+			mPlaneData[i * 4 + 1] = p.getNormal().y;
+			mPlaneData[i * 4 + 2] = p.getNormal().z;
+			mPlaneData[i * 4 + 3] = p.getD();
+		}
+	}
+
+	/**
+	 * @param index The plane index, 0 to 5.
+	 * @return The {@link Plane}. Modifying it does not affect {@link #intersectBounds}.
+	 */
+	public Plane getPlane(int index) {
+		return mPlanes[index];
 	}
 
 	public boolean sphereInFrustum(Vector3 center, double radius) {
@@ -58,24 +95,61 @@ public class Frustum {
 		return true;
 	}
 
+	/**
+	 * Tests the transformed bounds of a {@link BoundingBox} against all planes.
+	 *
+	 * @param bounds {@link BoundingBox} The bounds, already transformed to world space.
+	 * @return false if the bounds are completely outside.
+	 */
 	public boolean boundsInFrustum(BoundingBox bounds) {
-		for(int i=0; i<6; i++) {
-			Plane p = mPlanes[i];
-			mPoint1.x = p.getNormal().x > 0 ? bounds.getMin().x : bounds.getMax().x;
-			mPoint2.x = p.getNormal().x > 0 ? bounds.getMax().x : bounds.getMin().x;
-			mPoint1.y = p.getNormal().y > 0 ? bounds.getMin().y : bounds.getMax().y;
-			mPoint2.y = p.getNormal().y > 0 ? bounds.getMax().y : bounds.getMin().y;
-			mPoint1.z = p.getNormal().z > 0 ? bounds.getMin().z : bounds.getMax().z;
-			mPoint2.z = p.getNormal().z > 0 ? bounds.getMax().z : bounds.getMin().z;
-
-			double distance1 = p.getDistanceTo(mPoint1);
-			double distance2 = p.getDistanceTo(mPoint2);
+		return intersectBounds(bounds.getTransformedMin(), bounds.getTransformedMax(), ALL_PLANES, 0) != OUTSIDE;
+	}
 
-			if ( distance1 < 0 && distance2 < 0 )
-				return false;
+	/**
+	 * Tests an axis aligned box against the planes in a mask.
+	 *
+	 * @param min {@link Vector3} The minimum corner.
+	 * @param max {@link Vector3} The maximum corner.
+	 * @param planeMask Bit i set to test plane i, {@link #ALL_PLANES} to test them all.
+	 * @param firstPlane The plane to test first, usually the one returned by
+	 * {@link #getFailedPlane()} when the same box was last rejected.
+	 * @return {@link #OUTSIDE} if the box is completely outside one of the planes, otherwise the
+	 * mask of the tested planes that the box straddles. 0 means the box is completely inside, and
+	 * anything contained in it needs no further test.
+	 */
+	public int intersectBounds(Vector3 min, Vector3 max, int planeMask, int firstPlane) {
+		final double[] data = mPlaneData;
+		int plane = firstPlane;
+		for (int n = 0; n < PLANE_COUNT; n++, plane = plane == PLANE_COUNT - 1 ? 0 : plane + 1) {
+			final int bit = 1 << plane;
+			if ((planeMask & bit) == 0) {
+				continue;
+			}
+			final int i = plane * 4;
+			final double nx = data[i], ny = data[i + 1], nz = data[i + 2], d = data[i + 3];
+			// The corner furthest along the normal decides whether the box is outside,
+			// the nearest one whether it is inside.
+			final double far = d + nx * (nx > 0 ? max.x : min.x) + ny * (ny > 0 ? max.y : min.y)
+					+ nz * (nz > 0 ? max.z : min.z);
+			final double near = d + nx * (nx > 0 ? min.x : max.x) + ny * (ny > 0 ? min.y : max.y)
+					+ nz * (nz > 0 ? min.z : max.z);
+			if (far < 0) {
+				mFailedPlane = plane;
+				return OUTSIDE;
+			}
+			if (near >= 0) {
+				planeMask &= ~bit;
+			}
 		}
-		
-		return true;
+		return planeMask;
+	}
+
+	/**
+	 * @return The plane that rejected the box in the last {@link #intersectBounds} call that
+	 * returned {@link #OUTSIDE}.
+	 */
+	public int getFailedPlane() {
+		return mFailedPlane;
 	}
 
 	public boolean pointInFrustum(Vector3 point) {
@@ -93,6 +93,11 @@ public class DebugCamera extends DebugObject3D {
         b.put(vertIndex + 2, (float) vertex.z);
     }
 
+    @Override
+    public boolean isRenderQueueable() {
+        return false;
+    }
+
     public void render(Camera camera, final Matrix4 vpMatrix, final Matrix4 projMatrix,
                        final Matrix4 vMatrix, final Matrix4 parentMatrix, Material sceneMaterial) {
         updateFrustum();
@@ -97,6 +97,11 @@ public class DebugLight extends DebugObject3D {
         }
     }
 
+    @Override
+    public boolean isRenderQueueable() {
+        return false;
+    }
+
     public void render(Camera camera, final Matrix4 vpMatrix, final Matrix4 projMatrix,
                        final Matrix4 vMatrix, final Matrix4 parentMatrix, Material sceneMaterial) {
         updateLightTransform(camera);
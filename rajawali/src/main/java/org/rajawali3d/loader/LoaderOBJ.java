@@ -484,6 +484,9 @@ public class LoaderOBJ extends AMeshLoader {
 
 		private Stack<MaterialDef> mMaterials;
 		private String mResourcePackage;
+		// Objects using the same material definition share one Material, so they can be drawn
+		// without switching programs and textures
+		private final Map<String, Material> mCreatedMaterials = new HashMap<String, Material>();
 
 		public MaterialLib() {
 			mMaterials = new Stack<LoaderOBJ.MaterialDef>();
@@ -581,6 +584,14 @@ public class LoaderOBJ extends AMeshLoader {
 				}
 			}
 
+			Material created = mCreatedMaterials.get(materialName);
+			if(created != null) {
+				object.setMaterial(created);
+				if(matDef!=null && matDef.alpha<1f)
+					object.setTransparent(true);
+				return;
+			}
+
 			boolean hasTexture = matDef != null && matDef.diffuseTexture != null;
 			boolean hasBump = matDef != null && matDef.bumpTexture != null;
 			boolean hasSpecularTexture = matDef != null && matDef.specularColorTexture != null;
@@ -652,6 +663,7 @@ public class LoaderOBJ extends AMeshLoader {
 				}
 			}
 			object.setMaterial(mat);
+			mCreatedMaterials.put(materialName, mat);
 			if(matDef!=null && matDef.alpha<1f)
 				object.setTransparent(true);
 		}
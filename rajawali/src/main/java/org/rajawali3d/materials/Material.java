@@ -43,6 +43,7 @@ import org.rajawali3d.math.Matrix4;
 import org.rajawali3d.renderer.Renderer;
 import org.rajawali3d.scene.Scene;
 import org.rajawali3d.util.Capabilities;
+import org.rajawali3d.util.GLStateCache;
 import org.rajawali3d.util.RajLog;
 
 import java.util.ArrayList;
@@ -479,7 +480,7 @@ public class Material {
         if (Renderer.hasGLContext()) {
             GLES20.glDeleteShader(mVShaderHandle);
             GLES20.glDeleteShader(mFShaderHandle);
-            GLES20.glDeleteProgram(mProgramHandle);
+            GLStateCache.getInstance().deleteProgram(mProgramHandle);
         }
     }
 
@@ -801,13 +802,20 @@ public class Material {
             if (linkStatus[0] != GLES20.GL_TRUE) {
                 RajLog.e("Could not link program in " + getClass().getCanonicalName() + ": ");
                 RajLog.e(GLES20.glGetProgramInfoLog(program));
-                GLES20.glDeleteProgram(program);
+                GLStateCache.getInstance().deleteProgram(program);
                 program = 0;
             }
         }
         return program;
     }
 
+    /**
+     * @return The handle of the shader program, or -1 before it was first created.
+     */
+    public int getProgramHandle() {
+        return mProgramHandle;
+    }
+
     /**
      * Tells the OpenGL context to use this program. This should be called every frame.
      */
@@ -815,7 +823,7 @@ public class Material {
         if (mIsDirty) {
             createShaders();
         }
-        GLES20.glUseProgram(mProgramHandle);
+        GLStateCache.getInstance().useProgram(mProgramHandle);
     }
 
     /**
@@ -889,7 +897,7 @@ public class Material {
         if (!mTextureHandles.containsKey(texture.getTextureName())) {
             setTextureParameters(texture);
         }
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + index);
+        GLStateCache.getInstance().activeTexture(GLES20.GL_TEXTURE0 + index);
         GLES20.glBindTexture(texture.getGLTextureType(), texture.getTextureId());
         GLES20.glUniform1i(mTextureHandles.get(texture.getTextureName()), index);
     }
@@ -898,7 +906,7 @@ public class Material {
         if (!mTextureHandles.containsKey(texture.getTextureName())) {
             setTextureHandleForName(name);
         }
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + index);
+        GLStateCache.getInstance().activeTexture(GLES20.GL_TEXTURE0 + index);
         GLES20.glBindTexture(texture.getGLTextureType(), texture.getTextureId());
         GLES20.glUniform1i(mTextureHandles.get(name), index);
     }
@@ -918,7 +926,7 @@ public class Material {
             GLES20.glBindTexture(texture.getGLTextureType(), 0);
         }
 
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
     }
 
     /**
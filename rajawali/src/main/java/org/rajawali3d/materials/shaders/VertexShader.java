@@ -19,6 +19,7 @@ import org.rajawali3d.materials.Material.PluginInsertLocation;
 import org.rajawali3d.materials.plugins.SkeletalAnimationMaterialPlugin.SkeletalAnimationShaderVar;
 import org.rajawali3d.materials.shaders.fragments.animation.SkeletalAnimationVertexShaderFragment;
 import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.util.GLStateCache;
 
 import java.util.List;
 
@@ -212,7 +213,7 @@ public class VertexShader extends AShader {
     }
 
 	public void setVertices(final int vertexBufferHandle, final int type, final int stride, final int offset) {
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferHandle);
+		GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferHandle);
 		GLES20.glEnableVertexAttribArray(maPositionHandle);
 		GLES20.glVertexAttribPointer(maPositionHandle, 3, type, false, stride, offset);
 	}
@@ -223,7 +224,7 @@ public class VertexShader extends AShader {
 
 	public void setTextureCoords(final int textureCoordBufferHandle, final int type, final int stride, final int offset) {
 		if(maTextureCoordHandle < 0) return;
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, textureCoordBufferHandle);
+		GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, textureCoordBufferHandle);
 		GLES20.glEnableVertexAttribArray(maTextureCoordHandle);
 		GLES20.glVertexAttribPointer(maTextureCoordHandle, 2, type, false, stride, offset);
 	}
@@ -234,7 +235,7 @@ public class VertexShader extends AShader {
 
 	public void setNormals(final int normalBufferHandle, final int type, final int stride, final int offset) {
 		if(maNormalHandle < 0) return;
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, normalBufferHandle);
+		GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, normalBufferHandle);
 		GLES20.glEnableVertexAttribArray(maNormalHandle);
 		GLES20.glVertexAttribPointer(maNormalHandle, 3, type, false, stride, offset);
 	}
@@ -245,7 +246,7 @@ public class VertexShader extends AShader {
 
 	public void setVertexColors(final int vertexColorBufferHandle, final int type, final int stride, final int offset) {
 		if(maVertexColorBufferHandle < 0) return;
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexColorBufferHandle);
+		GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, vertexColorBufferHandle);
 		GLES20.glEnableVertexAttribArray(maVertexColorBufferHandle);
 		GLES20.glVertexAttribPointer(maVertexColorBufferHandle, 4, type, false, stride, offset);
 	}
@@ -17,6 +17,7 @@ import org.rajawali3d.materials.plugins.SkeletalAnimationMaterialPlugin.Skeletal
 import org.rajawali3d.materials.shaders.AShader;
 import org.rajawali3d.materials.shaders.IShaderFragment;
 import org.rajawali3d.util.ArrayUtils;
+import org.rajawali3d.util.GLStateCache;
 import android.opengl.GLES20;
 
 
@@ -142,25 +143,25 @@ public class SkeletalAnimationVertexShaderFragment extends AShader implements IS
 	}
 	
 	public void setBone1Indices(final int boneIndex1BufferHandle) {
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, boneIndex1BufferHandle);
+		GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, boneIndex1BufferHandle);
 		GLES20.glEnableVertexAttribArray(maBoneIndex1Handle);
 		GLES20.glVertexAttribPointer(maBoneIndex1Handle, 4, GLES20.GL_FLOAT, false, 0, 0);
 	}
 
 	public void setBone2Indices(final int boneIndex2BufferHandle) {
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, boneIndex2BufferHandle);
+		GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, boneIndex2BufferHandle);
 		GLES20.glEnableVertexAttribArray(maBoneIndex2Handle);
 		GLES20.glVertexAttribPointer(maBoneIndex2Handle, 4, GLES20.GL_FLOAT, false, 0, 0);
 	}
 
 	public void setBone1Weights(final int boneWeights1BufferHandle) {
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, boneWeights1BufferHandle);
+		GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, boneWeights1BufferHandle);
 		GLES20.glEnableVertexAttribArray(maBoneWeight1Handle);
 		GLES20.glVertexAttribPointer(maBoneWeight1Handle, 4, GLES20.GL_FLOAT, false, 0, 0);
 	}
 
 	public void setBone2Weights(final int boneWeights2BufferHandle) {
-		GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, boneWeights2BufferHandle);
+		GLStateCache.getInstance().bindBuffer(GLES20.GL_ARRAY_BUFFER, boneWeights2BufferHandle);
 		GLES20.glEnableVertexAttribArray(maBoneWeight2Handle);
 		GLES20.glVertexAttribPointer(maBoneWeight2Handle, 4, GLES20.GL_FLOAT, false, 0, 0);
 	}
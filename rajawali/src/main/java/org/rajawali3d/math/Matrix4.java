@@ -163,6 +163,22 @@ public final class Matrix4 implements Cloneable {
         // @formatter:on
     }
 
+    /**
+     * Sets the elements of this {@link Matrix4} from 16 column major floats in the provided array.
+     *
+     * @param matrix float array holding the values.
+     * @param offset Index of the first value in matrix.
+     *
+     * @return A reference to this {@link Matrix4} to facilitate chaining.
+     */
+    @NonNull
+    public Matrix4 setAll(@NonNull float[] matrix, int offset) {
+        for (int i = 0; i < 16; i++) {
+            m[i] = matrix[offset + i];
+        }
+        return this;
+    }
+
     /**
      * Sets the elements of this {@link Matrix4} based on the rotation represented by
      * the provided {@link Quaternion}.
@@ -1271,6 +1287,18 @@ public final class Matrix4 implements Cloneable {
         // @formatter:on
     }
 
+    /**
+     * Copies the backing array of this {@link Matrix4} into the provided float array.
+     *
+     * @param floatArray float array to store the copy in.
+     * @param offset     Index in floatArray of the first of the 16 entries.
+     */
+    public void toFloatArray(@NonNull float[] floatArray, int offset) {
+        for (int i = 0; i < 16; i++) {
+            floatArray[offset + i] = (float) m[i];
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
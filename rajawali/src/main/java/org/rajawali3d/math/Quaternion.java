@@ -122,6 +122,33 @@ public final class Quaternion implements Cloneable {
         return setAll(quat.w, quat.x, quat.y, quat.z);
     }
 
+    /**
+     * Sets the components of this {@link Quaternion} from the w, x, y, z values in the provided
+     * array.
+     *
+     * @param array  float array holding the values.
+     * @param offset Index of w in array.
+     *
+     * @return A reference to this {@link Quaternion} to facilitate chaining.
+     */
+    @NonNull
+    public Quaternion setAll(@NonNull float[] array, int offset) {
+        return setAll(array[offset], array[offset + 1], array[offset + 2], array[offset + 3]);
+    }
+
+    /**
+     * Stores w, x, y, z in the provided float array.
+     *
+     * @param array  The array to be populated.
+     * @param offset Index of w in array.
+     */
+    public void toFloatArray(@NonNull float[] array, int offset) {
+        array[offset] = (float) w;
+        array[offset + 1] = (float) x;
+        array[offset + 2] = (float) y;
+        array[offset + 3] = (float) z;
+    }
+
     /**
      * Sets this {@link Quaternion}'s components from the given axis and angle around the axis.
      *
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2013 Dennis Ippel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.rajawali3d.math.batch;
+
+import android.support.annotation.NonNull;
+import org.rajawali3d.math.Matrix4;
+
+/**
+ * Single precision 4x4 matrix operations over many matrices, points or boxes at once.
+ * <p>
+ * Matrices are stored as 16 consecutive column major floats, the layout of
+ * {@link Matrix4#getFloatValues()}, so a batch can be uploaded to GL as is. Points are stored
+ * either as consecutive x, y, z triples or as separate x, y and z arrays. Boxes are stored as
+ * min x, y, z followed by max x, y, z.
+ * <p>
+ * The loops are branch free and touch the arrays sequentially, which lets the runtime keep the
+ * operands in registers and vectorize where it can. All methods are thread safe.
+ *
+ * @see Matrix4#setAll(float[], int)
+ * @see Matrix4#toFloatArray(float[], int)
+ */
+public final class FloatMatrix4 {
+
+    public static final int STRIDE = 16;
+    public static final int POINT_STRIDE = 3;
+    public static final int BOUNDS_STRIDE = 6;
+
+    private FloatMatrix4() {
+    }
+
+    /**
+     * Stores a {@link Matrix4} as the index'th matrix of a batch.
+     */
+    public static void set(@NonNull float[] matrices, int index, @NonNull Matrix4 matrix) {
+        matrix.toFloatArray(matrices, index * STRIDE);
+    }
+
+    /**
+     * Sets a {@link Matrix4} to the index'th matrix of a batch.
+     */
+    @NonNull
+    public static Matrix4 get(@NonNull float[] matrices, int index, @NonNull Matrix4 matrix) {
+        return matrix.setAll(matrices, index * STRIDE);
+    }
+
+    /**
+     * Multiplies one matrix with count matrices: result[i] = lhs * rhs[i], for example a
+     * view-projection with the model matrices of many objects.
+     * <p>
+     * result may be the same array region as rhs, but must not overlap it partially.
+     */
+    public static void multiply(@NonNull float[] lhs, int lhsOffset, @NonNull float[] rhs, int rhsOffset,
+                                @NonNull float[] result, int resultOffset, int count) {
+        final float l00 = lhs[lhsOffset], l10 = lhs[lhsOffset + 1], l20 = lhs[lhsOffset + 2], l30 = lhs[lhsOffset + 3];
+        final float l01 = lhs[lhsOffset + 4], l11 = lhs[lhsOffset + 5], l21 = lhs[lhsOffset + 6], l31 = lhs[lhsOffset + 7];
+        final float l02 = lhs[lhsOffset + 8], l12 = lhs[lhsOffset + 9], l22 = lhs[lhsOffset + 10], l32 = lhs[lhsOffset + 11];
+        final float l03 = lhs[lhsOffset + 12], l13 = lhs[lhsOffset + 13], l23 = lhs[lhsOffset + 14], l33 = lhs[lhsOffset + 15];
+        // Each column of the result only depends on the same column of rhs, so the batch is
+        // just a run of 4 * count columns
+        final int end = rhsOffset + count * STRIDE;
+        for (int r = rhsOffset, o = resultOffset; r < end; r += 4, o += 4) {
+            final float x = rhs[r], y = rhs[r + 1], z = rhs[r + 2], w = rhs[r + 3];
+            result[o] = l00 * x + l01 * y + l02 * z + l03 * w;
+            result[o + 1] = l10 * x + l11 * y + l12 * z + l13 * w;
+            result[o + 2] = l20 * x + l21 * y + l22 * z + l23 * w;
+            result[o + 3] = l30 * x + l31 * y + l32 * z + l33 * w;
+        }
+    }
+
+    /**
+     * Multiplies count pairs of matrices: result[i] = lhs[i] * rhs[i], for example parent and
+     * local matrices of a hierarchy level.
+     * <p>
+     * result may be the same array region as lhs or rhs, but must not overlap them partially.
+     */
+    public static void multiplyEach(@NonNull float[] lhs, int lhsOffset, @NonNull float[] rhs, int rhsOffset,
+                                    @NonNull float[] result, int resultOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            multiply(lhs, lhsOffset + i * STRIDE, rhs, rhsOffset + i * STRIDE, result, resultOffset + i * STRIDE, 1);
+        }
+    }
+
+    /**
+     * Transforms count points stored as x, y, z triples by an affine matrix. w is taken as 1
+     * and the projective row is ignored.
+     * <p>
+     * result may be the same array region as points.
+     */
+    public static void transformPoints(@NonNull float[] matrix, int matrixOffset, @NonNull float[] points,
+                                       int pointsOffset, @NonNull float[] result, int resultOffset, int count) {
+        final float m00 = matrix[matrixOffset], m10 = matrix[matrixOffset + 1], m20 = matrix[matrixOffset + 2];
+        final float m01 = matrix[matrixOffset + 4], m11 = matrix[matrixOffset + 5], m21 = matrix[matrixOffset + 6];
+        final float m02 = matrix[matrixOffset + 8], m12 = matrix[matrixOffset + 9], m22 = matrix[matrixOffset + 10];
+        final float m03 = matrix[matrixOffset + 12], m13 = matrix[matrixOffset + 13], m23 = matrix[matrixOffset + 14];
+        final int end = pointsOffset + count * POINT_STRIDE;
+        for (int p = pointsOffset, o = resultOffset; p < end; p += POINT_STRIDE, o += POINT_STRIDE) {
+            final float x = points[p], y = points[p + 1], z = points[p + 2];
+            result[o] = m00 * x + m01 * y + m02 * z + m03;
+            result[o + 1] = m10 * x + m11 * y + m12 * z + m13;
+            result[o + 2] = m20 * x + m21 * y + m22 * z + m23;
+        }
+    }
+
+    /**
+     * Transforms count points stored in separate x, y and z arrays by an affine matrix. w is
+     * taken as 1 and the projective row is ignored.
+     * <p>
+     * The result arrays may be the input arrays.
+     */
+    public static void transformPoints(@NonNull float[] matrix, int matrixOffset,
+                                       @NonNull float[] x, @NonNull float[] y, @NonNull float[] z,
+                                       @NonNull float[] resultX, @NonNull float[] resultY, @NonNull float[] resultZ,
+                                       int count) {
+        final float m00 = matrix[matrixOffset], m10 = matrix[matrixOffset + 1], m20 = matrix[matrixOffset + 2];
+        final float m01 = matrix[matrixOffset + 4], m11 = matrix[matrixOffset + 5], m21 = matrix[matrixOffset + 6];
+        final float m02 = matrix[matrixOffset + 8], m12 = matrix[matrixOffset + 9], m22 = matrix[matrixOffset + 10];
+        final float m03 = matrix[matrixOffset + 12], m13 = matrix[matrixOffset + 13], m23 = matrix[matrixOffset + 14];
+        for (int i = 0; i < count; i++) {
+            final float px = x[i], py = y[i], pz = z[i];
+            resultX[i] = m00 * px + m01 * py + m02 * pz + m03;
+            resultY[i] = m10 * px + m11 * py + m12 * pz + m13;
+            resultZ[i] = m20 * px + m21 * py + m22 * pz + m23;
+        }
+    }
+
+    /**
+     * Transforms count axis aligned boxes by an affine matrix and stores the axis aligned boxes
+     * enclosing the results. Same result as transforming the 8 corners, at the cost of about 2.
+     * <p>
+     * result may be the same array region as bounds.
+     *
+     * @see <a href="http://www.realtimerendering.com/resources/GraphicsGems/gems/TransBox.c">
+     * J. Arvo, Transforming Axis-Aligned Bounding Boxes, Graphics Gems</a>
+     */
+    public static void transformBounds(@NonNull float[] matrix, int matrixOffset, @NonNull float[] bounds,
+                                       int boundsOffset, @NonNull float[] result, int resultOffset, int count) {
+        final float m00 = matrix[matrixOffset], m10 = matrix[matrixOffset + 1], m20 = matrix[matrixOffset + 2];
+        final float m01 = matrix[matrixOffset + 4], m11 = matrix[matrixOffset + 5], m21 = matrix[matrixOffset + 6];
+        final float m02 = matrix[matrixOffset + 8], m12 = matrix[matrixOffset + 9], m22 = matrix[matrixOffset + 10];
+        final float m03 = matrix[matrixOffset + 12], m13 = matrix[matrixOffset + 13], m23 = matrix[matrixOffset + 14];
+        final int end = boundsOffset + count * BOUNDS_STRIDE;
+        for (int b = boundsOffset, o = resultOffset; b < end; b += BOUNDS_STRIDE, o += BOUNDS_STRIDE) {
+            // Center and half extent, the extent grows by the absolute matrix
+            final float cx = (bounds[b] + bounds[b + 3]) * 0.5f;
+            final float cy = (bounds[b + 1] + bounds[b + 4]) * 0.5f;
+            final float cz = (bounds[b + 2] + bounds[b + 5]) * 0.5f;
+            final float ex = (bounds[b + 3] - bounds[b]) * 0.5f;
+            final float ey = (bounds[b + 4] - bounds[b + 1]) * 0.5f;
+            final float ez = (bounds[b + 5] - bounds[b + 2]) * 0.5f;
+            final float tx = m00 * cx + m01 * cy + m02 * cz + m03;
+            final float ty = m10 * cx + m11 * cy + m12 * cz + m13;
+            final float tz = m20 * cx + m21 * cy + m22 * cz + m23;
+            final float rx = Math.abs(m00) * ex + Math.abs(m01) * ey + Math.abs(m02) * ez;
+            final float ry = Math.abs(m10) * ex + Math.abs(m11) * ey + Math.abs(m12) * ez;
+            final float rz = Math.abs(m20) * ex + Math.abs(m21) * ey + Math.abs(m22) * ez;
+            result[o] = tx - rx;
+            result[o + 1] = ty - ry;
+            result[o + 2] = tz - rz;
+            result[o + 3] = tx + rx;
+            result[o + 4] = ty + ry;
+            result[o + 5] = tz + rz;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2013 Dennis Ippel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.rajawali3d.math.batch;
+
+import android.support.annotation.FloatRange;
+import android.support.annotation.NonNull;
+import org.rajawali3d.math.Quaternion;
+
+/**
+ * Single precision quaternion operations over many quaternions at once, for example the joints
+ * of a skeleton. Quaternions are stored as 4 consecutive floats in the order w, x, y, z, the
+ * order of the {@link Quaternion} constructor. All methods are thread safe.
+ *
+ * @see Quaternion#setAll(float[], int)
+ * @see Quaternion#toFloatArray(float[], int)
+ */
+public final class FloatQuaternion {
+
+    public static final int STRIDE = 4;
+
+    // Below this 1 - cos(theta) the quaternions are interpolated linearly, as in Quaternion
+    private static final float LINEAR_THRESHOLD = 0.1f;
+
+    private FloatQuaternion() {
+    }
+
+    /**
+     * Stores a {@link Quaternion} as the index'th quaternion of a batch.
+     */
+    public static void set(@NonNull float[] quaternions, int index, @NonNull Quaternion quat) {
+        quat.toFloatArray(quaternions, index * STRIDE);
+    }
+
+    /**
+     * Sets a {@link Quaternion} to the index'th quaternion of a batch.
+     */
+    @NonNull
+    public static Quaternion get(@NonNull float[] quaternions, int index, @NonNull Quaternion quat) {
+        return quat.setAll(quaternions, index * STRIDE);
+    }
+
+    /**
+     * Spherical linear interpolation of count pairs of unit quaternions along the shortest path,
+     * normalizing the results. Matches {@link Quaternion#slerp(Quaternion, Quaternion, double)}
+     * to float precision, except that end is never modified.
+     * <p>
+     * result may be the same array region as start or end.
+     *
+     * @param t The interpolation value. [0-1] Where 0 represents start and 1 represents end.
+     */
+    public static void slerp(@NonNull float[] start, int startOffset, @NonNull float[] end, int endOffset,
+                             @FloatRange(from = 0, to = 1) float t, @NonNull float[] result, int resultOffset,
+                             int count) {
+        for (int i = 0; i < count; i++) {
+            final int s = startOffset + i * STRIDE;
+            final int e = endOffset + i * STRIDE;
+            final int o = resultOffset + i * STRIDE;
+            final float sw = start[s], sx = start[s + 1], sy = start[s + 2], sz = start[s + 3];
+            float ew = end[e], ex = end[e + 1], ey = end[e + 2], ez = end[e + 3];
+
+            float cos = sw * ew + sx * ex + sy * ey + sz * ez;
+            if (cos < 0) {
+                ew = -ew;
+                ex = -ex;
+                ey = -ey;
+                ez = -ez;
+                cos = -cos;
+            }
+
+            float scale0 = 1 - t;
+            float scale1 = t;
+            if (1 - cos > LINEAR_THRESHOLD) {
+                final double theta = Math.acos(cos);
+                final double invSinTheta = 1 / Math.sin(theta);
+                scale0 = (float) (Math.sin((1 - t) * theta) * invSinTheta);
+                scale1 = (float) (Math.sin(t * theta) * invSinTheta);
+            }
+
+            final float w = scale0 * sw + scale1 * ew;
+            final float x = scale0 * sx + scale1 * ex;
+            final float y = scale0 * sy + scale1 * ey;
+            final float z = scale0 * sz + scale1 * ez;
+            final float lengthSquared = w * w + x * x + y * y + z * z;
+            final float factor = lengthSquared != 0 ? (float) (1 / Math.sqrt(lengthSquared)) : 1;
+            result[o] = w * factor;
+            result[o + 1] = x * factor;
+            result[o + 2] = y * factor;
+            result[o + 3] = z * factor;
+        }
+    }
+}
@@ -195,6 +195,22 @@ public class Vector3 implements Cloneable {
         return this;
     }
 
+    /**
+     * Sets all components of this {@link Vector3} to the x, y, z values in the provided array.
+     *
+     * @param array  float array holding the values.
+     * @param offset Index of x in array.
+     *
+     * @return A reference to this {@link Vector3} to facilitate chaining.
+     */
+    @NonNull
+    public Vector3 setAll(@NonNull float[] array, int offset) {
+        x = array[offset];
+        y = array[offset + 1];
+        z = array[offset + 2];
+        return this;
+    }
+
     /**
      * Sets all components of this {@link Vector3} to the values provided representing
      * the input {@link Axis}.
@@ -1281,6 +1297,18 @@ public class Vector3 implements Cloneable {
     	return toArray(new double[3]);
     }
 
+    /**
+     * Stores x, y, z in the provided float array.
+     *
+     * @param array  The array to be populated.
+     * @param offset Index of x in array.
+     */
+    public void toFloatArray(@NonNull float[] array, int offset) {
+        array[offset] = (float) x;
+        array[offset + 1] = (float) y;
+        array[offset + 2] = (float) z;
+    }
+
     @NonNull
     @Override
     public String toString() {
@@ -19,6 +19,7 @@ import org.rajawali3d.primitives.ScreenQuad;
 import org.rajawali3d.renderer.Renderer;
 import org.rajawali3d.renderer.RenderTarget;
 import org.rajawali3d.scene.Scene;
+import org.rajawali3d.util.GLStateCache;
 
 /**
  * Disables stencil test for previously masked rendering passes so that
@@ -33,6 +34,6 @@ public class ClearMaskPass extends APass {
 	@Override
 	public void render(Scene scene, Renderer renderer, ScreenQuad screenQuad, RenderTarget writeBuffer, RenderTarget readBuffer, long ellapsedTime, double deltaTime) {
 		// Disable stencil test so next rendering pass won't be masked.
-		GLES20.glDisable(GLES20.GL_STENCIL_TEST);
+		GLStateCache.getInstance().disable(GLES20.GL_STENCIL_TEST);
 	}
 }
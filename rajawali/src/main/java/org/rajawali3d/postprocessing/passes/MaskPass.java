@@ -22,6 +22,7 @@ import org.rajawali3d.primitives.ScreenQuad;
 import org.rajawali3d.renderer.Renderer;
 import org.rajawali3d.renderer.RenderTarget;
 import org.rajawali3d.scene.Scene;
+import org.rajawali3d.util.GLStateCache;
 
 /**
  * Masked render pass for drawing to stencil buffer.
@@ -60,7 +61,7 @@ public class MaskPass extends APass {
 	public void render(Scene scene, Renderer render, ScreenQuad screenQuad, RenderTarget writeBuffer, RenderTarget readBuffer, long ellapsedTime, double deltaTime) {
 		// Do not update color or depth.
 		GLES20.glColorMask(false, false, false, false);
-		GLES20.glDepthMask(false);
+		GLStateCache.getInstance().depthMask(false);
 
 		// Set up stencil.
 		int writeValue, clearValue;
@@ -73,7 +74,7 @@ public class MaskPass extends APass {
 			clearValue = 0;
 		}
 
-		GLES20.glEnable(GLES20.GL_STENCIL_TEST);
+		GLStateCache.getInstance().enable(GLES20.GL_STENCIL_TEST);
 		GLES20.glStencilOp(GLES20.GL_REPLACE, GLES20.GL_REPLACE, GLES20.GL_REPLACE);
 		GLES20.glStencilFunc(GLES20.GL_ALWAYS, writeValue, 0xffffffff);
 		GLES20.glClearStencil(clearValue);
@@ -84,7 +85,7 @@ public class MaskPass extends APass {
 
 		// Re-enable color and depth.
 		GLES20.glColorMask(true, true, true, true);
-		GLES20.glDepthMask(true);
+		GLStateCache.getInstance().depthMask(true);
 
 		// Only render where stencil is set to 1.
 		GLES20.glStencilFunc(GLES20.GL_EQUAL, 1, 0xffffffff);
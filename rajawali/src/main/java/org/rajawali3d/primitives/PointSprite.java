@@ -15,6 +15,12 @@ public class PointSprite extends Plane {
         super(width, height, 1, 1, Axis.Z, true, false, 1, createVBOs);
     }
 	
+	@Override
+	public boolean isRenderQueueable() {
+		// Faces the camera in render
+		return false;
+	}
+
 	@Override
 	public void render(Camera camera, final Matrix4 vpMatrix, final Matrix4 projMatrix, final Matrix4 vMatrix,
 			final Matrix4 parentMatrix, Material sceneMaterial) {
@@ -242,6 +242,12 @@ public class ScreenQuad extends Object3D {
 		mEnableDepthMask = false;
 	}
 
+	@Override
+	public boolean isRenderQueueable() {
+		// Renders with its own camera
+		return false;
+	}
+
 	public void render(Camera camera, final Matrix4 vpMatrix, final Matrix4 projMatrix,
 			final Matrix4 vMatrix, final Matrix4 parentMatrix, Material sceneMaterial) {
 		final Matrix4 pMatrix = mCamera.getProjectionMatrix();
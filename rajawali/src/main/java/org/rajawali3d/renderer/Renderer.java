@@ -24,6 +24,7 @@ import android.support.annotation.NonNull;
 import android.util.SparseArray;
 import android.view.WindowManager;
 
+import org.rajawali3d.Object3D;
 import org.rajawali3d.cameras.Camera;
 import org.rajawali3d.loader.ALoader;
 import org.rajawali3d.loader.async.IAsyncLoaderCallback;
@@ -38,6 +39,7 @@ import org.rajawali3d.math.vector.Vector3;
 import org.rajawali3d.scene.Scene;
 import org.rajawali3d.view.ISurface;
 import org.rajawali3d.util.Capabilities;
+import org.rajawali3d.util.GLStateCache;
 import org.rajawali3d.util.ObjectColorPicker;
 import org.rajawali3d.util.OnFPSUpdateListener;
 import org.rajawali3d.util.RajLog;
@@ -301,6 +303,8 @@ public abstract class Renderer implements ISurfaceRenderer {
     @Override
     public void onRenderSurfaceCreated(EGLConfig config, GL10 gl, int width, int height) {
         Capabilities.getInstance();
+        // A new context starts from the GL defaults, not from what was shadowed for the old one
+        GLStateCache.getInstance().invalidate();
 
         String[] versionString = (GLES20.glGetString(GLES20.GL_VERSION)).split(" ");
         RajLog.d("Open GL ES Version String: " + GLES20.glGetString(GLES20.GL_VERSION));
@@ -374,6 +378,8 @@ public abstract class Renderer implements ISurfaceRenderer {
 
     @Override
     public void onRenderFrame(GL10 gl) {
+        GLStateCache.getInstance().beginFrame();
+        Object3D.beginMatrixUpdateCount();
         performFrameTasks(); //Execute any pending frame tasks
         synchronized (mNextSceneLock) {
             //Check if we need to switch the scene, and if so, do it.
@@ -0,0 +1,294 @@
+/**
+ * Copyright 2013 Dennis Ippel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.rajawali3d.scene;
+
+import android.opengl.GLES20;
+
+import org.rajawali3d.Object3D;
+import org.rajawali3d.cameras.Camera;
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.materials.textures.ATexture;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.util.GLStateCache;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the visible draw items of a frame, sorts them by 64-bit keys and draws them through
+ * the {@link GLStateCache}, so that only the GL state changes that differ from the previous item
+ * are issued.
+ * <p>
+ * Opaque items are sorted by program, first texture, material and face/depth state so that items
+ * sharing a {@link Material} are drawn back to back with a single program switch and texture bind.
+ * Transparent (blended) items are drawn after the opaque ones, back-to-front by view depth.
+ * <p>
+ * Items whose position in the draw order matters are barriers: they are drawn exactly where they
+ * were collected and nothing is sorted across them. These are objects with depth testing disabled
+ * and subtrees that must render through {@link Object3D#render} (see
+ * {@link Object3D#isRenderQueueable()}).
+ * <p>
+ * Key layout, from the least significant bit:
+ * <pre>
+ *  0-15  item index (collection order, keeps the sort stable)
+ * 16-48  opaque: 4 bits state, 6 bits material, 11 bits texture, 12 bits program
+ *        transparent: 31 bits inverted view depth
+ *    49  transparent flag
+ * 50-61  segment, incremented around every barrier
+ * </pre>
+ * Program handles and texture ids are truncated to their low bits; a collision only costs a
+ * redundant state change, never a wrong one.
+ */
+public class RenderQueue {
+
+	private static final int MAX_ITEMS = 1 << 16;
+	private static final int MAX_SEGMENT = (1 << 12) - 1;
+
+	private static final int STATE_SHIFT = 16;
+	private static final int MATERIAL_SHIFT = 20;
+	private static final int TEXTURE_SHIFT = 26;
+	private static final int PROGRAM_SHIFT = 37;
+	private static final long TRANSPARENT_FLAG = 1L << 49;
+	private static final int SEGMENT_SHIFT = 50;
+
+	private Object3D[] mItems = new Object3D[64];
+	private Matrix4[] mParentMatrices = new Matrix4[64];
+	private boolean[] mIsSubtree = new boolean[64];
+	private long[] mKeys = new long[64];
+	private int mCount;
+	private int mSegment;
+
+	private Camera mCamera;
+	private Matrix4 mVPMatrix;
+	private Matrix4 mPMatrix;
+	private Matrix4 mVMatrix;
+
+	// Material whose program and textures are bound, null after anything else was drawn
+	private Material mCurrentMaterial;
+
+	private int mDrawCount;
+	private int mMaterialChangeCount;
+	private int mStateChangeCount;
+	private int mLastDrawCount;
+	private int mLastMaterialChangeCount;
+	private int mLastStateChangeCount;
+
+	/**
+	 * Starts collecting a frame.
+	 */
+	public void begin(Camera camera, Matrix4 vpMatrix, Matrix4 projMatrix, Matrix4 vMatrix) {
+		mCamera = camera;
+		mVPMatrix = vpMatrix;
+		mPMatrix = projMatrix;
+		mVMatrix = vMatrix;
+		mCount = 0;
+		mSegment = 0;
+		mDrawCount = 0;
+		mMaterialChangeCount = 0;
+		mStateChangeCount = 0;
+		mCurrentMaterial = null;
+	}
+
+	/**
+	 * Adds a drawable object whose matrices have been updated for this frame.
+	 */
+	public void add(Object3D object) {
+		Material material = object.getMaterial();
+		if (!object.isDepthTestEnabled()) {
+			addBarrier(object, null, false);
+		} else if (object.isBlendingEnabled() || object.isTransparent()) {
+			// View space looks down -z, larger distance is drawn first
+			double distance = -object.getModelViewMatrix().getDoubleValues()[14];
+			addItem(object, null, false, TRANSPARENT_FLAG | transparentKey(distance));
+		} else {
+			addItem(object, null, false, opaqueKey(material.getProgramHandle(), getTextureKey(material),
+					System.identityHashCode(material), getStateBits(object)));
+		}
+	}
+
+	/**
+	 * Adds a subtree that is rendered through {@link Object3D#render} at its collected position.
+	 */
+	public void addSubtree(Object3D object, Matrix4 parentMatrix) {
+		addBarrier(object, parentMatrix, true);
+	}
+
+	/**
+	 * Draws everything collected since {@link #begin} and restores the default GL state.
+	 */
+	public void end() {
+		flush();
+		if (mCurrentMaterial != null) {
+			mCurrentMaterial.unbindTextures();
+			mCurrentMaterial = null;
+		}
+		GLStateCache glState = GLStateCache.getInstance();
+		glState.enable(GLES20.GL_CULL_FACE);
+		glState.cullFace(GLES20.GL_BACK);
+		glState.frontFace(GLES20.GL_CCW);
+		glState.disable(GLES20.GL_BLEND);
+		glState.enable(GLES20.GL_DEPTH_TEST);
+		glState.depthFunc(GLES20.GL_LESS);
+		glState.depthMask(true);
+		mCamera = null;
+		mVPMatrix = null;
+		mPMatrix = null;
+		mVMatrix = null;
+		mLastDrawCount = mDrawCount;
+		mLastMaterialChangeCount = mMaterialChangeCount;
+		mLastStateChangeCount = mStateChangeCount;
+	}
+
+	private void addBarrier(Object3D object, Matrix4 parentMatrix, boolean isSubtree) {
+		if (mSegment + 2 > MAX_SEGMENT) {
+			flush();
+		}
+		mSegment++;
+		addItem(object, parentMatrix, isSubtree, 0);
+		mSegment++;
+	}
+
+	private void addItem(Object3D object, Matrix4 parentMatrix, boolean isSubtree, long sortBits) {
+		if (mCount == MAX_ITEMS) {
+			// Everything collected so far precedes this item, so drawing it now keeps the order
+			flush();
+		}
+		if (mCount == mItems.length) {
+			int size = mItems.length * 2;
+			mItems = Arrays.copyOf(mItems, size);
+			mParentMatrices = Arrays.copyOf(mParentMatrices, size);
+			mIsSubtree = Arrays.copyOf(mIsSubtree, size);
+			mKeys = Arrays.copyOf(mKeys, size);
+		}
+		mItems[mCount] = object;
+		mParentMatrices[mCount] = parentMatrix;
+		mIsSubtree[mCount] = isSubtree;
+		mKeys[mCount] = ((long) mSegment << SEGMENT_SHIFT) | sortBits | mCount;
+		mCount++;
+	}
+
+	private void flush() {
+		Arrays.sort(mKeys, 0, mCount);
+		for (int i = 0; i < mCount; i++) {
+			int index = (int) (mKeys[i] & 0xFFFF);
+			Object3D object = mItems[index];
+			if (mIsSubtree[index]) {
+				object.render(mCamera, mVPMatrix, mPMatrix, mVMatrix, mParentMatrices[index], null);
+				// The subtree leaves its own program and textures behind
+				mCurrentMaterial = null;
+			} else {
+				draw(object);
+			}
+			mItems[index] = null;
+			mParentMatrices[index] = null;
+		}
+		mCount = 0;
+		mSegment = 0;
+	}
+
+	private void draw(Object3D object) {
+		GLStateCache glState = GLStateCache.getInstance();
+		int issued = glState.getIssuedCount();
+		if (object.isDoubleSided()) {
+			glState.disable(GLES20.GL_CULL_FACE);
+		} else {
+			glState.enable(GLES20.GL_CULL_FACE);
+			if (object.isBackSided()) {
+				glState.cullFace(GLES20.GL_FRONT);
+			} else {
+				glState.cullFace(GLES20.GL_BACK);
+				glState.frontFace(GLES20.GL_CCW);
+			}
+		}
+		if (object.isBlendingEnabled()) {
+			glState.enable(GLES20.GL_BLEND);
+			glState.blendFunc(object.getBlendFuncSFactor(), object.getBlendFuncDFactor());
+		} else {
+			glState.disable(GLES20.GL_BLEND);
+		}
+		if (object.isDepthTestEnabled()) {
+			glState.enable(GLES20.GL_DEPTH_TEST);
+			glState.depthFunc(GLES20.GL_LESS);
+		} else {
+			glState.disable(GLES20.GL_DEPTH_TEST);
+		}
+		glState.depthMask(object.isDepthMaskEnabled());
+		mStateChangeCount += glState.getIssuedCount() - issued;
+
+		Material material = object.getMaterial();
+		boolean isNewMaterial = material != mCurrentMaterial;
+		if (isNewMaterial) {
+			mCurrentMaterial = material;
+			mMaterialChangeCount++;
+		}
+		object.drawQueued(mCamera, isNewMaterial);
+		mDrawCount++;
+	}
+
+	private static int getTextureKey(Material material) {
+		List<ATexture> textures = material.getTextureList();
+		return textures.isEmpty() ? 0 : textures.get(0).getTextureId();
+	}
+
+	private static int getStateBits(Object3D object) {
+		return (object.isDoubleSided() ? 1 : 0)
+				| (object.isBackSided() ? 2 : 0)
+				| (object.isDepthMaskEnabled() ? 4 : 0);
+	}
+
+	/**
+	 * Sort bits of an opaque item, without segment and index.
+	 */
+	static long opaqueKey(int program, int texture, int materialHash, int stateBits) {
+		return ((long) (program & 0xFFF) << PROGRAM_SHIFT)
+				| ((long) (texture & 0x7FF) << TEXTURE_SHIFT)
+				| ((long) (materialHash & 0x3F) << MATERIAL_SHIFT)
+				| ((long) (stateBits & 0xF) << STATE_SHIFT);
+	}
+
+	/**
+	 * Sort bits of a transparent item, without flag, segment and index. Farther items get
+	 * smaller keys. Non-negative floats order the same as their bit patterns.
+	 */
+	static long transparentKey(double distance) {
+		int depthBits = Float.floatToIntBits((float) Math.max(distance, 0));
+		return (long) (Integer.MAX_VALUE - depthBits) << STATE_SHIFT;
+	}
+
+	/**
+	 * @return Number of draw calls issued by the queue in the last frame, excluding subtrees.
+	 */
+	public int getLastDrawCount() {
+		return mLastDrawCount;
+	}
+
+	/**
+	 * @return Number of program and texture switches in the last frame.
+	 */
+	public int getLastMaterialChangeCount() {
+		return mLastMaterialChangeCount;
+	}
+
+	/**
+	 * @return Number of cull, blend and depth state changes in the last frame.
+	 */
+	public int getLastStateChangeCount() {
+		return mLastStateChangeCount;
+	}
+
+	@Override
+	public String toString() {
+		return "draws=" + mLastDrawCount + ", materialChanges=" + mLastMaterialChangeCount
+				+ ", stateChanges=" + mLastStateChangeCount;
+	}
+}
@@ -40,8 +40,10 @@ import org.rajawali3d.renderer.plugins.IRendererPlugin;
 import org.rajawali3d.renderer.plugins.Plugin;
 import org.rajawali3d.scenegraph.IGraphNode;
 import org.rajawali3d.scenegraph.IGraphNode.GRAPH_TYPE;
+import org.rajawali3d.scenegraph.IGraphNodeMember;
 import org.rajawali3d.scenegraph.Octree;
 import org.rajawali3d.view.ISurface;
+import org.rajawali3d.util.GLStateCache;
 import org.rajawali3d.util.ObjectColorPicker;
 import org.rajawali3d.util.ObjectColorPicker.ColorPickerInfo;
 import org.rajawali3d.util.RajLog;
@@ -97,6 +99,8 @@ public class Scene {
 	protected boolean mEnableDepthBuffer = true;
 	protected boolean mAlwaysClearColorBuffer = true;
 	private ShadowMapMaterial mShadowMapMaterial;
+	private boolean mUseRenderQueue = false;
+	private final RenderQueue mRenderQueue = new RenderQueue();
 
 	private final List<Object3D> mChildren;
     private final List<ASceneFrameCallback> mPreCallbacks;
@@ -429,8 +433,8 @@ public class Scene {
             protected void doTask() {
                 final Object3D old = mChildren.set(location, child);
                 if (mSceneGraph != null) {
-                    //mSceneGraph.removeObject(old);
-                    //mSceneGraph.addObject(child); //TODO: Uncomment
+                    mSceneGraph.removeObject(old);
+                    mSceneGraph.addObject(child);
                 }
             }
         };
@@ -450,8 +454,8 @@ public class Scene {
             protected void doTask() {
                 mChildren.set(mChildren.indexOf(oldChild), newChild);
                 if (mSceneGraph != null) {
-                    //mSceneGraph.removeObject(oldChild);
-                    //mSceneGraph.addObject(newChild); //TODO: Uncomment
+                    mSceneGraph.removeObject(oldChild);
+                    mSceneGraph.addObject(newChild);
                 }
             }
         };
@@ -471,7 +475,7 @@ public class Scene {
             protected void doTask() {
                 mChildren.add(child);
                 if (mSceneGraph != null) {
-                    //mSceneGraph.addObject(child); //TODO: Uncomment
+                    mSceneGraph.addObject(child);
                 }
                 addShadowMapMaterialPlugin(child, mShadowMapMaterial == null ? null : mShadowMapMaterial.getMaterialPlugin());
             }
@@ -493,7 +497,7 @@ public class Scene {
             protected void doTask() {
                 mChildren.add(index, child);
                 if (mSceneGraph != null) {
-                    //mSceneGraph.addObject(child); //TODO: Uncomment
+                    mSceneGraph.addObject(child);
                 }
             }
         };
@@ -512,7 +516,7 @@ public class Scene {
             protected void doTask() {
                 mChildren.addAll(children);
                 if (mSceneGraph != null) {
-                    //mSceneGraph.addObject(child); //TODO: Uncomment
+                    mSceneGraph.addObjects(new ArrayList<IGraphNodeMember>(children));
                 }
             }
         };
@@ -531,7 +535,7 @@ public class Scene {
             protected void doTask() {
                 mChildren.remove(child);
                 if (mSceneGraph != null) {
-                    //mSceneGraph.removeObject(child); //TODO: Uncomment
+                    mSceneGraph.removeObject(child);
                 }
             }
         };
@@ -547,9 +551,9 @@ public class Scene {
         final AFrameTask task = new AFrameTask() {
             @Override
             protected void doTask() {
-                /*if (mSceneGraph != null) {
+                if (mSceneGraph != null) {
                     mSceneGraph.removeObjects(new ArrayList<IGraphNodeMember>(mChildren));
-                }*/ //TODO: Uncomment
+                }
                 mChildren.clear();
             }
         };
@@ -991,11 +995,12 @@ public class Scene {
 	 * to change this default behavior can override this method.
 	 */
 	public void resetGLState() {
-		GLES20.glEnable(GLES20.GL_CULL_FACE);
-		GLES20.glCullFace(GLES20.GL_BACK);
-		GLES20.glFrontFace(GLES20.GL_CCW);
-		GLES20.glDisable(GLES20.GL_BLEND);
-		GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+		GLStateCache glState = GLStateCache.getInstance();
+		glState.enable(GLES20.GL_CULL_FACE);
+		glState.cullFace(GLES20.GL_BACK);
+		glState.frontFace(GLES20.GL_CCW);
+		glState.disable(GLES20.GL_BLEND);
+		glState.enable(GLES20.GL_DEPTH_TEST);
 	}
 
 	public void render(long ellapsedTime, double deltaTime, RenderTarget renderTarget) {
@@ -1003,6 +1008,7 @@ public class Scene {
 	}
 
 	public void render(long ellapsedTime, double deltaTime, RenderTarget renderTarget, Material sceneMaterial) {
+		GLStateCache glState = GLStateCache.getInstance();
 		// Scene color-picking requests are relative to the prior frame's render
 		// state, so handle any pending request before applying this frame's updates...
 		if (mPickerInfo != null) {
@@ -1048,9 +1054,9 @@ public class Scene {
 
 		if (mEnableDepthBuffer) {
 			clearMask |= GLES20.GL_DEPTH_BUFFER_BIT;
-			GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-			GLES20.glDepthFunc(GLES20.GL_LESS);
-			GLES20.glDepthMask(true);
+			glState.enable(GLES20.GL_DEPTH_TEST);
+			glState.depthFunc(GLES20.GL_LESS);
+			glState.depthMask(true);
 			GLES20.glClearDepthf(1.0f);
 		}
 		if (mAntiAliasingConfig.equals(ISurface.ANTI_ALIASING_CONFIG.COVERAGE)) {
@@ -1088,7 +1094,7 @@ public class Scene {
 		// Pre-multiply View and Projection matrices once for speed
 		mVPMatrix.setAll(mPMatrix).multiply(mVMatrix);
 		mInvVPMatrix.setAll(mVPMatrix).inverse();
-        mCamera.updateFrustum(mInvVPMatrix); // Update frustum plane
+        mCamera.updateFrustum(mVPMatrix); // Update frustum plane
 
         // Update the model matrices of all the lights
         synchronized (mLights) {
@@ -1110,8 +1116,8 @@ public class Scene {
         }
 
 		if (mSkybox != null) {
-			GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-			GLES20.glDepthMask(false);
+			glState.disable(GLES20.GL_DEPTH_TEST);
+			glState.depthMask(false);
 
 			mSkybox.setPosition(mCamera.getX(), mCamera.getY(), mCamera.getZ());
             // Model matrix updates are deferred to the render method due to parent matrix needs
@@ -1119,8 +1125,8 @@ public class Scene {
 			mSkybox.render(mCamera, mVPMatrix, mPMatrix, mVMatrix, null);
 
 			if (mEnableDepthBuffer) {
-				GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-				GLES20.glDepthMask(true);
+				glState.enable(GLES20.GL_DEPTH_TEST);
+				glState.depthMask(true);
 			}
 		}
 
@@ -1130,9 +1136,26 @@ public class Scene {
 		}
 
         synchronized (mChildren) {
-			for (int i = 0, j = mChildren.size(); i < j; ++i) {
-                // Model matrix updates are deferred to the render method due to parent matrix needs
-				mChildren.get(i).render(mCamera, mVPMatrix, mPMatrix, mVMatrix, sceneMaterial);
+			if (mSceneGraph != null) {
+				// Cull through the scene graph first, nodes outside the frustum are rejected
+				// together with all their members
+				for (int i = 0, j = mChildren.size(); i < j; ++i) {
+					Object3D child = mChildren.get(i);
+					if (child.getGraphNode() != null) child.prepareGraphCulling();
+				}
+				mSceneGraph.cullFromFrustum(mCamera.getFrustum());
+			}
+			if (mUseRenderQueue && sceneMaterial == null) {
+				mRenderQueue.begin(mCamera, mVPMatrix, mPMatrix, mVMatrix);
+				for (int i = 0, j = mChildren.size(); i < j; ++i) {
+					mChildren.get(i).collectRenderables(mRenderQueue, mCamera, mVPMatrix, mPMatrix, mVMatrix, null);
+				}
+				mRenderQueue.end();
+			} else {
+				for (int i = 0, j = mChildren.size(); i < j; ++i) {
+					// Model matrix updates are deferred to the render method due to parent matrix needs
+					mChildren.get(i).render(mCamera, mVPMatrix, mPMatrix, mVMatrix, sceneMaterial);
+				}
 			}
 		}
 
@@ -1166,6 +1189,7 @@ public class Scene {
 	}
 
 	protected void doColorPicking(ColorPickerInfo pickerInfo) {
+		GLStateCache glState = GLStateCache.getInstance();
 		ObjectColorPicker picker = pickerInfo.getPicker();
 		picker.getRenderTarget().bind();
 
@@ -1173,9 +1197,9 @@ public class Scene {
 		GLES20.glClearColor(1.0f, 1.0f, 1.0f, 1.0f);
 
 		// Configure depth testing
-		GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-		GLES20.glDepthFunc(GLES20.GL_LESS);
-		GLES20.glDepthMask(true);
+		glState.enable(GLES20.GL_DEPTH_TEST);
+		glState.depthFunc(GLES20.GL_LESS);
+		glState.depthMask(true);
 		GLES20.glClearDepthf(1.0f);
 
 		// Clear buffers used for color-picking
@@ -1185,15 +1209,15 @@ public class Scene {
 		Material pickingMaterial = picker.getMaterial();
 
 		// Can't blend picking colors
-		GLES20.glDisable(GLES20.GL_BLEND);
+		glState.disable(GLES20.GL_BLEND);
 
 		// Render the Skybox first (no need for depth testing)
 		if (mSkybox != null && mSkybox.isPickingEnabled()) {
-			GLES20.glDisable(GLES20.GL_DEPTH_TEST);
-			GLES20.glDepthMask(false);
+			glState.disable(GLES20.GL_DEPTH_TEST);
+			glState.depthMask(false);
 			mSkybox.renderColorPicking(mCamera, pickingMaterial);
-			GLES20.glEnable(GLES20.GL_DEPTH_TEST);
-			GLES20.glDepthMask(true);
+			glState.enable(GLES20.GL_DEPTH_TEST);
+			glState.depthMask(true);
 		}
 
 		// Render all children using their picking colors
@@ -1512,6 +1536,29 @@ public class Scene {
 		mDisplaySceneGraph = display;
 	}
 
+	/**
+	 * Draws the children through a {@link RenderQueue}, which sorts the draw items of a frame by
+	 * program, textures and state and skips redundant GL calls between them. Transparent objects
+	 * are drawn back-to-front after the opaque ones. Objects with depth testing disabled keep their
+	 * position in the draw order. Ignored while a scene-wide material is in use.
+	 *
+	 * @param enabled true to use the render queue, false to render the children in insertion order
+	 */
+	public void setRenderQueueEnabled(boolean enabled) {
+		mUseRenderQueue = enabled;
+	}
+
+	public boolean isRenderQueueEnabled() {
+		return mUseRenderQueue;
+	}
+
+	/**
+	 * @return The {@link RenderQueue} of this scene, for its per-frame counters.
+	 */
+	public RenderQueue getRenderQueue() {
+		return mRenderQueue;
+	}
+
 	/**
 	 * Retrieve the number of triangles this scene contains, recursive method
 	 *
@@ -18,6 +18,7 @@ import java.util.List;
 
 import org.rajawali3d.ATransformable3D;
 import org.rajawali3d.cameras.Camera;
+import org.rajawali3d.cameras.Frustum;
 import org.rajawali3d.bounds.BoundingBox;
 import org.rajawali3d.bounds.BoundingSphere;
 import org.rajawali3d.bounds.IBoundingVolume;
@@ -83,6 +84,13 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 	 */
 	protected int mChildRegion = -1;
 
+	/**
+	 * The frustum plane which rejected this node the last time it was
+	 * culled. It is tested first next time, since a node that was outside
+	 * in one frame is most likely outside the same plane in the next.
+	 */
+	protected int mCullPlane = 0;
+
 	/**
 	 * Default constructor
 	 */
@@ -335,8 +343,7 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 		if (shouldClear) clear();
 		if (mSplit) {
 			for (int i = 0; i < CHILD_COUNT; ++i) {
-				members.addAll(mChildren[i].mMembers);
-				if (shouldClear) mChildren[i].clear();
+				members.addAll(mChildren[i].getAllMembersRecursively(shouldClear));
 			}
 		}
 		return members;
@@ -352,19 +359,7 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 		//TODO: Implement a batch process for this to save excessive splitting/merging
 		if (mSplit) {
 			//Check if the object fits in our children
-			int fits_in_child = -1;
-			for (int i = 0; i < CHILD_COUNT; ++i) {
-				if (mChildren[i].contains(object.getTransformedBoundingVolume())) {
-					//If the member fits in this child, mark that child
-					if (fits_in_child < 0) {
-						fits_in_child = i;
-					} else {
-						//It fits in multiple children, leave it in parent
-						fits_in_child = -1;
-						break;
-					}
-				}
-			}
+			int fits_in_child = getFittingChild(object.getTransformedBoundingVolume());
 			if (fits_in_child >= 0) { //If a single child was marked, add the member to it
 				mChildren[fits_in_child].addObject(object);
 			} else {
@@ -380,6 +375,29 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 		}
 	}
 
+	/**
+	 * Determines which child the specified volume fits in.
+	 * 
+	 * @param volume IBoundingVolume to be placed.
+	 * @return int The index of the only child which contains the volume,
+	 * or -1 if none or several do.
+	 */
+	protected int getFittingChild(IBoundingVolume volume) {
+		int fits_in_child = -1;
+		for (int i = 0; i < CHILD_COUNT; ++i) {
+			if (mChildren[i].contains(volume)) {
+				//If the member fits in this child, mark that child
+				if (fits_in_child < 0) {
+					fits_in_child = i;
+				} else {
+					//It fits in multiple children, leave it in parent
+					return -1;
+				}
+			}
+		}
+		return fits_in_child;
+	}
+
 	/**
 	 * Adds an object back into the graph when shrinking.
 	 * 
@@ -402,20 +420,8 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 		//Keep a list of members we have removed
 		ArrayList<IGraphNodeMember> removed = new ArrayList<IGraphNodeMember>();
 		for (int i = 0; i < mMembers.size(); ++i) {
-			int fits_in_child = -1;
 			IGraphNodeMember member = mMembers.get(i);
-			for (int j = 0; j < CHILD_COUNT; ++j) {
-				if (mChildren[j].contains(member.getTransformedBoundingVolume())) {
-					//If the member fits in this child, mark that child
-					if (fits_in_child < 0) {
-						fits_in_child = j;
-					} else {
-						//It fits in multiple children, leave it in parent
-						fits_in_child = -1;
-						break;
-					}
-				}
-			}
+			int fits_in_child = getFittingChild(member.getTransformedBoundingVolume());
 			if (fits_in_child >= 0) { //If a single child was marked, add the member to it
 				mChildren[fits_in_child].addObject(member);
 				removed.add(member); //Mark the member for removal from parent
@@ -629,8 +635,10 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 	 * @see rajawali.scenegraph.IGraphNode#addObjects(java.util.Collection)
 	 */
 	public void addObjects(Collection<IGraphNodeMember> objects) {
-		// TODO Auto-generated method stub
-		
+		//TODO: Implement a batch process for this to save excessive splitting/merging
+		for (IGraphNodeMember object : objects) {
+			addObject(object);
+		}
 	}
 
 	/*
@@ -644,6 +652,10 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 		IGraphNode container = object.getGraphNode();
 		if (container == null) {
 			mOutside.remove(object);
+		} else if (!object.isInGraph()) {
+			//Members outside the graph point at the root node
+			((A_nAABBTree) container).mOutside.remove(object);
+			object.setGraphNode(null, false);
 		} else {
 			if (container == this) {
 				//If this is the container, process the removal
@@ -666,8 +678,9 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 	 * @see rajawali.scenegraph.IGraphNode#removeObjects(java.util.Collection)
 	 */
 	public void removeObjects(Collection<IGraphNodeMember> objects) {
-		// TODO Auto-generated method stub
-		
+		for (IGraphNodeMember object : objects) {
+			removeObject(object);
+		}
 	}
 
 	/*
@@ -683,7 +696,6 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 		}
 		IGraphNode container = object.getGraphNode(); //Get the container node
 		handleRecursiveUpdate((A_nAABBTree) container, object);
-		RajLog.e("Node: " + this + " Object Container: " + container);
 	}
 
 	/**
@@ -694,60 +706,31 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 	 * @param object IGraphNodeMember which is being updated.
 	 */
 	protected void handleRecursiveUpdate(final A_nAABBTree container, IGraphNodeMember object) {
-		//RajLog.i("Rajawali", "Handling recursive update potential.");
+		IBoundingVolume volume = object.getTransformedBoundingVolume();
+		//Move up until a node contains the object, or we reach the root
 		A_nAABBTree local_container = container;
-		boolean updated = false;
-		while (!updated) {
-			if (local_container.contains(object.getTransformedBoundingVolume())) {
-				int fits_in_child = -1;
-				if (mSplit) {
-					for (int j = 0; j < CHILD_COUNT; ++j) {
-						if (mChildren[j].contains(object.getTransformedBoundingVolume())) {
-							//If the member fits in this child, mark that child
-							if (fits_in_child < 0) {
-								fits_in_child = j;
-							} else {
-								//It fits in multiple children, leave it in parent
-								fits_in_child = -1;
-								break;
-							}
-						}
-					}
-					if (fits_in_child >= 0) { //If a single child was marked
-						RajLog.i("Fits in a single child.");
-						local_container.removeFromMembers(object);
-						mChildren[fits_in_child].internalAddObject(object);
-						updated = true;
-					} else { //TODO: WORKS
-						RajLog.i("Fits in multiple children, leaving in place.");
-						updated = true;
-					}
-				} else {
-					RajLog.i("No children so we are leaving in same node.");
-					if (!object.isInGraph()) {
-						RajLog.i("Removing from outside graph and moving to inside root.");
-						local_container.mOutside.remove(object);
-						local_container.internalAddObject(object);
-					}
-					updated = true;
-				}
-			} else {
-				//RajLog.v("Rajawali", "OUTSIDE");
-				if (local_container.mParent == null) { //TODO: WORKS
-					//RajLog.v("Rajawali", "OUTSIDE");
-					//RajLog.i("Rajawali", "Container is root node. Adding to outside.");
-					if (object.isInGraph()) {
-						local_container.removeFromMembers(object);
-						local_container.addToOutside(object);
-					}
-					//RajLog.e("Rajawali", "Node after addToOutside: " + object.getGraphNode());
-					updated = true;
-				} else {
-					RajLog.i("Container is not root (" + local_container + "). Moving search up a level.");
-					local_container = local_container.mParent;
-				}
+		while (local_container.mParent != null && !local_container.contains(volume)) {
+			local_container = local_container.mParent;
+		}
+		if (!local_container.contains(volume)) {
+			//Not even the root contains it
+			if (object.isInGraph()) {
+				container.removeFromMembers(object);
+				local_container.addToOutside(object);
 			}
+			return;
+		}
+		if (local_container == container && object.isInGraph()
+				&& (!container.mSplit || container.getFittingChild(volume) < 0)) {
+			//It still fits here and not in a single child, leave it in place
+			return;
 		}
+		if (object.isInGraph()) {
+			container.removeFromMembers(object);
+		} else {
+			local_container.mOutside.remove(object);
+		}
+		local_container.internalAddObject(object);
 	}
 
 	/*
@@ -783,6 +766,47 @@ public abstract class A_nAABBTree extends BoundingBox implements IGraphNode {
 
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see rajawali.scenegraph.IGraphNode#cullFromFrustum(rajawali.cameras.Frustum)
+	 */
+	public synchronized void cullFromFrustum(Frustum frustum) {
+		if (mParent == null) {
+			//The root does not bound the outside members, so they have to test every plane
+			for (int i = 0, j = mOutside.size(); i < j; ++i) {
+				mOutside.get(i).setFrustumPlaneMask(Frustum.ALL_PLANES);
+			}
+		}
+		cullFromFrustum(frustum, Frustum.ALL_PLANES);
+	}
+
+	/**
+	 * Culls this node and its descendants. Only the planes this node's
+	 * parent straddles are tested, and once a node is completely inside
+	 * its descendants are not tested at all.
+	 * 
+	 * @param frustum Frustum to test against.
+	 * @param planeMask int containing the planes still to be tested.
+	 */
+	protected void cullFromFrustum(Frustum frustum, int planeMask) {
+		if (planeMask != 0) {
+			planeMask = frustum.intersectBounds(mTransformedMin, mTransformedMax, planeMask, mCullPlane);
+			if (planeMask == Frustum.OUTSIDE) {
+				//Everything below this node is outside
+				mCullPlane = frustum.getFailedPlane();
+				return;
+			}
+		}
+		for (int i = 0, j = mMembers.size(); i < j; ++i) {
+			mMembers.get(i).setFrustumPlaneMask(planeMask);
+		}
+		if (mSplit) {
+			for (int i = 0; i < CHILD_COUNT; ++i) {
+				mChildren[i].cullFromFrustum(frustum, planeMask);
+			}
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see rajawali.scenegraph.IGraphNode#displayGraph(boolean)
@@ -15,6 +15,7 @@ package org.rajawali3d.scenegraph;
 import java.util.Collection;
 
 import org.rajawali3d.cameras.Camera;
+import org.rajawali3d.cameras.Frustum;
 import org.rajawali3d.bounds.IBoundingVolume;
 import org.rajawali3d.math.Matrix4;
 import org.rajawali3d.math.vector.Vector3;
@@ -120,6 +121,18 @@ public interface IGraphNode {
 	 */
 	public void cullFromBoundingVolume(IBoundingVolume volume);
 
+	/**
+	 * Called to cull the scene graph against a camera frustum. Nodes
+	 * completely outside are skipped together with their descendants,
+	 * and every member of the other nodes is told which planes it still
+	 * has to be tested against through
+	 * {@link IGraphNodeMember#setFrustumPlaneMask(int)}. Members that
+	 * are not told anything are outside.
+	 *
+	 * @param frustum Frustum to test visibility against.
+	 */
+	public void cullFromFrustum(Frustum frustum);
+
 	/**
 	 * Call this in the renderer to cause the scene graph to be
 	 * displayed. It is up to the implementation to determine
@@ -13,6 +13,7 @@
 package org.rajawali3d.scenegraph;
 
 import org.rajawali3d.bounds.IBoundingVolume;
+import org.rajawali3d.cameras.Frustum;
 import org.rajawali3d.math.vector.Vector3;
 
 /**
@@ -58,4 +59,13 @@ public interface IGraphNodeMember {
 	 * @return Number3D containing the position.
 	 */
 	public Vector3 getScenePosition();
+
+	/**
+	 * Called by {@link IGraphNode#cullFromFrustum(Frustum)} for each member whose node is not
+	 * completely outside the frustum.
+	 * 
+	 * @param planeMask int containing the planes, as used by {@link Frustum#intersectBounds},
+	 * that the member's node straddles. 0 if the node is completely inside.
+	 */
+	public void setFrustumPlaneMask(int planeMask);
 }
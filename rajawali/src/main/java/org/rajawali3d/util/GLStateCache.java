@@ -0,0 +1,344 @@
+/**
+ * Copyright 2013 Dennis Ippel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.rajawali3d.util;
+
+import android.opengl.GLES20;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLContext;
+
+/**
+ * Shadows the GL state of the context current on the calling thread and drops calls that would
+ * not change it.
+ * <p>
+ * Tracked state: the enable bits of {@link GLES20#GL_CULL_FACE}, {@link GLES20#GL_BLEND},
+ * {@link GLES20#GL_DEPTH_TEST}, {@link GLES20#GL_STENCIL_TEST}, {@link GLES20#GL_SCISSOR_TEST}
+ * and {@link GLES20#GL_DITHER}, cull face, front face, depth function, depth mask, blend
+ * function, the current program, the {@link GLES20#GL_ARRAY_BUFFER} and
+ * {@link GLES20#GL_ELEMENT_ARRAY_BUFFER} bindings and the active texture unit. Anything else is
+ * passed through unconditionally.
+ * <p>
+ * The shadow is only correct while every change to tracked state on the context goes through this
+ * class. Code that touches tracked state directly, or that hands the context to a third party,
+ * must call {@link #invalidate()} afterwards. Programs and buffers must be deleted through
+ * {@link #deleteProgram(int)} and {@link #deleteBuffers(int, int[], int)}, since GL reuses the
+ * names of deleted objects.
+ * <p>
+ * There is one instance per thread. A GL context is current on at most one thread, and
+ * {@link #beginFrame()} invalidates the shadow when it finds a different context current.
+ */
+public final class GLStateCache {
+
+	private static final int UNKNOWN = -1;
+
+	private static final int CAP_CULL_FACE = 0;
+	private static final int CAP_BLEND = 1;
+	private static final int CAP_DEPTH_TEST = 2;
+	private static final int CAP_STENCIL_TEST = 3;
+	private static final int CAP_SCISSOR_TEST = 4;
+	private static final int CAP_DITHER = 5;
+	private static final int CAP_COUNT = 6;
+
+	private static final ThreadLocal<GLStateCache> sInstance = new ThreadLocal<GLStateCache>() {
+		@Override
+		protected GLStateCache initialValue() {
+			return new GLStateCache();
+		}
+	};
+
+	private final int[] mCapabilities = new int[CAP_COUNT];
+	private int mCullFace;
+	private int mFrontFace;
+	private int mDepthFunc;
+	private int mDepthMask;
+	private int mBlendSFactor;
+	private int mBlendDFactor;
+	private int mProgram;
+	private int mArrayBuffer;
+	private int mElementArrayBuffer;
+	private int mActiveTexture;
+
+	private EGLContext mContext;
+
+	private int mIssuedCount;
+	private int mElidedCount;
+	private int mLastIssuedCount;
+	private int mLastElidedCount;
+
+	GLStateCache() {
+		invalidate();
+	}
+
+	/**
+	 * @return The state cache of the calling thread.
+	 */
+	public static GLStateCache getInstance() {
+		return sInstance.get();
+	}
+
+	/**
+	 * Starts a new frame: moves the counters of the previous frame to {@link #getLastIssuedCount()}
+	 * and {@link #getLastElidedCount()}, and invalidates the shadow if the current GL context is
+	 * not the one seen at the last call. Must be called on the GL thread.
+	 */
+	public void beginFrame() {
+		EGLContext context = ((EGL10) EGLContext.getEGL()).eglGetCurrentContext();
+		if (!context.equals(mContext)) {
+			mContext = context;
+			invalidate();
+		}
+		mLastIssuedCount = mIssuedCount;
+		mLastElidedCount = mElidedCount;
+		mIssuedCount = 0;
+		mElidedCount = 0;
+	}
+
+	/**
+	 * Forgets all shadowed state, so that the next call for each piece of state is issued.
+	 */
+	public void invalidate() {
+		for (int i = 0; i < CAP_COUNT; i++) {
+			mCapabilities[i] = UNKNOWN;
+		}
+		mCullFace = UNKNOWN;
+		mFrontFace = UNKNOWN;
+		mDepthFunc = UNKNOWN;
+		mDepthMask = UNKNOWN;
+		mBlendSFactor = UNKNOWN;
+		mBlendDFactor = UNKNOWN;
+		mProgram = UNKNOWN;
+		mArrayBuffer = UNKNOWN;
+		mElementArrayBuffer = UNKNOWN;
+		mActiveTexture = UNKNOWN;
+	}
+
+	public void enable(int capability) {
+		setEnabled(capability, true);
+	}
+
+	public void disable(int capability) {
+		setEnabled(capability, false);
+	}
+
+	public void setEnabled(int capability, boolean isEnabled) {
+		int index = getCapabilityIndex(capability);
+		int value = isEnabled ? 1 : 0;
+		if (index >= 0) {
+			if (mCapabilities[index] == value) {
+				mElidedCount++;
+				return;
+			}
+			mCapabilities[index] = value;
+		}
+		if (isEnabled) {
+			GLES20.glEnable(capability);
+		} else {
+			GLES20.glDisable(capability);
+		}
+		mIssuedCount++;
+	}
+
+	/**
+	 * Answers from the shadow when the capability is tracked and known, otherwise queries GL.
+	 */
+	public boolean isEnabled(int capability) {
+		int index = getCapabilityIndex(capability);
+		if (index >= 0 && mCapabilities[index] != UNKNOWN) {
+			mElidedCount++;
+			return mCapabilities[index] == 1;
+		}
+		boolean isEnabled = GLES20.glIsEnabled(capability);
+		if (index >= 0) {
+			mCapabilities[index] = isEnabled ? 1 : 0;
+		}
+		mIssuedCount++;
+		return isEnabled;
+	}
+
+	public void cullFace(int mode) {
+		if (mode == mCullFace) {
+			mElidedCount++;
+			return;
+		}
+		mCullFace = mode;
+		GLES20.glCullFace(mode);
+		mIssuedCount++;
+	}
+
+	public void frontFace(int mode) {
+		if (mode == mFrontFace) {
+			mElidedCount++;
+			return;
+		}
+		mFrontFace = mode;
+		GLES20.glFrontFace(mode);
+		mIssuedCount++;
+	}
+
+	public void depthFunc(int func) {
+		if (func == mDepthFunc) {
+			mElidedCount++;
+			return;
+		}
+		mDepthFunc = func;
+		GLES20.glDepthFunc(func);
+		mIssuedCount++;
+	}
+
+	public void depthMask(boolean flag) {
+		int value = flag ? 1 : 0;
+		if (value == mDepthMask) {
+			mElidedCount++;
+			return;
+		}
+		mDepthMask = value;
+		GLES20.glDepthMask(flag);
+		mIssuedCount++;
+	}
+
+	public void blendFunc(int sFactor, int dFactor) {
+		if (sFactor == mBlendSFactor && dFactor == mBlendDFactor) {
+			mElidedCount++;
+			return;
+		}
+		mBlendSFactor = sFactor;
+		mBlendDFactor = dFactor;
+		GLES20.glBlendFunc(sFactor, dFactor);
+		mIssuedCount++;
+	}
+
+	public void useProgram(int program) {
+		if (program == mProgram) {
+			mElidedCount++;
+			return;
+		}
+		mProgram = program;
+		GLES20.glUseProgram(program);
+		mIssuedCount++;
+	}
+
+	/**
+	 * Deletes a program and forgets it if it is the current one.
+	 */
+	public void deleteProgram(int program) {
+		if (program == mProgram) {
+			mProgram = UNKNOWN;
+		}
+		GLES20.glDeleteProgram(program);
+	}
+
+	/**
+	 * Bindings of targets other than {@link GLES20#GL_ARRAY_BUFFER} and
+	 * {@link GLES20#GL_ELEMENT_ARRAY_BUFFER} are always issued.
+	 */
+	public void bindBuffer(int target, int buffer) {
+		if (target == GLES20.GL_ARRAY_BUFFER) {
+			if (buffer == mArrayBuffer) {
+				mElidedCount++;
+				return;
+			}
+			mArrayBuffer = buffer;
+		} else if (target == GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+			if (buffer == mElementArrayBuffer) {
+				mElidedCount++;
+				return;
+			}
+			mElementArrayBuffer = buffer;
+		}
+		GLES20.glBindBuffer(target, buffer);
+		mIssuedCount++;
+	}
+
+	/**
+	 * Deletes buffers. Deleting a bound buffer resets its binding to 0.
+	 */
+	public void deleteBuffers(int n, int[] buffers, int offset) {
+		for (int i = offset; i < offset + n; i++) {
+			if (buffers[i] == 0) {
+				continue;
+			}
+			if (buffers[i] == mArrayBuffer) {
+				mArrayBuffer = 0;
+			}
+			if (buffers[i] == mElementArrayBuffer) {
+				mElementArrayBuffer = 0;
+			}
+		}
+		GLES20.glDeleteBuffers(n, buffers, offset);
+	}
+
+	/**
+	 * @param texture {@link GLES20#GL_TEXTURE0} + unit
+	 */
+	public void activeTexture(int texture) {
+		if (texture == mActiveTexture) {
+			mElidedCount++;
+			return;
+		}
+		mActiveTexture = texture;
+		GLES20.glActiveTexture(texture);
+		mIssuedCount++;
+	}
+
+	private static int getCapabilityIndex(int capability) {
+		switch (capability) {
+			case GLES20.GL_CULL_FACE:
+				return CAP_CULL_FACE;
+			case GLES20.GL_BLEND:
+				return CAP_BLEND;
+			case GLES20.GL_DEPTH_TEST:
+				return CAP_DEPTH_TEST;
+			case GLES20.GL_STENCIL_TEST:
+				return CAP_STENCIL_TEST;
+			case GLES20.GL_SCISSOR_TEST:
+				return CAP_SCISSOR_TEST;
+			case GLES20.GL_DITHER:
+				return CAP_DITHER;
+			default:
+				return UNKNOWN;
+		}
+	}
+
+	/**
+	 * @return Number of GL calls issued since the last {@link #beginFrame()}.
+	 */
+	public int getIssuedCount() {
+		return mIssuedCount;
+	}
+
+	/**
+	 * @return Number of redundant GL calls dropped since the last {@link #beginFrame()}.
+	 */
+	public int getElidedCount() {
+		return mElidedCount;
+	}
+
+	/**
+	 * @return Number of GL calls issued in the previous frame.
+	 */
+	public int getLastIssuedCount() {
+		return mLastIssuedCount;
+	}
+
+	/**
+	 * @return Number of redundant GL calls dropped in the previous frame.
+	 */
+	public int getLastElidedCount() {
+		return mLastElidedCount;
+	}
+
+	@Override
+	public String toString() {
+		return "issued=" + mLastIssuedCount + ", elided=" + mLastElidedCount;
+	}
+}
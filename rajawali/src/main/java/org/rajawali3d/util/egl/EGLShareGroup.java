@@ -0,0 +1,89 @@
+package org.rajawali3d.util.egl;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+/**
+ * A process wide EGL share group. Contexts created through {@link #createContext(EGL10, EGLDisplay, EGLConfig, int[])}
+ * share textures, buffers, renderbuffers and sync objects with every other live member, so that two
+ * {@link android.opengl.GLSurfaceView}s can exchange textures without reading them back.
+ * <p>
+ * The group only tracks live contexts: a context that is destroyed through
+ * {@link #destroyContext(EGL10, EGLDisplay, EGLContext)} leaves the group, and once the last member is gone the next
+ * context starts a new group and {@link #getGeneration()} changes. Objects named in an older generation are gone.
+ */
+public final class EGLShareGroup {
+
+    private static final String TAG = "EGLShareGroup";
+
+    private static final List<EGLContext> sMembers = new ArrayList<>();
+    private static int sGeneration = 0;
+
+    private EGLShareGroup() {
+    }
+
+    /**
+     * Creates a context sharing with the current members. If the driver refuses to share, for example because the
+     * client versions differ, an unshared context is returned instead and it does not join the group.
+     *
+     * @return The new context or {@link EGL10#EGL_NO_CONTEXT} if none could be created.
+     */
+    public static synchronized EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig config,
+                                                        int[] attribList) {
+        if (!sMembers.isEmpty()) {
+            EGLContext context = egl.eglCreateContext(display, config, sMembers.get(0), attribList);
+            if (context != null && context != EGL10.EGL_NO_CONTEXT) {
+                sMembers.add(context);
+                return context;
+            }
+            Log.w(TAG, "Sharing context failed: 0x" + Integer.toHexString(egl.eglGetError()));
+            context = egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT, attribList);
+            return context != null ? context : EGL10.EGL_NO_CONTEXT;
+        }
+        EGLContext context = egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT, attribList);
+        if (context == null || context == EGL10.EGL_NO_CONTEXT) {
+            return EGL10.EGL_NO_CONTEXT;
+        }
+        sMembers.add(context);
+        ++sGeneration;
+        return context;
+    }
+
+    /**
+     * Destroys a context and removes it from the group.
+     *
+     * @return The result of {@code eglDestroyContext}.
+     */
+    public static synchronized boolean destroyContext(EGL10 egl, EGLDisplay display, EGLContext context) {
+        sMembers.remove(context);
+        return egl.eglDestroyContext(display, context);
+    }
+
+    /**
+     * @return {@code true} if the context was created by this group and is still alive. All members share objects.
+     */
+    public static synchronized boolean isMember(EGLContext context) {
+        return sMembers.contains(context);
+    }
+
+    /**
+     * @return {@code true} if the context current on the calling thread is a member.
+     */
+    public static boolean isCurrentMember() {
+        return isMember(((EGL10) EGLContext.getEGL()).eglGetCurrentContext());
+    }
+
+    /**
+     * @return A number that changes whenever the group starts over with no surviving members.
+     */
+    public static synchronized int getGeneration() {
+        return sGeneration;
+    }
+}
@@ -0,0 +1,38 @@
+package org.rajawali3d.util.egl;
+
+import android.opengl.GLSurfaceView;
+import android.util.Log;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+
+/**
+ * Creates {@link GLSurfaceView} contexts in the {@link EGLShareGroup}. Replaces the default factory, so the client
+ * version normally given to {@link GLSurfaceView#setEGLContextClientVersion(int)} is passed here instead.
+ */
+public class SharedEGLContextFactory implements GLSurfaceView.EGLContextFactory {
+
+    private static final String TAG = "SharedEGLContextFactory";
+    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+
+    private final int mClientVersion;
+
+    public SharedEGLContextFactory(int clientVersion) {
+        mClientVersion = clientVersion;
+    }
+
+    @Override
+    public EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig config) {
+        final int[] attribList = {EGL_CONTEXT_CLIENT_VERSION, mClientVersion, EGL10.EGL_NONE};
+        return EGLShareGroup.createContext(egl, display, config, attribList);
+    }
+
+    @Override
+    public void destroyContext(EGL10 egl, EGLDisplay display, EGLContext context) {
+        if (!EGLShareGroup.destroyContext(egl, display, context)) {
+            Log.e(TAG, "eglDestroyContext failed: 0x" + Integer.toHexString(egl.eglGetError()));
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package org.rajawali3d.view;
+
+import android.annotation.TargetApi;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Build;
+import android.util.Log;
+
+import org.rajawali3d.util.GLStateCache;
+import org.rajawali3d.util.egl.EGLShareGroup;
+
+/**
+ * Publishes the scene of a {@link SurfaceView} as a texture that another context in the {@link EGLShareGroup} can
+ * draw, so that the 3D layer can be composited on the GPU instead of being read back with
+ * {@link org.rajawali3d.util.ScreenGrab}.
+ * <p>
+ * While enabled, the view renders each frame into one of three textures through its own framebuffer, copies it to
+ * the window and publishes it. A consumer on another GL thread takes the latest published texture with
+ * {@link #acquire()} and hands it back with {@link #release()}. Fences order the writes of the producer before the
+ * reads of the consumer and those reads before the texture is written again, so neither thread waits on the CPU.
+ * The texture rows run bottom to top, like any framebuffer.
+ * <p>
+ * Both contexts must be GLES 3.0 members of the {@link EGLShareGroup} and the window must not be multisampled.
+ * {@link #isAvailable()} tells whether that holds; when it does not, the view renders as usual and callers have to
+ * read the pixels back instead.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public class SceneLayer {
+
+    private static final String TAG = "SceneLayer";
+    private static final int SLOT_COUNT = 3;
+
+    private final Object mLock = new Object();
+    private final int[] mTextures = new int[SLOT_COUNT];
+    private final int[] mWidths = new int[SLOT_COUNT];
+    private final int[] mHeights = new int[SLOT_COUNT];
+    private final long[] mWriteFences = new long[SLOT_COUNT];
+    private final long[] mReadFences = new long[SLOT_COUNT];
+    private int mReadySlot = -1;
+    private int mReadingSlot = -1;
+    private int mWritingSlot = -1;
+    private int mGeneration = -1;
+    private Runnable mFrameCallback;
+
+    // Framebuffer objects are not shared, these belong to the producer context
+    private final int[] mFrameBuffer = new int[1];
+    private final int[] mDepthBuffer = new int[1];
+    private int mDepthWidth;
+    private int mDepthHeight;
+    private final int[] mBinding = new int[1];
+
+    private volatile boolean mIsEnabled = false;
+    private volatile boolean mIsProducerReady = false;
+    private volatile boolean mIsConsumerReady = false;
+
+    /**
+     * Starts or stops rendering into the shared textures. Rendering into them costs a copy to the window every
+     * frame, so only enable the layer while a consumer needs it.
+     */
+    public void setEnabled(boolean isEnabled) {
+        mIsEnabled = isEnabled;
+    }
+
+    public boolean isEnabled() {
+        return mIsEnabled;
+    }
+
+    /**
+     * @return {@code true} once both contexts have been created and can share the layer.
+     */
+    public boolean isAvailable() {
+        return mIsProducerReady && mIsConsumerReady;
+    }
+
+    /**
+     * Runs {@code callback} once on the producer's GL thread, right after the next frame has been published. The
+     * layer has to be enabled for that frame to happen.
+     */
+    public void requestFrame(Runnable callback) {
+        synchronized (mLock) {
+            mFrameCallback = callback;
+        }
+    }
+
+    /**
+     * Must be called on the consumer's GL thread when its context is created.
+     */
+    public void onConsumerContextCreated() {
+        mIsConsumerReady = isContextSupported();
+        synchronized (mLock) {
+            // A read in progress belonged to the previous context
+            mReadingSlot = -1;
+        }
+    }
+
+    /**
+     * Takes the latest published frame. Must be called on the consumer's GL thread and followed by
+     * {@link #release()} once the draw calls reading it have been issued.
+     *
+     * @return The texture name or 0 if the layer is disabled or no frame has been published yet.
+     */
+    public int acquire() {
+        if (!mIsEnabled || !isAvailable()) {
+            return 0;
+        }
+        final int texture;
+        final long fence;
+        synchronized (mLock) {
+            if (mReadySlot < 0 || mReadingSlot >= 0 || mGeneration != EGLShareGroup.getGeneration()) {
+                return 0;
+            }
+            mReadingSlot = mReadySlot;
+            texture = mTextures[mReadingSlot];
+            fence = mWriteFences[mReadingSlot];
+        }
+        if (fence != 0) {
+            GLES30.glWaitSync(fence, 0, GLES30.GL_TIMEOUT_IGNORED);
+        }
+        return texture;
+    }
+
+    /**
+     * Returns the texture taken with {@link #acquire()}. Must be called on the consumer's GL thread.
+     */
+    public void release() {
+        final long fence = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        // The producer waits on this fence from its own context, it has to reach the GPU
+        GLES20.glFlush();
+        long previous = 0;
+        synchronized (mLock) {
+            if (mReadingSlot < 0) {
+                previous = fence;
+            } else {
+                previous = mReadFences[mReadingSlot];
+                mReadFences[mReadingSlot] = fence;
+                mReadingSlot = -1;
+            }
+        }
+        if (previous != 0) {
+            GLES30.glDeleteSync(previous);
+        }
+    }
+
+    void onProducerContextCreated() {
+        boolean isReady = isContextSupported();
+        if (isReady) {
+            GLES20.glGetIntegerv(GLES20.GL_SAMPLE_BUFFERS, mBinding, 0);
+            // A multisampled window cannot be the target of a blit
+            isReady = mBinding[0] == 0;
+        }
+        synchronized (mLock) {
+            mWritingSlot = -1;
+            if (isReady && mDepthBuffer[0] != 0 && mGeneration == EGLShareGroup.getGeneration()) {
+                // Renderbuffers outlive the old context when the group does, framebuffers do not
+                GLES20.glDeleteRenderbuffers(1, mDepthBuffer, 0);
+            }
+        }
+        mFrameBuffer[0] = 0;
+        mDepthBuffer[0] = 0;
+        mDepthWidth = 0;
+        mDepthHeight = 0;
+        mIsProducerReady = isReady;
+    }
+
+    /**
+     * Binds the framebuffer of a free slot so that the scene renders into it.
+     *
+     * @return {@code false} if the scene should render to the window as usual.
+     */
+    boolean beginFrame(int width, int height) {
+        if (!mIsProducerReady) {
+            return false;
+        }
+        if (!mIsEnabled) {
+            trim();
+            return false;
+        }
+        final int slot;
+        final long readFence;
+        final long writeFence;
+        synchronized (mLock) {
+            checkGeneration();
+            int free = 0;
+            while (free == mReadySlot || free == mReadingSlot) {
+                free++;
+            }
+            slot = free;
+            mWritingSlot = slot;
+            readFence = mReadFences[slot];
+            writeFence = mWriteFences[slot];
+            mReadFences[slot] = 0;
+            mWriteFences[slot] = 0;
+        }
+        if (writeFence != 0) {
+            GLES30.glDeleteSync(writeFence);
+        }
+        if (readFence != 0) {
+            // Wait on the GPU until the consumer has finished drawing the old contents
+            GLES30.glWaitSync(readFence, 0, GLES30.GL_TIMEOUT_IGNORED);
+            GLES30.glDeleteSync(readFence);
+        }
+
+        boolean isChanged = false;
+        if (mTextures[slot] == 0) {
+            GLES20.glGenTextures(1, mTextures, slot);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextures[slot]);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+            mWidths[slot] = 0;
+            mHeights[slot] = 0;
+        }
+        if (mWidths[slot] != width || mHeights[slot] != height) {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextures[slot]);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0, GLES20.GL_RGBA,
+                    GLES20.GL_UNSIGNED_BYTE, null);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+            mWidths[slot] = width;
+            mHeights[slot] = height;
+            isChanged = true;
+        }
+        if (mFrameBuffer[0] == 0) {
+            GLES20.glGenFramebuffers(1, mFrameBuffer, 0);
+            GLES20.glGenRenderbuffers(1, mDepthBuffer, 0);
+            isChanged = true;
+        }
+        if (mDepthWidth != width || mDepthHeight != height) {
+            GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, mDepthBuffer[0]);
+            GLES20.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_DEPTH_COMPONENT16, width, height);
+            GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
+            mDepthWidth = width;
+            mDepthHeight = height;
+            isChanged = true;
+        }
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFrameBuffer[0]);
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D,
+                mTextures[slot], 0);
+        GLES20.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT,
+                GLES20.GL_RENDERBUFFER, mDepthBuffer[0]);
+        if (isChanged) {
+            final int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+            if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+                Log.e(TAG, "Incomplete framebuffer: 0x" + Integer.toHexString(status));
+                GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+                synchronized (mLock) {
+                    mWritingSlot = -1;
+                }
+                mIsProducerReady = false;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the frame to the window and publishes it. Must follow a successful {@link #beginFrame(int, int)}.
+     */
+    void endFrame(int width, int height) {
+        final int slot;
+        synchronized (mLock) {
+            slot = mWritingSlot;
+        }
+        if (slot < 0) {
+            return;
+        }
+        GLES20.glGetIntegerv(GLES20.GL_FRAMEBUFFER_BINDING, mBinding, 0);
+        if (mBinding[0] != mFrameBuffer[0]) {
+            // Object picking rebinds the window, the scene has already been drawn there
+            synchronized (mLock) {
+                mWritingSlot = -1;
+            }
+            return;
+        }
+        GLES20.glBindFramebuffer(GLES30.GL_DRAW_FRAMEBUFFER, 0);
+        GLStateCache.getInstance().disable(GLES20.GL_SCISSOR_TEST);
+        GLES30.glBlitFramebuffer(0, 0, width, height, 0, 0, width, height, GLES20.GL_COLOR_BUFFER_BIT,
+                GLES20.GL_NEAREST);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        final long fence = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        // The consumer waits on this fence from its own context, it has to reach the GPU
+        GLES20.glFlush();
+        final Runnable callback;
+        synchronized (mLock) {
+            mWriteFences[slot] = fence;
+            mReadySlot = slot;
+            mWritingSlot = -1;
+            callback = mFrameCallback;
+            mFrameCallback = null;
+        }
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    // Frees the textures while disabled, unless the consumer still reads one
+    private void trim() {
+        final int[] textures;
+        final long[] fences;
+        synchronized (mLock) {
+            if (mReadingSlot >= 0 || mGeneration != EGLShareGroup.getGeneration()) {
+                return;
+            }
+            boolean isEmpty = true;
+            for (int i = 0; i < SLOT_COUNT; i++) {
+                isEmpty &= mTextures[i] == 0;
+            }
+            if (isEmpty) {
+                return;
+            }
+            textures = new int[SLOT_COUNT];
+            fences = new long[SLOT_COUNT * 2];
+            for (int i = 0; i < SLOT_COUNT; i++) {
+                textures[i] = mTextures[i];
+                fences[i] = mWriteFences[i];
+                fences[SLOT_COUNT + i] = mReadFences[i];
+            }
+            resetSlots();
+        }
+        GLES20.glDeleteTextures(SLOT_COUNT, textures, 0);
+        for (long fence : fences) {
+            if (fence != 0) {
+                GLES30.glDeleteSync(fence);
+            }
+        }
+        if (mFrameBuffer[0] != 0) {
+            GLES20.glDeleteFramebuffers(1, mFrameBuffer, 0);
+            GLES20.glDeleteRenderbuffers(1, mDepthBuffer, 0);
+            mFrameBuffer[0] = 0;
+            mDepthBuffer[0] = 0;
+            mDepthWidth = 0;
+            mDepthHeight = 0;
+        }
+    }
+
+    // Objects named in an older share group are gone together with it. Must hold mLock.
+    private void checkGeneration() {
+        final int generation = EGLShareGroup.getGeneration();
+        if (mGeneration != generation) {
+            resetSlots();
+            mGeneration = generation;
+        }
+    }
+
+    // Must hold mLock
+    private void resetSlots() {
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            mTextures[i] = 0;
+            mWidths[i] = 0;
+            mHeights[i] = 0;
+            mWriteFences[i] = 0;
+            mReadFences[i] = 0;
+        }
+        mReadySlot = -1;
+        mReadingSlot = -1;
+        mWritingSlot = -1;
+    }
+
+    private static boolean isContextSupported() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2 || !EGLShareGroup.isCurrentMember()) {
+            return false;
+        }
+        // GL_MAJOR_VERSION is an error on GLES 2.0 contexts
+        for (int i = 0; i < 8 && GLES20.glGetError() != GLES20.GL_NO_ERROR; i++) {
+            // Clear earlier errors
+        }
+        final int[] version = new int[1];
+        GLES30.glGetIntegerv(GLES30.GL_MAJOR_VERSION, version, 0);
+        return GLES20.glGetError() == GLES20.GL_NO_ERROR && version[0] >= 3;
+    }
+}
@@ -14,6 +14,7 @@ import org.rajawali3d.renderer.ISurfaceRenderer;
 import org.rajawali3d.util.Capabilities;
 import org.rajawali3d.util.ScreenGrab;
 import org.rajawali3d.util.egl.RajawaliEGLConfigChooser;
+import org.rajawali3d.util.egl.SharedEGLContextFactory;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -39,6 +40,7 @@ public class SurfaceView extends GLSurfaceView implements ISurface {
     protected int mBitsAlpha = 0;
     protected int mBitsDepth = 16;
     protected int mMultiSampleCount = 0;
+    protected SceneLayer mSceneLayer;
 
     public SurfaceView(Context context) {
         super(context);
@@ -83,6 +85,10 @@ public class SurfaceView extends GLSurfaceView implements ISurface {
     private void initialize() {
         final int glesMajorVersion = Capabilities.getGLESMajorVersion();
         setEGLContextClientVersion(glesMajorVersion);
+        if (mSceneLayer != null) {
+            // The layer textures are read from another context in the same share group
+            setEGLContextFactory(new SharedEGLContextFactory(glesMajorVersion));
+        }
 
         if (mIsTransparent) {
             setEGLConfigChooser(new RajawaliEGLConfigChooser(glesMajorVersion, mAntiAliasingConfig, mMultiSampleCount,
@@ -180,6 +186,17 @@ public class SurfaceView extends GLSurfaceView implements ISurface {
         mIsTransparent = isTransparent;
     }
 
+    /**
+     * Publishes the rendered scene through a {@link SceneLayer} so that another context can composite it without a
+     * read back. Must be called before {@link #setSurfaceRenderer(ISurfaceRenderer)}.
+     *
+     * @param layer {@link SceneLayer} The layer to render into while it is enabled.
+     */
+    public void setSceneLayer(SceneLayer layer) {
+        if (mRendererDelegate != null) throw new IllegalStateException("A renderer has already been set for this view.");
+        mSceneLayer = layer;
+    }
+
     @Override
     public void setAntiAliasingMode(ANTI_ALIASING_CONFIG config) {
         mAntiAliasingConfig = config;
@@ -311,6 +328,9 @@ public class SurfaceView extends GLSurfaceView implements ISurface {
 
         @Override
         public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+            if (mRajawaliSurfaceView.mSceneLayer != null) {
+                mRajawaliSurfaceView.mSceneLayer.onProducerContextCreated();
+            }
             mRenderer.onRenderSurfaceCreated(config, gl, -1, -1);
         }
 
@@ -323,7 +343,13 @@ public class SurfaceView extends GLSurfaceView implements ISurface {
 
         @Override
         public void onDrawFrame(GL10 gl) {
-            mRenderer.onRenderFrame(gl);
+            final SceneLayer layer = mRajawaliSurfaceView.mSceneLayer;
+            if (layer != null && layer.beginFrame(mWidth, mHeight)) {
+                mRenderer.onRenderFrame(gl);
+                layer.endFrame(mWidth, mHeight);
+            } else {
+                mRenderer.onRenderFrame(gl);
+            }
             if (mIsScreenshot || mIsRecord) {
                 Log.e(TAG, "onDrawFrame mIsScreenshot");
                 if (mIsScreenshot) {